@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Runs the compiler benchmarks with JMH, and optionally compares the scores
+ * with those of an earlier run.
+ * <p>
+ * Besides the usual JMH options, accepts:
+ * <ul>
+ * <li>-saveBaseline &lt;file&gt;: write the scores to a properties file</li>
+ * <li>-baseline &lt;file&gt;: compare the scores with those in a properties
+ * file, and exit with status 1 if any benchmark got slower by more than the
+ * threshold</li>
+ * <li>-threshold &lt;percent&gt;: the allowed slowdown, 10 by default</li>
+ * </ul>
+ * Typically a baseline is saved on a clean checkout, and the same benchmarks
+ * are then run with the change applied on the same machine.
+ */
+public class BenchmarkMain {
+
+  public static void main(String[] args)
+      throws CommandLineOptionException, IOException, RunnerException {
+    File baseline = null;
+    File saveBaseline = null;
+    double threshold = 10;
+    List<String> jmhArgs = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-baseline") && i + 1 < args.length) {
+        baseline = new File(args[++i]);
+      } else if (args[i].equals("-saveBaseline") && i + 1 < args.length) {
+        saveBaseline = new File(args[++i]);
+      } else if (args[i].equals("-threshold") && i + 1 < args.length) {
+        threshold = Double.parseDouble(args[++i]);
+      } else {
+        jmhArgs.add(args[i]);
+      }
+    }
+
+    CommandLineOptions options =
+        new CommandLineOptions(jmhArgs.toArray(new String[jmhArgs.size()]));
+    Collection<RunResult> results = new Runner(options).run();
+
+    Properties scores = new Properties();
+    for (RunResult result : results) {
+      scores.setProperty(getKey(result.getParams()),
+          Double.toString(result.getPrimaryResult().getScore()));
+    }
+    if (saveBaseline != null) {
+      OutputStream out = new FileOutputStream(saveBaseline);
+      try {
+        scores.store(out, "GWT compiler benchmark scores");
+      } finally {
+        out.close();
+      }
+    }
+    if (baseline != null && !compare(results, load(baseline), threshold)) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Prints how each score changed from the baseline. Returns false if any
+   * benchmark got slower by more than the threshold, in percent.
+   */
+  private static boolean compare(Collection<RunResult> results, Properties baseline,
+      double threshold) {
+    boolean ok = true;
+    TreeMap<String, String> lines = new TreeMap<String, String>();
+    for (RunResult result : results) {
+      String key = getKey(result.getParams());
+      String baseScore = baseline.getProperty(key);
+      if (baseScore == null) {
+        lines.put(key, "no baseline");
+        continue;
+      }
+      double base = Double.parseDouble(baseScore);
+      double score = result.getPrimaryResult().getScore();
+      // Positive when slower. Throughput is the only mode where higher is better.
+      double slowdown = result.getParams().getMode() == Mode.Throughput
+          ? (base - score) / base * 100 : (score - base) / base * 100;
+      String line = String.format("%+.1f%% (%.3f -> %.3f %s)", slowdown, base, score,
+          result.getPrimaryResult().getScoreUnit());
+      if (slowdown > threshold) {
+        line += " REGRESSION";
+        ok = false;
+      }
+      lines.put(key, line);
+    }
+
+    System.out.println();
+    System.out.println("Compared with baseline (threshold " + threshold + "%):");
+    for (String key : lines.keySet()) {
+      System.out.println("  " + key + ": " + lines.get(key));
+    }
+    return ok;
+  }
+
+  /**
+   * Returns the name of a benchmark along with its parameters, for example
+   * {@code com.google.gwt.dev.benchmarks.JsBenchmarks.parse[module=...]}.
+   */
+  private static String getKey(BenchmarkParams params) {
+    StringBuilder key = new StringBuilder(params.getBenchmark());
+    if (!params.getParamsKeys().isEmpty()) {
+      key.append('[');
+      String separator = "";
+      for (String param : params.getParamsKeys()) {
+        key.append(separator).append(param).append('=').append(params.getParam(param));
+        separator = ",";
+      }
+      key.append(']');
+    }
+    return key.toString();
+  }
+
+  private static Properties load(File file) throws IOException {
+    Properties properties = new Properties();
+    InputStream in = new FileInputStream(file);
+    try {
+      properties.load(in);
+    } finally {
+      in.close();
+    }
+    return properties;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.benchmarks;
+
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.CompilerContext;
+import com.google.gwt.dev.Precompilation;
+import com.google.gwt.dev.Precompile;
+import com.google.gwt.dev.javac.CompilationState;
+import com.google.gwt.dev.javac.CompilationStateBuilder;
+import com.google.gwt.dev.resource.Resource;
+import com.google.gwt.dev.resource.impl.ResourceOracleImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steps that turn the module's source path into a unified AST.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FrontEndBenchmarks {
+
+  /**
+   * Compiles every unit of the module with JDT and builds its GWT AST with
+   * GwtAstBuilder, starting from an empty unit cache.
+   */
+  @Benchmark
+  public CompilationState buildCompilationState(ModuleState state)
+      throws UnableToCompleteException {
+    CompilerContext context = state.newUncachedContext();
+    return CompilationStateBuilder.buildFrom(state.logger, context,
+        context.getSourceResourceOracle().getResources());
+  }
+
+  /**
+   * Precompiles the module with its compilation units already cached. Most of
+   * the time goes to UnifyAst, which gathers the reachable types into one
+   * program and runs the generators.
+   */
+  @Benchmark
+  public Precompilation precompile(ModuleState state) throws UnableToCompleteException {
+    return Precompile.precompile(state.logger, state.compilerContext);
+  }
+
+  /**
+   * Scans the class path for the module's source path, without the scan
+   * results kept from earlier oracles.
+   */
+  @Benchmark
+  public Set<Resource> scanSourcePath(ModuleState state) {
+    ResourceOracleImpl.clearCache();
+    ResourceOracleImpl oracle = new ResourceOracleImpl(state.logger);
+    oracle.setPathPrefixes(
+        ((ResourceOracleImpl) state.moduleDef.getSourceResourceOracle()).getPathPrefixes());
+    oracle.scanResources(state.logger);
+    return oracle.getResources();
+  }
+}
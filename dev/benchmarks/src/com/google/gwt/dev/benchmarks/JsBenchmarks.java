@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.benchmarks;
+
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.jjs.PermutationResult;
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.js.JsParser;
+import com.google.gwt.dev.js.JsParserException;
+import com.google.gwt.dev.js.JsSourceGenerationVisitor;
+import com.google.gwt.dev.js.ast.JsProgram;
+import com.google.gwt.dev.util.DefaultTextOutput;
+import com.google.gwt.dev.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and prints the JavaScript compiled for the first permutation of the
+ * module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JsBenchmarks {
+
+  private String js;
+  private JsProgram program;
+
+  @Setup
+  public void setUp(ModuleState state)
+      throws IOException, JsParserException, UnableToCompleteException {
+    PermutationResult result = state.precompilation.getUnifiedAst().compilePermutation(
+        state.logger, state.compilerContext, state.precompilation.getPermutations()[0]);
+    StringBuilder sb = new StringBuilder();
+    for (byte[] fragment : result.getJs()) {
+      sb.append(Util.toString(fragment));
+    }
+    js = sb.toString();
+    program = parse();
+  }
+
+  @Benchmark
+  public JsProgram parse() throws IOException, JsParserException {
+    JsProgram result = new JsProgram();
+    JsParser.parseInto(SourceOrigin.UNKNOWN, result.getScope(), result.getGlobalBlock(),
+        new StringReader(js));
+    return result;
+  }
+
+  @Benchmark
+  public String generateSource() {
+    DefaultTextOutput out = new DefaultTextOutput(false);
+    new JsSourceGenerationVisitor(out).accept(program);
+    return out.toString();
+  }
+}
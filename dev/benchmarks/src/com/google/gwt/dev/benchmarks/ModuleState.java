@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.benchmarks;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.CompilerContext;
+import com.google.gwt.dev.CompilerOptionsImpl;
+import com.google.gwt.dev.Precompilation;
+import com.google.gwt.dev.Precompile;
+import com.google.gwt.dev.cfg.ModuleDef;
+import com.google.gwt.dev.cfg.ModuleDefLoader;
+import com.google.gwt.dev.javac.CompilationState;
+import com.google.gwt.dev.javac.MemoryUnitCache;
+import com.google.gwt.dev.jjs.JsOutputOption;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
+import com.google.gwt.util.tools.Utility;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A module loaded and precompiled once per trial. The other benchmarks take
+ * their fixtures from it, so that they all measure the same program.
+ */
+@State(Scope.Benchmark)
+public class ModuleState {
+
+  /**
+   * The module to compile. It must be on the class path along with its source;
+   * the bench target adds the samples. Mail is the default since Hello is too
+   * small for the passes to show how they scale; another module can be picked
+   * with JMH's -p option, for example -p module=com.google.gwt.sample.hello.Hello.
+   */
+  @Param("com.google.gwt.sample.mail.Mail")
+  public String module;
+
+  CompilationState compilationState;
+  CompilerContext compilerContext;
+  TreeLogger logger;
+  ModuleDef moduleDef;
+  CompilerOptionsImpl options;
+  Precompilation precompilation;
+
+  @Setup
+  public void setUp() throws IOException, UnableToCompleteException {
+    PrintWriterTreeLogger printLogger = new PrintWriterTreeLogger();
+    printLogger.setMaxDetail(TreeLogger.WARN);
+    logger = printLogger;
+
+    options = new CompilerOptionsImpl();
+    options.addModuleName(module);
+    options.setWorkDir(Utility.makeTemporaryDirectory(null, "gwtbench"));
+    options.setOutput(JsOutputOption.PRETTY);
+    // Leave the Java optimizations to the benchmarks that measure them.
+    options.setOptimizePrecompile(false);
+
+    CompilerContext.Builder builder = new CompilerContext.Builder().options(options);
+    moduleDef = ModuleDefLoader.loadFromClassPath(logger, builder.build(), module, true);
+    compilerContext = builder.module(moduleDef).build();
+    compilationState = moduleDef.getCompilationState(logger, compilerContext);
+    precompilation = Precompile.precompile(logger, compilerContext);
+    if (precompilation == null) {
+      logger.log(TreeLogger.ERROR, "Unable to precompile " + module);
+      throw new UnableToCompleteException();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    Util.recursiveDelete(options.getWorkDir(), false);
+  }
+
+  /**
+   * Returns a context for the module whose unit cache is empty, so that every
+   * compilation unit is compiled again.
+   */
+  CompilerContext newUncachedContext() {
+    return new CompilerContext.Builder().options(options).module(moduleDef)
+        .unitCache(new MemoryUnitCache()).build();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.benchmarks;
+
+import com.google.gwt.dev.javac.CachedCompilationUnit;
+import com.google.gwt.dev.javac.CompilationUnit;
+import com.google.gwt.dev.jjs.UnifiedAst;
+import com.google.gwt.dev.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes and deserializes what the compiler writes to disk between steps:
+ * the unified AST handed to the permutation compiles, and the compilation
+ * units kept in the persistent unit cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializationBenchmarks {
+
+  private UnifiedAst unifiedAst;
+  private ArrayList<CachedCompilationUnit> units;
+  private byte[] serializedAst;
+  private byte[] serializedUnits;
+
+  @Setup
+  public void setUp(ModuleState state) throws IOException {
+    unifiedAst = state.precompilation.getUnifiedAst();
+    units = new ArrayList<CachedCompilationUnit>();
+    for (CompilationUnit unit : state.compilationState.getCompilationUnits()) {
+      units.add(unit.asCachedCompilationUnit());
+    }
+    serializedAst = writeUnifiedAst();
+    serializedUnits = writeCompilationUnits();
+  }
+
+  @Benchmark
+  public byte[] writeUnifiedAst() throws IOException {
+    return write(unifiedAst);
+  }
+
+  @Benchmark
+  public UnifiedAst readUnifiedAst() throws ClassNotFoundException, IOException {
+    return Util.readStreamAsObject(new ByteArrayInputStream(serializedAst), UnifiedAst.class);
+  }
+
+  @Benchmark
+  public byte[] writeCompilationUnits() throws IOException {
+    return write(units);
+  }
+
+  @Benchmark
+  public ArrayList<?> readCompilationUnits() throws ClassNotFoundException, IOException {
+    return Util.readStreamAsObject(new ByteArrayInputStream(serializedUnits), ArrayList.class);
+  }
+
+  private static byte[] write(Object object) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Util.writeObjectToStream(out, object);
+    return out.toByteArray();
+  }
+}
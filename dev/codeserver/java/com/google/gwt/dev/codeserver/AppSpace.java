@@ -47,6 +47,14 @@ class AppSpace {
     return new File(root, "gwt-unitcache");
   }
 
+  File getRebindCacheDir() {
+    return new File(root, "gwt-rebindcache");
+  }
+
+  File getModuleCacheDir() {
+    return new File(root, "gwt-modulecache");
+  }
+
   File getCompileDir(int compileId) {
     return new File(root, COMPILE_DIR_PREFIX + compileId);
   }
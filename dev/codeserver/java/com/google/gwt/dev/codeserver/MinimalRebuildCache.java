@@ -0,0 +1,366 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.codeserver;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.cfg.ModuleDef;
+import com.google.gwt.dev.resource.Resource;
+import com.google.gwt.dev.resource.impl.DirectoryWatcher;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * Remembers the inputs of the last successful compile of a module, so that a recompile can be
+ * skipped when none of them changed.
+ *
+ * <p>The inputs are the binding properties requested by the browser, the module's .gwt.xml files,
+ * every public, source and build resource the module can see, every file on the class path
+ * (which includes the generators and everything they load) and the system properties. A resource
+ * is only rehashed when its modification time changed, so touching a file without editing it does
+ * not force a recompile. Other class path files are compared by modification time and size.
+ *
+ * <p>Class path directories are walked on the first recompile. After that only the files that a
+ * {@link DirectoryWatcher} reports as changed are looked at again. Without a watcher, as on Java 6,
+ * the directories are walked on every recompile.
+ */
+class MinimalRebuildCache {
+
+  /**
+   * A snapshot of everything a compile of the module reads.
+   */
+  static class Inputs {
+    private final Map<String, String> bindingProperties;
+    private final long moduleLastModified;
+    private final Map<String, String> contentHashesByPath;
+    private final Map<String, Long> lastModifiedByPath;
+    private final Map<String, String> classPathStampsByPath;
+    private final Map<String, String> systemProperties;
+
+    private Inputs(Map<String, String> bindingProperties, long moduleLastModified,
+        Map<String, String> contentHashesByPath, Map<String, Long> lastModifiedByPath,
+        Map<String, String> classPathStampsByPath, Map<String, String> systemProperties) {
+      this.bindingProperties = bindingProperties;
+      this.moduleLastModified = moduleLastModified;
+      this.contentHashesByPath = contentHashesByPath;
+      this.lastModifiedByPath = lastModifiedByPath;
+      this.classPathStampsByPath = classPathStampsByPath;
+      this.systemProperties = systemProperties;
+    }
+  }
+
+  private Inputs lastCompiled;
+
+  /**
+   * The stamps of everything under each class path directory, kept up to date from the
+   * {@link #watcher}'s reports.
+   */
+  private final Map<File, Map<String, String>> stampsByDirectory = Maps.newHashMap();
+
+  /**
+   * Reports the changes to class path directories, or null to walk them on every recompile.
+   */
+  private final DirectoryWatcher watcher;
+
+  MinimalRebuildCache() {
+    this(createWatcher());
+  }
+
+  /**
+   * Visible for testing.
+   */
+  MinimalRebuildCache(DirectoryWatcher watcher) {
+    this.watcher = watcher;
+  }
+
+  /**
+   * Forgets the last compile, so that the next one is done from scratch.
+   */
+  synchronized void clear() {
+    lastCompiled = null;
+  }
+
+  /**
+   * Records the current state of a module's inputs. This should be called before compiling, so
+   * that files edited while the compiler runs are picked up by the next recompile.
+   */
+  Inputs captureInputs(TreeLogger logger, ModuleDef module, Map<String, String> bindingProperties,
+      List<URL> classPath) {
+    return captureInputs(logger, getAllResources(module), module.lastModified(),
+        bindingProperties, classPath, System.getProperties());
+  }
+
+  /**
+   * Records the given inputs. Visible for testing.
+   */
+  synchronized Inputs captureInputs(TreeLogger logger, Map<String, Resource> resourcesByPath,
+      long moduleLastModified, Map<String, String> bindingProperties, List<URL> classPath,
+      Properties systemProperties) {
+    Map<String, String> contentHashesByPath = Maps.newHashMap();
+    Map<String, Long> lastModifiedByPath = Maps.newHashMap();
+    for (Map.Entry<String, Resource> entry : resourcesByPath.entrySet()) {
+      String path = entry.getKey();
+      long lastModified = entry.getValue().getLastModified();
+
+      String contentHash = null;
+      if (lastCompiled != null) {
+        Long previousLastModified = lastCompiled.lastModifiedByPath.get(path);
+        if (previousLastModified != null && previousLastModified == lastModified) {
+          contentHash = lastCompiled.contentHashesByPath.get(path);
+        }
+      }
+      if (contentHash == null) {
+        contentHash = computeContentHash(logger, entry.getValue());
+        if (contentHash == null) {
+          // Unreadable; leave it out so that it is reported as stale next time.
+          continue;
+        }
+      }
+      contentHashesByPath.put(path, contentHash);
+      lastModifiedByPath.put(path, lastModified);
+    }
+
+    Map<String, String> properties = Maps.newHashMap();
+    for (String name : systemProperties.stringPropertyNames()) {
+      properties.put(name, systemProperties.getProperty(name));
+    }
+    return new Inputs(Maps.newHashMap(bindingProperties), moduleLastModified,
+        contentHashesByPath, lastModifiedByPath, computeClassPathStamps(logger, classPath),
+        properties);
+  }
+
+  /**
+   * Returns the paths of the resources and class path files that were added, removed or edited
+   * since the last successful compile, and the names of the system properties that changed, or
+   * null if the whole module must be recompiled because there was no previous compile or the
+   * module's configuration changed. Resources that were touched without changing their content are
+   * not reported.
+   */
+  synchronized SortedSet<String> computeStaleResources(TreeLogger logger, Inputs current) {
+    if (lastCompiled == null) {
+      return null;
+    }
+    if (!lastCompiled.bindingProperties.equals(current.bindingProperties)) {
+      logger.log(TreeLogger.DEBUG, "Binding properties changed; compiling from scratch");
+      return null;
+    }
+    if (lastCompiled.moduleLastModified != current.moduleLastModified) {
+      logger.log(TreeLogger.DEBUG, "Module files changed; compiling from scratch");
+      return null;
+    }
+
+    SortedSet<String> staleResources = Sets.newTreeSet();
+    addChanged(staleResources, "", lastCompiled.contentHashesByPath,
+        current.contentHashesByPath);
+    addChanged(staleResources, "classpath:", lastCompiled.classPathStampsByPath,
+        current.classPathStampsByPath);
+    addChanged(staleResources, "property:", lastCompiled.systemProperties,
+        current.systemProperties);
+    return staleResources;
+  }
+
+  /**
+   * Records the inputs of a compile that just succeeded.
+   */
+  synchronized void recordSuccessfulCompile(Inputs inputs) {
+    lastCompiled = inputs;
+  }
+
+  /**
+   * Adds the keys that were added, removed or whose values changed.
+   */
+  private static void addChanged(Set<String> changed, String prefix, Map<String, String> before,
+      Map<String, String> after) {
+    for (Map.Entry<String, String> entry : after.entrySet()) {
+      if (!entry.getValue().equals(before.get(entry.getKey()))) {
+        changed.add(prefix + entry.getKey());
+      }
+    }
+    for (String key : before.keySet()) {
+      if (!after.containsKey(key)) {
+        changed.add(prefix + key);
+      }
+    }
+  }
+
+  private static Map<String, Resource> getAllResources(ModuleDef module) {
+    Map<String, Resource> resourcesByPath = Maps.newHashMap();
+    // Prefix each oracle's paths since the same path can be both a public and a build resource.
+    addResources(resourcesByPath, "public:", module.getPublicResourceOracle().getResources());
+    addResources(resourcesByPath, "source:", module.getSourceResourceOracle().getResources());
+    addResources(resourcesByPath, "build:", module.getBuildResourceOracle().getResources());
+    return resourcesByPath;
+  }
+
+  private static void addResources(Map<String, Resource> resourcesByPath, String prefix,
+      Set<Resource> resources) {
+    for (Resource resource : resources) {
+      resourcesByPath.put(prefix + resource.getPath(), resource);
+    }
+  }
+
+  private static DirectoryWatcher createWatcher() {
+    try {
+      return DirectoryWatcher.create(true);
+    } catch (LinkageError e) {
+      // Not running on Java 7 or later.
+      return null;
+    }
+  }
+
+  /**
+   * Returns the modification time and size of every jar on the class path and every file in a
+   * class path directory. Generators and the classes they use are loaded from these, so any
+   * change to them can change the output.
+   */
+  private Map<String, String> computeClassPathStamps(TreeLogger logger, List<URL> classPath) {
+    Set<File> entries = Sets.newLinkedHashSet();
+    for (URL url : classPath) {
+      if (!"file".equals(url.getProtocol())) {
+        logger.log(TreeLogger.DEBUG, "Not watching class path entry " + url);
+        continue;
+      }
+      try {
+        entries.add(new File(url.toURI()).getAbsoluteFile());
+      } catch (URISyntaxException e) {
+        entries.add(new File(url.getPath()).getAbsoluteFile());
+      }
+    }
+    String javaClassPath = System.getProperty("java.class.path");
+    if (javaClassPath != null) {
+      for (String path : javaClassPath.split(File.pathSeparator)) {
+        if (!path.isEmpty()) {
+          entries.add(new File(path).getAbsoluteFile());
+        }
+      }
+    }
+
+    Set<File> changedPaths = watcher == null ? null : watcher.pollChangedPaths();
+    if (changedPaths == null) {
+      // Events were lost, so every directory must be walked again.
+      stampsByDirectory.clear();
+    }
+
+    Map<String, String> stampsByPath = Maps.newHashMap();
+    for (File entry : entries) {
+      if (watcher == null || !entry.isDirectory()) {
+        stampsByDirectory.remove(entry);
+        // A missing entry gets a stamp too, so that creating it is noticed.
+        addStamps(stampsByPath, entry, null);
+        continue;
+      }
+
+      Map<String, String> stamps = stampsByDirectory.get(entry);
+      boolean watched = true;
+      if (stamps == null) {
+        stamps = Maps.newHashMap();
+        watched = addStamps(stamps, entry, watcher);
+      } else {
+        for (File changedPath : changedPaths) {
+          if (isWithin(changedPath, entry)) {
+            watched &= restamp(stamps, changedPath);
+          }
+        }
+      }
+      if (watched) {
+        stampsByDirectory.put(entry, stamps);
+      } else {
+        stampsByDirectory.remove(entry);
+      }
+      stampsByPath.putAll(stamps);
+    }
+    return stampsByPath;
+  }
+
+  /**
+   * Stamps a file again, or everything under a directory, after the watcher reported a change.
+   *
+   * @return false if a directory could not be watched
+   */
+  private boolean restamp(Map<String, String> stamps, File file) {
+    String path = file.getPath();
+    if ("dir".equals(stamps.remove(path))) {
+      String prefix = path + File.separator;
+      for (Iterator<String> it = stamps.keySet().iterator(); it.hasNext();) {
+        if (it.next().startsWith(prefix)) {
+          it.remove();
+        }
+      }
+    }
+    return !file.exists() || addStamps(stamps, file, watcher);
+  }
+
+  /**
+   * Adds the stamps of a file, or of everything under a directory. A directory is watched before
+   * it is listed, so that no later change is missed.
+   *
+   * @param watcher the watcher to add directories to, or null
+   * @return false if a directory could not be watched
+   */
+  private static boolean addStamps(Map<String, String> stampsByPath, File file,
+      DirectoryWatcher watcher) {
+    String path = file.getPath();
+    if (stampsByPath.containsKey(path)) {
+      return true;
+    }
+    if (!file.isDirectory()) {
+      stampsByPath.put(path, file.lastModified() + ":" + file.length());
+      return true;
+    }
+    boolean watched = watcher == null || watcher.watch(file);
+    // Record the directory too, so that an entry that disappears is noticed.
+    stampsByPath.put(path, "dir");
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        watched &= addStamps(stampsByPath, child, watcher);
+      }
+    }
+    return watched;
+  }
+
+  private static boolean isWithin(File file, File directory) {
+    String path = file.getPath();
+    String directoryPath = directory.getPath();
+    return path.equals(directoryPath) || path.startsWith(directoryPath + File.separator);
+  }
+
+  private static String computeContentHash(TreeLogger logger, Resource resource) {
+    byte[] content;
+    try {
+      // Closes the stream.
+      content = Util.readStreamAsBytes(resource.openContents());
+    } catch (IOException e) {
+      content = null;
+    }
+    if (content == null) {
+      logger.log(TreeLogger.DEBUG, "Unable to read " + resource.getLocation());
+      return null;
+    }
+    return Util.computeStrongName(content);
+  }
+}
@@ -25,6 +25,7 @@ import com.google.gwt.dev.CompilerContext;
 import com.google.gwt.dev.CompilerOptions;
 import com.google.gwt.dev.IncrementalBuilder;
 import com.google.gwt.dev.IncrementalBuilder.BuildResultStatus;
+import com.google.gwt.dev.RebindCache;
 import com.google.gwt.dev.cfg.BindingProperty;
 import com.google.gwt.dev.cfg.ConfigProps;
 import com.google.gwt.dev.cfg.ConfigurationProperty;
@@ -33,6 +34,7 @@ import com.google.gwt.dev.cfg.ModuleDefLoader;
 import com.google.gwt.dev.cfg.ResourceLoader;
 import com.google.gwt.dev.cfg.ResourceLoaders;
 import com.google.gwt.dev.javac.UnitCacheSingleton;
+import com.google.gwt.dev.resource.impl.DirectoryClassPathEntry;
 import com.google.gwt.dev.resource.impl.ResourceOracleImpl;
 import com.google.gwt.dev.resource.impl.ZipFileClassPathEntry;
 import com.google.gwt.dev.util.log.CompositeTreeLogger;
@@ -43,6 +45,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.SortedSet;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -62,9 +65,11 @@ class Recompiler {
 
   private final AtomicReference<CompileDir> lastBuild = new AtomicReference<CompileDir>();
   private CompileDir publishedCompileDir;
+  private String moduleNameOfPublishedCompile;
   private final AtomicReference<ResourceLoader> resourceLoader =
       new AtomicReference<ResourceLoader>();
   private final CompilerContext.Builder compilerContextBuilder = new CompilerContext.Builder();
+  private final MinimalRebuildCache minimalRebuildCache = new MinimalRebuildCache();
   private CompilerContext compilerContext;
   private Options options;
 
@@ -85,6 +90,19 @@ class Recompiler {
         System.setProperty("gwt.speedtracerlog",
             appSpace.getSpeedTracerLogFile().getAbsolutePath());
       }
+      if (System.getProperty(RebindCache.DIR_PROPERTY) == null) {
+        // Otherwise each compile would use a cache in its own compile directory.
+        System.setProperty(RebindCache.DIR_PROPERTY,
+            appSpace.getRebindCacheDir().getAbsolutePath());
+      }
+      if (System.getProperty(ModuleDefLoader.PERSISTENT_CACHE_DIR_PROPERTY) == null) {
+        System.setProperty(ModuleDefLoader.PERSISTENT_CACHE_DIR_PROPERTY,
+            appSpace.getModuleCacheDir().getAbsolutePath());
+      }
+      if (System.getProperty(DirectoryClassPathEntry.WATCH_PROPERTY) == null) {
+        // Recompiles then only list the source directories that changed.
+        System.setProperty(DirectoryClassPathEntry.WATCH_PROPERTY, "true");
+      }
       compilerContext = compilerContextBuilder.unitCache(
           UnitCacheSingleton.get(logger, appSpace.getUnitCacheDir())).build();
     }
@@ -213,12 +231,39 @@ class Recompiler {
     String newModuleName = module.getName();
     moduleName.set(newModuleName);
 
+    MinimalRebuildCache.Inputs inputs = null;
+    if (options.shouldCompilePerFile()) {
+      inputs = minimalRebuildCache.captureInputs(compileLogger, module, bindingProperties,
+          resourceLoader.get().getClassPath());
+      if (publishedCompileDir != null && newModuleName.equals(moduleNameOfPublishedCompile)) {
+        SortedSet<String> staleResources =
+            minimalRebuildCache.computeStaleResources(compileLogger, inputs);
+        if (staleResources != null && staleResources.isEmpty()) {
+          compileLogger.log(TreeLogger.Type.INFO,
+              "No input changed since the last compile; reusing its output");
+          lastBuild.set(compileDir); // makes compile log available over HTTP
+          return true;
+        }
+        if (staleResources != null && compileLogger.isLoggable(TreeLogger.Type.DEBUG)) {
+          TreeLogger branch = compileLogger.branch(TreeLogger.Type.DEBUG,
+              staleResources.size() + " inputs changed since the last compile");
+          for (String path : staleResources) {
+            branch.log(TreeLogger.Type.DEBUG, path);
+          }
+        }
+      }
+    }
+
     CompilerOptions runOptions = new CompilerOptionsImpl(compileDir, newModuleName, options);
     compilerContext = compilerContextBuilder.options(runOptions).build();
 
     boolean success = new Compiler(runOptions).run(compileLogger, module);
     if (success) {
       publishedCompileDir = compileDir;
+      moduleNameOfPublishedCompile = newModuleName;
+      if (inputs != null) {
+        minimalRebuildCache.recordSuccessfulCompile(inputs);
+      }
     }
     lastBuild.set(compileDir); // makes compile log available over HTTP
 
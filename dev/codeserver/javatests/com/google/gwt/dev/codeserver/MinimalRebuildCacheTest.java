@@ -0,0 +1,249 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.codeserver;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.resource.Resource;
+import com.google.gwt.dev.resource.impl.DirectoryWatcher;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.guava.common.collect.ImmutableMap;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
+import com.google.gwt.thirdparty.guava.common.io.Files;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * Tests {@link MinimalRebuildCache}.
+ */
+public class MinimalRebuildCacheTest extends TestCase {
+
+  /**
+   * Reports the changes that the test made, instead of waiting for the file system to notice them.
+   */
+  private static class FakeDirectoryWatcher extends DirectoryWatcher {
+    private Set<File> changedPaths = Sets.newHashSet();
+    private final Set<File> watched = Sets.newHashSet();
+
+    FakeDirectoryWatcher() {
+      super(null, true);
+    }
+
+    @Override
+    public Set<File> pollChangedPaths() {
+      Set<File> result = changedPaths;
+      changedPaths = Sets.newHashSet();
+      return result;
+    }
+
+    @Override
+    public boolean watch(File directory) {
+      watched.add(directory);
+      return true;
+    }
+  }
+
+  /**
+   * A resource whose contents and modification time can be changed.
+   */
+  private static class FakeResource extends Resource {
+    private final String path;
+    private String contents;
+    private long lastModified;
+
+    FakeResource(String path, String contents, long lastModified) {
+      this.path = path;
+      this.contents = contents;
+      this.lastModified = lastModified;
+    }
+
+    @Override
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    @Override
+    public String getLocation() {
+      return "fake:" + path;
+    }
+
+    @Override
+    public String getPath() {
+      return path;
+    }
+
+    @Override
+    public InputStream openContents() {
+      return new ByteArrayInputStream(Util.getBytes(contents));
+    }
+
+    @Override
+    public boolean wasRerooted() {
+      return false;
+    }
+  }
+
+  private final FakeDirectoryWatcher watcher = new FakeDirectoryWatcher();
+  private MinimalRebuildCache cache = new MinimalRebuildCache(null);
+  private final Map<String, String> bindingProperties = ImmutableMap.of("user.agent", "safari");
+  private final FakeResource source = new FakeResource("com/example/client/App.java",
+      "class App {}", 1000);
+  private final Properties systemProperties = new Properties();
+  private File classPathDir;
+  private File generatorClass;
+  private File jar;
+  private List<URL> classPath;
+
+  @Override
+  protected void setUp() throws Exception {
+    classPathDir = Files.createTempDir();
+    File generatorDir = new File(classPathDir, "classes/com/example/rebind");
+    assertTrue(generatorDir.mkdirs());
+    generatorClass = new File(generatorDir, "AppGenerator.class");
+    Files.write(Util.getBytes("version 1"), generatorClass);
+    jar = new File(classPathDir, "lib.jar");
+    Files.write(Util.getBytes("jar 1"), jar);
+    classPath = Lists.newArrayList(new File(classPathDir, "classes").toURI().toURL(),
+        jar.toURI().toURL());
+    systemProperties.setProperty("app.flavor", "plain");
+  }
+
+  @Override
+  protected void tearDown() {
+    Util.recursiveDelete(classPathDir, false);
+  }
+
+  public void testFirstCompileIsNotSkipped() {
+    assertNull(cache.computeStaleResources(TreeLogger.NULL, capture()));
+  }
+
+  public void testUnchangedInputsAreSkipped() {
+    cache.recordSuccessfulCompile(capture());
+    assertEquals(0, cache.computeStaleResources(TreeLogger.NULL, capture()).size());
+  }
+
+  public void testTouchedResourceIsSkipped() {
+    cache.recordSuccessfulCompile(capture());
+    source.lastModified = 2000;
+    assertEquals(0, cache.computeStaleResources(TreeLogger.NULL, capture()).size());
+  }
+
+  public void testEditedResourceIsNotSkipped() {
+    cache.recordSuccessfulCompile(capture());
+    source.contents = "class App { int x; }";
+    source.lastModified = 2000;
+    assertStale("source:com/example/client/App.java");
+  }
+
+  public void testChangedBindingPropertiesAreNotSkipped() {
+    cache.recordSuccessfulCompile(capture());
+    MinimalRebuildCache.Inputs inputs = cache.captureInputs(TreeLogger.NULL, getResources(), 1,
+        ImmutableMap.of("user.agent", "gecko1_8"), classPath, systemProperties);
+    assertNull(cache.computeStaleResources(TreeLogger.NULL, inputs));
+  }
+
+  public void testChangedGeneratorClassIsNotSkipped() throws IOException {
+    cache.recordSuccessfulCompile(capture());
+    Files.write(Util.getBytes("version 22"), generatorClass);
+    assertStale("classpath:" + generatorClass.getAbsolutePath());
+  }
+
+  public void testAddedClassPathFileIsNotSkipped() throws IOException {
+    cache.recordSuccessfulCompile(capture());
+    File helper = new File(generatorClass.getParentFile(), "Helper.class");
+    Files.write(Util.getBytes("helper"), helper);
+    assertStale("classpath:" + helper.getAbsolutePath());
+  }
+
+  public void testChangedJarIsNotSkipped() throws IOException {
+    cache.recordSuccessfulCompile(capture());
+    Files.write(Util.getBytes("jar 22"), jar);
+    assertStale("classpath:" + jar.getAbsolutePath());
+  }
+
+  public void testChangedSystemPropertyIsNotSkipped() {
+    cache.recordSuccessfulCompile(capture());
+    systemProperties.setProperty("app.flavor", "fancy");
+    assertStale("property:app.flavor");
+  }
+
+  public void testWatchedDirectoriesAreNotWalkedAgain() throws IOException {
+    cache = new MinimalRebuildCache(watcher);
+    cache.recordSuccessfulCompile(capture());
+    assertTrue(watcher.watched.contains(generatorClass.getParentFile().getAbsoluteFile()));
+
+    // Only the files the watcher reports are looked at again.
+    Files.write(Util.getBytes("version 22"), generatorClass);
+    assertEquals(0, cache.computeStaleResources(TreeLogger.NULL, capture()).size());
+    watcher.changedPaths.add(generatorClass.getAbsoluteFile());
+    assertStale("classpath:" + generatorClass.getAbsolutePath());
+  }
+
+  public void testWatchedDirectoryChanges() throws IOException {
+    cache = new MinimalRebuildCache(watcher);
+    cache.recordSuccessfulCompile(capture());
+
+    File helperDir = new File(generatorClass.getParentFile(), "impl").getAbsoluteFile();
+    assertTrue(helperDir.mkdir());
+    File helper = new File(helperDir, "Helper.class");
+    Files.write(Util.getBytes("helper"), helper);
+    watcher.changedPaths.add(helperDir);
+    assertStale("classpath:" + helper.getAbsolutePath());
+    assertTrue(watcher.watched.contains(helperDir));
+
+    cache.recordSuccessfulCompile(capture());
+    Util.recursiveDelete(helperDir, false);
+    watcher.changedPaths.add(helperDir);
+    assertStale("classpath:" + helper.getAbsolutePath());
+  }
+
+  public void testLostEventsWalkAgain() throws IOException {
+    cache = new MinimalRebuildCache(watcher);
+    cache.recordSuccessfulCompile(capture());
+    Files.write(Util.getBytes("version 22"), generatorClass);
+    watcher.changedPaths = null;
+    assertStale("classpath:" + generatorClass.getAbsolutePath());
+  }
+
+  private void assertStale(String expected) {
+    SortedSet<String> stale = cache.computeStaleResources(TreeLogger.NULL, capture());
+    assertNotNull(stale);
+    assertTrue(stale + " should contain " + expected, stale.contains(expected));
+  }
+
+  private MinimalRebuildCache.Inputs capture() {
+    return cache.captureInputs(TreeLogger.NULL, getResources(), 1, bindingProperties, classPath,
+        systemProperties);
+  }
+
+  private Map<String, Resource> getResources() {
+    Map<String, Resource> resources = Maps.newHashMap();
+    resources.put("source:" + source.getPath(), source);
+    return resources;
+  }
+}
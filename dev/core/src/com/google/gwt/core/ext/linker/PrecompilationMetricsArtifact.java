@@ -28,6 +28,7 @@ import java.util.List;
 public class PrecompilationMetricsArtifact extends Artifact<PrecompilationMetricsArtifact> {
 
   private long elapsedMilliseconds;
+  private int mergedPermutationCount;
   private final int permutationBase;
   private int[] permutationIds;
   private String[] finalTypeOracleTypes;
@@ -56,6 +57,14 @@ public class PrecompilationMetricsArtifact extends Artifact<PrecompilationMetric
     return elapsedMilliseconds;
   }
 
+  /**
+   * @return the number of permutations that did not need to be compiled because their live
+   *         rebind answers were identical to those of another permutation.
+   */
+  public int getMergedPermutationCount() {
+    return mergedPermutationCount;
+  }
+
   /**
    * @return types all types referenced by type oracle after compiling the
    *        sources on the source path with JDT.
@@ -109,6 +118,15 @@ public class PrecompilationMetricsArtifact extends Artifact<PrecompilationMetric
     return this;
   }
 
+  /**
+   * @param mergedPermutationCount the number of permutations that did not need to be compiled
+   *        because their live rebind answers were identical to those of another permutation.
+   */
+  public PrecompilationMetricsArtifact setMergedPermutationCount(int mergedPermutationCount) {
+    this.mergedPermutationCount = mergedPermutationCount;
+    return this;
+  }
+
   /**
    * @param ids the permutation ids associated with this precompilation.
    */
@@ -49,6 +49,18 @@ public class SyntheticArtifact extends EmittedArtifact {
     this.token = diskCache.writeByteArray(data);
   }
 
+  /**
+   * Creates an artifact from data written to a stream opened by
+   * {@link DiskCache#openOutputStream()} on {@link DiskCache#INSTANCE}, so that
+   * the data is never held in memory at once. Finishes the stream.
+   */
+  public SyntheticArtifact(Class<? extends Linker> linkerType, String partialPath,
+      DiskCache.CacheOutputStream data) throws IOException {
+    super(linkerType, partialPath);
+    this.lastModified = System.currentTimeMillis();
+    this.token = data.finish();
+  }
+
   @Override
   public InputStream getContents(TreeLogger logger)
       throws UnableToCompleteException {
@@ -51,6 +51,7 @@ import com.google.gwt.dev.js.ast.JsScope;
 import com.google.gwt.dev.resource.ResourceOracle;
 import com.google.gwt.dev.util.DefaultTextOutput;
 import com.google.gwt.dev.util.OutputFileSet;
+import com.google.gwt.dev.util.ParallelTasks;
 
 import java.io.File;
 import java.io.IOException;
@@ -65,6 +66,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * An implementation of {@link LinkerContext} that is initialized from a
@@ -105,6 +108,13 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
         }
       };
 
+  /**
+   * The number of threads used to link permutations and to write output into
+   * directories. Permutations linked at the same time each get their own
+   * instances of the shardable linkers. Defaults to 1.
+   */
+  public static final String THREADS_PROPERTY = "gwt.linkThreads";
+
   static final Comparator<SelectionProperty> SELECTION_PROPERTY_COMPARATOR = new Comparator<SelectionProperty>() {
     @Override
     public int compare(SelectionProperty o1, SelectionProperty o2) {
@@ -177,7 +187,7 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
       linkerClasses.addAll(postLinkerClasses);
     }
 
-    resetLinkers(logger);
+    linkers = createLinkers(logger);
 
     for (Map.Entry<String, Class<? extends Linker>> entry : module.getLinkers().entrySet()) {
       linkerShortNames.put(entry.getValue(), entry.getKey());
@@ -218,6 +228,37 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
     }
   }
 
+  /**
+   * Runs the tasks on up to {@link #THREADS_PROPERTY} threads and returns
+   * their results in order.
+   */
+  public static <T> List<T> invokeAll(TreeLogger logger, List<? extends Callable<T>> tasks)
+      throws UnableToCompleteException {
+    return invokeAll(logger, tasks, getThreadCount());
+  }
+
+  private static int getThreadCount() {
+    return ParallelTasks.getThreadCount(THREADS_PROPERTY);
+  }
+
+  private static <T> List<T> invokeAll(TreeLogger logger, List<? extends Callable<T>> tasks,
+      int threadCount) throws UnableToCompleteException {
+    try {
+      return ParallelTasks.invokeAll(tasks, threadCount);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.log(TreeLogger.ERROR, "Interrupted while linking", e);
+      throw new UnableToCompleteException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UnableToCompleteException) {
+        // Error has already been logged.
+        throw (UnableToCompleteException) e.getCause();
+      }
+      logger.log(TreeLogger.ERROR, "Unexpected error while linking", e.getCause());
+      throw new UnableToCompleteException();
+    }
+  }
+
   public boolean allLinkersAreShardable() {
     return findUnshardableLinkers().isEmpty();
   }
@@ -368,7 +409,11 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
     ArtifactSet workingArtifacts = new ArtifactSet(permArtifacts);
     workingArtifacts.add(permResult);
 
-    for (Linker linker : linkers) {
+    /*
+     * Use new linkers so that they don't accidentally carry any state across
+     * permutations, and so that several permutations can be linked at once.
+     */
+    for (Linker linker : createLinkers(logger)) {
       if (linker.isShardable()) {
         TreeLogger linkerLogger = logger.branch(TreeLogger.TRACE,
             "Invoking Linker " + linker.getDescription(), null);
@@ -382,12 +427,6 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
       }
     }
 
-    /*
-     * Reset linkers so that they don't accidentally carry any state across
-     * permutations
-     */
-    resetLinkers(logger);
-
     workingArtifacts.freeze();
     return workingArtifacts;
   }
@@ -487,13 +526,14 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
    * @param out where to emit the artifact contents
    */
   public void produceOutput(TreeLogger logger, ArtifactSet artifacts,
-      Visibility visibility, OutputFileSet out)
+      Visibility visibility, final OutputFileSet out)
       throws UnableToCompleteException {
     logger = logger.branch(TreeLogger.TRACE, "Linking " + visibility
         + " artifacts into " + out.getPathDescription(), null);
 
-    for (EmittedArtifact artifact : artifacts.find(EmittedArtifact.class)) {
-      TreeLogger artifactLogger = logger.branch(TreeLogger.DEBUG,
+    List<Callable<Void>> writes = new ArrayList<Callable<Void>>();
+    for (final EmittedArtifact artifact : artifacts.find(EmittedArtifact.class)) {
+      final TreeLogger artifactLogger = logger.branch(TreeLogger.DEBUG,
           "Emitting resource " + artifact.getPartialPath(), null);
 
       if (!artifact.getVisibility().matches(visibility)) {
@@ -509,27 +549,37 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
           partialPath = partialPath.substring(1);
         }
       }
-      try {
-        OutputStream artifactStream = out.openForWrite(partialPath,
-            artifact.getLastModified());
-        artifact.writeTo(artifactLogger, artifactStream);
-        artifactStream.close();
-      } catch (IOException e) {
-        artifactLogger.log(TreeLogger.ERROR,
-            "Fatal error emitting artifact: " + artifact.getPartialPath(), e);
-        // Do not fail for Private artifacts, just log the error
-        if (visibility != Visibility.Private) {
-          throw new UnableToCompleteException();
+      final String outputPath = partialPath;
+      final boolean failOnError = visibility != Visibility.Private;
+      Callable<Void> write = new Callable<Void>() {
+        @Override
+        public Void call() throws UnableToCompleteException {
+          try {
+            OutputStream artifactStream = out.openForWrite(outputPath,
+                artifact.getLastModified());
+            artifact.writeTo(artifactLogger, artifactStream);
+            artifactStream.close();
+          } catch (IOException e) {
+            artifactLogger.log(TreeLogger.ERROR,
+                "Fatal error emitting artifact: " + artifact.getPartialPath(), e);
+            // Do not fail for Private artifacts, just log the error
+            if (failOnError) {
+              throw new UnableToCompleteException();
+            }
+          }
+          return null;
         }
-      }
+      };
+      writes.add(write);
     }
+    invokeAll(logger, writes, out.supportsConcurrentWrites() ? getThreadCount() : 1);
   }
 
   /**
-   * (Re)instantiate all linkers.
+   * Instantiates all linkers.
    */
-  private void resetLinkers(TreeLogger logger) throws UnableToCompleteException {
-    linkers = new Linker[linkerClasses.size()];
+  private Linker[] createLinkers(TreeLogger logger) throws UnableToCompleteException {
+    Linker[] linkers = new Linker[linkerClasses.size()];
     int i = 0;
     for (Class<? extends Linker> linkerClass : linkerClasses) {
       try {
@@ -542,5 +592,6 @@ public class StandardLinkerContext extends Linker implements LinkerContext {
         throw new UnableToCompleteException();
       }
     }
+    return linkers;
   }
 }
@@ -23,13 +23,13 @@ import com.google.gwt.dev.jjs.JsSourceMap;
 import com.google.gwt.dev.jjs.SourceInfo;
 import com.google.gwt.dev.jjs.SourceInfoCorrelation;
 import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.util.DiskCache;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapGeneratorV3;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapParseException;
 import com.google.gwt.thirdparty.guava.common.collect.Lists;
 
 import org.json.JSONException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.Arrays;
@@ -57,6 +57,21 @@ public class SourceMapRecorder {
     }
   }
 
+  /**
+   * Generates the sourcemap of a single fragment. Lets a compile write each fragment's
+   * sourcemap as soon as its code is generated, rather than keeping the source information
+   * of every fragment until the end.
+   */
+  public static SyntheticArtifact exec(int permutationId, int fragment, JsSourceMap fragmentMap,
+      String sourceFilePrefix) {
+    try {
+      return new SourceMapRecorder(permutationId, null, sourceFilePrefix).createArtifact(
+          new SourceMapGeneratorV3(), fragment, fragmentMap);
+    } catch (Exception e) {
+      throw new InternalCompilerException(e.toString(), e);
+    }
+  }
+
   /**
    * Generates a sourcemap for each fragment in the list, with JavaScript-to-Java
    * name mappings included.
@@ -87,27 +102,37 @@ public class SourceMapRecorder {
   private List<SyntheticArtifact> createArtifacts()
       throws IOException, JSONException, SourceMapParseException {
     List<SyntheticArtifact> toReturn = Lists.newArrayList();
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
     SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
     int fragment = 0;
     for (JsSourceMap sourceMap : fragmentMaps) {
-      generator.reset();
+      toReturn.add(createArtifact(generator, fragment, sourceMap));
+      fragment++;
+    }
+    return toReturn;
+  }
 
-      if (sourceRoot != null) {
-        generator.setSourceRoot(sourceRoot);
-      }
-      addExtensions(generator, fragment);
-      addMappings(new SourceMappingWriter(generator), sourceMap);
+  private SyntheticArtifact createArtifact(SourceMapGeneratorV3 generator, int fragment,
+      JsSourceMap sourceMap) throws IOException, SourceMapParseException {
+    generator.reset();
 
-      baos.reset();
-      OutputStreamWriter out = new OutputStreamWriter(baos);
+    if (sourceRoot != null) {
+      generator.setSourceRoot(sourceRoot);
+    }
+    addExtensions(generator, fragment);
+    addMappings(new SourceMappingWriter(generator), sourceMap);
+
+    // Write the map straight into the disk cache behind the artifact. A map larger than the
+    // stream's buffer goes through a temporary file first; see DiskCache.CacheOutputStream.
+    DiskCache.CacheOutputStream contents = DiskCache.INSTANCE.openOutputStream();
+    try {
+      OutputStreamWriter out = new OutputStreamWriter(contents);
       generator.appendTo(out, "sourceMap" + fragment);
       out.flush();
-      toReturn.add(new SymbolMapsLinker.SourceMapArtifact(permutationId, fragment,
-          baos.toByteArray(), sourceRoot));
-      fragment++;
+      return new SymbolMapsLinker.SourceMapArtifact(permutationId, fragment, contents,
+          sourceRoot);
+    } finally {
+      contents.close();
     }
-    return toReturn;
   }
 
   private void addExtensions(SourceMapGeneratorV3 generator, int fragment)
@@ -31,12 +31,14 @@ import com.google.gwt.core.ext.linker.Shardable;
 import com.google.gwt.core.ext.linker.SoftPermutation;
 import com.google.gwt.core.ext.linker.SymbolData;
 import com.google.gwt.core.ext.linker.SyntheticArtifact;
+import com.google.gwt.dev.util.DiskCache;
 import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.collect.HashMap;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapGeneratorV3;
 import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapGeneratorV3.ExtensionMergeAction;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
@@ -172,7 +174,6 @@ public class SymbolMapsLinker extends AbstractLinker {
 
     private int permutationId;
     private int fragment;
-    private byte[] js;
 
     private final String sourceRoot;
 
@@ -180,7 +181,15 @@ public class SymbolMapsLinker extends AbstractLinker {
       super(SymbolMapsLinker.class, permutationId + '/' + sourceMapFilenameForFragment(fragment), js);
       this.permutationId = permutationId;
       this.fragment = fragment;
-      this.js = js;
+      this.sourceRoot = sourceRoot;
+    }
+
+    public SourceMapArtifact(int permutationId, int fragment, DiskCache.CacheOutputStream js,
+        String sourceRoot) throws IOException {
+      super(SymbolMapsLinker.class,
+          permutationId + '/' + sourceMapFilenameForFragment(fragment), js);
+      this.permutationId = permutationId;
+      this.fragment = fragment;
       this.sourceRoot = sourceRoot;
     }
 
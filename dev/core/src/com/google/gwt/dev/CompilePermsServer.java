@@ -26,7 +26,9 @@ import com.google.gwt.dev.util.arg.ArgHandlerLogLevel;
 import com.google.gwt.dev.util.arg.OptionLogLevel;
 import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
 import com.google.gwt.util.tools.ArgHandlerString;
+import com.google.gwt.util.tools.Utility;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -265,9 +267,14 @@ public class CompilePermsServer {
 
       // Read the File that contains the serialized UnifiedAst
       File astFile = (File) in.readObject();
-      ObjectInputStream astIn = new ObjectInputStream(new FileInputStream(
-          astFile));
-      UnifiedAst ast = (UnifiedAst) astIn.readObject();
+      ObjectInputStream astIn = new ObjectInputStream(new BufferedInputStream(
+          new FileInputStream(astFile)));
+      UnifiedAst ast;
+      try {
+        ast = (UnifiedAst) astIn.readObject();
+      } finally {
+        Utility.close(astIn);
+      }
       ast.prepare();
       logger.log(TreeLogger.SPAM, "Created new UnifiedAst instance");
 
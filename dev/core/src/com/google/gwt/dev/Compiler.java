@@ -153,8 +153,13 @@ public class Compiler {
           UnitCacheSingleton.get(logger, persistentUnitCacheDir)).build();
 
       for (ModuleDef module : modules) {
-        compilerContext = compilerContextBuilder.module(module).build();
         String moduleName = module.getCanonicalName();
+        File rebindCacheFile =
+            RebindCache.getPersistentCacheFile(persistentUnitCacheDir, moduleName);
+        RebindCache rebindCache =
+            rebindCacheFile == null ? null : RebindCache.load(logger, rebindCacheFile);
+        compilerContext =
+            compilerContextBuilder.module(module).rebindCache(rebindCache).build();
         if (options.isValidateOnly()) {
           if (!Precompile.validate(logger, compilerContext)) {
             return false;
@@ -188,6 +193,10 @@ public class Compiler {
 
           precompilation = null; // No longer needed, so save the memory
 
+          if (rebindCacheFile != null) {
+            rebindCache.save(branch, rebindCacheFile);
+          }
+
           Event linkEvent = SpeedTracerLogger.start(CompilerEventType.LINK);
           File absPath = new File(options.getWarDir(), module.getName());
           absPath = absPath.getAbsoluteFile();
@@ -54,6 +54,7 @@ public class CompilerContext {
     private ModuleDef module;
     private PrecompileTaskOptions options = new PrecompileTaskOptionsImpl();
     private ResourceOracle publicResourceOracle;
+    private RebindCache rebindCache;
     private ResourceOracle sourceResourceOracle;
     private UnitCache unitCache = new MemoryUnitCache();
 
@@ -69,6 +70,7 @@ public class CompilerContext {
       compilerContext.compileMonolithic = compileMonolithic;
       compilerContext.options = options;
       compilerContext.publicResourceOracle = publicResourceOracle;
+      compilerContext.rebindCache = rebindCache;
       compilerContext.sourceResourceOracle = sourceResourceOracle;
       compilerContext.localCompilationErrorsIndex = localCompilationErrorsIndex;
       compilerContext.globalCompilationErrorsIndex = globalCompilationErrorsIndex;
@@ -110,6 +112,14 @@ public class CompilerContext {
       return this;
     }
 
+    /**
+     * Sets the cache of generator results to reuse, or null to not cache them.
+     */
+    public Builder rebindCache(RebindCache rebindCache) {
+      this.rebindCache = rebindCache;
+      return this;
+    }
+
     public Builder unitCache(UnitCache unitCache) {
       this.unitCache = unitCache;
       return this;
@@ -180,6 +190,7 @@ public class CompilerContext {
   private PrecompileTaskOptions options = new PrecompileTaskOptionsImpl();
 
   private ResourceOracle publicResourceOracle;
+  private RebindCache rebindCache;
   private ResourceOracle sourceResourceOracle;
   private TinyCompileSummary tinyCompileSummary = new TinyCompileSummary();
   private UnitCache unitCache = new MemoryUnitCache();
@@ -236,6 +247,13 @@ public class CompilerContext {
     return publicResourceOracle;
   }
 
+  /**
+   * Returns the cache of generator results to reuse, or null if they aren't cached.
+   */
+  public RebindCache getRebindCache() {
+    return rebindCache;
+  }
+
   /**
    * Returns the set of source names of types for which GWT.create() rebind has been requested. The
    * types may or may not yet have been processed by some Generators.
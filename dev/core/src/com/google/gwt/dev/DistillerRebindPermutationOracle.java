@@ -55,13 +55,22 @@ class DistillerRebindPermutationOracle implements RebindPermutationOracle {
     rebindOracles = new RebindOracle[perms.size()];
     generatorContext = new StandardGeneratorContext(
         compilerContext, compilationState, generatorArtifacts, true);
+    RebindCache rebindCache = compilerContext.getRebindCache();
+    if (rebindCache != null) {
+      generatorContext.setGeneratorResultCachingEnabled(true);
+    }
     BindingProperty[] orderedProps = perms.getOrderedProperties();
     ConfigProps config = new ConfigProps(module);
     Rules rules = module.getRules();
     for (int i = 0; i < rebindOracles.length; ++i) {
       BindingProps props = new BindingProps(orderedProps, perms.getOrderedPropertyValues(i), config);
-      rebindOracles[i] = new StandardRebindOracle(props.toPropertyOracle(), rules,
+      StandardRebindOracle rebindOracle = new StandardRebindOracle(props.toPropertyOracle(), rules,
           generatorContext);
+      if (rebindCache != null) {
+        // Each permutation keeps its own results, since they may depend on its properties.
+        rebindOracle.setRebindCache(rebindCache.getScopedCache(props.prettyPrint()));
+      }
+      rebindOracles[i] = rebindOracle;
       permutations[i] = new Permutation(i, props);
     }
   }
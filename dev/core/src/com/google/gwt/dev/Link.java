@@ -69,6 +69,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
@@ -436,16 +437,27 @@ public class Link {
    * and linking is happening on the same computer. It can tolerate
    * non-shardable linkers.
    */
-  private static ArtifactSet doSimulatedShardingLink(TreeLogger logger, ModuleDef module,
-      StandardLinkerContext linkerContext, ArtifactSet generatedArtifacts, Permutation[] perms,
-      List<PersistenceBackedObject<PermutationResult>> resultFiles,
-      Set<PermutationResult> libraries)
+  private static ArtifactSet doSimulatedShardingLink(final TreeLogger logger, ModuleDef module,
+      final StandardLinkerContext linkerContext, final ArtifactSet generatedArtifacts,
+      Permutation[] perms, List<PersistenceBackedObject<PermutationResult>> resultFiles,
+      final Set<PermutationResult> libraries)
       throws UnableToCompleteException {
-    ArtifactSet combinedArtifacts = new ArtifactSet();
+    List<Callable<ArtifactSet>> links = new ArrayList<Callable<ArtifactSet>>();
     for (int i = 0; i < perms.length; ++i) {
-      ArtifactSet newArtifacts = finishPermutation(
-          logger, perms[i], resultFiles.get(i), libraries, linkerContext,
-          generatedArtifacts);
+      final Permutation perm = perms[i];
+      final PersistenceBackedObject<PermutationResult> resultFile = resultFiles.get(i);
+      links.add(new Callable<ArtifactSet>() {
+        @Override
+        public ArtifactSet call() throws UnableToCompleteException {
+          return finishPermutation(logger, perm, resultFile, libraries, linkerContext,
+              generatedArtifacts);
+        }
+      });
+    }
+
+    // Merge in permutation order so the output doesn't depend on the threads.
+    ArtifactSet combinedArtifacts = new ArtifactSet();
+    for (ArtifactSet newArtifacts : StandardLinkerContext.invokeAll(logger, links)) {
       combinedArtifacts.addAll(newArtifacts);
     }
 
@@ -541,65 +553,89 @@ public class Link {
     return pathWithLinkerName;
   }
 
-  private static ArtifactSet scanCompilePermResults(TreeLogger logger,
-      List<File> resultFiles) throws IOException, UnableToCompleteException {
-    final ArtifactSet artifacts = new ArtifactSet();
-
-    for (File resultFile : resultFiles) {
-      JarFile jarFile = null;
-      try {
-        jarFile = new JarFile(resultFile);
-      } catch (ZipException ze) {
-        logger.log(TreeLogger.ERROR, "Error opening " + resultFile
-            + " as jar file.", ze);
-        throw new UnableToCompleteException();
-      }
-
-      Enumeration<JarEntry> entries = jarFile.entries();
-      while (entries.hasMoreElements()) {
-        JarEntry entry = entries.nextElement();
-        if (entry.isDirectory()) {
-          continue;
+  private static ArtifactSet scanCompilePermResults(final TreeLogger logger,
+      List<File> resultFiles) throws UnableToCompleteException {
+    List<Callable<ArtifactSet>> scans = new ArrayList<Callable<ArtifactSet>>();
+    for (final File resultFile : resultFiles) {
+      scans.add(new Callable<ArtifactSet>() {
+        @Override
+        public ArtifactSet call() throws UnableToCompleteException {
+          try {
+            return scanCompilePermResult(logger, resultFile);
+          } catch (IOException e) {
+            logger.log(TreeLogger.ERROR, "Exception during final linking", e);
+            throw new UnableToCompleteException();
+          }
         }
+      });
+    }
+
+    ArtifactSet artifacts = new ArtifactSet();
+    for (ArtifactSet resultArtifacts : StandardLinkerContext.invokeAll(logger, scans)) {
+      artifacts.addAll(resultArtifacts);
+    }
+    return artifacts;
+  }
+
+  /**
+   * Reads the artifacts from the result of one CompilePerms shard.
+   */
+  private static ArtifactSet scanCompilePermResult(TreeLogger logger, File resultFile)
+      throws IOException, UnableToCompleteException {
+    ArtifactSet artifacts = new ArtifactSet();
+    JarFile jarFile = null;
+    try {
+      jarFile = new JarFile(resultFile);
+    } catch (ZipException ze) {
+      logger.log(TreeLogger.ERROR, "Error opening " + resultFile
+          + " as jar file.", ze);
+      throw new UnableToCompleteException();
+    }
 
-        String path;
-        Artifact<?> artForEntry = null;
+    Enumeration<JarEntry> entries = jarFile.entries();
+    while (entries.hasMoreElements()) {
+      JarEntry entry = entries.nextElement();
+      if (entry.isDirectory()) {
+        continue;
+      }
+
+      String path;
+      Artifact<?> artForEntry = null;
 
-        String entryName = entry.getName();
-        if (entryName.startsWith("arts/")) {
+      String entryName = entry.getName();
+      if (entryName.startsWith("arts/")) {
+        try {
+          artForEntry = Util.readStreamAsObject(new BufferedInputStream(
+              jarFile.getInputStream(entry)), Artifact.class);
+          assert artForEntry.isTransferableFromShards();
+        } catch (ClassNotFoundException e) {
+          logger.log(TreeLogger.ERROR,
+              "Failed trying to deserialize an artifact", e);
+          throw new UnableToCompleteException();
+        }
+      } else {
+        int slash = entryName.indexOf('/');
+        if (slash >= 0) {
           try {
-            artForEntry = Util.readStreamAsObject(new BufferedInputStream(
-                jarFile.getInputStream(entry)), Artifact.class);
-            assert artForEntry.isTransferableFromShards();
-          } catch (ClassNotFoundException e) {
-            logger.log(TreeLogger.ERROR,
-                "Failed trying to deserialize an artifact", e);
-            throw new UnableToCompleteException();
-          }
-        } else {
-          int slash = entryName.indexOf('/');
-          if (slash >= 0) {
-            try {
-              Visibility visibility = Visibility.valueOf(entryName.substring(0,
-                  slash));
-              path = entryName.substring(slash + 1);
-              JarEntryEmittedArtifact jarArtifact = new JarEntryEmittedArtifact(
-                  path, resultFile, entry);
-              jarArtifact.setVisibility(visibility);
-              artForEntry = jarArtifact;
-            } catch (IllegalArgumentException e) {
-              // silently ignore paths with invalid visibilities
-              continue;
-            }
+            Visibility visibility = Visibility.valueOf(entryName.substring(0,
+                slash));
+            path = entryName.substring(slash + 1);
+            JarEntryEmittedArtifact jarArtifact = new JarEntryEmittedArtifact(
+                path, resultFile, entry);
+            jarArtifact.setVisibility(visibility);
+            artForEntry = jarArtifact;
+          } catch (IllegalArgumentException e) {
+            // silently ignore paths with invalid visibilities
+            continue;
           }
         }
-
-        artifacts.add(artForEntry);
       }
 
-      jarFile.close();
+      artifacts.add(artForEntry);
     }
 
+    jarFile.close();
+
     return artifacts;
   }
 
@@ -297,26 +297,16 @@ public class Precompile {
       // library output contains runtime rebind logic that will find implementations for any
       // supported browser).
       if (compileMonolithic) {
-        mergeCollapsedPermutations(permutations);
-
-        // Sort the permutations by an ordered key to ensure determinism.
-        SortedMap<RebindAnswersPermutationKey, Permutation> merged =
-            new TreeMap<RebindAnswersPermutationKey, Permutation>();
-        SortedSet<String> liveRebindRequests = unifiedAst.getRebindRequests();
-        for (Permutation permutation : permutations) {
-          // Construct a key for the live rebind answers.
-          RebindAnswersPermutationKey key =
-              new RebindAnswersPermutationKey(permutation, liveRebindRequests);
-          if (merged.containsKey(key)) {
-            Permutation existing = merged.get(key);
-            existing.mergeFrom(permutation, liveRebindRequests);
-          } else {
-            merged.put(key, permutation);
-          }
+        int permutationCount = permutations.size();
+        int mergedPermutationCount =
+            mergePermutations(permutations, unifiedAst.getRebindRequests());
+        if (mergedPermutationCount > 0 && logger.isLoggable(TreeLogger.DEBUG)) {
+          logger.log(TreeLogger.DEBUG, "Merged " + mergedPermutationCount + " of "
+              + permutationCount + " permutations with identical live rebind answers");
+        }
+        if (jjsOptions.isCompilerMetricsEnabled()) {
+          precompilationMetrics.setMergedPermutationCount(mergedPermutationCount);
         }
-
-        permutations.clear();
-        permutations.addAll(merged.values());
       }
 
       if (jjsOptions.isCompilerMetricsEnabled()) {
@@ -343,6 +333,35 @@ public class Precompile {
     }
   }
 
+  /**
+   * Merges the permutations that were collapsed in the module, or whose answers to the live
+   * rebind requests are identical, and returns how many permutations were merged away.
+   */
+  static int mergePermutations(List<Permutation> permutations,
+      SortedSet<String> liveRebindRequests) {
+    int permutationCount = permutations.size();
+    mergeCollapsedPermutations(permutations);
+
+    // Sort the permutations by an ordered key to ensure determinism.
+    SortedMap<RebindAnswersPermutationKey, Permutation> merged =
+        new TreeMap<RebindAnswersPermutationKey, Permutation>();
+    for (Permutation permutation : permutations) {
+      // Construct a key for the live rebind answers.
+      RebindAnswersPermutationKey key =
+          new RebindAnswersPermutationKey(permutation, liveRebindRequests);
+      if (merged.containsKey(key)) {
+        Permutation existing = merged.get(key);
+        existing.mergeFrom(permutation, liveRebindRequests);
+      } else {
+        merged.put(key, permutation);
+      }
+    }
+
+    permutations.clear();
+    permutations.addAll(merged.values());
+    return permutationCount - permutations.size();
+  }
+
   private static void abortDueToStrictMode(TreeLogger logger) throws UnableToCompleteException {
     logger.log(TreeLogger.ERROR, "Aborting compile due to errors in some input files");
     throw new UnableToCompleteException();
@@ -16,40 +16,204 @@
 package com.google.gwt.dev;
 
 import com.google.gwt.core.ext.CachedGeneratorResult;
+import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.dev.cfg.Rule;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.util.tools.Utility;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A cache for storing {@link CachedGeneratorResult} entries.  Entries are keyed
  * by rebind Rule and queryTypeName.
+ * <p>
+ * A cache can be saved to disk and loaded again by a later compile, so that
+ * generators supporting result caching can reuse their output across compiler
+ * invocations. The generators decide themselves whether a cached result is
+ * still valid, by checking the properties, types and resources they used.
  */
 public class RebindCache implements Serializable {
 
+  /**
+   * A Java system property that enables saving generator results to disk, so
+   * that later compiles of the same module can reuse them. Off by default.
+   */
+  public static final String PERSISTENT_PROPERTY = "gwt.persistentrebindcache";
+
+  /**
+   * A Java system property that sets the directory the cache files are written
+   * to, overriding the one chosen by the compiler.
+   */
+  public static final String DIR_PROPERTY = "gwt.persistentrebindcachedir";
+
+  private static final String CACHE_DIR_NAME = "gwt-rebindCache";
+
+  /**
+   * Returns the file used to save the cache of the given module, or null if
+   * persistent caching is disabled or no directory is available. By default the
+   * file is placed in a subdirectory of <code>defaultCacheDir</code>.
+   */
+  public static File getPersistentCacheFile(File defaultCacheDir, String moduleName) {
+    if (!Boolean.getBoolean(PERSISTENT_PROPERTY)) {
+      return null;
+    }
+    String propertyCacheDir = System.getProperty(DIR_PROPERTY);
+    File cacheDir;
+    if (propertyCacheDir != null) {
+      cacheDir = new File(propertyCacheDir);
+    } else if (defaultCacheDir != null) {
+      cacheDir = new File(defaultCacheDir, CACHE_DIR_NAME);
+    } else {
+      return null;
+    }
+    // Results written by another GWT version are not trusted.
+    return new File(cacheDir, moduleName + "-" + About.getGwtVersionNum() + ".ser");
+  }
+
+  /**
+   * Loads a cache saved by {@link #save}. Returns an empty cache if the file
+   * does not exist or cannot be read.
+   */
+  public static RebindCache load(TreeLogger logger, File file) {
+    if (file.exists()) {
+      try {
+        return Util.readFileAsObject(file, RebindCache.class);
+      } catch (ClassNotFoundException e) {
+        logger.log(TreeLogger.TRACE, "Ignoring unreadable rebind cache " + file, e);
+      } catch (ClassCastException e) {
+        logger.log(TreeLogger.TRACE, "Ignoring unreadable rebind cache " + file, e);
+      } catch (IOException e) {
+        logger.log(TreeLogger.TRACE, "Ignoring unreadable rebind cache " + file, e);
+      }
+    }
+    return new RebindCache();
+  }
+
+  /**
+   * Results that were looked up or stored since this cache was created or
+   * loaded. Only these are saved, so entries for rules and types that are no
+   * longer rebound are dropped.
+   */
+  private transient Set<CachedGeneratorResult> accessedResults;
+
   private final Map<String, Map<String, CachedGeneratorResult>> rebindResults;
 
+  private final Map<String, RebindCache> scopedCaches;
+
   public RebindCache() {
     rebindResults = new HashMap<String, Map<String, CachedGeneratorResult>>();
+    scopedCaches = new HashMap<String, RebindCache>();
   }
 
   public CachedGeneratorResult get(Rule rule, String queryTypeName) {
     Map<String, CachedGeneratorResult> ruleResults;
     ruleResults = rebindResults.get(rule.toString());
     if (ruleResults != null) {
-      return ruleResults.get(queryTypeName);
+      CachedGeneratorResult result = ruleResults.get(queryTypeName);
+      if (result != null) {
+        getAccessedResults().add(result);
+      }
+      return result;
     }
 
     return null;
   }
 
+  /**
+   * Returns a cache kept inside this one for rebinds that are made with
+   * different property values, such as those of a single permutation. Keeping
+   * them apart stops permutations from replacing each other's results.
+   */
+  public RebindCache getScopedCache(String scope) {
+    RebindCache scopedCache = scopedCaches.get(scope);
+    if (scopedCache == null) {
+      scopedCache = new RebindCache();
+      scopedCaches.put(scope, scopedCache);
+    }
+    return scopedCache;
+  }
+
   public void put(Rule rule, String queryTypeName, CachedGeneratorResult results) {
-    Map<String, CachedGeneratorResult> ruleResults = rebindResults.get(rule.toString());
+    put(rule.toString(), queryTypeName, results);
+  }
+
+  /**
+   * Saves the results used since this cache was created or loaded. The file
+   * is replaced atomically where the platform allows, so a concurrent
+   * {@link #load} never sees a partial file. Failures are logged and otherwise
+   * ignored, since the cache only saves time.
+   */
+  public void save(TreeLogger logger, File file) {
+    File tempFile = new File(file.getPath() + ".tmp");
+    OutputStream stream = null;
+    try {
+      // No need to check mkdirs result because an IOException will occur anyway
+      file.getParentFile().mkdirs();
+      stream = new BufferedOutputStream(new FileOutputStream(tempFile));
+      Util.writeObjectToStream(stream, copyAccessedResults());
+      stream.close();
+      stream = null;
+      if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+        throw new IOException("Unable to rename " + tempFile + " to " + file);
+      }
+    } catch (IOException e) {
+      logger.log(TreeLogger.WARN, "Unable to save rebind cache " + file, e);
+      tempFile.delete();
+    } finally {
+      Utility.close(stream);
+    }
+  }
+
+  private RebindCache copyAccessedResults() {
+    RebindCache copy = new RebindCache();
+    Set<CachedGeneratorResult> accessed = getAccessedResults();
+    for (Map.Entry<String, Map<String, CachedGeneratorResult>> ruleEntry :
+        rebindResults.entrySet()) {
+      for (Map.Entry<String, CachedGeneratorResult> entry : ruleEntry.getValue().entrySet()) {
+        if (accessed.contains(entry.getValue())) {
+          copy.put(ruleEntry.getKey(), entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    for (Map.Entry<String, RebindCache> entry : scopedCaches.entrySet()) {
+      RebindCache scopedCopy = entry.getValue().copyAccessedResults();
+      if (!scopedCopy.isEmpty()) {
+        copy.scopedCaches.put(entry.getKey(), scopedCopy);
+      }
+    }
+    return copy;
+  }
+
+  private boolean isEmpty() {
+    return rebindResults.isEmpty() && scopedCaches.isEmpty();
+  }
+
+  private void put(String ruleKey, String queryTypeName, CachedGeneratorResult results) {
+    Map<String, CachedGeneratorResult> ruleResults = rebindResults.get(ruleKey);
     if (ruleResults == null) {
       ruleResults = new HashMap<String, CachedGeneratorResult>();
-      rebindResults.put(rule.toString(), ruleResults);
+      rebindResults.put(ruleKey, ruleResults);
     }
     ruleResults.put(queryTypeName, results);
+    getAccessedResults().add(results);
+  }
+
+  private Set<CachedGeneratorResult> getAccessedResults() {
+    // Transient, so missing after deserialization.
+    if (accessedResults == null) {
+      accessedResults = Collections.newSetFromMap(
+          new IdentityHashMap<CachedGeneratorResult, Boolean>());
+    }
+    return accessedResults;
   }
-}
\ No newline at end of file
+}
@@ -21,6 +21,10 @@ import com.google.gwt.dev.jjs.PermutationResult;
 import com.google.gwt.dev.jjs.UnifiedAst;
 import com.google.gwt.dev.util.PersistenceBackedObject;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -78,6 +82,20 @@ public class ThreadedPermutationWorkerFactory extends PermutationWorkerFactory {
    */
   public static final String MAX_THREADS_PROPERTY = "gwt.jjs.maxThreads";
 
+  /**
+   * A Java system property that can be set to false to start as many in-process threads as
+   * requested, even when they might not fit in the heap.
+   */
+  public static final String LIMIT_THREADS_TO_HEAP_PROPERTY = "gwt.jjs.limitThreadsToHeap";
+
+  /**
+   * How many bytes of heap each worker is assumed to need per byte of serialized AST. This covers
+   * the deserialized AST, which is several times larger than its serialized form, plus the working
+   * memory of optimizing it and generating JavaScript. It is a conservative guess, not a
+   * measurement; set {@link #LIMIT_THREADS_TO_HEAP_PROPERTY} to false if it is too pessimistic.
+   */
+  static final int AST_HEAP_EXPANSION_FACTOR = 8;
+
   @Override
   public Collection<PermutationWorker> getWorkers(TreeLogger logger,
       UnifiedAst unifiedAst, int numWorkers) throws UnableToCompleteException {
@@ -90,6 +108,22 @@ public class ThreadedPermutationWorkerFactory extends PermutationWorkerFactory {
       return Collections.emptyList();
     }
 
+    // Each worker deserializes its own copy of the AST, so don't start more of them than the
+    // heap can hold at the same time.
+    if (numWorkers > 1 && !"false".equals(System.getProperty(LIMIT_THREADS_TO_HEAP_PROPERTY))) {
+      long serializedAstSize = unifiedAst.getSerializedAstSize();
+      long availableMemory = getAvailableMemory();
+      int affordableWorkers = getAffordableWorkers(serializedAstSize, availableMemory);
+      if (affordableWorkers < numWorkers) {
+        logger.log(TreeLogger.WARN, "Using " + affordableWorkers + " of " + numWorkers
+            + " requested in-process threads: each is estimated to need "
+            + serializedAstSize * AST_HEAP_EXPANSION_FACTOR / (1024 * 1024) + " MB of heap and "
+            + availableMemory / (1024 * 1024) + " MB is available. Increase the heap size, or set "
+            + LIMIT_THREADS_TO_HEAP_PROPERTY + "=false to start all of them.");
+        numWorkers = affordableWorkers;
+      }
+    }
+
     // The worker will deserialize a new copy
     List<PermutationWorker> toReturn = new ArrayList<PermutationWorker>(
         numWorkers);
@@ -108,4 +142,40 @@ public class ThreadedPermutationWorkerFactory extends PermutationWorkerFactory {
   public boolean isLocal() {
     return true;
   }
+
+  /**
+   * Estimates how many permutations can be compiled concurrently in the given amount of heap.
+   * Always allows at least one.
+   */
+  static int getAffordableWorkers(long serializedAstSize, long availableMemory) {
+    if (serializedAstSize <= 0) {
+      return Integer.MAX_VALUE;
+    }
+    long memoryPerWorker = serializedAstSize * AST_HEAP_EXPANSION_FACTOR;
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE, availableMemory / memoryPerWorker));
+  }
+
+  /**
+   * Returns the heap that is not yet in use. Where the JVM reports it, the heap in use is taken
+   * from the pools' usage after their last collection, so garbage that has not been collected yet
+   * does not count against the workers.
+   */
+  private static long getAvailableMemory() {
+    long usedMemory = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() != MemoryType.HEAP || !pool.isValid()) {
+        continue;
+      }
+      MemoryUsage usage = pool.getCollectionUsage();
+      if (usage == null) {
+        usage = pool.getUsage();
+      }
+      usedMemory += usage.getUsed();
+    }
+    if (usedMemory == 0) {
+      Runtime runtime = Runtime.getRuntime();
+      usedMemory = runtime.totalMemory() - runtime.freeMemory();
+    }
+    return Math.max(0, Runtime.getRuntime().maxMemory() - usedMemory);
+  }
 }
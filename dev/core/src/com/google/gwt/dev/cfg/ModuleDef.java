@@ -736,6 +736,13 @@ public class ModuleDef implements DepsInfoProvider {
     return resourceLastModified;
   }
 
+  /**
+   * Returns the class path that this module's files are loaded from.
+   */
+  public ResourceLoader getResourceLoader() {
+    return resources;
+  }
+
   public Set<Resource> getResourcesNewerThan(long modificationTime) {
     Set<Resource> newerResources = Sets.newHashSet();
 
@@ -21,17 +21,16 @@ import com.google.gwt.dev.CompilerContext;
 import com.google.gwt.dev.PrecompileTaskOptions;
 import com.google.gwt.dev.resource.Resource;
 import com.google.gwt.dev.resource.impl.UrlResource;
-import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
+import com.google.gwt.dev.util.xml.ParsedXml;
 import com.google.gwt.dev.util.xml.ReflectiveParser;
 import com.google.gwt.thirdparty.guava.common.annotations.VisibleForTesting;
+import com.google.gwt.thirdparty.guava.common.base.Objects;
 import com.google.gwt.thirdparty.guava.common.collect.MapMaker;
-import com.google.gwt.util.tools.Utility;
 
 import java.io.File;
-import java.io.Reader;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.HashMap;
@@ -55,6 +54,13 @@ public class ModuleDefLoader {
    */
   public static final String GWT_MODULE_XML_SUFFIX = ".gwt.xml";
 
+  /**
+   * A directory where parsed module XML files are saved, so that later
+   * compiles only have to parse the files that changed. When unset, parsed
+   * files are only kept in memory.
+   */
+  public static final String PERSISTENT_CACHE_DIR_PROPERTY = "gwt.persistentmodulecachedir";
+
   /**
    * Keep soft references to loaded modules so the VM can gc them when memory is
    * tight. The current context class loader used as a key for modules cache.
@@ -69,6 +75,12 @@ public class ModuleDefLoader {
   private static final Map<String, String> moduleEffectiveNameToPhysicalName =
     new HashMap<String, String>();
 
+  /**
+   * Module XML files already parsed, and the directory they are saved in.
+   */
+  private static ModuleXmlCache moduleXmlCache;
+  private static String moduleXmlCacheDir;
+
   public static void clearModuleCache() {
     getModulesCache().clear();
   }
@@ -225,7 +237,10 @@ public class ModuleDefLoader {
     ModuleDef moduleDef = new ModuleDef(moduleName, resources, monolithic, mergePathPrefixes);
     Event moduleLoadEvent = SpeedTracerLogger.start(CompilerEventType.MODULE_DEF,
         "phase", "strategy.load()");
+    ModuleXmlCache xmlCache = getModuleXmlCache();
+    xmlCache.startLoad();
     loader.load(logger, moduleName, moduleDef);
+    xmlCache.save(logger);
     moduleLoadEvent.end();
 
     // Do any final setup.
@@ -253,6 +268,15 @@ public class ModuleDefLoader {
     return cache;
   }
 
+  private static synchronized ModuleXmlCache getModuleXmlCache() {
+    String cacheDir = System.getProperty(PERSISTENT_CACHE_DIR_PROPERTY);
+    if (moduleXmlCache == null || !Objects.equal(cacheDir, moduleXmlCacheDir)) {
+      moduleXmlCache = new ModuleXmlCache(cacheDir == null ? null : new File(cacheDir));
+      moduleXmlCacheDir = cacheDir;
+    }
+    return moduleXmlCache;
+  }
+
   private static ModuleDef tryGetLoadedModule(String moduleName, boolean refresh) {
     ModuleDef moduleDef = getModulesCache().get(moduleName);
     if (moduleDef == null || moduleDef.isGwtXmlFileStale()) {
@@ -267,7 +291,8 @@ public class ModuleDefLoader {
 
   private final ResourceLoader resourceLoader;
 
-  private ModuleDefLoader(CompilerContext compilerContext, ResourceLoader loader) {
+  @VisibleForTesting
+  ModuleDefLoader(CompilerContext compilerContext, ResourceLoader loader) {
     this.compilerContext = compilerContext;
     this.resourceLoader = loader;
   }
@@ -368,12 +393,11 @@ public class ModuleDefLoader {
 
     // Parse it.
     //
-    Reader r = null;
     try {
-      r = Util.createReader(logger, moduleURL);
+      ParsedXml xml = getModuleXmlCache().get(logger, moduleURL);
       ModuleDefSchema schema =
           new ModuleDefSchema(logger, this, moduleName, moduleURL, moduleDir, moduleDef);
-      ReflectiveParser.parse(logger, schema, r);
+      ReflectiveParser.parse(logger, schema, xml);
 
       // If this module.gwt.xml file is one of the target modules that together make up this
       // ModuleDef.
@@ -387,8 +411,6 @@ public class ModuleDefLoader {
     } catch (Throwable e) {
       logger.log(TreeLogger.ERROR, "Unexpected error while processing XML", e);
       throw new UnableToCompleteException();
-    } finally {
-      Utility.close(r);
     }
   }
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.cfg;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.About;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.dev.util.xml.ParsedXml;
+import com.google.gwt.dev.util.xml.ReflectiveParser;
+import com.google.gwt.util.tools.Utility;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps module XML files already parsed, keyed by a hash of their contents, so
+ * that loading a module again only has to run the schema over files that
+ * haven't changed. The cache is also saved to disk when a directory is given,
+ * so that later compiles can start with it.
+ */
+class ModuleXmlCache {
+
+  /**
+   * The parsed files, keyed by the strong name of their contents.
+   */
+  private final Map<String, ParsedXml> parsedFiles = new HashMap<String, ParsedXml>();
+
+  /**
+   * Where the cache is saved, or null if it's only kept in memory.
+   */
+  private final File file;
+
+  private boolean loaded;
+
+  /**
+   * Whether files were parsed that are not in the saved cache.
+   */
+  private boolean modified;
+
+  /**
+   * The hashes of the files looked up since the last module load started. Only
+   * these are kept when the cache is saved, so files that are no longer
+   * inherited are dropped.
+   */
+  private final Set<String> usedHashes = new HashSet<String>();
+
+  ModuleXmlCache(File cacheDir) {
+    this.file = cacheDir == null ? null
+        : new File(cacheDir, "gwt-moduleXmlCache-" + About.getGwtVersionNum() + ".ser");
+  }
+
+  /**
+   * Returns the contents of a module XML file, parsing it if its contents
+   * have not been seen before.
+   */
+  synchronized ParsedXml get(TreeLogger logger, URL url) throws UnableToCompleteException {
+    byte[] bytes = Util.readURLAsBytes(url);
+    if (bytes == null) {
+      logger.log(TreeLogger.ERROR, "Unable to open resource: " + url);
+      throw new UnableToCompleteException();
+    }
+    load(logger);
+
+    String hash = Util.computeStrongName(bytes);
+    usedHashes.add(hash);
+    ParsedXml xml = parsedFiles.get(hash);
+    if (xml == null) {
+      xml = ReflectiveParser.read(logger,
+          new InputStreamReader(new ByteArrayInputStream(bytes)));
+      parsedFiles.put(hash, xml);
+      modified = true;
+    }
+    return xml;
+  }
+
+  /**
+   * Forgets which files were used, so that a module load only keeps the files
+   * it reads itself.
+   */
+  synchronized void startLoad() {
+    usedHashes.clear();
+  }
+
+  /**
+   * Drops the files not used since the module load started and saves the rest,
+   * if that changed the saved cache. Failures are logged and otherwise ignored,
+   * since the cache only saves time.
+   */
+  synchronized void save(TreeLogger logger) {
+    if (parsedFiles.keySet().retainAll(usedHashes)) {
+      modified = true;
+    }
+    if (file == null || !modified) {
+      return;
+    }
+    HashMap<String, ParsedXml> used = new HashMap<String, ParsedXml>(parsedFiles);
+
+    // Each save writes its own temp file, so that processes sharing the
+    // directory don't write into each other's file before it is renamed.
+    File tempFile = null;
+    OutputStream stream = null;
+    try {
+      // No need to check mkdirs result because an IOException will occur anyway
+      file.getParentFile().mkdirs();
+      tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      stream = new BufferedOutputStream(new FileOutputStream(tempFile));
+      Util.writeObjectToStream(stream, used);
+      stream.close();
+      stream = null;
+      if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+        throw new IOException("Unable to rename " + tempFile + " to " + file);
+      }
+      modified = false;
+    } catch (IOException e) {
+      logger.log(TreeLogger.WARN, "Unable to save module cache " + file, e);
+    } finally {
+      Utility.close(stream);
+      if (tempFile != null && tempFile.exists()) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void load(TreeLogger logger) {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    if (file == null || !file.exists()) {
+      return;
+    }
+    try {
+      parsedFiles.putAll(Util.readFileAsObject(file, HashMap.class));
+    } catch (ClassNotFoundException e) {
+      logger.log(TreeLogger.TRACE, "Ignoring unreadable module cache " + file, e);
+    } catch (ClassCastException e) {
+      logger.log(TreeLogger.TRACE, "Ignoring unreadable module cache " + file, e);
+    } catch (IOException e) {
+      logger.log(TreeLogger.TRACE, "Ignoring unreadable module cache " + file, e);
+    }
+  }
+}
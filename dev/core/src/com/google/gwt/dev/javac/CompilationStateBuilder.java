@@ -28,6 +28,7 @@ import com.google.gwt.dev.jjs.ast.JDeclaredType;
 import com.google.gwt.dev.jjs.impl.GwtAstBuilder;
 import com.google.gwt.dev.js.ast.JsRootScope;
 import com.google.gwt.dev.resource.Resource;
+import com.google.gwt.dev.util.ParallelTasks;
 import com.google.gwt.dev.util.StringInterner;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.DevModeEventType;
@@ -58,6 +59,8 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Manages a centralized cache for compiled units.
@@ -297,41 +300,52 @@ public class CompilationStateBuilder {
         final TreeLogger branch = logger.branch(TreeLogger.TRACE, "Compiling...");
         // Compile anything that needs to be compiled.
         buildQueue = new LinkedBlockingQueue<CompilationUnitBuilder>();
-        final List<CompilationUnit> newlyBuiltUnits = Lists.newArrayList();
+        final List<CompilationUnit> newlyBuiltUnits =
+            Collections.synchronizedList(Lists.<CompilationUnit>newArrayList());
         final CompilationUnitBuilder sentinel = CompilationUnitBuilder.create((GeneratedUnit) null);
-        final Throwable[] workerException = new Throwable[1];
+        final AtomicReference<Throwable> workerException = new AtomicReference<Throwable>();
+        final AtomicInteger processedCompilationUnitBuilders = new AtomicInteger();
         final ProgressLogger progressLogger =
             new ProgressLogger(branch, TreeLogger.TRACE, builders.size(), 10);
-        Thread buildThread = new Thread() {
-          @Override
-          public void run() {
-            int processedCompilationUnitBuilders = 0;
-            try {
-              do {
-                CompilationUnitBuilder builder = buildQueue.take();
-                if (!progressLogger.isTimerStarted()) {
-                  // Set start time here, after first job has arrived, since it can take a little
-                  // while for the first job to arrive, and this helps with the accuracy of the
-                  // estimated times.
-                  progressLogger.startTimer();
-                }
-                if (builder == sentinel) {
-                  return;
-                }
-                // Expensive, must serialize GWT AST types to bytes.
-                CompilationUnit unit = builder.build();
-                newlyBuiltUnits.add(unit);
-
-                processedCompilationUnitBuilders++;
-                progressLogger.updateProgress(processedCompilationUnitBuilders);
-              } while (true);
-            } catch (Throwable e) {
-              workerException[0] = e;
+        int builderThreadCount = getBuilderThreadCount();
+        List<Thread> buildThreads = Lists.newArrayList();
+        for (int i = 0; i < builderThreadCount; i++) {
+          Thread buildThread = new Thread() {
+            @Override
+            public void run() {
+              try {
+                do {
+                  CompilationUnitBuilder builder = buildQueue.take();
+                  synchronized (progressLogger) {
+                    if (!progressLogger.isTimerStarted()) {
+                      // Set start time here, after first job has arrived, since it can take a
+                      // little while for the first job to arrive, and this helps with the
+                      // accuracy of the estimated times.
+                      progressLogger.startTimer();
+                    }
+                  }
+                  if (builder == sentinel) {
+                    return;
+                  }
+                  // Expensive, must serialize GWT AST types to bytes.
+                  CompilationUnit unit = builder.build();
+                  newlyBuiltUnits.add(unit);
+
+                  synchronized (progressLogger) {
+                    progressLogger.updateProgress(
+                        processedCompilationUnitBuilders.incrementAndGet());
+                  }
+                } while (true);
+              } catch (Throwable e) {
+                workerException.compareAndSet(null, e);
+              }
             }
-          }
-        };
-        buildThread.setName("CompilationUnitBuilder");
-        buildThread.start();
+          };
+          buildThread.setName(builderThreadCount == 1
+              ? "CompilationUnitBuilder" : "CompilationUnitBuilder-" + i);
+          buildThread.start();
+          buildThreads.add(buildThread);
+        }
         Event jdtCompilerEvent = SpeedTracerLogger.start(eventType);
         long compilationStartNanos = System.nanoTime();
         try {
@@ -339,16 +353,21 @@ public class CompilationStateBuilder {
         } finally {
           jdtCompilerEvent.end();
         }
-        buildQueue.add(sentinel);
+        // One sentinel per thread, each one stops exactly one of them.
+        for (int i = 0; i < builderThreadCount; i++) {
+          buildQueue.add(sentinel);
+        }
         try {
-          buildThread.join();
+          for (Thread buildThread : buildThreads) {
+            buildThread.join();
+          }
           long compilationNanos = System.nanoTime() - compilationStartNanos;
           // Convert nanos to seconds.
           double compilationSeconds = compilationNanos / (double) TimeUnit.SECONDS.toNanos(1);
           branch.log(TreeLogger.TRACE,
               String.format("Compilation completed in %.02f seconds", compilationSeconds));
-          if (workerException[0] != null) {
-            throw workerException[0];
+          if (workerException.get() != null) {
+            throw workerException.get();
           }
         } catch (RuntimeException e) {
           throw e;
@@ -357,6 +376,9 @@ public class CompilationStateBuilder {
         } finally {
           buildQueue = null;
         }
+        // Units finish in a nondeterministic order when built concurrently, so sort them to give
+        // the unit cache the same order whatever the number of threads.
+        Collections.sort(newlyBuiltUnits, CompilationUnit.COMPARATOR);
         resultUnits.addAll(newlyBuiltUnits);
         builders.clear();
 
@@ -464,8 +486,18 @@ public class CompilationStateBuilder {
     }
   }
 
+  /**
+   * A Java system property that sets how many threads turn the units coming out of JDT into
+   * {@link CompilationUnit}s (which includes serializing their GWT ASTs). Defaults to one.
+   */
+  public static final String BUILDER_THREADS_PROPERTY = "gwt.jjs.builderThreads";
+
   private static final CompilationStateBuilder instance = new CompilationStateBuilder();
 
+  static int getBuilderThreadCount() {
+    return ParallelTasks.getThreadCount(BUILDER_THREADS_PROPERTY);
+  }
+
   /**
    * Use previously compiled {@link CompilationUnit}s to pre-populate the unit cache.
    */
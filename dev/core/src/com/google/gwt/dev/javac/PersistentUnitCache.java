@@ -20,27 +20,38 @@ import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.dev.jjs.InternalCompilerException;
 import com.google.gwt.dev.jjs.ast.JNode;
 import com.google.gwt.dev.jjs.impl.GwtAstBuilder;
+import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.log.speedtracer.DevModeEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.thirdparty.guava.common.hash.Hashing;
+import com.google.gwt.thirdparty.guava.common.io.CountingInputStream;
+import com.google.gwt.thirdparty.guava.common.io.CountingOutputStream;
 import com.google.gwt.thirdparty.guava.common.io.Files;
 import com.google.gwt.util.tools.Utility;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.net.JarURLConnection;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -61,14 +72,27 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * intended to support only a single PersistentUnitCache instance in the
  * compiler at a time.
  * <p>
- * As new units are compiled, the cache data is appended to a log. This allows
- * Java serialization to efficiently store references. The next time the cache
- * is started, all logs are replayed and loaded into the cache in chronological
- * order, with newer units taking precedence. A new cache file is created for
- * any newly compiled units in this session. After a threshold of a certain
- * number of files in the directory is reached
- * {@link PersistentUnitCache#CACHE_FILE_THRESHOLD} , the cache files are
- * consolidated back into a single file.
+ * As new units are compiled, they are appended to a log. Each unit is written
+ * as a record made of a small header (resource path, {@link ContentId} and
+ * timestamps) and the unit serialized on its own. The next time the cache is
+ * started, only the headers are read, which builds an index of where the
+ * newest record for each resource path is stored. A unit is read from disk
+ * the first time it is looked up. A new cache file is created for any newly
+ * compiled units in this session. After a threshold of a certain number of
+ * files in the directory is reached {@link PersistentUnitCache#CACHE_FILE_THRESHOLD},
+ * the records still in use are copied into a single file and the old files
+ * are removed.
+ * <p>
+ * Units that were not looked up or added in any session since the files were
+ * last consolidated are dropped when they are consolidated again. A session
+ * that uses a unit stored before the last consolidation logs a short
+ * reference record for it, so that it is kept.
+ * <p>
+ * A cache may also be layered over a shared base directory, such as one
+ * produced once per commit on a build farm and copied to a shared filesystem.
+ * The base is never written, so any number of processes can read it at once,
+ * each writing the units it compiles to its own directory. Units in the base
+ * are not copied or dropped when the private files are consolidated.
  *
  * <p>
  * System Properties (see {@link UnitCacheSingleton}).
@@ -77,22 +101,14 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <li>gwt.persistentunitcache : enables the persistent cache (eventually will
  * be default)</li>
  * <li>gwt.persistentunitcachedir=<dir>: sets or overrides the cache directory</li>
+ * <li>gwt.persistentunitcachebasedir=<dir>: a read-only cache directory to
+ * look up units in before compiling them</li>
  * </ul>
  *
  * <p>
  * Known Issues:
  *
  * <ul>
- * <li>This design uses an eager cache to load every unit in the cache on the
- * first reference to find() or add(). When the cache is large (10000 units), it
- * uses lots of heap and takes 5-10 seconds. Once the PersistentUnitCache is
- * created, it starts eagerly loading the cache in a background thread).</li>
- *
- * <li>Although units logged to disk with the same resource path are eventually
- * cleaned up, the most recently compiled unit stays in the cache forever. This
- * means that stale units that are no longer referenced will never be purged,
- * unless by some external action (e.g. ant clean).</li>
- *
  * <li>Unless ant builds are made aware of the cache directory, the cache will
  * persist if a user does an ant clean.</li>
  * </ul>
@@ -100,6 +116,35 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 class PersistentUnitCache extends MemoryUnitCache {
 
+  /**
+   * Where the newest record of a unit is stored, and the last session that
+   * used it.
+   */
+  private static class IndexEntry {
+    private final ContentId contentId;
+    private final File file;
+    private final long lastModified;
+    private final long lastUsed;
+    private final int length;
+    private final long offset;
+    private final String resourcePath;
+
+    private IndexEntry(String resourcePath, ContentId contentId, long lastModified,
+        long lastUsed, File file, long offset, int length) {
+      this.resourcePath = resourcePath;
+      this.contentId = contentId;
+      this.lastModified = lastModified;
+      this.lastUsed = lastUsed;
+      this.file = file;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    private IndexEntry withLastUsed(long lastUsed) {
+      return new IndexEntry(resourcePath, contentId, lastModified, lastUsed, file, offset, length);
+    }
+  }
+
   /**
    * If there are more than this many files in the cache, clean up the old
    * files.
@@ -113,6 +158,20 @@ class PersistentUnitCache extends MemoryUnitCache {
   static final String CACHE_FILE_PREFIX = UNIT_CACHE_PREFIX + "-";
   static final String CURRENT_VERSION_CACHE_FILE_PREFIX = computePersistentCacheFilenamePrefix();
 
+  /**
+   * Starts every cache file, followed by {@link #FILE_FORMAT_VERSION} and the
+   * stamp of the session that wrote it.
+   */
+  private static final int FILE_MAGIC = 0x47574355;
+  private static final int FILE_FORMAT_VERSION = 1;
+
+  /**
+   * Record kinds. A unit record has a body holding the serialized unit; a
+   * reference record only notes that a session used a unit.
+   */
+  private static final byte UNIT_RECORD = 1;
+  private static final byte REFERENCE_RECORD = 2;
+
   /**
    * Creates a new file with a name based on the current system time.
    */
@@ -174,6 +233,8 @@ class PersistentUnitCache extends MemoryUnitCache {
     @Override
     public void run() {
       try {
+        copyUsedUnitsToCurrentCacheFile();
+
         // Delete all cache files in the directory except for the currently open
         // file.
         SpeedTracerLogger.Event deleteEvent = SpeedTracerLogger.start(DevModeEventType.DELETE_CACHE);
@@ -227,7 +288,7 @@ class PersistentUnitCache extends MemoryUnitCache {
   private final Runnable unitMapLoadTask = new Runnable() {
     @Override
     public void run() {
-      loadUnitMap(logger, currentCacheFile);
+      loadIndex(logger, currentCacheFile);
     }
   };
 
@@ -247,14 +308,55 @@ class PersistentUnitCache extends MemoryUnitCache {
   private final File cacheDirectory;
 
   /**
-   * Current file and stream being written to.
+   * A directory of cache files shared with other processes that is only read,
+   * or null.
+   */
+  private final File baseDirectory;
+
+  /**
+   * Current file and stream being written to. The counter gives the offset of
+   * the next record.
    */
   private File currentCacheFile;
-  private ObjectOutputStream currentCacheFileStream;
+  private CountingOutputStream currentCacheFileCounter;
+  private DataOutputStream currentCacheFileStream;
+
+  /**
+   * The newest record of each unit on disk, by resource path and by content
+   * id. Both maps are guarded by {@link #indexByPath}.
+   */
+  private final Map<String, IndexEntry> indexByPath = new HashMap<String, IndexEntry>();
+  private final Map<ContentId, IndexEntry> indexByContentId = new HashMap<ContentId, IndexEntry>();
+
+  /**
+   * Resource paths of the units looked up or added in this session. Guarded by
+   * {@link #indexByPath}.
+   */
+  private final Set<String> usedPaths = new HashSet<String>();
+
+  /**
+   * Identifies this session in the records it writes.
+   */
+  private final long sessionStamp = System.currentTimeMillis();
+
+  /**
+   * The stamp of the oldest session whose cache file still exists. Units last
+   * used before it are dropped by the next consolidation, unless used again.
+   */
+  private long oldestSessionStamp = sessionStamp;
 
   private final TreeLogger logger;
 
-  PersistentUnitCache(final TreeLogger logger, File cacheDir) throws UnableToCompleteException {
+  PersistentUnitCache(TreeLogger logger, File cacheDir) throws UnableToCompleteException {
+    this(logger, cacheDir, null);
+  }
+
+  /**
+   * Creates a cache that writes to <code>cacheDir</code> and also finds the
+   * units cached in <code>baseDir</code>, if not null, without modifying it.
+   */
+  PersistentUnitCache(final TreeLogger logger, File cacheDir, File baseDir)
+      throws UnableToCompleteException {
     assert cacheDir != null;
     this.logger = logger;
 
@@ -281,6 +383,22 @@ class PersistentUnitCache extends MemoryUnitCache {
           + this.cacheDirectory.getAbsolutePath());
     }
 
+    File canonicalBaseDirectory = null;
+    if (baseDir != null) {
+      try {
+        canonicalBaseDirectory = new File(baseDir.getCanonicalFile(), UNIT_CACHE_PREFIX);
+      } catch (IOException ex) {
+        logger.log(TreeLogger.WARN, "Unable to create canonical file of "
+            + baseDir.getAbsolutePath() + ". Ignoring the base cache.", ex);
+      }
+      if (cacheDirectory.equals(canonicalBaseDirectory)) {
+        logger.log(TreeLogger.WARN, "The base cache dir is the same as the cache dir. "
+            + "Ignoring the base cache.");
+        canonicalBaseDirectory = null;
+      }
+    }
+    this.baseDirectory = canonicalBaseDirectory;
+
     if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
       logger.log(TreeLogger.WARN, "Unable to initialize cache. Couldn't create directory "
           + cacheDirectory.getAbsolutePath() + ".");
@@ -312,19 +430,14 @@ class PersistentUnitCache extends MemoryUnitCache {
     });
 
     /**
-     * Load up cached units from the persistent store in the background. The
+     * Index the units in the persistent store in the background. The
      * {@link #add(CompilationUnit)} and {@link #find(String)} methods block if
      * invoked before this thread finishes.
      */
     unitMapLoadStatus = backgroundService.submit(unitMapLoadTask, Boolean.TRUE);
 
-    FileOutputStream fstream = null;
-    BufferedOutputStream bstream = null;
-
     try {
-      fstream = new FileOutputStream(currentCacheFile);
-      bstream = new BufferedOutputStream(fstream);
-      currentCacheFileStream = new ObjectOutputStream(bstream);
+      openCurrentCacheFile();
     } catch (IOException ex) {
       closeCurrentCacheFile(currentCacheFile, currentCacheFileStream);
       logger.log(TreeLogger.ERROR, "Error creating cache " + currentCacheFile
@@ -342,12 +455,17 @@ class PersistentUnitCache extends MemoryUnitCache {
     awaitUnitCacheMapLoad();
     addedSinceLastCleanup++;
     super.add(newUnit);
+    synchronized (indexByPath) {
+      // The unit on disk for this path, if any, is older.
+      removeIndexEntry(indexByPath.get(newUnit.getResourcePath()));
+      usedPaths.add(newUnit.getResourcePath());
+    }
     addImpl(unitMap.get(newUnit.getResourcePath()));
   }
 
   /**
-   * Cleans up old cache files in the directory, migrating everything previously
-   * loaded in them to the current cache file.
+   * Cleans up old cache files in the directory, migrating the units still in
+   * use to the current cache file.
    *
    * Normally, only newly compiled units are written to the current log, but
    * when it is time to cleanup, valid units from older log files need to be
@@ -387,17 +505,9 @@ class PersistentUnitCache extends MemoryUnitCache {
       }
 
       /*
-       * Resend all units read in from the in-memory cache to the background
-       * thread. They will be re-written out and the old cache files removed.
+       * The background thread copies the units still in use from the old
+       * files to the current one, then removes the old files.
        */
-      synchronized (unitMap) {
-        for (UnitCacheEntry unitCacheEntry : unitMap.values()) {
-          if (unitCacheEntry.getOrigin() == UnitOrigin.PERSISTENT) {
-            addImpl(unitCacheEntry);
-          }
-        }
-      }
-
       purgeTaskStatus = backgroundService.submit(purgeOldCacheFilesTask, Boolean.TRUE);
 
     } catch (ExecutionException ex) {
@@ -410,13 +520,44 @@ class PersistentUnitCache extends MemoryUnitCache {
   @Override
   public CompilationUnit find(ContentId contentId) {
     awaitUnitCacheMapLoad();
-    return super.find(contentId);
+    CompilationUnit unit = super.find(contentId);
+    if (unit == null) {
+      IndexEntry entry;
+      synchronized (indexByPath) {
+        entry = indexByContentId.get(contentId);
+      }
+      unit = loadUnit(entry);
+    }
+    if (unit != null) {
+      recordUse(unit.getResourcePath());
+    }
+    return unit;
   }
 
   @Override
   public CompilationUnit find(String resourcePath) {
     awaitUnitCacheMapLoad();
-    return super.find(resourcePath);
+    CompilationUnit unit = super.find(resourcePath);
+    if (unit == null) {
+      IndexEntry entry;
+      synchronized (indexByPath) {
+        entry = indexByPath.get(resourcePath);
+      }
+      unit = loadUnit(entry);
+    }
+    if (unit != null) {
+      recordUse(resourcePath);
+    }
+    return unit;
+  }
+
+  @Override
+  public void remove(CompilationUnit unit) {
+    super.remove(unit);
+    synchronized (indexByPath) {
+      removeIndexEntry(indexByPath.get(unit.getResourcePath()));
+      removeIndexEntry(indexByContentId.get(unit.getContentId()));
+    }
   }
 
   public void rotateCurrentCacheFile() throws UnableToCompleteException {
@@ -424,21 +565,14 @@ class PersistentUnitCache extends MemoryUnitCache {
       logger.log(TreeLogger.TRACE, "Wrote " + unitsWritten + " units to persistent cache.");
     }
 
-    // Close and re-open a new log file to drop object references kept
-    // alive in the existing file by Java serialization.
+    // Close and re-open a new log file, so that each file holds the records
+    // of a single stretch of a session.
     closeCurrentCacheFile(currentCacheFile, currentCacheFileStream);
     unitsWritten = 0;
     currentCacheFile = createCacheFile(logger, cacheDirectory);
-    FileOutputStream fstream = null;
-    BufferedOutputStream bstream = null;
     try {
-      fstream = new FileOutputStream(currentCacheFile);
-      bstream = new BufferedOutputStream(fstream);
-      currentCacheFileStream = new ObjectOutputStream(bstream);
+      openCurrentCacheFile();
     } catch (IOException ex) {
-      // Close all 3 streams, not sure where the exception occurred.
-      Utility.close(bstream);
-      Utility.close(fstream);
       closeCurrentCacheFile(currentCacheFile, currentCacheFileStream);
       logger.log(TreeLogger.ERROR, "Error rotating file.  Shutting down cache thread.", ex);
       throw new UnableToCompleteException();
@@ -480,6 +614,34 @@ class PersistentUnitCache extends MemoryUnitCache {
     return CACHE_FILE_PREFIX;
   }
 
+  private static ContentId readContentId(DataInputStream in) throws IOException {
+    String sourceTypeName = in.readUTF();
+    String value = in.readUTF();
+    return new ContentId(sourceTypeName, value.substring(sourceTypeName.length() + 1));
+  }
+
+  private static byte[] readRecordBody(IndexEntry entry) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(entry.file, "r");
+    try {
+      byte[] body = new byte[entry.length];
+      file.seek(entry.offset);
+      file.readFully(body);
+      return body;
+    } finally {
+      Utility.close(file);
+    }
+  }
+
+  private static void skipFully(DataInputStream in, int length) throws IOException {
+    while (length > 0) {
+      int skipped = in.skipBytes(length);
+      if (skipped <= 0) {
+        throw new EOFException();
+      }
+      length -= skipped;
+    }
+  }
+
   private void addImpl(final UnitCacheEntry entry) {
     try {
       backgroundService.execute(new Runnable() {
@@ -489,8 +651,19 @@ class PersistentUnitCache extends MemoryUnitCache {
             assert entry.getOrigin() != UnitOrigin.ARCHIVE;
             CompilationUnit unit = entry.getUnit();
             assert unit != null;
-            currentCacheFileStream.writeObject(unit);
-            unitsWritten++;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            ObjectOutputStream objectStream = new ObjectOutputStream(body);
+            objectStream.writeObject(unit);
+            objectStream.close();
+            IndexEntry indexEntry = writeUnitRecord(unit.getResourcePath(),
+                unit.getContentId(), unit.getLastModified(), sessionStamp, body.toByteArray());
+            synchronized (indexByPath) {
+              // Don't index a unit that was replaced while it was being written.
+              UnitCacheEntry current = unitMap.get(unit.getResourcePath());
+              if (current == null || current.getUnit() == unit) {
+                putIndexEntry(indexEntry);
+              }
+            }
           } catch (IOException ex) {
             backgroundService.shutdownNow();
             if (logger.isLoggable(TreeLogger.TRACE)) {
@@ -505,6 +678,30 @@ class PersistentUnitCache extends MemoryUnitCache {
     }
   }
 
+  private void addReferenceImpl(final IndexEntry entry) {
+    try {
+      backgroundService.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            writeRecordHeader(REFERENCE_RECORD, entry.resourcePath, entry.contentId,
+                entry.lastModified, sessionStamp);
+            currentCacheFileStream.flush();
+            unitsWritten++;
+          } catch (IOException ex) {
+            backgroundService.shutdownNow();
+            if (logger.isLoggable(TreeLogger.TRACE)) {
+              logger.log(TreeLogger.TRACE, "Error saving unit reference to cache in: "
+                  + cacheDirectory.getAbsolutePath(), ex);
+            }
+          }
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      // background thread is not running, ignore
+    }
+  }
+
   private synchronized void awaitUnitCacheMapLoad() {
     // wait on initial load of unit map to complete.
     try {
@@ -522,7 +719,7 @@ class PersistentUnitCache extends MemoryUnitCache {
     }
   }
 
-  private void closeCurrentCacheFile(File openFile, ObjectOutputStream stream) {
+  private void closeCurrentCacheFile(File openFile, DataOutputStream stream) {
     Utility.close(stream);
     if (unitsWritten == 0) {
       // Remove useless empty file.
@@ -531,9 +728,69 @@ class PersistentUnitCache extends MemoryUnitCache {
   }
 
   /**
-   * Load everything cached on disk into memory.
+   * Copies the units used since the files were last consolidated from the old
+   * cache files to the current one, and drops the others from the index.
+   */
+  private void copyUsedUnitsToCurrentCacheFile() throws UnableToCompleteException {
+    List<IndexEntry> entries;
+    synchronized (indexByPath) {
+      entries = new ArrayList<IndexEntry>(indexByPath.values());
+    }
+    int dropped = 0;
+    for (IndexEntry entry : entries) {
+      if (entry.file.equals(currentCacheFile) || isInBaseDirectory(entry)) {
+        continue;
+      }
+      long lastUsed;
+      synchronized (indexByPath) {
+        if (indexByPath.get(entry.resourcePath) != entry) {
+          // Replaced or removed since the copy of the index was taken.
+          continue;
+        }
+        lastUsed = usedPaths.contains(entry.resourcePath) ? sessionStamp : entry.lastUsed;
+        if (lastUsed < oldestSessionStamp) {
+          removeIndexEntry(entry);
+          dropped++;
+          continue;
+        }
+      }
+      byte[] body;
+      try {
+        body = readRecordBody(entry);
+      } catch (IOException ex) {
+        synchronized (indexByPath) {
+          removeIndexEntry(entry);
+        }
+        continue;
+      }
+      try {
+        IndexEntry copied = writeUnitRecord(entry.resourcePath, entry.contentId,
+            entry.lastModified, lastUsed, body);
+        synchronized (indexByPath) {
+          if (indexByPath.get(entry.resourcePath) == entry) {
+            putIndexEntry(copied);
+          }
+        }
+      } catch (IOException ex) {
+        logger.log(TreeLogger.ERROR, "Error copying units to " + currentCacheFile
+            + ".  Shutting down cache thread.", ex);
+        throw new UnableToCompleteException();
+      }
+    }
+    if (logger.isLoggable(TreeLogger.TRACE)) {
+      logger.log(TreeLogger.TRACE, "Dropped " + dropped + " unused units from persistent cache.");
+    }
+  }
+
+  private boolean isInBaseDirectory(IndexEntry entry) {
+    return baseDirectory != null && baseDirectory.equals(entry.file.getParentFile());
+  }
+
+  /**
+   * Reads the record headers of every cache file on disk to find where each
+   * unit is stored. The units themselves are read when they are looked up.
    */
-  private void loadUnitMap(TreeLogger logger, File currentCacheFile) {
+  private void loadIndex(TreeLogger logger, File currentCacheFile) {
     Event loadPersistentUnitEvent =
         SpeedTracerLogger.start(DevModeEventType.LOAD_PERSISTENT_UNIT_CACHE);
     if (logger.isLoggable(TreeLogger.TRACE)) {
@@ -541,77 +798,27 @@ class PersistentUnitCache extends MemoryUnitCache {
           + cacheDirectory.getAbsolutePath());
     }
     try {
+      if (baseDirectory != null) {
+        loadBaseIndex(logger);
+      }
       if (cacheDirectory.isDirectory() && cacheDirectory.canRead()) {
         File[] files = getCacheFiles(cacheDirectory, true);
         for (File cacheFile : files) {
-          FileInputStream fis = null;
-          BufferedInputStream bis = null;
-          ObjectInputStream inputStream = null;
           if (cacheFile.equals(currentCacheFile)) {
             continue;
           }
-          boolean deleteCacheFile = false;
           try {
-            fis = new FileInputStream(cacheFile);
-            bis = new BufferedInputStream(fis);
-            /*
-             * It is possible for the next call to throw an exception, leaving
-             * inputStream null and fis still live.
-             */
-            inputStream = new ObjectInputStream(bis);
-            while (true) {
-              CachedCompilationUnit unit = (CachedCompilationUnit) inputStream.readObject();
-              if (unit == null) {
-                break;
-              }
-              if (unit.getTypesSerializedVersion() != GwtAstBuilder.getSerializationVersion()) {
-                continue;
-              }
-              UnitCacheEntry entry = new UnitCacheEntry(unit, UnitOrigin.PERSISTENT);
-              UnitCacheEntry existingEntry = unitMap.get(unit.getResourcePath());
-              /*
-               * Don't assume that an existing entry is stale - an entry might
-               * have been loaded already from another source like a
-               * CompilationUnitArchive that is more up to date. If the
-               * timestamps are the same, accept the latest version. If it turns
-               * out to be stale, it will be recompiled and the updated unit
-               * will win this test the next time the session starts.
-               */
-              if (existingEntry != null
-                  && unit.getLastModified() >= existingEntry.getUnit().getLastModified()) {
-                super.remove(existingEntry.getUnit());
-                unitMap.put(unit.getResourcePath(), entry);
-                unitMapByContentId.put(unit.getContentId(), entry);
-              } else if (existingEntry == null) {
-                unitMap.put(unit.getResourcePath(), entry);
-                unitMapByContentId.put(unit.getContentId(), entry);
-              }
+            long fileSessionStamp = loadIndex(cacheFile);
+            oldestSessionStamp = Math.min(oldestSessionStamp, fileSessionStamp);
+            if (logger.isLoggable(TreeLogger.TRACE)) {
+              logger.log(TreeLogger.TRACE, cacheFile.getName() + ": Load complete");
             }
-          } catch (EOFException ex) {
-            // Go on to the next file.
           } catch (IOException ex) {
-            deleteCacheFile = true;
             if (logger.isLoggable(TreeLogger.TRACE)) {
               logger.log(TreeLogger.TRACE, "Ignoring and deleting cache log "
                   + cacheFile.getAbsolutePath() + " due to read error.", ex);
             }
-          } catch (ClassNotFoundException ex) {
-            deleteCacheFile = true;
-            if (logger.isLoggable(TreeLogger.TRACE)) {
-              logger.log(TreeLogger.TRACE, "Ignoring and deleting cache log "
-                  + cacheFile.getAbsolutePath() + " due to deserialization error.", ex);
-            }
-          } finally {
-            Utility.close(inputStream);
-            Utility.close(bis);
-            Utility.close(fis);
-          }
-          if (deleteCacheFile) {
             cacheFile.delete();
-          } else {
-            if (logger.isLoggable(TreeLogger.TRACE)) {
-              logger.log(TreeLogger.TRACE, cacheFile.getName() + ": Load complete");
-            }
           }
         }
       } else {
@@ -624,4 +831,222 @@ class PersistentUnitCache extends MemoryUnitCache {
       loadPersistentUnitEvent.end();
     }
   }
+
+  /**
+   * Reads the record headers of the files in the base directory. Files that
+   * can't be read are skipped, but not deleted, since they may belong to
+   * another process.
+   */
+  private void loadBaseIndex(TreeLogger logger) {
+    if (!baseDirectory.isDirectory() || !baseDirectory.canRead()) {
+      logger.log(TreeLogger.WARN, "Base unit cache directory "
+          + baseDirectory.getAbsolutePath() + " does not exist or is not readable.");
+      return;
+    }
+    if (logger.isLoggable(TreeLogger.TRACE)) {
+      logger.log(TreeLogger.TRACE, "Looking for shared Compilation Units in "
+          + baseDirectory.getAbsolutePath());
+    }
+    for (File cacheFile : getCacheFiles(baseDirectory, true)) {
+      try {
+        loadIndex(cacheFile);
+      } catch (IOException ex) {
+        if (logger.isLoggable(TreeLogger.TRACE)) {
+          logger.log(TreeLogger.TRACE, "Ignoring base cache log "
+              + cacheFile.getAbsolutePath() + " due to read error.", ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the records of a cache file to the index, and returns the stamp of
+   * the session that wrote the file.
+   */
+  private long loadIndex(File cacheFile) throws IOException {
+    long fileLength = cacheFile.length();
+    CountingInputStream counter = null;
+    DataInputStream in = null;
+    try {
+      counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      in = new DataInputStream(counter);
+      if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_FORMAT_VERSION) {
+        throw new IOException("Not a unit cache file in the current format");
+      }
+      long fileSessionStamp = in.readLong();
+      try {
+        while (true) {
+          byte kind = in.readByte();
+          String resourcePath = in.readUTF();
+          ContentId contentId = readContentId(in);
+          long lastModified = in.readLong();
+          long lastUsed = in.readLong();
+          if (kind == REFERENCE_RECORD) {
+            synchronized (indexByPath) {
+              IndexEntry existing = indexByPath.get(resourcePath);
+              if (existing != null && existing.contentId.equals(contentId)
+                  && existing.lastUsed < lastUsed) {
+                putIndexEntry(existing.withLastUsed(lastUsed));
+              }
+            }
+            continue;
+          }
+          if (kind != UNIT_RECORD) {
+            throw new IOException("Unknown record kind " + kind);
+          }
+          long serializationVersion = in.readLong();
+          int length = in.readInt();
+          long offset = counter.getCount();
+          if (offset + length > fileLength) {
+            // The session writing this record was interrupted.
+            break;
+          }
+          skipFully(in, length);
+          if (serializationVersion != GwtAstBuilder.getSerializationVersion()) {
+            continue;
+          }
+          IndexEntry entry = new IndexEntry(resourcePath, contentId, lastModified, lastUsed,
+              cacheFile, offset, length);
+          synchronized (indexByPath) {
+            /*
+             * Files are read oldest first. If the timestamps are the same,
+             * accept the latest version. If it turns out to be stale, it will
+             * be recompiled and the updated unit will win this test the next
+             * time the session starts.
+             */
+            IndexEntry existing = indexByPath.get(resourcePath);
+            if (existing == null || lastModified >= existing.lastModified) {
+              removeIndexEntry(existing);
+              putIndexEntry(entry);
+            }
+          }
+        }
+      } catch (EOFException ex) {
+        // The session writing this file was interrupted; keep what was read.
+      }
+      return fileSessionStamp;
+    } finally {
+      Utility.close(in);
+      Utility.close(counter);
+    }
+  }
+
+  /**
+   * Reads a unit from disk and adds it to the in-memory cache. Returns null if
+   * there is no entry or the unit can't be read.
+   */
+  private CompilationUnit loadUnit(IndexEntry entry) {
+    if (entry == null) {
+      return null;
+    }
+    CachedCompilationUnit unit;
+    try {
+      unit = Util.readStreamAsObject(new ByteArrayInputStream(readRecordBody(entry)),
+          CachedCompilationUnit.class);
+    } catch (IOException ex) {
+      unit = null;
+      if (logger.isLoggable(TreeLogger.TRACE)) {
+        logger.log(TreeLogger.TRACE, "Ignoring unit " + entry.resourcePath + " in cache log "
+            + entry.file.getAbsolutePath() + " due to read error.", ex);
+      }
+    } catch (ClassNotFoundException ex) {
+      unit = null;
+      if (logger.isLoggable(TreeLogger.TRACE)) {
+        logger.log(TreeLogger.TRACE, "Ignoring unit " + entry.resourcePath + " in cache log "
+            + entry.file.getAbsolutePath() + " due to deserialization error.", ex);
+      }
+    }
+    if (unit == null) {
+      synchronized (indexByPath) {
+        removeIndexEntry(entry);
+      }
+      return null;
+    }
+    UnitCacheEntry cacheEntry = new UnitCacheEntry(unit, UnitOrigin.PERSISTENT);
+    // Don't replace a unit added while this one was being read.
+    if (!unitMap.containsKey(unit.getResourcePath())) {
+      unitMap.put(unit.getResourcePath(), cacheEntry);
+      unitMapByContentId.put(unit.getContentId(), cacheEntry);
+    }
+    return unit;
+  }
+
+  private void openCurrentCacheFile() throws IOException {
+    currentCacheFileCounter = new CountingOutputStream(
+        new BufferedOutputStream(new FileOutputStream(currentCacheFile)));
+    currentCacheFileStream = new DataOutputStream(currentCacheFileCounter);
+    currentCacheFileStream.writeInt(FILE_MAGIC);
+    currentCacheFileStream.writeInt(FILE_FORMAT_VERSION);
+    currentCacheFileStream.writeLong(sessionStamp);
+  }
+
+  /**
+   * Must be called while holding the lock on {@link #indexByPath}.
+   */
+  private void putIndexEntry(IndexEntry entry) {
+    IndexEntry old = indexByPath.put(entry.resourcePath, entry);
+    if (old != null && indexByContentId.get(old.contentId) == old) {
+      indexByContentId.remove(old.contentId);
+    }
+    indexByContentId.put(entry.contentId, entry);
+  }
+
+  /**
+   * Logs a reference the first time this session uses a unit that would
+   * otherwise be dropped by the next consolidation.
+   */
+  private void recordUse(String resourcePath) {
+    IndexEntry entry;
+    synchronized (indexByPath) {
+      if (!usedPaths.add(resourcePath)) {
+        return;
+      }
+      entry = indexByPath.get(resourcePath);
+    }
+    if (entry != null && !isInBaseDirectory(entry) && entry.lastUsed < oldestSessionStamp) {
+      addReferenceImpl(entry);
+    }
+  }
+
+  /**
+   * Must be called while holding the lock on {@link #indexByPath}.
+   */
+  private void removeIndexEntry(IndexEntry entry) {
+    if (entry == null) {
+      return;
+    }
+    if (indexByPath.get(entry.resourcePath) == entry) {
+      indexByPath.remove(entry.resourcePath);
+    }
+    if (indexByContentId.get(entry.contentId) == entry) {
+      indexByContentId.remove(entry.contentId);
+    }
+  }
+
+  private void writeRecordHeader(byte kind, String resourcePath, ContentId contentId,
+      long lastModified, long lastUsed) throws IOException {
+    currentCacheFileStream.writeByte(kind);
+    currentCacheFileStream.writeUTF(resourcePath);
+    currentCacheFileStream.writeUTF(contentId.getSourceTypeName());
+    currentCacheFileStream.writeUTF(contentId.get());
+    currentCacheFileStream.writeLong(lastModified);
+    currentCacheFileStream.writeLong(lastUsed);
+  }
+
+  /**
+   * Appends a unit record to the current cache file and returns its index
+   * entry. Flushes, so that the unit can be read back right away.
+   */
+  private IndexEntry writeUnitRecord(String resourcePath, ContentId contentId,
+      long lastModified, long lastUsed, byte[] body) throws IOException {
+    writeRecordHeader(UNIT_RECORD, resourcePath, contentId, lastModified, lastUsed);
+    currentCacheFileStream.writeLong(GwtAstBuilder.getSerializationVersion());
+    currentCacheFileStream.writeInt(body.length);
+    long offset = currentCacheFileCounter.getCount();
+    currentCacheFileStream.write(body);
+    currentCacheFileStream.flush();
+    unitsWritten++;
+    return new IndexEntry(resourcePath, contentId, lastModified, lastUsed, currentCacheFile,
+        offset, body.length);
+  }
 }
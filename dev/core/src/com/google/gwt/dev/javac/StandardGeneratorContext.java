@@ -48,8 +48,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -79,19 +82,21 @@ public class StandardGeneratorContext implements GeneratorContext {
    * into which generators can write their source. A controller should ensure
    * that source isn't requested until the generator has finished writing it.
    * This version is backed by {@link StandardGeneratorContext#diskCache}.
+   * Committed units can be serialized, which lets cached generator results be
+   * saved to disk.
    */
-  public static class GeneratedUnitImpl implements Generated {
+  public static class GeneratedUnitImpl implements Generated, Serializable {
 
     /**
      * A token to retrieve this object's bytes from the disk cache.
      */
-    protected long sourceToken = -1;
+    protected transient long sourceToken = -1;
 
     private long creationTime;
 
     private String strongHash; // cache so that refreshes work correctly
 
-    private StringWriter sw;
+    private transient StringWriter sw;
 
     private final String typeName;
 
@@ -157,6 +162,20 @@ public class StandardGeneratorContext implements GeneratorContext {
     public String optionalFileLocation() {
       return null;
     }
+
+    private void readObject(ObjectInputStream stream) throws IOException,
+        ClassNotFoundException {
+      stream.defaultReadObject();
+      sourceToken = diskCache.transferFromStream(stream);
+    }
+
+    private void writeObject(ObjectOutputStream stream) throws IOException {
+      if (sw != null) {
+        throw new IllegalStateException("source not committed");
+      }
+      stream.defaultWriteObject();
+      diskCache.transferToStream(sourceToken, stream);
+    }
   }
 
   /**
@@ -41,6 +41,10 @@ public class UnitCacheSingleton {
    *
    * Only one instance of the cache is instantiated. If a previously created
    * cache exists, the previous instance is returned.
+   *
+   * If the gwt.persistentunitcachebasedir property is set, units are also
+   * looked up in that directory, which is only read and so can be shared by
+   * many processes.
    */
   public static synchronized UnitCache get(TreeLogger logger, File cacheDir) {
     assert logger != null;
@@ -54,9 +58,11 @@ public class UnitCacheSingleton {
           logger.log(TreeLogger.TRACE, "Persistent caching disabled - no directory specified.\n"
               + "To enable persistent unit caching use -Dgwt.persistentunitcachedir=<dir>");
         }
+        String basePropertyCacheDir = System.getProperty("gwt.persistentunitcachebasedir");
+        File baseCacheDir = basePropertyCacheDir == null ? null : new File(basePropertyCacheDir);
         if (cacheDir != null) {
           try {
-            instance = new PersistentUnitCache(logger, cacheDir);
+            instance = new PersistentUnitCache(logger, cacheDir, baseCacheDir);
             return instance;
           } catch (UnableToCompleteException ignored) {
           }
@@ -20,6 +20,7 @@ import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.dev.CompilerContext;
 import com.google.gwt.dev.PrecompileTaskOptions;
 import com.google.gwt.dev.cfg.ConfigProps;
+import com.google.gwt.dev.cfg.ResourceLoaders;
 import com.google.gwt.dev.javac.CompilationState;
 import com.google.gwt.dev.javac.StandardGeneratorContext;
 import com.google.gwt.dev.jdt.RebindPermutationOracle;
@@ -100,7 +101,9 @@ public class AstConstructor {
     if (options.isRunAsyncEnabled()) {
       ReplaceRunAsyncs.exec(logger, jprogram);
       if (config != null) {
-        CodeSplitters.pickInitialLoadSequence(logger, jprogram, config);
+        // There is no module, so look for a runAsync profile on the class path.
+        CodeSplitters.pickInitialLoadSequence(logger, jprogram, config,
+            ResourceLoaders.forClassLoader(Thread.currentThread()));
       }
     }
 
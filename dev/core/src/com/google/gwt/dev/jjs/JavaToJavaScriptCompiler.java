@@ -79,6 +79,9 @@ import com.google.gwt.dev.jjs.impl.MethodCallSpecializer;
 import com.google.gwt.dev.jjs.impl.MethodCallTightener;
 import com.google.gwt.dev.jjs.impl.MethodInliner;
 import com.google.gwt.dev.jjs.impl.OptimizerStats;
+import com.google.gwt.dev.jjs.impl.OptimizerWorklist;
+import com.google.gwt.dev.jjs.impl.ParallelMethodVisitor;
+import com.google.gwt.dev.jjs.impl.PassProfiler;
 import com.google.gwt.dev.jjs.impl.Pruner;
 import com.google.gwt.dev.jjs.impl.RecordRebinds;
 import com.google.gwt.dev.jjs.impl.ResolveRebinds;
@@ -129,6 +132,7 @@ import com.google.gwt.dev.util.Empty;
 import com.google.gwt.dev.util.Memory;
 import com.google.gwt.dev.util.Name.SourceName;
 import com.google.gwt.dev.util.Pair;
+import com.google.gwt.dev.util.ParallelTasks;
 import com.google.gwt.dev.util.TinyCompileSummary;
 import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.arg.OptionOptimize;
@@ -157,6 +161,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.GZIPInputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -230,6 +237,7 @@ public abstract class JavaToJavaScriptCompiler {
         AST ast = unifiedAst.getFreshAst();
         jprogram = ast.getJProgram();
         jsProgram = ast.getJsProgram();
+        passProfiler = new PassProfiler();
         Map<StandardSymbolData, JsName> symbolTable =
             new TreeMap<StandardSymbolData, JsName>(new SymbolData.ClassIdentComparator());
 
@@ -278,16 +286,21 @@ public abstract class JavaToJavaScriptCompiler {
         }
 
         // (6) Normalize the Js AST
+        passProfiler.startJs("Normalize", jsProgram);
         JsNormalizer.exec(jsProgram);
+        passProfiler.lap("JsNormalizer");
 
         // TODO(stalcup): move to AST construction
         JsSymbolResolver.exec(jsProgram);
+        passProfiler.lap("JsSymbolResolver");
         if (options.getNamespace() == JsNamespaceOption.BY_JAVA_PACKAGE) {
           JsNamespaceChooser.exec(jsProgram, jjsmap);
+          passProfiler.lap("JsNamespaceChooser");
         }
 
         // TODO(stalcup): move to normalization
         EvalFunctionsAtTopScope.exec(jsProgram, jjsmap);
+        passProfiler.lap("EvalFunctionsAtTopScope");
 
         // (7) Optimize the JS AST.
 
@@ -296,27 +309,39 @@ public abstract class JavaToJavaScriptCompiler {
 
         // TODO(stalcup): move to normalization
         // Must run before code splitter and namer.
+        passProfiler.startJs("Finalize", jsProgram);
         JsStackEmulator.exec(jprogram, jsProgram, props, jjsmap);
+        passProfiler.lap("JsStackEmulator");
 
         // TODO(stalcup): move to normalization
         Pair<SyntheticArtifact, MultipleDependencyGraphRecorder> dependenciesAndRecorder =
             splitJsIntoFragments(props, permutationId, jjsmap);
+        passProfiler.lap("CodeSplitter");
 
         // TODO(stalcup): move to optimize.
         Map<JsName, JsLiteral> internedLiteralByVariableName = renameJsSymbols(props);
+        passProfiler.lap("Namer");
 
         // TODO(stalcup): move to normalization
         JsBreakUpLargeVarStatements.exec(jsProgram, props.getConfigProps());
+        passProfiler.lap("JsBreakUpLargeVarStatements");
 
         // (8) Generate Js source
-        List<JsSourceMap> sourceInfoMaps = new ArrayList<JsSourceMap>();
         boolean isSourceMapsEnabled = props.isTrueInAnyPermutation("compiler.useSourceMaps");
+        // Soyc reports need the source info of all fragments at once. Otherwise each fragment's
+        // source map is made as soon as its code is generated, and its source info dropped.
+        List<JsSourceMap> sourceInfoMaps =
+            options.isJsonSoycEnabled() || options.isSoycExtra()
+                ? new ArrayList<JsSourceMap>() : null;
+        List<SyntheticArtifact> sourceMapArtifacts =
+            isSourceMapsEnabled && sourceInfoMaps == null
+                ? new ArrayList<SyntheticArtifact>() : null;
         String[] jsFragments = new String[jsProgram.getFragmentCount()];
         StatementRanges[] ranges = new StatementRanges[jsFragments.length];
         SizeBreakdown[] sizeBreakdowns = options.isJsonSoycEnabled() || options.isSoycEnabled()
             || options.isCompilerMetricsEnabled() ? new SizeBreakdown[jsFragments.length] : null;
         generateJavaScriptCode(jjsmap, jsFragments, ranges, sizeBreakdowns, sourceInfoMaps,
-            isSourceMapsEnabled || options.isJsonSoycEnabled());
+            sourceMapArtifacts, isSourceMapsEnabled || options.isJsonSoycEnabled());
 
         // (9) Construct and return a value
         PermutationResult permutationResult =
@@ -325,7 +350,7 @@ public abstract class JavaToJavaScriptCompiler {
         // TODO(stalcup): hide metrics gathering in a callback or subclass
         addSyntheticArtifacts(unifiedAst, permutation, startTimeMs, permutationId, jjsmap,
             dependenciesAndRecorder, internedLiteralByVariableName, isSourceMapsEnabled, jsFragments,
-            sizeBreakdowns, sourceInfoMaps, permutationResult);
+            sizeBreakdowns, sourceInfoMaps, sourceMapArtifacts, permutationResult);
 
         return permutationResult;
       } catch (Throwable e) {
@@ -377,10 +402,26 @@ public abstract class JavaToJavaScriptCompiler {
       return compilationMetrics;
     }
 
+    private void addPassProfileArtifacts(int permutationId, PermutationResult permutationResult) {
+      if (!passProfiler.isEnabled()) {
+        return;
+      }
+      List<SyntheticArtifact> profileArtifacts = Lists.newArrayList(
+          new SyntheticArtifact(SoycReportLinker.class, "passProfile" + permutationId + ".json",
+              Util.getBytes(passProfiler.toJson())),
+          new SyntheticArtifact(SoycReportLinker.class, "passProfile" + permutationId + ".csv",
+              Util.getBytes(passProfiler.toCsv())));
+      for (SyntheticArtifact artifact : profileArtifacts) {
+        artifact.setVisibility(Visibility.Private);
+      }
+      permutationResult.addArtifacts(profileArtifacts);
+    }
+
     private void addSourceMapArtifacts(int permutationId, JavaToJavaScriptMap jjsmap,
         Pair<SyntheticArtifact, MultipleDependencyGraphRecorder> dependenciesAndRecorder,
         boolean isSourceMapsEnabled, SizeBreakdown[] sizeBreakdowns,
-        List<JsSourceMap> sourceInfoMaps, PermutationResult permutationResult) {
+        List<JsSourceMap> sourceInfoMaps, List<SyntheticArtifact> sourceMapArtifacts,
+        PermutationResult permutationResult) {
       if (options.isJsonSoycEnabled()) {
         // TODO: enable this when ClosureCompiler is enabled
         if (options.isClosureCompilerEnabled()) {
@@ -400,8 +441,12 @@ public abstract class JavaToJavaScriptCompiler {
               + "compiler.useSourceMaps=true; ignoring compiler.useSourceMaps=true.");
         } else {
           logger.log(TreeLogger.INFO, "Source Maps Enabled");
-          permutationResult.addArtifacts(SourceMapRecorder.exec(permutationId, sourceInfoMaps,
-              options.getSourceMapFilePrefix()));
+          if (sourceMapArtifacts != null) {
+            permutationResult.addArtifacts(sourceMapArtifacts);
+          } else {
+            permutationResult.addArtifacts(SourceMapRecorder.exec(permutationId, sourceInfoMaps,
+                options.getSourceMapFilePrefix()));
+          }
         }
       }
     }
@@ -434,23 +479,28 @@ public abstract class JavaToJavaScriptCompiler {
         Pair<SyntheticArtifact, MultipleDependencyGraphRecorder> dependenciesAndRecorder,
         Map<JsName, JsLiteral> internedLiteralByVariableName, boolean isSourceMapsEnabled,
         String[] jsFragments, SizeBreakdown[] sizeBreakdowns,
-        List<JsSourceMap> sourceInfoMaps, PermutationResult permutationResult)
+        List<JsSourceMap> sourceInfoMaps, List<SyntheticArtifact> sourceMapArtifacts,
+        PermutationResult permutationResult)
         throws IOException, UnableToCompleteException {
       CompilationMetricsArtifact compilationMetrics = addCompilerMetricsArtifact(
           unifiedAst, permutation, startTimeMs, sizeBreakdowns, permutationResult);
+      addPassProfileArtifacts(permutationId, permutationResult);
       addSoycArtifacts(unifiedAst, permutationId, jjsmap, dependenciesAndRecorder,
           internedLiteralByVariableName, jsFragments, sizeBreakdowns, sourceInfoMaps,
           permutationResult, compilationMetrics);
       addSourceMapArtifacts(permutationId, jjsmap, dependenciesAndRecorder, isSourceMapsEnabled,
-          sizeBreakdowns, sourceInfoMaps, permutationResult);
+          sizeBreakdowns, sourceInfoMaps, sourceMapArtifacts, permutationResult);
     }
 
     /**
      * Generate Js code from the given Js ASTs. Also produces information about that transformation.
+     * If <code>sourceMapArtifacts</code> is not null, the source map of each fragment is added to
+     * it instead of its source info being kept.
      */
-    private void generateJavaScriptCode(JavaToJavaScriptMap jjsMap, String[] jsFragments,
+    private void generateJavaScriptCode(final JavaToJavaScriptMap jjsMap, String[] jsFragments,
         StatementRanges[] ranges, SizeBreakdown[] sizeBreakdowns,
-        List<JsSourceMap> sourceInfoMaps, boolean sourceMapsEnabled) {
+        List<JsSourceMap> sourceInfoMaps, List<SyntheticArtifact> sourceMapArtifacts,
+        final boolean sourceMapsEnabled) {
 
       boolean useClosureCompiler = options.isClosureCompilerEnabled();
       if (useClosureCompiler) {
@@ -459,52 +509,95 @@ public abstract class JavaToJavaScriptCompiler {
         return;
       }
 
+      final boolean makeSourceMaps = sourceMapArtifacts != null;
+      // Fragments don't share any text, so they can be generated independently. The results
+      // are stored by fragment number, which keeps the output identical to a serial run.
+      List<Callable<FragmentCode>> tasks = Lists.newArrayList();
       for (int i = 0; i < jsFragments.length; i++) {
-        DefaultTextOutput out = new DefaultTextOutput(options.getOutput().shouldMinimize());
-        JsReportGenerationVisitor v = new JsReportGenerationVisitor(out, jjsMap,
-            options.isJsonSoycEnabled());
-        v.accept(jsProgram.getFragmentBlock(i));
-
-        StatementRanges statementRanges = v.getStatementRanges();
-        String code = out.toString();
-        JsSourceMap infoMap = (sourceInfoMaps != null) ? v.getSourceInfoMap() : null;
-
-        JsAbstractTextTransformer transformer =
-            new JsAbstractTextTransformer(code, statementRanges, infoMap) {
-                @Override
-              public void exec() {
-              }
-
-                @Override
-              protected void updateSourceInfoMap() {
-              }
-            };
-
-        /**
-         * Reorder function decls to improve compression ratios. Also restructures the top level
-         * blocks into sub-blocks if they exceed 32767 statements.
-         */
-        Event functionClusterEvent = SpeedTracerLogger.start(CompilerEventType.FUNCTION_CLUSTER);
-        // TODO(cromwellian) move to the Js AST optimization, re-enable sourcemaps + clustering
-        if (!sourceMapsEnabled && options.shouldClusterSimilarFunctions()
-            && options.getNamespace() == JsNamespaceOption.NONE
-            && options.getOutput() == JsOutputOption.OBFUSCATED) {
-          transformer = new JsFunctionClusterer(transformer);
-          transformer.exec();
-        }
-        functionClusterEvent.end();
+        final int fragment = i;
+        tasks.add(new Callable<FragmentCode>() {
+          @Override
+          public FragmentCode call() {
+            return generateFragmentCode(fragment, jjsMap, sourceMapsEnabled, makeSourceMaps);
+          }
+        });
+      }
+      List<FragmentCode> fragmentCodes;
+      try {
+        fragmentCodes = ParallelTasks.invokeAll(tasks,
+            ParallelTasks.getThreadCount(CODE_GEN_THREADS_PROPERTY));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InternalCompilerException("Interrupted while generating JavaScript", e);
+      } catch (ExecutionException e) {
+        throw new InternalCompilerException("Unable to generate JavaScript", e.getCause());
+      }
 
-        jsFragments[i] = transformer.getJs();
-        ranges[i] = transformer.getStatementRanges();
+      for (int i = 0; i < jsFragments.length; i++) {
+        jsFragments[i] = fragmentCodes.get(i).js;
+        ranges[i] = fragmentCodes.get(i).statementRanges;
         if (sizeBreakdowns != null) {
-          sizeBreakdowns[i] = v.getSizeBreakdown();
+          sizeBreakdowns[i] = fragmentCodes.get(i).sizeBreakdown;
         }
         if (sourceInfoMaps != null) {
-          sourceInfoMaps.add(transformer.getSourceInfoMap());
+          sourceInfoMaps.add(fragmentCodes.get(i).sourceInfoMap);
+        }
+        if (makeSourceMaps) {
+          sourceMapArtifacts.add(fragmentCodes.get(i).sourceMap);
         }
       }
     }
 
+    /**
+     * Generates the Js code of a single fragment. Only reads the Js AST, so it may be called
+     * concurrently for different fragments.
+     */
+    private FragmentCode generateFragmentCode(int fragment, JavaToJavaScriptMap jjsMap,
+        boolean sourceMapsEnabled, boolean makeSourceMap) {
+      DefaultTextOutput out = new DefaultTextOutput(options.getOutput().shouldMinimize());
+      JsReportGenerationVisitor v = new JsReportGenerationVisitor(out, jjsMap,
+          options.isJsonSoycEnabled());
+      v.accept(jsProgram.getFragmentBlock(fragment));
+
+      StatementRanges statementRanges = v.getStatementRanges();
+      String code = out.toString();
+      JsSourceMap infoMap = v.getSourceInfoMap();
+
+      JsAbstractTextTransformer transformer =
+          new JsAbstractTextTransformer(code, statementRanges, infoMap) {
+              @Override
+            public void exec() {
+            }
+
+              @Override
+            protected void updateSourceInfoMap() {
+            }
+          };
+
+      /**
+       * Reorder function decls to improve compression ratios. Also restructures the top level
+       * blocks into sub-blocks if they exceed 32767 statements.
+       */
+      Event functionClusterEvent = SpeedTracerLogger.start(CompilerEventType.FUNCTION_CLUSTER);
+      // TODO(cromwellian) move to the Js AST optimization, re-enable sourcemaps + clustering
+      if (!sourceMapsEnabled && options.shouldClusterSimilarFunctions()
+          && options.getNamespace() == JsNamespaceOption.NONE
+          && options.getOutput() == JsOutputOption.OBFUSCATED) {
+        transformer = new JsFunctionClusterer(transformer);
+        transformer.exec();
+      }
+      functionClusterEvent.end();
+
+      if (makeSourceMap) {
+        SyntheticArtifact sourceMap = SourceMapRecorder.exec(permutation.getId(), fragment,
+            transformer.getSourceInfoMap(), options.getSourceMapFilePrefix());
+        return new FragmentCode(transformer.getJs(), transformer.getStatementRanges(),
+            v.getSizeBreakdown(), null, sourceMap);
+      }
+      return new FragmentCode(transformer.getJs(), transformer.getStatementRanges(),
+          v.getSizeBreakdown(), transformer.getSourceInfoMap(), null);
+    }
+
     private Collection<? extends Artifact<?>> makeSoycArtifacts(int permutationId, String[] js,
         SizeBreakdown[] sizeBreakdowns, List<JsSourceMap> sourceInfoMaps,
         SyntheticArtifact dependencies, JavaToJavaScriptMap jjsmap,
@@ -708,13 +801,14 @@ public abstract class JavaToJavaScriptCompiler {
         Event optimizeJsEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE_JS);
 
         OptimizerStats stats = new OptimizerStats("Pass " + counter);
+        passProfiler.startJs(stats.getName(), jsProgram);
 
         // Remove unused functions if possible.
-        stats.add(JsStaticEval.exec(jsProgram));
+        stats.add(passProfiler.lap(JsStaticEval.exec(jsProgram)));
         // Inline Js function invocations
-        stats.add(JsInliner.exec(jsProgram, toInline));
+        stats.add(passProfiler.lap(JsInliner.exec(jsProgram, toInline)));
         // Remove unused functions if possible.
-        stats.add(JsUnusedFunctionRemover.exec(jsProgram));
+        stats.add(passProfiler.lap(JsUnusedFunctionRemover.exec(jsProgram)));
 
         // Save the stats to print out after optimizers finish.
         allOptimizerStats.add(stats);
@@ -881,7 +975,8 @@ public abstract class JavaToJavaScriptCompiler {
         if (module != null && options.isRunAsyncEnabled()) {
           ReplaceRunAsyncs.exec(logger, jprogram);
           ConfigProps config = new ConfigProps(module);
-          CodeSplitters.pickInitialLoadSequence(logger, jprogram, config);
+          CodeSplitters.pickInitialLoadSequence(logger, jprogram, config,
+              module.getResourceLoader());
         }
         ImplementClassLiteralsAsFields.exec(jprogram);
 
@@ -1031,7 +1126,15 @@ public abstract class JavaToJavaScriptCompiler {
            * compiles, so let's avoid doing potentially superlinear optimizations on the unified
            * AST.
            */
-          optimizeJavaOneTime("Early Optimization", jprogram.getNodeCount());
+          ExecutorService optimizerExecutor = ParallelMethodVisitor.newExecutor();
+          try {
+            optimizeJavaOneTime("Early Optimization", jprogram.getNodeCount(), null,
+                optimizerExecutor);
+          } finally {
+            if (optimizerExecutor != null) {
+              optimizerExecutor.shutdownNow();
+            }
+          }
         }
       }
     }
@@ -1154,6 +1257,26 @@ public abstract class JavaToJavaScriptCompiler {
     }
   }
 
+  /**
+   * The generated Js code of one fragment, together with information about that code.
+   */
+  private static class FragmentCode {
+    private final String js;
+    private final SizeBreakdown sizeBreakdown;
+    private final JsSourceMap sourceInfoMap;
+    private final SyntheticArtifact sourceMap;
+    private final StatementRanges statementRanges;
+
+    private FragmentCode(String js, StatementRanges statementRanges,
+        SizeBreakdown sizeBreakdown, JsSourceMap sourceInfoMap, SyntheticArtifact sourceMap) {
+      this.js = js;
+      this.statementRanges = statementRanges;
+      this.sizeBreakdown = sizeBreakdown;
+      this.sourceInfoMap = sourceInfoMap;
+      this.sourceMap = sourceMap;
+    }
+  }
+
   private static class PermutationResultImpl implements PermutationResult {
 
     private final ArtifactSet artifacts = new ArtifactSet();
@@ -1224,6 +1347,18 @@ public abstract class JavaToJavaScriptCompiler {
    */
   private static final float EFFICIENT_CHANGE_RATE = 0.01f;
 
+  /**
+   * A Java system property that sets how many threads generate the Js code of the fragments of
+   * a permutation. Defaults to one.
+   */
+  public static final String CODE_GEN_THREADS_PROPERTY = "gwt.jjs.codeGenThreads";
+
+  /**
+   * A Java system property that, when true, makes method-local optimizations revisit only the
+   * methods affected by the previous passes instead of the whole program.
+   */
+  public static final String WORKLIST_OPTIMIZATIONS_PROPERTY = "gwt.jjs.worklistOptimizations";
+
   private static final String ENUM_NAME_OBFUSCATION_PROPERTY = "compiler.enum.obfuscate.names";
 
   /**
@@ -1252,6 +1387,12 @@ public abstract class JavaToJavaScriptCompiler {
 
   protected final PrecompileTaskOptions options;
 
+  /**
+   * Records the cost of the optimization passes of the current permutation; see
+   * {@link PassProfiler#PROPERTY}.
+   */
+  protected PassProfiler passProfiler = new PassProfiler();
+
   @VisibleForTesting
   JProgram jprogram;
 
@@ -1294,31 +1435,43 @@ public abstract class JavaToJavaScriptCompiler {
     boolean atMaxLevel = options.getOptimizationLevel() == OptionOptimize.OPTIMIZE_LEVEL_MAX;
     int passLimit = atMaxLevel ? MAX_PASSES : options.getOptimizationLevel();
     float minChangeRate = atMaxLevel ? FIXED_POINT_CHANGE_RATE : EFFICIENT_CHANGE_RATE;
-    while (true) {
-      passCount++;
-      if (passCount > passLimit) {
-        break;
-      }
-      if (Thread.interrupted()) {
-        optimizeEvent.end();
-        throw new InterruptedException();
+    OptimizerWorklist worklist = Boolean.getBoolean(WORKLIST_OPTIMIZATIONS_PROPERTY)
+        ? new OptimizerWorklist(jprogram) : null;
+    // One pool of optimizer threads for all the passes.
+    ExecutorService optimizerExecutor = ParallelMethodVisitor.newExecutor();
+    try {
+      while (true) {
+        passCount++;
+        if (passCount > passLimit) {
+          break;
+        }
+        if (Thread.interrupted()) {
+          optimizeEvent.end();
+          throw new InterruptedException();
+        }
+        AstDumper.maybeDumpAST(jprogram);
+        OptimizerStats stats = optimizeJavaOneTime("Pass " + passCount, nodeCount, worklist,
+            optimizerExecutor);
+        allOptimizerStats.add(stats);
+        lastNodeCount = nodeCount;
+        nodeCount = jprogram.getNodeCount();
+
+        float nodeChangeRate = stats.getNumMods() / (float) lastNodeCount;
+        float sizeChangeRate = (lastNodeCount - nodeCount) / (float) lastNodeCount;
+        if (nodeChangeRate <= minChangeRate && sizeChangeRate <= minChangeRate) {
+          break;
+        }
       }
-      AstDumper.maybeDumpAST(jprogram);
-      OptimizerStats stats = optimizeJavaOneTime("Pass " + passCount, nodeCount);
-      allOptimizerStats.add(stats);
-      lastNodeCount = nodeCount;
-      nodeCount = jprogram.getNodeCount();
-
-      float nodeChangeRate = stats.getNumMods() / (float) lastNodeCount;
-      float sizeChangeRate = (lastNodeCount - nodeCount) / (float) lastNodeCount;
-      if (nodeChangeRate <= minChangeRate && sizeChangeRate <= minChangeRate) {
-        break;
+    } finally {
+      if (optimizerExecutor != null) {
+        optimizerExecutor.shutdownNow();
       }
     }
 
     if (options.shouldOptimizeDataflow()) {
       // Just run it once, because it is very time consuming
-      allOptimizerStats.add(DataflowOptimizer.exec(jprogram));
+      passProfiler.startJava("Dataflow", jprogram);
+      allOptimizerStats.add(passProfiler.lap(DataflowOptimizer.exec(jprogram)));
     }
 
     printJavaOptimizeTrace(allOptimizerStats);
@@ -1337,24 +1490,39 @@ public abstract class JavaToJavaScriptCompiler {
     }
   }
 
-  private OptimizerStats optimizeJavaOneTime(String passName, int numNodes) {
+  /**
+   * Runs every optimization once. When <code>worklist</code> is not null, the method-local
+   * optimizations only revisit the methods affected since their previous run. Those that can run
+   * in parallel use the threads of <code>executor</code> when it is not null.
+   */
+  private OptimizerStats optimizeJavaOneTime(String passName, int numNodes,
+      OptimizerWorklist worklist, ExecutorService executor) {
     Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE, "phase", "loop");
     // Clinits might have become empty become empty.
     jprogram.typeOracle.recomputeAfterOptimizations(jprogram.getDeclaredTypes());
     OptimizerStats stats = new OptimizerStats(passName);
-    stats.add(Pruner.exec(jprogram, true).recordVisits(numNodes));
-    stats.add(Finalizer.exec(jprogram).recordVisits(numNodes));
-    stats.add(MakeCallsStatic.exec(options, jprogram).recordVisits(numNodes));
-    stats.add(TypeTightener.exec(jprogram).recordVisits(numNodes));
-    stats.add(MethodCallTightener.exec(jprogram).recordVisits(numNodes));
-    stats.add(MethodCallSpecializer.exec(jprogram).recordVisits(numNodes));
-    stats.add(DeadCodeElimination.exec(jprogram).recordVisits(numNodes));
-    stats.add(MethodInliner.exec(jprogram).recordVisits(numNodes));
+    passProfiler.startJava(passName, jprogram);
+    stats.add(passProfiler.lap(Pruner.exec(jprogram, true).recordVisits(numNodes)));
+    stats.add(passProfiler.lap(Finalizer.exec(jprogram).recordVisits(numNodes)));
+    stats.add(passProfiler.lap(MakeCallsStatic.exec(options, jprogram).recordVisits(numNodes)));
+    stats.add(passProfiler.lap(TypeTightener.exec(jprogram).recordVisits(numNodes)));
+    stats.add(passProfiler.lap(MethodCallTightener.exec(jprogram).recordVisits(numNodes)));
+    stats.add(passProfiler.lap(MethodCallSpecializer.exec(jprogram).recordVisits(numNodes)));
+    if (worklist != null) {
+      stats.add(passProfiler.lap(
+          DeadCodeElimination.exec(jprogram, worklist, executor).recordVisits(numNodes)));
+      stats.add(passProfiler.lap(MethodInliner.exec(jprogram, worklist).recordVisits(numNodes)));
+    } else {
+      stats.add(passProfiler.lap(
+          DeadCodeElimination.exec(jprogram, executor).recordVisits(numNodes)));
+      stats.add(passProfiler.lap(MethodInliner.exec(jprogram).recordVisits(numNodes)));
+    }
     if (options.shouldInlineLiteralParameters()) {
-      stats.add(SameParameterValueOptimizer.exec(jprogram).recordVisits(numNodes));
+      stats.add(passProfiler.lap(
+          SameParameterValueOptimizer.exec(jprogram).recordVisits(numNodes)));
     }
     if (options.shouldOrdinalizeEnums()) {
-      stats.add(EnumOrdinalizer.exec(jprogram).recordVisits(numNodes));
+      stats.add(passProfiler.lap(EnumOrdinalizer.exec(jprogram).recordVisits(numNodes)));
     }
     optimizeEvent.end();
     return stats;
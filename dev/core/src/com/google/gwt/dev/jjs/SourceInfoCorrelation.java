@@ -55,10 +55,11 @@ public class SourceInfoCorrelation implements SourceInfo {
   }
 
   /**
-   * Add a Correlation to the SourceInfo.
+   * Add a Correlation to the SourceInfo. Synchronized since optimizers running on several threads
+   * may share a SourceInfo.
    */
   @Override
-  public void addCorrelation(Correlation c) {
+  public synchronized void addCorrelation(Correlation c) {
     if (primaryCorrelations == null) {
       primaryCorrelations = new Correlation[NUM_AXES];
     }
@@ -153,14 +153,16 @@ public class UnifiedAst implements Serializable {
         AST result = initialAst;
         initialAst = null;
         return result;
-      } else {
-        if (serializedAstToken < 0) {
-          throw new IllegalStateException(
-              "No serialized AST was cached and AST was already consumed.");
-        }
-        return diskCache.readObject(serializedAstToken, AST.class);
+      }
+      if (serializedAstToken < 0) {
+        throw new IllegalStateException(
+            "No serialized AST was cached and AST was already consumed.");
       }
     }
+    // The serialized form never changes once written, so deserialize outside the lock; this is
+    // by far the most expensive part and threaded permutation workers would otherwise take
+    // turns doing it.
+    return diskCache.readObject(serializedAstToken, AST.class);
   }
 
   /**
@@ -170,6 +172,14 @@ public class UnifiedAst implements Serializable {
     return moduleMetrics;
   }
 
+  /**
+   * Returns the size in bytes of the serialized AST that {@link #getFreshAst()} deserializes, or
+   * -1 if the AST was not serialized because only one permutation will be compiled.
+   */
+  public long getSerializedAstSize() {
+    return serializedAstToken < 0 ? -1 : diskCache.getByteArrayLength(serializedAstToken);
+  }
+
   /**
    * Returns the active set of JJS options associated with this compile.
    */
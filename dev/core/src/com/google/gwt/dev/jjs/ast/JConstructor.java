@@ -138,10 +138,14 @@ public class JConstructor extends JMethod {
   @Override
   public void traverse(JVisitor visitor, Context ctx) {
     String before = traceBefore(visitor);
+    int numModsBefore = JModVisitor.getNumMods(visitor);
     if (visitor.visit(this, ctx)) {
       visitChildren(visitor);
     }
     visitor.endVisit(this, ctx);
+    if (JModVisitor.getNumMods(visitor) != numModsBefore) {
+      markModified();
+    }
     traceAfter(visitor, before);
   }
 
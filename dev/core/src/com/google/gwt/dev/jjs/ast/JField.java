@@ -94,6 +94,13 @@ public class JField extends JVariable implements CanBeStatic, HasEnclosingType {
   private final boolean isStatic;
   private final boolean isThisRef;
   private boolean isVolatile;
+
+  /**
+   * When this field was last changed by a visitor; not serialized since stamps are only
+   * meaningful within the current process.
+   */
+  private transient long modificationStamp = JModVisitor.nextModificationStamp();
+
   private transient String signature;
 
   public JField(SourceInfo info, String name, JDeclaredType enclosingType, JType type,
@@ -156,6 +163,15 @@ public class JField extends JVariable implements CanBeStatic, HasEnclosingType {
     return isStatic;
   }
 
+  /**
+   * Returns true if this field was created or changed by a {@link JModVisitor} after the given
+   * {@link JModVisitor#getModificationStamp() stamp} was taken. Changes to the initializer are
+   * made within the enclosing type's initializer methods and are not tracked here.
+   */
+  public boolean isModifiedSince(long stamp) {
+    return modificationStamp > stamp;
+  }
+
   public boolean isThisRef() {
     return isThisRef;
   }
@@ -186,10 +202,14 @@ public class JField extends JVariable implements CanBeStatic, HasEnclosingType {
 
   @Override
   public void traverse(JVisitor visitor, Context ctx) {
+    int numModsBefore = JModVisitor.getNumMods(visitor);
     if (visitor.visit(this, ctx)) {
       // Do not visit declStmt, it gets visited within its own code block.
     }
     visitor.endVisit(this, ctx);
+    if (JModVisitor.getNumMods(visitor) != numModsBefore) {
+      modificationStamp = JModVisitor.nextModificationStamp();
+    }
   }
 
   protected Object writeReplace() {
@@ -207,6 +207,13 @@ public class JMethod extends JNode implements HasEnclosingType, HasName, HasType
   private boolean isFinal;
   private final boolean isStatic;
   private boolean isSynthetic = false;
+
+  /**
+   * When this method was last changed by a visitor; not serialized since stamps are only
+   * meaningful within the current process.
+   */
+  private transient long modificationStamp = JModVisitor.nextModificationStamp();
+
   private final String name;
 
   private List<JType> originalParamTypes;
@@ -428,6 +435,14 @@ public class JMethod extends JNode implements HasEnclosingType, HasName, HasType
     return isFinal;
   }
 
+  /**
+   * Returns true if this method, including its signature and body, was created or changed by a
+   * {@link JModVisitor} after the given {@link JModVisitor#getModificationStamp() stamp} was taken.
+   */
+  public boolean isModifiedSince(long stamp) {
+    return modificationStamp > stamp;
+  }
+
   @Override
   public boolean isNative() {
     if (body == null) {
@@ -544,13 +559,21 @@ public class JMethod extends JNode implements HasEnclosingType, HasName, HasType
   public void traverse(JVisitor visitor, Context ctx) {
     String before = null;
     before = traceBefore(visitor);
+    int numModsBefore = JModVisitor.getNumMods(visitor);
     if (visitor.visit(this, ctx)) {
       visitChildren(visitor);
     }
     visitor.endVisit(this, ctx);
+    if (JModVisitor.getNumMods(visitor) != numModsBefore) {
+      markModified();
+    }
     traceAfter(visitor, before);
   }
 
+  void markModified() {
+    modificationStamp = JModVisitor.nextModificationStamp();
+  }
+
   protected void traceAfter(JVisitor visitor, String before) {
     if (trace && visitor instanceof JModVisitor) {
       String after = this.toSource();
@@ -19,6 +19,7 @@ import com.google.gwt.dev.jjs.InternalCompilerException;
 import com.google.gwt.dev.util.collect.Lists;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A visitor for iterating through and modifying an AST.
@@ -269,6 +270,30 @@ public class JModVisitor extends JVisitor {
     }
   }
 
+  /**
+   * Orders the modifications made to methods and fields by all visitors.
+   */
+  private static final AtomicLong lastModificationStamp = new AtomicLong();
+
+  /**
+   * Returns a stamp that can later be passed to {@link JMethod#isModifiedSince(long)} and
+   * {@link JField#isModifiedSince(long)}.
+   */
+  public static long getModificationStamp() {
+    return lastModificationStamp.get();
+  }
+
+  static long nextModificationStamp() {
+    return lastModificationStamp.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of changes made so far by a visitor, zero if it cannot modify the tree.
+   */
+  static int getNumMods(JVisitor visitor) {
+    return visitor instanceof JModVisitor ? ((JModVisitor) visitor).numVisitorChanges : 0;
+  }
+
   protected static void checkReplacement(JNode origNode, JNode newNode) {
     if (newNode == null) {
       throw new InternalCompilerException("Cannot replace with null");
@@ -20,6 +20,7 @@ import com.google.gwt.dev.jjs.InternalCompilerException;
 import com.google.gwt.dev.jjs.SourceInfo;
 import com.google.gwt.dev.jjs.SourceOrigin;
 import com.google.gwt.dev.jjs.impl.codesplitter.FragmentPartitioningResult;
+import com.google.gwt.dev.jjs.impl.codesplitter.RunAsyncProfile;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
@@ -324,6 +325,11 @@ public class JProgram extends JNode implements ArrayTypeCreator {
 
   private List<Integer> initialFragmentIdSequence = Lists.newArrayList();
 
+  /**
+   * The recorded runAsync load sequences used to lay out fragments, or null if there are none.
+   */
+  private RunAsyncProfile runAsyncProfile;
+
   private String runtimeRebindRegistratorTypeName;
 
   private final Map<JMethod, JMethod> staticToInstanceMap = Maps.newIdentityHashMap();
@@ -852,6 +858,10 @@ public class JProgram extends JNode implements ArrayTypeCreator {
     return propertyProviderRegistratorTypeSourceName;
   }
 
+  public RunAsyncProfile getRunAsyncProfile() {
+    return runAsyncProfile;
+  }
+
   public List<JRunAsync> getRunAsyncs() {
     return runAsyncs;
   }
@@ -1056,6 +1066,10 @@ public class JProgram extends JNode implements ArrayTypeCreator {
     this.initialFragmentIdSequence = initialFragmentIdSequence;
   }
 
+  public void setRunAsyncProfile(RunAsyncProfile runAsyncProfile) {
+    this.runAsyncProfile = runAsyncProfile;
+  }
+
   public void setRunAsyncs(List<JRunAsync> runAsyncs) {
     this.runAsyncs = ImmutableList.copyOf(runAsyncs);
   }
@@ -27,6 +27,7 @@ import com.google.gwt.dev.jjs.ast.JCastOperation;
 import com.google.gwt.dev.jjs.ast.JCharLiteral;
 import com.google.gwt.dev.jjs.ast.JClassType;
 import com.google.gwt.dev.jjs.ast.JConditional;
+import com.google.gwt.dev.jjs.ast.JConstructor;
 import com.google.gwt.dev.jjs.ast.JContinueStatement;
 import com.google.gwt.dev.jjs.ast.JDeclarationStatement;
 import com.google.gwt.dev.jjs.ast.JDeclaredType;
@@ -70,12 +71,15 @@ import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Removes certain kinds of dead code, and simplifies certain expressions. This
@@ -1867,11 +1871,48 @@ public class DeadCodeElimination {
   public static final String NAME = DeadCodeElimination.class.getSimpleName();
 
   public static OptimizerStats exec(JProgram program) {
-    return new DeadCodeElimination(program).execImpl(program);
+    return exec(program, (ExecutorService) null);
+  }
+
+  /**
+   * Simplifies the methods on the threads of <code>executor</code>, or serially if it is null.
+   */
+  public static OptimizerStats exec(JProgram program, ExecutorService executor) {
+    if (executor != null) {
+      return new DeadCodeElimination(program).execImplInParallel(executor,
+          ParallelMethodVisitor.getOptimizableMethods(program));
+    }
+    return new DeadCodeElimination(program).execImpl(Collections.singleton(program));
   }
 
   public static OptimizerStats exec(JProgram program, JNode node) {
-    return new DeadCodeElimination(program).execImpl(node);
+    return new DeadCodeElimination(program).execImpl(Collections.singleton(node));
+  }
+
+  /**
+   * Only visits the methods that might have become simplifiable since the last run that used
+   * <code>worklist</code>, on the threads of <code>executor</code> if it is not null.
+   */
+  public static OptimizerStats exec(JProgram program, OptimizerWorklist worklist,
+      ExecutorService executor) {
+    Set<JMethod> methods = worklist.startRun(NAME);
+    if (methods == null) {
+      return exec(program, executor);
+    }
+    if (executor != null) {
+      return new DeadCodeElimination(program).execImplInParallel(executor,
+          new ArrayList<JMethod>(methods));
+    }
+    return new DeadCodeElimination(program).execImpl(methods);
+  }
+
+  /**
+   * Whether other methods look into the body of <code>method</code> while being simplified:
+   * constructors are checked for emptiness and initializers hold the values of constant fields.
+   */
+  private static boolean isReadByOtherMethods(JMethod method) {
+    return method instanceof JConstructor || method.getName().equals("$clinit")
+        || method.getName().equals("$init");
   }
 
   private final JProgram program;
@@ -1892,14 +1933,50 @@ public class DeadCodeElimination {
     typeClassMap.put(program.getTypePrimitiveShort(), short.class);
   }
 
-  private OptimizerStats execImpl(JNode node) {
+  private OptimizerStats execImpl(Collection<? extends JNode> nodes) {
     OptimizerStats stats = new OptimizerStats(NAME);
     Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE, "optimizer", NAME);
 
     DeadCodeVisitor deadCodeVisitor = new DeadCodeVisitor();
-    deadCodeVisitor.accept(node);
+    for (JNode node : nodes) {
+      deadCodeVisitor.accept(node);
+    }
     stats.recordModified(deadCodeVisitor.getNumMods());
     optimizeEvent.end("didChange", "" + stats.didChange());
     return stats;
   }
+
+  /**
+   * Simplifies the methods that other methods read serially first, so that the concurrent
+   * simplification of the remaining methods gives the same result in every run.
+   */
+  private OptimizerStats execImplInParallel(ExecutorService executor, List<JMethod> methods) {
+    OptimizerStats stats = new OptimizerStats(NAME);
+    Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE, "optimizer", NAME);
+
+    List<JMethod> serialMethods = new ArrayList<JMethod>();
+    List<JMethod> parallelMethods = new ArrayList<JMethod>();
+    for (JMethod method : methods) {
+      if (isReadByOtherMethods(method)) {
+        serialMethods.add(method);
+      } else {
+        parallelMethods.add(method);
+      }
+    }
+
+    DeadCodeVisitor deadCodeVisitor = new DeadCodeVisitor();
+    for (JMethod method : serialMethods) {
+      deadCodeVisitor.accept(method);
+    }
+    stats.recordModified(deadCodeVisitor.getNumMods());
+    stats.recordModified(ParallelMethodVisitor.accept(executor, parallelMethods,
+        new ParallelMethodVisitor.VisitorFactory() {
+          @Override
+          public JModVisitor create() {
+            return new DeadCodeVisitor();
+          }
+        }));
+    optimizeEvent.end("didChange", "" + stats.didChange());
+    return stats;
+  }
 }
@@ -526,7 +526,19 @@ public class MethodInliner {
 
   public static OptimizerStats exec(JProgram program) {
     Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE, "optimizer", NAME);
-    OptimizerStats stats = new MethodInliner(program).execImpl();
+    OptimizerStats stats = new MethodInliner(program).execImpl(null, null);
+    optimizeEvent.end("didChange", "" + stats.didChange());
+    return stats;
+  }
+
+  /**
+   * Only visits the methods that might contain newly inlinable calls since the last run that used
+   * <code>worklist</code>.
+   */
+  public static OptimizerStats exec(JProgram program, OptimizerWorklist worklist) {
+    Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE, "optimizer", NAME);
+    OptimizerStats stats =
+        new MethodInliner(program).execImpl(worklist.startRun(NAME), worklist);
     optimizeEvent.end("didChange", "" + stats.didChange());
     return stats;
   }
@@ -539,11 +551,22 @@ public class MethodInliner {
     this.program = program;
   }
 
-  private OptimizerStats execImpl() {
+  /**
+   * Visits <code>methods</code>, or the whole program if null. When a worklist is given, later
+   * rounds only revisit the methods that were just modified and their callers, since calls
+   * elsewhere were already found not to be inlinable.
+   */
+  private OptimizerStats execImpl(Set<JMethod> methods, OptimizerWorklist worklist) {
     OptimizerStats stats = new OptimizerStats(NAME);
     while (true) {
       InliningVisitor inliner = new InliningVisitor();
-      inliner.accept(program);
+      if (methods == null) {
+        inliner.accept(program);
+      } else {
+        for (JMethod method : methods) {
+          inliner.accept(method);
+        }
+      }
       stats.recordModified(inliner.getNumMods());
       if (!inliner.didChange()) {
         break;
@@ -554,6 +577,11 @@ public class MethodInliner {
         OptimizerStats innerStats = DeadCodeElimination.exec(program, method);
         stats.recordModified(innerStats.getNumMods());
       }
+
+      if (worklist != null) {
+        methods = Sets.newLinkedHashSet(inliner.modifiedMethods);
+        methods.addAll(worklist.getCallers(inliner.modifiedMethods));
+      }
     }
     return stats;
   }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.ast.Context;
+import com.google.gwt.dev.jjs.ast.JDeclaredType;
+import com.google.gwt.dev.jjs.ast.JField;
+import com.google.gwt.dev.jjs.ast.JFieldRef;
+import com.google.gwt.dev.jjs.ast.JMethod;
+import com.google.gwt.dev.jjs.ast.JMethodCall;
+import com.google.gwt.dev.jjs.ast.JModVisitor;
+import com.google.gwt.dev.jjs.ast.JNode;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.jjs.ast.JVisitor;
+import com.google.gwt.dev.jjs.ast.js.JsniFieldRef;
+import com.google.gwt.dev.jjs.ast.js.JsniMethodRef;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lets optimizations that look at one method at a time revisit only the methods that might have
+ * become optimizable since they last ran, instead of the whole program.
+ * <p>
+ * A method is revisited when it was modified, when it references a method or field that was
+ * modified, or when it references a member of a type whose static initialization changed.
+ * Modifications are recorded by {@link JModVisitor} on the methods and fields it traverses.
+ * Skipping a method can only miss an optimization, never produce incorrect code.
+ * <p>
+ * Like a traversal of the whole program, only the methods of types that are not reference-only
+ * are ever returned.
+ */
+public class OptimizerWorklist {
+
+  /**
+   * The methods, fields and types referenced from a method body.
+   */
+  private static class References {
+    private final Set<JNode> members;
+    private final long stamp;
+
+    private References(Set<JNode> members, long stamp) {
+      this.members = members;
+      this.stamp = stamp;
+    }
+  }
+
+  private static class ReferenceCollector extends JVisitor {
+    private final Set<JNode> members = Sets.newIdentityHashSet();
+
+    @Override
+    public void endVisit(JFieldRef x, Context ctx) {
+      addMember(x.getField(), x.getField().getEnclosingType());
+    }
+
+    @Override
+    public void endVisit(JMethodCall x, Context ctx) {
+      addMember(x.getTarget(), x.getTarget().getEnclosingType());
+    }
+
+    @Override
+    public void endVisit(JsniFieldRef x, Context ctx) {
+      addMember(x.getField(), x.getField().getEnclosingType());
+    }
+
+    @Override
+    public void endVisit(JsniMethodRef x, Context ctx) {
+      addMember(x.getTarget(), x.getTarget().getEnclosingType());
+    }
+
+    private void addMember(JNode member, JDeclaredType enclosingType) {
+      members.add(member);
+      if (enclosingType != null) {
+        members.add(enclosingType);
+      }
+    }
+  }
+
+  /**
+   * The state of the program when an optimization last started.
+   */
+  private static class Run {
+    private final Map<JDeclaredType, JDeclaredType> clinitTargets;
+    private final long stamp;
+
+    private Run(Map<JDeclaredType, JDeclaredType> clinitTargets, long stamp) {
+      this.clinitTargets = clinitTargets;
+      this.stamp = stamp;
+    }
+  }
+
+  private final JProgram program;
+
+  private Map<JMethod, References> referencesByMethod = Maps.newIdentityHashMap();
+
+  /**
+   * The methods that reference each method, field or type, rebuilt on every run.
+   */
+  private Map<JNode, Set<JMethod>> callersByMember = Maps.newIdentityHashMap();
+
+  /**
+   * The position of each method in the program when the last run started.
+   */
+  private Map<JMethod, Integer> methodOrder = Maps.newIdentityHashMap();
+
+  private final Map<String, Run> lastRunByOptimizer = Maps.newHashMap();
+
+  public OptimizerWorklist(JProgram program) {
+    this.program = program;
+  }
+
+  /**
+   * Returns the methods that directly reference any of the given methods, in program order. The
+   * given methods must include every method that was modified since the last call or the start of
+   * the run, since what they reference is looked up again.
+   */
+  public Set<JMethod> getCallers(Collection<JMethod> methods) {
+    for (JMethod method : methods) {
+      if (methodOrder.containsKey(method)) {
+        updateCallers(method);
+      }
+    }
+
+    List<JMethod> callers = Lists.newArrayList();
+    Set<JMethod> seen = Sets.newIdentityHashSet();
+    for (JMethod method : methods) {
+      Set<JMethod> methodCallers = callersByMember.get(method);
+      if (methodCallers == null) {
+        continue;
+      }
+      for (JMethod caller : methodCallers) {
+        if (seen.add(caller)) {
+          callers.add(caller);
+        }
+      }
+    }
+    Collections.sort(callers, new Comparator<JMethod>() {
+      @Override
+      public int compare(JMethod a, JMethod b) {
+        return methodOrder.get(a) - methodOrder.get(b);
+      }
+    });
+    return Sets.newLinkedHashSet(callers);
+  }
+
+  /**
+   * Records that an optimization is about to run and returns the methods it should visit, in
+   * program order. Returns <code>null</code> when the whole program should be visited, which is
+   * the case for the first run of each optimization.
+   */
+  public Set<JMethod> startRun(String optimizerName) {
+    Map<JDeclaredType, JDeclaredType> clinitTargets = Maps.newIdentityHashMap();
+    for (JDeclaredType type : program.getDeclaredTypes()) {
+      clinitTargets.put(type, type.getClinitTarget());
+    }
+    Run lastRun = lastRunByOptimizer.put(optimizerName,
+        new Run(clinitTargets, JModVisitor.getModificationStamp()));
+
+    Set<JDeclaredType> changedTypes = Sets.newIdentityHashSet();
+    if (lastRun != null) {
+      for (JDeclaredType type : program.getDeclaredTypes()) {
+        if (clinitTargets.get(type) != lastRun.clinitTargets.get(type)
+            || isClinitModifiedSince(type, lastRun.stamp)) {
+          changedTypes.add(type);
+        }
+      }
+    }
+
+    // Rebuilding the maps drops the methods that were pruned.
+    Map<JMethod, References> previousReferencesByMethod = referencesByMethod;
+    referencesByMethod = Maps.newIdentityHashMap();
+    callersByMember = Maps.newIdentityHashMap();
+    methodOrder = Maps.newIdentityHashMap();
+    Set<JMethod> methods = Sets.newLinkedHashSet();
+    for (JDeclaredType type : program.getModuleDeclaredTypes()) {
+      for (JMethod method : type.getMethods()) {
+        References references = previousReferencesByMethod.get(method);
+        if (references != null) {
+          referencesByMethod.put(method, references);
+        }
+        references = getReferences(method);
+        methodOrder.put(method, methodOrder.size());
+        addCallers(method, references.members);
+        if (lastRun != null && (method.isModifiedSince(lastRun.stamp)
+            || isAnyModifiedSince(references.members, lastRun.stamp, changedTypes))) {
+          methods.add(method);
+        }
+      }
+    }
+    return lastRun == null ? null : methods;
+  }
+
+  private void addCallers(JMethod caller, Set<JNode> members) {
+    for (JNode member : members) {
+      Set<JMethod> callers = callersByMember.get(member);
+      if (callers == null) {
+        callers = Sets.newLinkedHashSet();
+        callersByMember.put(member, callers);
+      }
+      callers.add(caller);
+    }
+  }
+
+  private References getReferences(JMethod method) {
+    References references = referencesByMethod.get(method);
+    if (references == null || method.isModifiedSince(references.stamp)) {
+      long stamp = JModVisitor.getModificationStamp();
+      ReferenceCollector collector = new ReferenceCollector();
+      collector.accept(method);
+      references = new References(collector.members, stamp);
+      referencesByMethod.put(method, references);
+    }
+    return references;
+  }
+
+  /**
+   * Looks up again what a modified method references, and updates the callers index.
+   */
+  private void updateCallers(JMethod method) {
+    References previous = referencesByMethod.get(method);
+    References current = getReferences(method);
+    if (previous == current) {
+      return;
+    }
+    if (previous != null) {
+      for (JNode member : previous.members) {
+        if (!current.members.contains(member)) {
+          callersByMember.get(member).remove(method);
+        }
+      }
+    }
+    addCallers(method, current.members);
+  }
+
+  private static boolean isClinitModifiedSince(JDeclaredType type, long stamp) {
+    if (type.getMethods().isEmpty()) {
+      return false;
+    }
+    JMethod clinit = type.getMethods().get(0);
+    return JProgram.isClinit(clinit) && clinit.isModifiedSince(stamp);
+  }
+
+  private static boolean isAnyModifiedSince(Set<JNode> members, long stamp,
+      Set<JDeclaredType> changedTypes) {
+    for (JNode member : members) {
+      if (member instanceof JMethod) {
+        if (((JMethod) member).isModifiedSince(stamp)) {
+          return true;
+        }
+      } else if (member instanceof JField) {
+        if (((JField) member).isModifiedSince(stamp)) {
+          return true;
+        }
+      } else if (changedTypes.contains(member)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
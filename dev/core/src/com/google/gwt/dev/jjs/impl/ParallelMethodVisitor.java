@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.InternalCompilerException;
+import com.google.gwt.dev.jjs.ast.JDeclaredType;
+import com.google.gwt.dev.jjs.ast.JMethod;
+import com.google.gwt.dev.jjs.ast.JModVisitor;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.util.ParallelTasks;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a method-local optimization over many methods on several threads.
+ * <p>
+ * The threads come from an executor created by {@link #newExecutor()} once per optimization run,
+ * so that the passes of the fixed-point loop don't start threads of their own. Each thread uses
+ * its own visitor. The optimization must only modify the method it is visiting,
+ * and must not let its decisions depend on the bodies of other methods, which other threads may
+ * be changing at the same time.
+ */
+public class ParallelMethodVisitor {
+
+  /**
+   * Creates the visitor used by one thread.
+   */
+  public interface VisitorFactory {
+    JModVisitor create();
+  }
+
+  /**
+   * A Java system property that sets how many threads run the method-local optimizations that
+   * support it. Defaults to one.
+   */
+  public static final String THREADS_PROPERTY = "gwt.jjs.optimizerThreads";
+
+  /**
+   * Below this many methods per thread, starting the threads costs more than it saves.
+   */
+  private static final int MIN_METHODS_PER_THREAD = 64;
+
+  /**
+   * Returns the methods that a traversal of the whole program visits, in program order. Like
+   * {@link JProgram#visitModuleTypes}, this skips the reference-only types.
+   */
+  public static List<JMethod> getOptimizableMethods(JProgram program) {
+    List<JMethod> methods = Lists.newArrayList();
+    for (JDeclaredType type : program.getModuleDeclaredTypes()) {
+      methods.addAll(type.getMethods());
+    }
+    return methods;
+  }
+
+  /**
+   * Returns the number of threads set by {@link #THREADS_PROPERTY}.
+   */
+  public static int getThreadCount() {
+    return ParallelTasks.getThreadCount(THREADS_PROPERTY);
+  }
+
+  /**
+   * Returns an executor with {@link #getThreadCount()} threads, or null when the optimizations
+   * should run serially. The caller must shut it down.
+   */
+  public static ExecutorService newExecutor() {
+    int threadCount = getThreadCount();
+    return threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+  }
+
+  /**
+   * Visits every method with visitors from <code>factory</code> and returns the total number of
+   * modifications made. Uses up to {@link #getThreadCount()} threads of <code>executor</code>, or
+   * visits the methods serially when it is null or there are too few of them.
+   */
+  public static int accept(ExecutorService executor, final List<JMethod> methods,
+      final VisitorFactory factory) {
+    int threadCount = executor == null
+        ? 1 : Math.min(getThreadCount(), methods.size() / MIN_METHODS_PER_THREAD);
+    if (threadCount <= 1) {
+      JModVisitor visitor = factory.create();
+      for (JMethod method : methods) {
+        visitor.accept(method);
+      }
+      return visitor.getNumMods();
+    }
+
+    final AtomicInteger nextMethod = new AtomicInteger();
+    List<Callable<Integer>> tasks = Lists.newArrayList();
+    for (int i = 0; i < threadCount; i++) {
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() {
+          JModVisitor visitor = factory.create();
+          for (int index = nextMethod.getAndIncrement(); index < methods.size();
+              index = nextMethod.getAndIncrement()) {
+            visitor.accept(methods.get(index));
+          }
+          return visitor.getNumMods();
+        }
+      });
+    }
+    try {
+      int numMods = 0;
+      for (int taskMods : ParallelTasks.invokeAll(executor, tasks)) {
+        numMods += taskMods;
+      }
+      return numMods;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InternalCompilerException("Interrupted while optimizing", e);
+    } catch (ExecutionException e) {
+      throw new InternalCompilerException("Unable to optimize", e.getCause());
+    }
+  }
+
+  private ParallelMethodVisitor() {
+  }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.js.ast.JsExpression;
+import com.google.gwt.dev.js.ast.JsProgram;
+import com.google.gwt.dev.js.ast.JsVisitable;
+import com.google.gwt.dev.js.ast.JsVisitor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records the cost of each pass run over a permutation: wall time, the CPU
+ * time and bytes allocated by the compiling thread, and the number of AST nodes
+ * before and after the pass. Useful for finding the passes that get slower as
+ * the program grows. Only records anything when the {@value #PROPERTY} system
+ * property is true, since counting nodes takes a traversal of the whole AST.
+ * <p>
+ * A pass is recorded by {@link #lap}, which measures it from the start of its
+ * group or the end of the previous pass, so the call goes around the pass:
+ *
+ * <pre>
+ * profiler.startJava("Pass 1", jprogram);
+ * stats.add(profiler.lap(Pruner.exec(jprogram, true)));
+ * </pre>
+ *
+ * Passes that don't report {@link OptimizerStats} are recorded by name after
+ * they run.
+ */
+public class PassProfiler {
+
+  /**
+   * The cost of one pass.
+   */
+  public static final class PassRecord {
+    private final String ast;
+    private final String group;
+    private final String pass;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+    private final int nodesBefore;
+    private final int nodesAfter;
+    private final int mods;
+
+    private PassRecord(String ast, String group, String pass, long wallNanos, long cpuNanos,
+        long allocatedBytes, int nodesBefore, int nodesAfter, int mods) {
+      this.ast = ast;
+      this.group = group;
+      this.pass = pass;
+      this.wallNanos = wallNanos;
+      this.cpuNanos = cpuNanos;
+      this.allocatedBytes = allocatedBytes;
+      this.nodesBefore = nodesBefore;
+      this.nodesAfter = nodesAfter;
+      this.mods = mods;
+    }
+
+    /**
+     * Returns the bytes allocated by the thread running the pass, or -1 if the
+     * JVM can't tell. Work the pass hands to other threads, such as parallel
+     * {@link DeadCodeElimination}, isn't counted.
+     */
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    /**
+     * Returns "java" or "js".
+     */
+    public String getAst() {
+      return ast;
+    }
+
+    /**
+     * Returns the CPU time used by the thread running the pass, or -1 if the
+     * JVM can't tell. Work the pass hands to other threads, such as parallel
+     * {@link DeadCodeElimination}, isn't counted.
+     */
+    public long getCpuNanos() {
+      return cpuNanos;
+    }
+
+    /**
+     * Returns the name of the group of passes this one ran in, such as "Pass 2".
+     */
+    public String getGroup() {
+      return group;
+    }
+
+    /**
+     * Returns the number of modifications the pass reported, or -1 if it
+     * doesn't report them.
+     */
+    public int getMods() {
+      return mods;
+    }
+
+    public int getNodesAfter() {
+      return nodesAfter;
+    }
+
+    public int getNodesBefore() {
+      return nodesBefore;
+    }
+
+    public String getPass() {
+      return pass;
+    }
+
+    public long getWallNanos() {
+      return wallNanos;
+    }
+  }
+
+  /**
+   * Counts the nodes of a JavaScript AST.
+   */
+  private static class JsNodeCounter extends JsVisitor {
+    private int count;
+
+    @Override
+    protected <T extends JsVisitable> T doAccept(T node) {
+      count++;
+      return super.doAccept(node);
+    }
+
+    @Override
+    protected <T extends JsVisitable> void doAcceptList(List<T> collection) {
+      count += collection.size();
+      super.doAcceptList(collection);
+    }
+
+    @Override
+    protected JsExpression doAcceptLvalue(JsExpression expr) {
+      count++;
+      return super.doAcceptLvalue(expr);
+    }
+
+    @Override
+    protected <T extends JsVisitable> void doAcceptWithInsertRemove(List<T> collection) {
+      count += collection.size();
+      super.doAcceptWithInsertRemove(collection);
+    }
+  }
+
+  /**
+   * Set this system property to true to record passes.
+   */
+  public static final String PROPERTY = "gwt.jjs.profilePasses";
+
+  /**
+   * The CPU time and allocations are named for the calling thread since they
+   * leave out the threads that some passes run on; the pool threads are gone by
+   * the time the pass returns, so they can't be added in.
+   */
+  private static final String[] COLUMNS = {
+      "ast", "group", "pass", "wallNanos", "callingThreadCpuNanos",
+      "callingThreadAllocatedBytes", "nodesBefore", "nodesAfter", "mods"};
+
+  private static long currentThreadAllocatedBytes() {
+    try {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (threads instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (sunThreads.isThreadAllocatedMemorySupported()
+            && sunThreads.isThreadAllocatedMemoryEnabled()) {
+          return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+      }
+    } catch (NoClassDefFoundError e) {
+      // Not a HotSpot JVM.
+    }
+    return -1;
+  }
+
+  private static long currentThreadCpuTime() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+  }
+
+  private static String escapeJson(String value) {
+    StringBuilder builder = new StringBuilder(value.length() + 2);
+    builder.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < ' ') {
+        builder.append(String.format("\\u%04x", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  /**
+   * Returns the numeric columns of a record, in the order of {@link #COLUMNS}.
+   */
+  private static long[] getNumbers(PassRecord record) {
+    return new long[] {
+        record.wallNanos, record.cpuNanos, record.allocatedBytes, record.nodesBefore,
+        record.nodesAfter, record.mods};
+  }
+
+  private static long minus(long after, long before) {
+    return after < 0 || before < 0 ? -1 : after - before;
+  }
+
+  private String ast;
+  private final boolean enabled = Boolean.getBoolean(PROPERTY);
+  private String group;
+  private JProgram jprogram;
+  private JsProgram jsProgram;
+  private long lastAllocatedBytes;
+  private long lastCpuNanos;
+  private int lastNodeCount;
+  private long lastWallNanos;
+  private final List<PassRecord> records = new ArrayList<PassRecord>();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the passes recorded so far, in the order they ran.
+   */
+  public List<PassRecord> getRecords() {
+    return Collections.unmodifiableList(records);
+  }
+
+  /**
+   * Records the pass that ran since the group was started or the previous pass
+   * was recorded.
+   *
+   * @return <code>stats</code>
+   */
+  public OptimizerStats lap(OptimizerStats stats) {
+    if (enabled) {
+      record(stats.getName(), stats.getNumMods());
+    }
+    return stats;
+  }
+
+  /**
+   * Records a pass that doesn't report {@link OptimizerStats}.
+   */
+  public void lap(String pass) {
+    if (enabled) {
+      record(pass, -1);
+    }
+  }
+
+  /**
+   * Starts a group of passes over the Java AST.
+   */
+  public void startJava(String group, JProgram program) {
+    start("java", group, program, null);
+  }
+
+  /**
+   * Starts a group of passes over the JavaScript AST.
+   */
+  public void startJs(String group, JsProgram program) {
+    start("js", group, null, program);
+  }
+
+  /**
+   * Returns the recorded passes as comma separated values, with a header line.
+   */
+  public String toCsv() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < COLUMNS.length; i++) {
+      builder.append(i == 0 ? "" : ",").append(COLUMNS[i]);
+    }
+    builder.append('\n');
+    for (PassRecord record : records) {
+      builder.append(record.ast).append(',');
+      builder.append(record.group).append(',');
+      builder.append(record.pass).append(',');
+      appendNumbers(builder, record, ",");
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Returns the recorded passes as a JSON array of objects.
+   */
+  public String toJson() {
+    StringBuilder builder = new StringBuilder("[");
+    for (int i = 0; i < records.size(); i++) {
+      PassRecord record = records.get(i);
+      builder.append(i == 0 ? "\n" : ",\n");
+      builder.append("{\"").append(COLUMNS[0]).append("\":").append(escapeJson(record.ast));
+      builder.append(",\"").append(COLUMNS[1]).append("\":").append(escapeJson(record.group));
+      builder.append(",\"").append(COLUMNS[2]).append("\":").append(escapeJson(record.pass));
+      long[] numbers = getNumbers(record);
+      for (int j = 0; j < numbers.length; j++) {
+        builder.append(",\"").append(COLUMNS[j + 3]).append("\":").append(numbers[j]);
+      }
+      builder.append('}');
+    }
+    return builder.append("\n]\n").toString();
+  }
+
+  private void appendNumbers(StringBuilder builder, PassRecord record, String separator) {
+    long[] numbers = getNumbers(record);
+    for (int i = 0; i < numbers.length; i++) {
+      builder.append(i == 0 ? "" : separator).append(numbers[i]);
+    }
+  }
+
+  private int countNodes() {
+    if (jprogram != null) {
+      return jprogram.getNodeCount();
+    }
+    JsNodeCounter counter = new JsNodeCounter();
+    counter.accept(jsProgram);
+    return counter.count;
+  }
+
+  private void record(String pass, int mods) {
+    long wallNanos = System.nanoTime();
+    long cpuNanos = currentThreadCpuTime();
+    long allocatedBytes = currentThreadAllocatedBytes();
+    int nodeCount = countNodes();
+    records.add(new PassRecord(ast, group, pass, wallNanos - lastWallNanos,
+        minus(cpuNanos, lastCpuNanos), minus(allocatedBytes, lastAllocatedBytes),
+        lastNodeCount, nodeCount, mods));
+    // Don't count the node counting against the next pass.
+    reset(nodeCount);
+  }
+
+  private void reset(int nodeCount) {
+    lastNodeCount = nodeCount;
+    lastAllocatedBytes = currentThreadAllocatedBytes();
+    lastCpuNanos = currentThreadCpuTime();
+    lastWallNanos = System.nanoTime();
+  }
+
+  private void start(String ast, String group, JProgram jprogram, JsProgram jsProgram) {
+    if (!enabled) {
+      return;
+    }
+    this.ast = ast;
+    this.group = group;
+    this.jprogram = jprogram;
+    this.jsProgram = jsProgram;
+    reset(countNodes());
+  }
+}
@@ -436,6 +436,12 @@ public class CodeSplitter {
             }
         ));
 
+    // Merge the split points that users nearly always load together, if that was recorded.
+    RunAsyncProfile profile = jprogram.getRunAsyncProfile();
+    if (profile != null) {
+      groupedNonInitialRunAsyncs = profile.mergeLoadedTogether(logger, groupedNonInitialRunAsyncs);
+    }
+
     // Decide exclusive fragments according to the preselected partitionStrategy.
     Collection<Fragment>  exclusiveFragments =
         partitionStrategy.partitionIntoFragments(logger, initialSequenceCfa,
@@ -18,6 +18,7 @@ package com.google.gwt.dev.jjs.impl.codesplitter;
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.dev.cfg.ConfigProps;
+import com.google.gwt.dev.cfg.ResourceLoader;
 import com.google.gwt.dev.jjs.ast.JArrayType;
 import com.google.gwt.dev.jjs.ast.JExpression;
 import com.google.gwt.dev.jjs.ast.JMethod;
@@ -54,11 +55,15 @@ public class CodeSplitters {
    * other split points. As a side effect, modifies
    * {@link com.google.gwt.core.client.impl.AsyncFragmentLoader#initialLoadSequence}
    * in the program being compiled.
+   * <p>
+   * If the module names no initial load sequence but gives a {@link RunAsyncProfile}, the
+   * sequence is picked from the profile, which is read through {@code resources}. The profile is
+   * kept in the program for the code splitter.
    *
    * @throws UnableToCompleteException If the module specifies a bad load order
    */
-  public static void pickInitialLoadSequence(TreeLogger logger,
-      JProgram program, ConfigProps config) throws UnableToCompleteException {
+  public static void pickInitialLoadSequence(TreeLogger logger, JProgram program,
+      ConfigProps config, ResourceLoader resources) throws UnableToCompleteException {
     SpeedTracerLogger.Event codeSplitterEvent =
         SpeedTracerLogger
             .start(CompilerEventType.CODE_SPLITTER, "phase", "pickInitialLoadSequence");
@@ -75,6 +80,15 @@ public class CodeSplitters {
       asyncsInInitialLoadSequence.add(runAsync);
     }
 
+    RunAsyncProfile profile = RunAsyncProfile.load(branch, config, resources);
+    if (profile != null) {
+      profile.warnAboutUnknownSplitPoints(branch, program.getRunAsyncs());
+      if (initialSequence.isEmpty()) {
+        asyncsInInitialLoadSequence = profile.pickInitialSequence(program.getRunAsyncs());
+      }
+    }
+    program.setRunAsyncProfile(profile);
+
     logInitialLoadSequence(logger, asyncsInInitialLoadSequence);
     installInitialLoadSequenceField(program, asyncsInInitialLoadSequence);
     program.setInitialAsyncSequence(asyncsInInitialLoadSequence);
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.codesplitter;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.cfg.ConfigProps;
+import com.google.gwt.dev.cfg.ResourceLoader;
+import com.google.gwt.dev.jjs.ast.JRunAsync;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.guava.common.base.Joiner;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.thirdparty.guava.common.collect.Sets;
+import com.google.gwt.util.tools.Utility;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The order in which the split points of an application were reached in sessions recorded from
+ * real users. Lets the code splitter lay out fragments for typical users: split points that
+ * nearly every session reaches first make up the initial load sequence, and exclusive fragments
+ * that are nearly always loaded together are merged, which saves round trips.
+ * <p>
+ * The profile is a text file on the module's class path, named by the {@value #PROP_PROFILE}
+ * configuration property. Each line is a load sequence: the number of sessions it
+ * was seen in, then the split points in the order they were first reached, named as in the split
+ * point list of the compile report. Lines starting with '#' are comments. For example:
+ *
+ * <pre>
+ * # sessions  split points
+ * 1200  com.example.client.Inbox  com.example.client.Compose
+ * 310   com.example.client.Inbox  &#64;com.example.client.Settings::show()
+ * </pre>
+ *
+ * The "download" lightweight metrics events that {@code AsyncFragmentLoader} sends for each
+ * session give the order in which fragments were loaded, and the split point list of the compile
+ * report maps the fragment numbers of that compile back to split points.
+ */
+public class RunAsyncProfile implements Serializable {
+
+  /**
+   * One load sequence and how many sessions it was seen in.
+   */
+  private static class Sequence implements Serializable {
+    private final long sessions;
+    private final List<String> splitPoints;
+
+    private Sequence(long sessions, List<String> splitPoints) {
+      this.sessions = sessions;
+      this.splitPoints = splitPoints;
+    }
+  }
+
+  static final String PROP_PROFILE = "compiler.splitpoint.profile";
+
+  /**
+   * The percentage of sessions that must agree for the profile to change the layout.
+   */
+  static final String PROP_THRESHOLD = "compiler.splitpoint.profile.threshold";
+
+  private static final int DEFAULT_THRESHOLD = 90;
+
+  /**
+   * Reads the profile named in the configuration from the module's class path, or returns null if
+   * none is named.
+   */
+  public static RunAsyncProfile load(TreeLogger logger, ConfigProps config,
+      ResourceLoader resources) throws UnableToCompleteException {
+    List<String> values = config.getStrings(PROP_PROFILE);
+    if (values.size() != 1 || values.get(0) == null || values.get(0).trim().isEmpty()) {
+      return null;
+    }
+    String location = values.get(0).trim();
+    int threshold = getThreshold(logger, config);
+
+    URL url = resources.getResource(location);
+    if (url == null) {
+      logger.log(TreeLogger.ERROR, "Unable to find the runAsync profile " + location
+          + " on the module's class path");
+      throw new UnableToCompleteException();
+    }
+    InputStream stream = null;
+    try {
+      stream = url.openStream();
+      return read(logger, location, new InputStreamReader(stream, Util.DEFAULT_ENCODING),
+          threshold);
+    } catch (IOException e) {
+      logger.log(TreeLogger.ERROR, "Unable to read the runAsync profile " + url, e);
+      throw new UnableToCompleteException();
+    } finally {
+      Utility.close(stream);
+    }
+  }
+
+  /**
+   * Returns the configured threshold, which must be a percentage from 1 to 100.
+   */
+  private static int getThreshold(TreeLogger logger, ConfigProps config)
+      throws UnableToCompleteException {
+    List<String> values = config.getStrings(PROP_THRESHOLD);
+    if (values.size() != 1 || values.get(0) == null || values.get(0).trim().isEmpty()) {
+      return DEFAULT_THRESHOLD;
+    }
+    String value = values.get(0).trim();
+    int threshold = -1;
+    try {
+      threshold = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      // Reported below.
+    }
+    if (threshold < 1 || threshold > 100) {
+      logger.log(TreeLogger.ERROR, "The " + PROP_THRESHOLD
+          + " configuration property must be a percentage from 1 to 100, but is '" + value + "'");
+      throw new UnableToCompleteException();
+    }
+    return threshold;
+  }
+
+  /**
+   * Parses a profile in the format described in the class comment.
+   */
+  static RunAsyncProfile read(TreeLogger logger, String location, Reader reader, int threshold)
+      throws IOException, UnableToCompleteException {
+    List<Sequence> sequences = Lists.newArrayList();
+    BufferedReader in = new BufferedReader(reader);
+    int lineNumber = 0;
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      lineNumber++;
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\\s+");
+      long sessions = -1;
+      try {
+        sessions = Long.parseLong(fields[0]);
+      } catch (NumberFormatException e) {
+        // Reported below.
+      }
+      if (sessions < 0) {
+        logger.log(TreeLogger.ERROR, location + ":" + lineNumber
+            + ": expected a number of sessions but found '" + fields[0] + "'");
+        throw new UnableToCompleteException();
+      }
+      // Only the first time a split point is reached matters.
+      LinkedHashSet<String> splitPoints =
+          Sets.newLinkedHashSet(Arrays.asList(fields).subList(1, fields.length));
+      sequences.add(new Sequence(sessions, Lists.newArrayList(splitPoints)));
+    }
+    return new RunAsyncProfile(sequences, threshold);
+  }
+
+  private final List<Sequence> sequences;
+
+  private final int threshold;
+
+  private RunAsyncProfile(List<Sequence> sequences, int threshold) {
+    this.sequences = sequences;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Merges the groups of runAsyncs that are loaded together in at least the threshold percentage
+   * of the sessions that load either of them, most often loaded together first. Groups that no
+   * session loads are left alone.
+   */
+  Collection<Collection<JRunAsync>> mergeLoadedTogether(TreeLogger logger,
+      Collection<Collection<JRunAsync>> groups) {
+    List<Collection<JRunAsync>> mergedGroups = Lists.newArrayList();
+    List<BitSet> loadedBy = Lists.newArrayList();
+    Map<String, Integer> groupIndexByName = Maps.newHashMap();
+    for (Collection<JRunAsync> group : groups) {
+      for (JRunAsync runAsync : group) {
+        groupIndexByName.put(runAsync.getName(), mergedGroups.size());
+      }
+      mergedGroups.add(Lists.newArrayList(group));
+      loadedBy.add(new BitSet());
+    }
+    for (int i = 0; i < sequences.size(); i++) {
+      for (String name : sequences.get(i).splitPoints) {
+        Integer group = groupIndexByName.get(name);
+        if (group != null) {
+          loadedBy.get(group).set(i);
+        }
+      }
+    }
+
+    while (true) {
+      int bestFirst = -1;
+      int bestSecond = -1;
+      double bestShare = 0;
+      for (int i = 0; i < mergedGroups.size(); i++) {
+        for (int j = i + 1; j < mergedGroups.size(); j++) {
+          BitSet both = (BitSet) loadedBy.get(i).clone();
+          both.and(loadedBy.get(j));
+          long bothSessions = countSessions(both);
+          if (bothSessions == 0) {
+            continue;
+          }
+          BitSet either = (BitSet) loadedBy.get(i).clone();
+          either.or(loadedBy.get(j));
+          double share = (double) bothSessions / countSessions(either);
+          if (share * 100 >= threshold && share > bestShare) {
+            bestFirst = i;
+            bestSecond = j;
+            bestShare = share;
+          }
+        }
+      }
+      if (bestFirst < 0) {
+        break;
+      }
+      Collection<JRunAsync> second = mergedGroups.remove(bestSecond);
+      if (logger.isLoggable(TreeLogger.TRACE)) {
+        logger.log(TreeLogger.TRACE, String.format(
+            "Merging split points loaded together in %.0f%% of sessions: %s and %s",
+            bestShare * 100, getNames(mergedGroups.get(bestFirst)), getNames(second)));
+      }
+      mergedGroups.get(bestFirst).addAll(second);
+      loadedBy.get(bestFirst).or(loadedBy.remove(bestSecond));
+    }
+    return mergedGroups;
+  }
+
+  /**
+   * Picks an initial load sequence: repeatedly, the split point that is reached next in at least
+   * the threshold percentage of the sessions that reach any split point. Stops at a split point
+   * whose name doesn't designate a single runAsync call.
+   */
+  LinkedHashSet<JRunAsync> pickInitialSequence(Collection<JRunAsync> runAsyncs) {
+    Map<String, JRunAsync> runAsyncsByName = Maps.newHashMap();
+    Set<String> ambiguousNames = Sets.newHashSet();
+    for (JRunAsync runAsync : runAsyncs) {
+      if (runAsyncsByName.put(runAsync.getName(), runAsync) != null) {
+        ambiguousNames.add(runAsync.getName());
+      }
+    }
+
+    long activeSessions = 0;
+    for (Sequence sequence : sequences) {
+      for (String name : sequence.splitPoints) {
+        if (runAsyncsByName.containsKey(name)) {
+          activeSessions += sequence.sessions;
+          break;
+        }
+      }
+    }
+
+    LinkedHashSet<JRunAsync> initialSequence = Sets.newLinkedHashSet();
+    Set<String> picked = Sets.newHashSet();
+    while (true) {
+      // Sorted, so that ties always go the same way.
+      TreeMap<String, Long> sessionsByNextSplitPoint = new TreeMap<String, Long>();
+      for (Sequence sequence : sequences) {
+        for (String name : sequence.splitPoints) {
+          if (runAsyncsByName.containsKey(name) && !picked.contains(name)) {
+            Long sessions = sessionsByNextSplitPoint.get(name);
+            sessionsByNextSplitPoint.put(name,
+                (sessions == null ? 0 : sessions) + sequence.sessions);
+            break;
+          }
+        }
+      }
+
+      String next = null;
+      long nextSessions = 0;
+      for (Map.Entry<String, Long> entry : sessionsByNextSplitPoint.entrySet()) {
+        if (entry.getValue() > nextSessions) {
+          next = entry.getKey();
+          nextSessions = entry.getValue();
+        }
+      }
+      if (next == null || nextSessions * 100 < (long) threshold * activeSessions
+          || ambiguousNames.contains(next)) {
+        break;
+      }
+      picked.add(next);
+      initialSequence.add(runAsyncsByName.get(next));
+    }
+    return initialSequence;
+  }
+
+  /**
+   * Warns about split points in the profile that are not in the program, which happens when the
+   * profile was recorded with an older version of the application.
+   */
+  void warnAboutUnknownSplitPoints(TreeLogger logger, Collection<JRunAsync> runAsyncs) {
+    Set<String> names = Sets.newHashSet();
+    for (JRunAsync runAsync : runAsyncs) {
+      names.add(runAsync.getName());
+    }
+    Set<String> unknown = Sets.newTreeSet();
+    for (Sequence sequence : sequences) {
+      for (String name : sequence.splitPoints) {
+        if (!names.contains(name)) {
+          unknown.add(name);
+        }
+      }
+    }
+    if (!unknown.isEmpty()) {
+      logger.log(TreeLogger.WARN, "Ignoring split points of the runAsync profile that are not in "
+          + "the program: " + Joiner.on(", ").join(unknown));
+    }
+  }
+
+  private long countSessions(BitSet sequenceIndexes) {
+    long sessions = 0;
+    for (int i = sequenceIndexes.nextSetBit(0); i >= 0; i = sequenceIndexes.nextSetBit(i + 1)) {
+      sessions += sequences.get(i).sessions;
+    }
+    return sessions;
+  }
+
+  private static List<String> getNames(Collection<JRunAsync> runAsyncs) {
+    List<String> names = Lists.newArrayList();
+    for (JRunAsync runAsync : runAsyncs) {
+      names.add(runAsync.getName());
+    }
+    return names;
+  }
+}
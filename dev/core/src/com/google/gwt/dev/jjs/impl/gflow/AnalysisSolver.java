@@ -18,17 +18,23 @@ package com.google.gwt.dev.jjs.impl.gflow;
 import com.google.gwt.dev.jjs.impl.gflow.TransformationFunction.Transformation;
 import com.google.gwt.thirdparty.guava.common.base.Preconditions;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A solver to solve all kinds of analyses defined in the package.
- * Uses iterative worklist algorithm.
+ * Uses iterative worklist algorithm. Nodes are taken from the worklist in
+ * reverse postorder of the direction of the analysis, so that a node is
+ * usually interpreted after all of its predecessors.
  *
  * Solver might be forward or backwards working. Both directions will always
  * produce a valid fixed point, which depends on direction. As a rule,
@@ -136,6 +142,50 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
     }
   }
 
+  /**
+   * Thrown when solving an analysis takes more steps than it was allowed.
+   */
+  public static class StepLimitExceededException extends RuntimeException {
+    public StepLimitExceededException(int maxSteps) {
+      super("Analysis did not converge in " + maxSteps + " steps");
+    }
+  }
+
+  /**
+   * The nodes that need to be interpreted again. Takes the one that comes
+   * first in reverse postorder, rather than the one added first.
+   */
+  private final class Worklist {
+    private final Map<N, Integer> priorities;
+    private final List<N> nodes;
+    private final BitSet pending = new BitSet();
+
+    private Worklist(G graph) {
+      nodes = reversePostorder(graph);
+      priorities = new HashMap<N, Integer>(nodes.size() * 2);
+      for (int i = 0; i < nodes.size(); i++) {
+        priorities.put(nodes.get(i), i);
+      }
+      pending.set(0, nodes.size());
+    }
+
+    private void add(N node) {
+      Integer priority = priorities.get(node);
+      Preconditions.checkArgument(priority != null, "Node is not in graph: %s", node);
+      pending.set(priority);
+    }
+
+    private boolean isEmpty() {
+      return pending.isEmpty();
+    }
+
+    private N remove() {
+      int priority = pending.nextSetBit(0);
+      pending.clear(priority);
+      return nodes.get(priority);
+    }
+  }
+
   public static boolean debug = false;
 
   /**
@@ -149,7 +199,7 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
    */
   public static <N, E, T, G extends Graph<N, E, T>, A extends Assumption<A>>
   Map<E, A> solve(G g, Analysis<N, E, G, A> analysis, boolean forward) {
-    return new AnalysisSolver<N, E, T, G, A>(forward).solve(g, analysis);
+    return new AnalysisSolver<N, E, T, G, A>(forward, Integer.MAX_VALUE).solve(g, analysis);
   }
 
   /**
@@ -164,7 +214,21 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
   public static <N, E, T, G extends Graph<N, E, T>, A extends Assumption<A>>
   boolean solveIntegrated(G g, IntegratedAnalysis<N, E, T, G, A> analysis,
       boolean forward) {
-    return new AnalysisSolver<N, E, T, G, A>(forward).solveIntegrated(g,
+    return solveIntegrated(g, analysis, forward, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Solve a integrated analysis, giving up if the flow function has to be
+   * applied more than <code>maxSteps</code> times, counting the steps spent on
+   * replacement subgraphs. Nothing is transformed if it gives up.
+   *
+   * @throws StepLimitExceededException if the analysis did not converge in
+   *           time
+   */
+  public static <N, E, T, G extends Graph<N, E, T>, A extends Assumption<A>>
+  boolean solveIntegrated(G g, IntegratedAnalysis<N, E, T, G, A> analysis,
+      boolean forward, int maxSteps) {
+    return new AnalysisSolver<N, E, T, G, A>(forward, maxSteps).solveIntegrated(g,
         analysis);
   }
 
@@ -174,11 +238,20 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
    */
   private final boolean forward;
 
+  private final int maxSteps;
+
+  /**
+   * The number of times the flow function was applied so far.
+   */
+  private int steps;
+
   /**
    * @param forward <code>true</code> if solvers moves forward.
+   * @param maxSteps the number of times the flow function may be applied.
    */
-  private AnalysisSolver(boolean forward) {
+  private AnalysisSolver(boolean forward, int maxSteps) {
     this.forward = forward;
+    this.maxSteps = maxSteps;
   }
 
   /**
@@ -247,14 +320,69 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
     return didChange;
   }
 
-  private LinkedHashSet<N> buildInitialWorklist(G g) {
-    ArrayList<N> nodes = new ArrayList<N>(g.getNodes());
-    LinkedHashSet<N> worklist = new LinkedHashSet<N>(nodes.size());
+  /**
+   * Returns the nodes which follow the node in the direction of the analysis.
+   */
+  private List<N> getSuccessors(G graph, N node) {
+    List<E> edges = forward ? graph.getOutEdges(node) : graph.getInEdges(node);
+    List<N> successors = new ArrayList<N>(edges.size());
+    for (E edge : edges) {
+      N successor = forward ? graph.getEnd(edge) : graph.getStart(edge);
+      if (successor != null) {
+        successors.add(successor);
+      }
+    }
+    return successors;
+  }
+
+  /**
+   * Orders the nodes of the graph in reverse postorder of the direction of
+   * the analysis, starting from the graph's entry (or exit, when going
+   * backwards). Nodes that can't be reached from there are visited in the
+   * order of {@link Graph#getNodes()} (or its reverse).
+   */
+  private List<N> reversePostorder(G graph) {
+    List<N> roots = new ArrayList<N>();
+    for (E edge : forward ? graph.getGraphInEdges() : graph.getGraphOutEdges()) {
+      N root = forward ? graph.getEnd(edge) : graph.getStart(edge);
+      if (root != null) {
+        roots.add(root);
+      }
+    }
+    List<N> nodes = new ArrayList<N>(graph.getNodes());
     if (!forward) {
       Collections.reverse(nodes);
     }
-    worklist.addAll(nodes);
-    return worklist;
+    roots.addAll(nodes);
+
+    Set<N> inGraph = new HashSet<N>(nodes);
+    Set<N> visited = new HashSet<N>();
+    List<N> postorder = new ArrayList<N>(nodes.size());
+    // Iterative depth first search, since methods can be large.
+    Deque<N> stack = new ArrayDeque<N>();
+    Deque<Iterator<N>> successors = new ArrayDeque<Iterator<N>>();
+    for (N root : roots) {
+      if (!inGraph.contains(root) || !visited.add(root)) {
+        continue;
+      }
+      stack.push(root);
+      successors.push(getSuccessors(graph, root).iterator());
+      while (!stack.isEmpty()) {
+        Iterator<N> iterator = successors.peek();
+        if (iterator.hasNext()) {
+          N next = iterator.next();
+          if (inGraph.contains(next) && visited.add(next)) {
+            stack.push(next);
+            successors.push(getSuccessors(graph, next).iterator());
+          }
+        } else {
+          postorder.add(stack.pop());
+          successors.pop();
+        }
+      }
+    }
+    Collections.reverse(postorder);
+    return postorder;
   }
 
   @SuppressWarnings("unchecked")
@@ -361,14 +489,15 @@ public class AnalysisSolver<N, E, T, G extends Graph<N, E, T>,
   private void solveImpl(final G graph, Analysis<N, E, G, A> analysis) {
     FlowFunction<N, E, G, A> flowFunction = analysis.getFlowFunction();
 
-    final LinkedHashSet<N> worklist = buildInitialWorklist(graph);
+    final Worklist worklist = new Worklist(graph);
     resetEdgeData(graph);
     initGraphAssumptions(analysis, graph);
 
     while (!worklist.isEmpty()) {
-      Iterator<N> iterator = worklist.iterator();
-      final N node = iterator.next();
-      iterator.remove();
+      if (++steps > maxSteps) {
+        throw new StepLimitExceededException(maxSteps);
+      }
+      final N node = worklist.remove();
 
       flowFunction.interpret(node, graph, new AssumptionMap<E, A>() {
         @Override
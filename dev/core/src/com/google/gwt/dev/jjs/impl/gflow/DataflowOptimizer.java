@@ -24,6 +24,7 @@ import com.google.gwt.dev.jjs.ast.JNode;
 import com.google.gwt.dev.jjs.ast.JProgram;
 import com.google.gwt.dev.jjs.impl.DeadCodeElimination;
 import com.google.gwt.dev.jjs.impl.OptimizerStats;
+import com.google.gwt.dev.jjs.impl.gflow.AnalysisSolver.StepLimitExceededException;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.Cfg;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgBuilder;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgEdge;
@@ -39,10 +40,25 @@ import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.thirdparty.guava.common.base.Preconditions;
 
 /**
+ * Runs the gflow analyses over each method and applies their transformations.
+ * Methods whose control flow graph is too large, or whose analyses take too
+ * many steps to converge, are left alone, so that the cost of the optimizer
+ * stays bounded.
  */
 public class DataflowOptimizer {
   public static String NAME = DataflowOptimizer.class.getSimpleName();
 
+  /**
+   * Methods with more control flow graph nodes than this are not optimized.
+   */
+  public static final String MAX_NODES_PROPERTY = "gwt.dataflow.maxNodes";
+
+  /**
+   * How many times, per control flow graph node, an analysis may apply its
+   * flow function before it gives up on a method.
+   */
+  public static final String MAX_STEPS_PER_NODE_PROPERTY = "gwt.dataflow.maxStepsPerNode";
+
   public static OptimizerStats exec(JProgram jprogram, JNode node) {
     Event optimizeEvent = SpeedTracerLogger.start(CompilerEventType.OPTIMIZE, "optimizer", NAME);
     OptimizerStats stats = new DataflowOptimizer(jprogram).execImpl(node);
@@ -54,10 +70,14 @@ public class DataflowOptimizer {
     return exec(jprogram, jprogram);
   }
 
+  private final int maxNodes;
+  private final int maxStepsPerNode;
   private final JProgram program;
 
   public DataflowOptimizer(JProgram program) {
     this.program = program;
+    this.maxNodes = Integer.getInteger(MAX_NODES_PROPERTY, 20000);
+    this.maxStepsPerNode = Math.max(1, Integer.getInteger(MAX_STEPS_PER_NODE_PROPERTY, 100));
   }
 
   private class DataflowOptimizerVisitor extends JModVisitor {
@@ -74,6 +94,13 @@ public class DataflowOptimizer {
 
       Preconditions.checkNotNull(cfg, "Can't build flow for %s", methodName);
 
+      int nodeCount = cfg.getNodes().size();
+      if (nodeCount > maxNodes) {
+        return true;
+      }
+      int maxSteps = (int) Math.min(Integer.MAX_VALUE, (long) nodeCount * maxStepsPerNode);
+
+      boolean madeChanges = false;
       try {
         CombinedIntegratedAnalysis<CfgNode<?>, CfgEdge, CfgTransformer, Cfg>
         fwdAnalysis = CombinedIntegratedAnalysis.createAnalysis();
@@ -83,9 +110,7 @@ public class DataflowOptimizer {
         fwdAnalysis.addAnalysis(new CopyAnalysis());
         // fwdAnalysis.addAnalysis(new InlineVarAnalysis(program));
 
-        boolean madeChanges = false;
-
-        madeChanges = AnalysisSolver.solveIntegrated(cfg, fwdAnalysis, true)
+        madeChanges = AnalysisSolver.solveIntegrated(cfg, fwdAnalysis, true, maxSteps)
             || madeChanges;
 
         cfg = CfgBuilder.build(program, methodBody.getBlock());
@@ -96,18 +121,20 @@ public class DataflowOptimizer {
 
         bkwAnalysis.addAnalysis(new LivenessAnalysis());
 
-        madeChanges = AnalysisSolver.solveIntegrated(cfg, bkwAnalysis, false)
+        madeChanges = AnalysisSolver.solveIntegrated(cfg, bkwAnalysis, false, maxSteps)
             || madeChanges;
-
-        if (madeChanges) {
-          madeChanges();
-
-          DeadCodeElimination.exec(program, methodBody);
-        }
+      } catch (StepLimitExceededException e) {
+        // Keep whatever the analyses that did converge changed.
       } catch (Throwable t) {
         throw new RuntimeException("Error optimizing: " + methodName, t);
       }
 
+      if (madeChanges) {
+        madeChanges();
+
+        DeadCodeElimination.exec(program, methodBody);
+      }
+
       return true;
     }
   }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow;
+
+import com.google.gwt.dev.jjs.ast.JVariable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives the variables of one method dense indexes, so that sets of them can be
+ * kept in bit vectors. All assumptions that are compared or joined with each
+ * other must share the same numbering.
+ */
+public class VariableNumbering {
+  private final Map<JVariable, Integer> indexes = new IdentityHashMap<JVariable, Integer>();
+  private final List<JVariable> variables = new ArrayList<JVariable>();
+
+  /**
+   * Returns the index of the variable, numbering it if it wasn't seen before.
+   */
+  public int getIndex(JVariable variable) {
+    Integer index = indexes.get(variable);
+    if (index == null) {
+      index = variables.size();
+      indexes.put(variable, index);
+      variables.add(variable);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the variable, or -1 if it wasn't numbered yet.
+   */
+  public int findIndex(JVariable variable) {
+    Integer index = indexes.get(variable);
+    return index == null ? -1 : index;
+  }
+
+  public JVariable getVariable(int index) {
+    return variables.get(index);
+  }
+
+  public int size() {
+    return variables.size();
+  }
+}
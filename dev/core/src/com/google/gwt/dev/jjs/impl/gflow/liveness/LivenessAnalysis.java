@@ -20,6 +20,7 @@ import com.google.gwt.dev.jjs.impl.gflow.AssumptionMap;
 import com.google.gwt.dev.jjs.impl.gflow.FlowFunction;
 import com.google.gwt.dev.jjs.impl.gflow.IntegratedAnalysis;
 import com.google.gwt.dev.jjs.impl.gflow.IntegratedFlowFunction;
+import com.google.gwt.dev.jjs.impl.gflow.VariableNumbering;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.Cfg;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgEdge;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgNode;
@@ -32,21 +33,25 @@ import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgTransformer;
 public class LivenessAnalysis implements Analysis<CfgNode<?>, CfgEdge, Cfg,
     LivenessAssumption>, IntegratedAnalysis<CfgNode<?>, CfgEdge, CfgTransformer,
     Cfg, LivenessAssumption> {
-  private static final LivenessFlowFunction FLOW_FUNCTION =
-    new LivenessFlowFunction();
-  private static final LivenessIntegratedFlowFunction INTEGRATED_FLOW_FUNCTION =
-    new LivenessIntegratedFlowFunction();
+  /**
+   * Numbers the variables of the analyzed method; create a new analysis for
+   * each method.
+   */
+  private final VariableNumbering numbering = new VariableNumbering();
+  private final LivenessFlowFunction flowFunction = new LivenessFlowFunction(numbering);
+  private final LivenessIntegratedFlowFunction integratedFlowFunction =
+    new LivenessIntegratedFlowFunction(numbering);
 
   @Override
   public FlowFunction<CfgNode<?>, CfgEdge, Cfg, LivenessAssumption> getFlowFunction() {
-    return FLOW_FUNCTION;
+    return flowFunction;
   }
 
   @Override
   public IntegratedFlowFunction<CfgNode<?>, CfgEdge, CfgTransformer, Cfg,
                                 LivenessAssumption>
   getIntegratedFlowFunction() {
-    return INTEGRATED_FLOW_FUNCTION;
+    return integratedFlowFunction;
   }
 
   @Override
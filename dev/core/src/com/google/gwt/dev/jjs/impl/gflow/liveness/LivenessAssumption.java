@@ -17,17 +17,18 @@ package com.google.gwt.dev.jjs.impl.gflow.liveness;
 
 import com.google.gwt.dev.jjs.ast.JVariable;
 import com.google.gwt.dev.jjs.impl.gflow.Assumption;
-import com.google.gwt.dev.util.collect.IdentityHashSet;
+import com.google.gwt.dev.jjs.impl.gflow.VariableNumbering;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Assumption for LivenessAnalysis. Contains set of all live (=used after)
- * variables.
+ * variables, as a bit vector over the {@link VariableNumbering} of the
+ * analyzed method.
  */
 public class LivenessAssumption implements Assumption<LivenessAssumption> {
   /**
@@ -36,9 +37,11 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
   public static class Updater {
     private LivenessAssumption assumption;
     private boolean copied = false;
+    private final VariableNumbering numbering;
 
-    public Updater(LivenessAssumption assumption) {
+    public Updater(LivenessAssumption assumption, VariableNumbering numbering) {
       this.assumption = assumption;
+      this.numbering = numbering;
     }
 
     public void kill(JVariable target) {
@@ -57,30 +60,40 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
     }
 
     public void use(JVariable target) {
+      if (assumption != null && assumption.isLive(target)) {
+        return;
+      }
       copyIfNeeded();
       assumption.use(target);
     }
 
     private void copyIfNeeded() {
       if (!copied) {
-        assumption = new LivenessAssumption(assumption);
+        assumption = new LivenessAssumption(numbering, assumption);
         copied = true;
       }
     }
   }
 
   /**
-   * Set of all live variables.
+   * Indexes of all live variables in {@link #numbering}.
    */
-  private final Set<JVariable> liveVariables = new IdentityHashSet<JVariable>();
+  private final BitSet liveVariables;
+
+  private final VariableNumbering numbering;
 
-  public LivenessAssumption() {
-    super();
+  public LivenessAssumption(VariableNumbering numbering) {
+    this.numbering = numbering;
+    this.liveVariables = new BitSet();
   }
 
-  public LivenessAssumption(LivenessAssumption assumptions) {
+  public LivenessAssumption(VariableNumbering numbering, LivenessAssumption assumptions) {
+    this.numbering = numbering;
     if (assumptions != null) {
-      this.liveVariables.addAll(assumptions.liveVariables);
+      assert assumptions.numbering == numbering;
+      this.liveVariables = (BitSet) assumptions.liveVariables.clone();
+    } else {
+      this.liveVariables = new BitSet();
     }
   }
 
@@ -96,6 +109,7 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
       return false;
     }
     LivenessAssumption other = (LivenessAssumption) obj;
+    assert numbering == other.numbering;
     return liveVariables.equals(other.liveVariables);
   }
 
@@ -105,7 +119,8 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
   }
 
   public boolean isLive(JVariable variable) {
-    return liveVariables.contains(variable);
+    int index = numbering.findIndex(variable);
+    return index >= 0 && liveVariables.get(index);
   }
 
   /**
@@ -119,8 +134,9 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
     if (liveVariables.isEmpty()) {
       return value;
     }
-    LivenessAssumption result = new LivenessAssumption(this);
-    result.liveVariables.addAll(value.liveVariables);
+    assert numbering == value.numbering;
+    LivenessAssumption result = new LivenessAssumption(numbering, this);
+    result.liveVariables.or(value.liveVariables);
     return result;
   }
 
@@ -128,7 +144,10 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
     StringBuffer result = new StringBuffer();
 
     result.append("{");
-    List<JVariable> vars = new ArrayList<JVariable>(liveVariables);
+    List<JVariable> vars = new ArrayList<JVariable>();
+    for (int i = liveVariables.nextSetBit(0); i >= 0; i = liveVariables.nextSetBit(i + 1)) {
+      vars.add(numbering.getVariable(i));
+    }
     Collections.sort(vars, new Comparator<JVariable>() {
       @Override
       public int compare(JVariable o1, JVariable o2) {
@@ -152,10 +171,13 @@ public class LivenessAssumption implements Assumption<LivenessAssumption> {
   }
 
   private void kill(JVariable variable) {
-    liveVariables.remove(variable);
+    int index = numbering.findIndex(variable);
+    if (index >= 0) {
+      liveVariables.clear(index);
+    }
   }
 
   private void use(JVariable variable) {
-    liveVariables.add(variable);
+    liveVariables.set(numbering.getIndex(variable));
   }
 }
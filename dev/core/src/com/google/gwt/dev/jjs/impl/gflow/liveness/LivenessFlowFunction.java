@@ -21,6 +21,7 @@ import com.google.gwt.dev.jjs.ast.JVariable;
 import com.google.gwt.dev.jjs.impl.gflow.AssumptionMap;
 import com.google.gwt.dev.jjs.impl.gflow.AssumptionUtil;
 import com.google.gwt.dev.jjs.impl.gflow.FlowFunction;
+import com.google.gwt.dev.jjs.impl.gflow.VariableNumbering;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.Cfg;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgEdge;
 import com.google.gwt.dev.jjs.impl.gflow.cfg.CfgNode;
@@ -35,11 +36,17 @@ import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumption.Updater;
  */
 public class LivenessFlowFunction implements FlowFunction<CfgNode<?>, CfgEdge,
     Cfg, LivenessAssumption> {
+  private final VariableNumbering numbering;
+
+  public LivenessFlowFunction(VariableNumbering numbering) {
+    this.numbering = numbering;
+  }
+
   @Override
   public void interpret(CfgNode<?> node, Cfg g,
       AssumptionMap<CfgEdge, LivenessAssumption> assumptionMap) {
     final Updater result = new Updater(
-        AssumptionUtil.join(g.getOutEdges(node), assumptionMap));
+        AssumptionUtil.join(g.getOutEdges(node), assumptionMap), numbering);
 
     node.accept(new CfgVisitor() {
       @Override
@@ -105,6 +105,8 @@ public class ClosureJsAstTranslator {
 
   private final Set<String> externalVars = Sets.newHashSet();
 
+  private final Set<String> propertyReferences = Sets.newHashSet();
+
   private final JsProgram program;
 
   ClosureJsAstTranslator(boolean validate, JsProgram program) {
@@ -139,6 +141,13 @@ public class ClosureJsAstTranslator {
     return globalVars;
   }
 
+  /**
+   * Returns the names of all the properties referenced, external or not.
+   */
+  Set<String> getPropertyReferences() {
+    return propertyReferences;
+  }
+
   private Node applyOriginalName(Node n, JsNode x) {
     /*
      * if (x instanceof HasSymbol) { Symbol symbol = ((HasSymbol)x).getSymbol(); if (symbol != null)
@@ -570,6 +579,7 @@ public class ClosureJsAstTranslator {
     boolean isExternal = name == null || !name.isObfuscatable();
     if (x.getQualifier() != null) {
       n = IR.getprop(transform(x.getQualifier()), transformNameAsString(x.getShortIdent(), x));
+      this.propertyReferences.add(x.getShortIdent());
       if (isExternal) {
         this.externalProperties.add(x.getShortIdent());
       }
@@ -17,8 +17,15 @@ package com.google.gwt.dev.js;
 import com.google.gwt.dev.jjs.JsOutputOption;
 import com.google.gwt.dev.jjs.ast.JProgram;
 import com.google.gwt.dev.jjs.impl.codesplitter.FragmentPartitioningResult;
+import com.google.gwt.dev.js.ast.JsExprStmt;
+import com.google.gwt.dev.js.ast.JsFunction;
+import com.google.gwt.dev.js.ast.JsName;
 import com.google.gwt.dev.js.ast.JsProgram;
 import com.google.gwt.dev.js.ast.JsProgramFragment;
+import com.google.gwt.dev.js.ast.JsStatement;
+import com.google.gwt.dev.js.ast.JsVars;
+import com.google.gwt.dev.js.ast.JsVars.JsVar;
+import com.google.gwt.dev.util.ParallelTasks;
 import com.google.gwt.thirdparty.guava.common.base.Preconditions;
 import com.google.gwt.thirdparty.guava.common.base.Throwables;
 import com.google.gwt.thirdparty.guava.common.collect.ImmutableList;
@@ -49,10 +56,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -62,6 +72,14 @@ import java.util.zip.ZipInputStream;
  * A class that represents an single invocation of the Closure Compiler.
  */
 public class ClosureJsRunner {
+  /**
+   * A Java system property that sets how many invocations of the Closure Compiler may run at
+   * once. When more than one, the exclusive fragments of a split program are optimized separately
+   * from the load sequence; see {@link #compileSplit}. Defaults to one, which optimizes the whole
+   * program in a single invocation.
+   */
+  public static final String THREADS_PROPERTY = "gwt.jjs.closureThreads";
+
   // The externs expected in externs.zip, in sorted order.
   private static final List<String> DEFAULT_EXTERNS_NAMES = ImmutableList.of(
       // JS externs
@@ -133,11 +151,6 @@ public class ClosureJsRunner {
     return externs;
   }
 
-  /**
-   * The instance of the Closure Compiler used for the compile.
-   */
-  private Compiler compiler = null;
-
   /**
    * The set of external properties discovered in the provided AST.
    */
@@ -153,6 +166,16 @@ public class ClosureJsRunner {
    */
   private Set<String> globalVars = Sets.newHashSet();
 
+  /**
+   * The internal global variables referenced by each fragment, by fragment number.
+   */
+  private final List<Set<String>> globalVarsByFragment = Lists.newArrayList();
+
+  /**
+   * The properties referenced by each fragment, by fragment number.
+   */
+  private final List<Set<String>> propertyReferencesByFragment = Lists.newArrayList();
+
   /**
    * Whether AST validation should be performed on the generated
    * Closure Compiler AST.
@@ -175,37 +198,37 @@ public class ClosureJsRunner {
 
   public void compile(JProgram jprogram, JsProgram program, String[] js,
       JsOutputOption jsOutputOption) {
+    // Turn off Closure Compiler logging
+    Logger.getLogger("com.google.gwt.thirdparty.javascript.jscomp").setLevel(Level.OFF);
+
+    computeFragmentMap(jprogram, program);
+
+    // One invocation for the load sequence, plus one per exclusive fragment.
+    int threadCount = Math.min(getThreadCount(), program.getFragmentCount() - loadModulesCount + 1);
+    if (threadCount > 1) {
+      compileSplit(program, js, jsOutputOption, threadCount);
+      return;
+    }
+
     CompilerOptions options;
     try {
       options = getClosureCompilerOptions(jsOutputOption);
     } catch (ParseException e) {
       throw new RuntimeException("Error setting closure compiler options", e);
     }
-    // Turn off Closure Compiler logging
-    Logger.getLogger("com.google.gwt.thirdparty.javascript.jscomp").setLevel(Level.OFF);
-
-    // Create a fresh compiler instance.
-    compiler = new Compiler();
 
     // Translate the ASTs and build the modules
-    computeFragmentMap(jprogram, program);
-    List<JSModule> modules = createClosureModules(program);
+    List<JSModule> modules = createClosureModules(program, true);
 
     // Build the externs based on what we discovered building the modules.
-    List<JSSourceFile> externs = getClosureCompilerExterns();
+    List<JSSourceFile> externs = getClosureCompilerExterns(
+        Collections.<String>emptySet(), Collections.<String>emptySet());
 
-    Result result = compiler.compileModules(externs, modules, options);
-    if (result.success) {
-      int fragments = program.getFragmentCount();
-      for (int i = 0; i < fragments; i++) {
-        int module = mapFragmentIndexToModuleIndex(i);
-        js[i] = compiler.toSource(modules.get(module));
-      }
-    } else {
-      for (JSError error : result.errors) {
-        System.err.println("error optimizing:" + error.toString());
-        throw new RuntimeException(error.description);
-      }
+    Compiler compiler = compileModules(externs, modules, options);
+    int fragments = program.getFragmentCount();
+    for (int i = 0; i < fragments; i++) {
+      int module = mapFragmentIndexToModuleIndex(i);
+      js[i] = compiler.toSource(modules.get(module));
     }
   }
 
@@ -219,6 +242,101 @@ public class ClosureJsRunner {
     }
   }
 
+  /**
+   * Optimizes the fragments of the load sequence in one invocation of the Closure Compiler, and
+   * each exclusive fragment in an invocation of its own, running up to {@code threadCount} of
+   * them at once.
+   * <p>
+   * No invocation sees the whole program, so each one gets externs for the globals and properties
+   * that the others share with it. The exclusive fragments only reference code of the load
+   * sequence, so an exclusive fragment is free to optimize its own globals, but the load sequence
+   * keeps all of its globals, and their signatures, in case an exclusive fragment uses them.
+   * Neither renames globals, since names chosen separately could collide once the fragments are
+   * loaded together.
+   */
+  private void compileSplit(JsProgram program, final String[] js,
+      final JsOutputOption jsOutputOption, int threadCount) {
+    final int fragments = program.getFragmentCount();
+
+    // Closure Compiler modifies the ASTs, so the translations are not shared between invocations.
+    final List<JSModule> modules = createClosureModules(program, false);
+
+    Set<String> loadSequenceGlobals = Sets.newHashSet();
+    Set<String> loadSequenceProperties = Sets.newHashSet();
+    Set<String> exclusiveProperties = Sets.newHashSet();
+    for (int i = 0; i < fragments; i++) {
+      if (mapFragmentIndexToModuleIndex(i) < loadModulesCount) {
+        loadSequenceGlobals.addAll(getDefinedGlobals(program.getFragment(i)));
+        loadSequenceProperties.addAll(propertyReferencesByFragment.get(i));
+      } else {
+        exclusiveProperties.addAll(propertyReferencesByFragment.get(i));
+      }
+    }
+
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    final List<JSSourceFile> loadSequenceExterns =
+        getClosureCompilerExterns(exclusiveProperties, Collections.<String>emptySet());
+    tasks.add(new Callable<Void>() {
+      @Override
+      public Void call() {
+        List<JSModule> loadSequence = modules.subList(0, loadModulesCount);
+        Compiler compiler = compileModules(loadSequenceExterns, loadSequence,
+            getSplitCompilerOptions(jsOutputOption, true));
+        for (int i = 0; i < fragments; i++) {
+          int module = mapFragmentIndexToModuleIndex(i);
+          if (module < loadModulesCount) {
+            js[i] = compiler.toSource(loadSequence.get(module));
+          }
+        }
+        return null;
+      }
+    });
+    for (int i = 0; i < fragments; i++) {
+      if (mapFragmentIndexToModuleIndex(i) < loadModulesCount) {
+        continue;
+      }
+      final int fragment = i;
+      final JSModule module = modules.get(mapFragmentIndexToModuleIndex(i));
+      Set<String> sharedGlobals = Sets.newHashSet(globalVarsByFragment.get(i));
+      sharedGlobals.retainAll(loadSequenceGlobals);
+      final List<JSSourceFile> externs =
+          getClosureCompilerExterns(loadSequenceProperties, sharedGlobals);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          Compiler compiler = compileModules(externs, Collections.singletonList(module),
+              getSplitCompilerOptions(jsOutputOption, false));
+          js[fragment] = compiler.toSource(module);
+          return null;
+        }
+      });
+    }
+
+    try {
+      ParallelTasks.invokeAll(tasks, threadCount);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while optimizing with the Closure Compiler", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Runs one invocation of the Closure Compiler over the modules and returns it, so that the
+   * optimized modules can be printed.
+   */
+  private static Compiler compileModules(List<JSSourceFile> externs, List<JSModule> modules,
+      CompilerOptions options) {
+    Compiler compiler = new Compiler();
+    Result result = compiler.compileModules(externs, modules, options);
+    for (JSError error : result.errors) {
+      System.err.println("error optimizing:" + error.toString());
+      throw new RuntimeException(error.description);
+    }
+    return compiler;
+  }
+
   private void computeFragmentMap(JProgram jprogram, JsProgram jsProgram) {
     int fragments = jsProgram.getFragmentCount();
     List<Integer> initSeq = jprogram.getInitialFragmentIdSequence();
@@ -278,6 +396,8 @@ public class ClosureJsRunner {
     ClosureJsAstTranslator translator = new ClosureJsAstTranslator(validate, program);
     Node root = translator.translate(fragment, inputId, source);
     globalVars.addAll(translator.getGlobalVariableNames());
+    globalVarsByFragment.add(translator.getGlobalVariableNames());
+    propertyReferencesByFragment.add(translator.getPropertyReferences());
     externalProps.addAll(translator.getExternalPropertyReferences());
     externalVars.addAll(translator.getExternalVariableReferences());
     SourceAst sourceAst = new ClosureJsAst(inputId, root);
@@ -291,10 +411,16 @@ public class ClosureJsRunner {
     return module;
   }
 
-  private List<JSModule> createClosureModules(JsProgram program) {
+  /**
+   * Translates the fragments to Closure Compiler modules, in the order expected by the Closure
+   * Compiler. If {@code linkExclusive} is false, the exclusive fragments are left without
+   * dependencies, so that they can be compiled on their own.
+   */
+  private List<JSModule> createClosureModules(JsProgram program, boolean linkExclusive) {
     int fragments = program.getFragmentCount();
     JSModule[] modules = new JSModule[fragments];
 
+    // In fragment order, which createClosureJsAst relies on to record what each one references.
     for (int i = 0; i < fragments; i++) {
       modules[mapFragmentIndexToModuleIndex(i)] =
           createClosureModule(program, program.getFragment(i), "module" + i);
@@ -312,7 +438,9 @@ public class ClosureJsRunner {
       JSModule leftovers = modules[loadModulesCount - 1];
       for (int i = loadModulesCount; i < modules.length; i++) {
         Preconditions.checkNotNull(modules[i], "Module: ", i);
-        modules[i].addDependency(leftovers);
+        if (linkExclusive) {
+          modules[i].addDependency(leftovers);
+        }
       }
     }
     modules[0].add(JSSourceFile.fromCode("hack", "window['gwtOnLoad'] = gwtOnLoad;\n"));
@@ -320,7 +448,12 @@ public class ClosureJsRunner {
     return Arrays.asList(modules);
   }
 
-  private List<JSSourceFile> getClosureCompilerExterns() {
+  /**
+   * Returns the externs for an invocation, including {@code sharedProperties} and
+   * {@code sharedVars}, which are defined or used by fragments that are not part of it.
+   */
+  private List<JSSourceFile> getClosureCompilerExterns(Set<String> sharedProperties,
+      Set<String> sharedVars) {
     List<JSSourceFile> externs = getDefaultExternsList();
     externs.add(JSSourceFile.fromCode("gwt_externs",
 
@@ -356,6 +489,17 @@ public class ClosureJsRunner {
       generatedExterns += "var " + var + ";\n";
     }
 
+    StringBuilder sharedExterns = new StringBuilder();
+    for (String prop : sharedProperties) {
+      if (!externalProps.contains(prop)) {
+        sharedExterns.append("gwt_externs.").append(prop).append(";\n");
+      }
+    }
+    for (String var : sharedVars) {
+      sharedExterns.append("var ").append(var).append(";\n");
+    }
+    generatedExterns += sharedExterns;
+
     externs.add(JSSourceFile.fromCode("gwt_generated_externs", generatedExterns));
 
     return externs;
@@ -436,6 +580,66 @@ public class ClosureJsRunner {
     return options;
   }
 
+  /**
+   * Returns the options for one of the invocations of {@link #compileSplit}. If
+   * {@code keepGlobals} is true, global variables and functions are neither removed, inlined nor
+   * given different parameters, since fragments that are compiled separately may use them.
+   */
+  private CompilerOptions getSplitCompilerOptions(JsOutputOption jsOutputOption,
+      boolean keepGlobals) {
+    CompilerOptions options;
+    try {
+      options = getClosureCompilerOptions(jsOutputOption);
+    } catch (ParseException e) {
+      throw new RuntimeException("Error setting closure compiler options", e);
+    }
+
+    // Globals created by Closure Compiler, such as devirtualized methods, could otherwise get the
+    // same name in two fragments.
+    if (jsOutputOption == JsOutputOption.OBFUSCATED) {
+      options.setRenamingPolicy(VariableRenamingPolicy.LOCAL, PropertyRenamingPolicy.OFF);
+    }
+    options.devirtualizePrototypeMethods = false;
+    options.collapseProperties = false;
+
+    if (keepGlobals) {
+      options.setInlineFunctions(Reach.LOCAL_ONLY);
+      options.setInlineVariables(Reach.LOCAL_ONLY);
+      options.inlineConstantVars = false;
+      options.setRemoveUnusedVariable(Reach.LOCAL_ONLY);
+      options.smartNameRemoval = false;
+      options.optimizeParameters = false;
+      options.optimizeReturns = false;
+      options.optimizeCalls = false;
+    }
+    return options;
+  }
+
+  /**
+   * Returns the names of the global variables and functions that a fragment declares.
+   */
+  private static Set<String> getDefinedGlobals(JsProgramFragment fragment) {
+    Set<String> names = Sets.newHashSet();
+    for (JsStatement statement : fragment.getGlobalBlock().getStatements()) {
+      if (statement instanceof JsVars) {
+        for (JsVar var : (JsVars) statement) {
+          names.add(var.getName().getShortIdent());
+        }
+      } else if (statement instanceof JsExprStmt
+          && ((JsExprStmt) statement).getExpression() instanceof JsFunction) {
+        JsName name = ((JsFunction) ((JsExprStmt) statement).getExpression()).getName();
+        if (name != null) {
+          names.add(name.getShortIdent());
+        }
+      }
+    }
+    return names;
+  }
+
+  private static int getThreadCount() {
+    return ParallelTasks.getThreadCount(THREADS_PROPERTY);
+  }
+
   private int mapFragmentIndexToModuleIndex(int index) {
     assert closureModuleSequenceMap.length > index;
     return closureModuleSequenceMap[index];
@@ -20,10 +20,16 @@ import com.google.gwt.dev.util.collect.Lists;
 import com.google.gwt.dev.util.msg.Message1String;
 
 import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A {@link ClassPathEntry} for a directory on the file system.
@@ -41,25 +47,134 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
         TreeLogger.DEBUG, "Excluding file: $0");
   }
 
+  /**
+   * The subdirectories and files of a directory.
+   */
+  private static class Listing {
+    private final List<File> directories = new ArrayList<File>();
+    private final List<File> files = new ArrayList<File>();
+  }
+
+  /**
+   * Refers to a shared entry without keeping it alive, and keeps its watcher
+   * so that the watcher can be closed once the entry is collected.
+   */
+  private static class SharedEntryReference extends WeakReference<DirectoryClassPathEntry> {
+    private final String location;
+    private final DirectoryWatcher watcher;
+
+    private SharedEntryReference(DirectoryClassPathEntry entry) {
+      super(entry, collectedEntries);
+      this.location = entry.location;
+      this.watcher = entry.watcher;
+    }
+  }
+
+  /**
+   * A Java system property that turns on watching the directory for added and
+   * removed files, so that unchanged directories don't have to be listed again
+   * each time resources are scanned. Needs Java 7 or later.
+   */
+  public static final String WATCH_PROPERTY = "gwt.watchDirectories";
+
+  /**
+   * The entries shared by {@link #get(File)}, by location. An entry stays
+   * shared for as long as a resource oracle or one of its resources uses it.
+   */
+  private static final Map<String, SharedEntryReference> watchingEntries =
+      new HashMap<String, SharedEntryReference>();
+
+  private static final ReferenceQueue<DirectoryClassPathEntry> collectedEntries =
+      new ReferenceQueue<DirectoryClassPathEntry>();
+
+  /**
+   * Returns an entry for an absolute directory. When {@link #WATCH_PROPERTY}
+   * is set, the entry is shared with other users so that it can keep the
+   * listings of the directories that didn't change.
+   */
+  public static DirectoryClassPathEntry get(File dir) {
+    if (!Boolean.getBoolean(WATCH_PROPERTY)) {
+      return new DirectoryClassPathEntry(dir);
+    }
+    synchronized (watchingEntries) {
+      evictCollectedEntries();
+      String location = dir.toURI().toString();
+      SharedEntryReference reference = watchingEntries.get(location);
+      DirectoryClassPathEntry entry = reference == null ? null : reference.get();
+      if (entry == null) {
+        entry = new DirectoryClassPathEntry(dir, createWatcher());
+        watchingEntries.put(location, new SharedEntryReference(entry));
+      }
+      return entry;
+    }
+  }
+
+  /**
+   * Returns a new watcher, or null if directories can't be watched.
+   */
+  private static DirectoryWatcher createWatcher() {
+    try {
+      return DirectoryWatcher.create();
+    } catch (LinkageError e) {
+      // Not running on Java 7 or later; list the directories every time.
+      return null;
+    }
+  }
+
+  /**
+   * Stops watching for the entries that are no longer used.
+   */
+  private static void evictCollectedEntries() {
+    for (Reference<?> collected = collectedEntries.poll(); collected != null;
+        collected = collectedEntries.poll()) {
+      SharedEntryReference reference = (SharedEntryReference) collected;
+      if (watchingEntries.get(reference.location) == reference) {
+        watchingEntries.remove(reference.location);
+      }
+      if (reference.watcher != null) {
+        reference.watcher.close();
+      }
+    }
+  }
+
   /**
    * Absolute directory.
    */
   private final File dir;
 
+  /**
+   * The listings of watched directories that haven't changed since they were
+   * read. Only used when there is a {@link #watcher}.
+   */
+  private final Map<File, Listing> listings = new HashMap<File, Listing>();
+
   private final String location;
 
+  private final DirectoryWatcher watcher;
+
   /**
    * @param dir an absolute directory
    */
   public DirectoryClassPathEntry(File dir) {
+    this(dir, null);
+  }
+
+  /**
+   * @param dir an absolute directory
+   * @param watcher reports the changes to the directories that were listed, or
+   *          null to list them on every scan
+   */
+  DirectoryClassPathEntry(File dir, DirectoryWatcher watcher) {
     assert (dir.isAbsolute());
     this.dir = dir;
     this.location = dir.toURI().toString();
+    this.watcher = watcher;
   }
 
   @Override
-  public List<Map<AbstractResource, ResourceResolution>> findApplicableResources(
+  public synchronized List<Map<AbstractResource, ResourceResolution>> findApplicableResources(
       TreeLogger logger, List<PathPrefixSet> pathPrefixSets) {
+    refreshListings();
     List<Map<AbstractResource, ResourceResolution>> results =
         new ArrayList<Map<AbstractResource, ResourceResolution>>(pathPrefixSets.size());
     for (PathPrefixSet pathPrefixSet : pathPrefixSets) {
@@ -70,8 +185,9 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
   }
 
   @Override
-  public Map<AbstractResource, ResourceResolution> findApplicableResources(TreeLogger logger,
-      PathPrefixSet pathPrefixSet) {
+  public synchronized Map<AbstractResource, ResourceResolution> findApplicableResources(
+      TreeLogger logger, PathPrefixSet pathPrefixSet) {
+    refreshListings();
     Map<AbstractResource, ResourceResolution> results =
         new IdentityHashMap<AbstractResource, ResourceResolution>();
     descendToFindResources(logger, Lists.create(pathPrefixSet), Lists.create(results), dir, "");
@@ -101,31 +217,87 @@ public class DirectoryClassPathEntry extends ClassPathEntry {
 
     // Assert: this directory is included in the path prefix set.
 
-    File[] children = dir.listFiles();
-    for (File child : children) {
+    Listing listing = getListing(dir);
+    for (File child : listing.directories) {
+      String childDirPath = dirPath + child.getName() + "/";
+      for (int i = 0; i < len; ++i) {
+        if (pathPrefixSets.get(i).includesDirectory(childDirPath)) {
+          Messages.DESCENDING_INTO_DIR.log(logger, child.getPath(), null);
+          descendToFindResources(logger, pathPrefixSets, results, child,
+              childDirPath);
+          break;
+        }
+      }
+    }
+    for (File child : listing.files) {
       String childPath = dirPath + child.getName();
-      if (child.isDirectory()) {
-        String childDirPath = childPath + "/";
-        for (int i = 0; i < len; ++i) {
-          if (pathPrefixSets.get(i).includesDirectory(childDirPath)) {
-            Messages.DESCENDING_INTO_DIR.log(logger, child.getPath(), null);
-            descendToFindResources(logger, pathPrefixSets, results, child,
-                childDirPath);
-            break;
-          }
+      for (int i = 0; i < len; ++i) {
+        ResourceResolution resourceResolution = null;
+        if ((resourceResolution = pathPrefixSets.get(i).includesResource(childPath)) != null) {
+          Messages.INCLUDING_FILE.log(logger, childPath, null);
+          FileResource r = new FileResource(this, childPath, child);
+          results.get(i).put(r, resourceResolution);
+        } else {
+          Messages.EXCLUDING_FILE.log(logger, childPath, null);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the subdirectories and files of a directory, reusing the previous
+   * listing if the directory is watched and hasn't changed.
+   */
+  private Listing getListing(File dir) {
+    Listing listing = listings.get(dir);
+    if (listing != null) {
+      return listing;
+    }
+    // Watch before listing, so that no change is missed.
+    boolean watched = watcher != null && watcher.watch(dir);
+    listing = new Listing();
+    File[] children = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (child.isDirectory()) {
+          listing.directories.add(child);
+        } else if (child.isFile()) {
+          listing.files.add(child);
         }
-      } else if (child.isFile()) {
-        for (int i = 0; i < len; ++i) {
-          ResourceResolution resourceResolution = null;
-          if ((resourceResolution = pathPrefixSets.get(i).includesResource(childPath)) != null) {
-            Messages.INCLUDING_FILE.log(logger, childPath, null);
-            FileResource r = new FileResource(this, childPath, child);
-            results.get(i).put(r, resourceResolution);
-          } else {
-            Messages.EXCLUDING_FILE.log(logger, childPath, null);
-          }
+      }
+    }
+    if (watched) {
+      listings.put(dir, listing);
+    }
+    return listing;
+  }
+
+  /**
+   * Forgets the listings of the directories that had files added or removed
+   * since the last scan, and of everything under an added or removed
+   * directory.
+   */
+  private void refreshListings() {
+    if (watcher == null) {
+      return;
+    }
+    Set<File> changedPaths = watcher.pollChangedPaths();
+    if (changedPaths == null) {
+      // Events were lost.
+      listings.clear();
+      return;
+    }
+    for (Iterator<File> it = listings.keySet().iterator(); it.hasNext();) {
+      File listed = it.next();
+      for (File path = listed; path != null; path = path.getParentFile()) {
+        if (changedPaths.contains(path)) {
+          it.remove();
+          break;
         }
       }
     }
+    for (File changedPath : changedPaths) {
+      listings.remove(changedPath.getParentFile());
+    }
   }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.resource.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the files and directories added to or removed from a set of watched
+ * directories, using a {@link WatchService}. Changes to the contents of a file
+ * are only tracked when asked for, since they don't change which resources
+ * exist.
+ * <p>
+ * Uses the Java 7 file system API, so it must only be loaded when running on
+ * Java 7 or later; see {@link #create()}.
+ */
+public class DirectoryWatcher {
+
+  /**
+   * Returns a new watcher that tracks added and removed entries, or null if the
+   * platform doesn't support watching directories.
+   */
+  public static DirectoryWatcher create() {
+    return create(false);
+  }
+
+  /**
+   * Returns a new watcher, or null if the platform doesn't support watching
+   * directories.
+   *
+   * @param watchModifications whether to also report the files whose contents
+   *          changed
+   */
+  public static DirectoryWatcher create(boolean watchModifications) {
+    try {
+      WatchService watchService = FileSystems.getDefault().newWatchService();
+      if (watchService.getClass().getName().endsWith("PollingWatchService")) {
+        // Only notices changes every few seconds, so a recompile could miss a
+        // file that was just added.
+        watchService.close();
+        return null;
+      }
+      return new DirectoryWatcher(watchService, watchModifications);
+    } catch (IOException e) {
+      return null;
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  private final Map<WatchKey, File> directoriesByKey = new HashMap<WatchKey, File>();
+
+  private final WatchEvent.Kind<?>[] kinds;
+
+  private final WatchService watchService;
+
+  DirectoryWatcher(WatchService watchService) {
+    this(watchService, false);
+  }
+
+  protected DirectoryWatcher(WatchService watchService, boolean watchModifications) {
+    this.watchService = watchService;
+    this.kinds = watchModifications
+        ? new WatchEvent.Kind<?>[] {StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY}
+        : new WatchEvent.Kind<?>[] {StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE};
+  }
+
+  /**
+   * Stops watching all the directories.
+   */
+  public synchronized void close() {
+    try {
+      watchService.close();
+    } catch (IOException e) {
+      // Nothing more to release.
+    }
+    directoriesByKey.clear();
+  }
+
+  /**
+   * Returns the files and directories added, removed or, if asked for, modified
+   * since the last call, or since their directory was first watched. Returns
+   * null if events were lost, in which case every directory must be listed
+   * again.
+   */
+  public synchronized Set<File> pollChangedPaths() {
+    Set<File> changedPaths = new HashSet<File>();
+    boolean eventsLost = false;
+    for (WatchKey key = watchService.poll(); key != null; key = watchService.poll()) {
+      File directory = directoriesByKey.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          eventsLost = true;
+        } else {
+          changedPaths.add(new File(directory, ((Path) event.context()).toString()));
+        }
+      }
+      if (!key.reset()) {
+        // The directory was removed or can no longer be watched.
+        directoriesByKey.remove(key);
+        changedPaths.add(directory);
+      }
+    }
+    return eventsLost ? null : changedPaths;
+  }
+
+  /**
+   * Starts watching a directory, if it isn't already watched. Returns false if
+   * it can't be watched.
+   */
+  public synchronized boolean watch(File directory) {
+    try {
+      WatchKey key = directory.toPath().register(watchService, kinds);
+      directoriesByKey.put(key, directory);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
@@ -253,7 +253,7 @@ public final class PathPrefix {
     assert ("".equals(prefix) || (!prefix.startsWith("/") && prefix.endsWith("/"))) : "malformed prefix";
   }
 
-  private void createExcludeFilter() {
+  private synchronized void createExcludeFilter() {
     if (exclusionScanner == null && !exclusions.isEmpty()) {
       exclusionScanner = new ZipScanner();
       exclusionScanner.setIncludes(exclusions.toArray(new String[exclusions.size()]));
@@ -20,12 +20,14 @@ import com.google.gwt.dev.cfg.ResourceLoader;
 import com.google.gwt.dev.cfg.ResourceLoaders;
 import com.google.gwt.dev.resource.Resource;
 import com.google.gwt.dev.resource.ResourceOracle;
+import com.google.gwt.dev.util.ParallelTasks;
 import com.google.gwt.dev.util.log.speedtracer.CompilerEventType;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 import com.google.gwt.dev.util.msg.Message0;
 import com.google.gwt.dev.util.msg.Message1String;
 import com.google.gwt.thirdparty.guava.common.base.Joiner;
+import com.google.gwt.thirdparty.guava.common.base.Throwables;
 import com.google.gwt.thirdparty.guava.common.collect.HashMultimap;
 import com.google.gwt.thirdparty.guava.common.collect.MapMaker;
 import com.google.gwt.thirdparty.guava.common.collect.Maps;
@@ -49,6 +51,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The normal implementation of {@link ResourceOracle}.
@@ -160,6 +164,12 @@ public class ResourceOracleImpl implements ResourceOracle {
     }
   }
 
+  /**
+   * A Java system property that sets how many threads scan the class path
+   * entries for resources. Defaults to one.
+   */
+  public static final String SCAN_THREADS_PROPERTY = "gwt.resourceScanThreads";
+
   private static final Map<ResourceLoader, List<ClassPathEntry>> classPathCache =
       new MapMaker().weakKeys().makeMap();
 
@@ -186,7 +196,7 @@ public class ResourceOracleImpl implements ResourceOracle {
       File f = new File(url.toURI());
       String lowerCaseFileName = f.getName().toLowerCase(Locale.ENGLISH);
       if (f.isDirectory()) {
-        return new DirectoryClassPathEntry(f);
+        return DirectoryClassPathEntry.get(f);
       } else if (f.isFile() && lowerCaseFileName.endsWith(".jar")) {
         return ZipFileClassPathEntry.get(f);
       } else if (f.isFile() && lowerCaseFileName.endsWith(".zip")) {
@@ -227,17 +237,25 @@ public class ResourceOracleImpl implements ResourceOracle {
   /**
    * Preinitializes the classpath for a given {@link ResourceLoader}.
    */
-  public static void preload(TreeLogger logger, ResourceLoader resources) {
+  public static void preload(final TreeLogger logger, ResourceLoader resources) {
     Event resourceOracle =
         SpeedTracerLogger.start(CompilerEventType.RESOURCE_ORACLE, "phase", "preload");
     List<ClassPathEntry> entries = getAllClassPathEntries(logger, resources);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
     for (ClassPathEntry entry : entries) {
       // We only handle pre-indexing jars, the file system could change.
       if (entry instanceof ZipFileClassPathEntry) {
-        ZipFileClassPathEntry zpe = (ZipFileClassPathEntry) entry;
-        zpe.index(logger);
+        final ZipFileClassPathEntry zpe = (ZipFileClassPathEntry) entry;
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() {
+            zpe.index(logger);
+            return null;
+          }
+        });
       }
     }
+    invokeAll(tasks);
     resourceOracle.end();
   }
 
@@ -276,12 +294,29 @@ public class ResourceOracleImpl implements ResourceOracle {
     Map<String, ResourceDescription> resourceDescriptionsByPath =
         new LinkedHashMap<String, ResourceDescription>();
 
-    for (ClassPathEntry classPathEntry : classPathEntries) {
-      TreeLogger branchForClassPathEntry =
+    // Scan the entries (possibly at the same time), then merge the answers in
+    // class path order so that earlier entries still shadow later ones.
+    final PathPrefixSet pathPrefixSet = this.pathPrefixSet;
+    List<TreeLogger> branches = new ArrayList<TreeLogger>(classPathEntries.size());
+    List<Callable<Map<AbstractResource, ResourceResolution>>> tasks =
+        new ArrayList<Callable<Map<AbstractResource, ResourceResolution>>>();
+    for (final ClassPathEntry classPathEntry : classPathEntries) {
+      final TreeLogger branchForClassPathEntry =
           Messages.EXAMINING_PATH_ROOT.branch(refreshBranch, classPathEntry.getLocation(), null);
+      branches.add(branchForClassPathEntry);
+      tasks.add(new Callable<Map<AbstractResource, ResourceResolution>>() {
+        @Override
+        public Map<AbstractResource, ResourceResolution> call() {
+          return classPathEntry.findApplicableResources(branchForClassPathEntry, pathPrefixSet);
+        }
+      });
+    }
+    List<Map<AbstractResource, ResourceResolution>> prefixesByResourceByEntry = invokeAll(tasks);
 
+    for (int i = 0; i < prefixesByResourceByEntry.size(); i++) {
+      TreeLogger branchForClassPathEntry = branches.get(i);
       Map<AbstractResource, ResourceResolution> prefixesByResource =
-          classPathEntry.findApplicableResources(branchForClassPathEntry, pathPrefixSet);
+          prefixesByResourceByEntry.get(i);
       for (Entry<AbstractResource, ResourceResolution> entry : prefixesByResource.entrySet()) {
         AbstractResource resource = entry.getKey();
         ResourceResolution resourceResolution = entry.getValue();
@@ -394,6 +429,21 @@ public class ResourceOracleImpl implements ResourceOracle {
     }
   }
 
+  /**
+   * Runs the tasks on up to {@link #SCAN_THREADS_PROPERTY} threads and returns
+   * their results in order.
+   */
+  private static <T> List<T> invokeAll(List<Callable<T>> tasks) {
+    try {
+      return ParallelTasks.invokeAll(tasks, ParallelTasks.getThreadCount(SCAN_THREADS_PROPERTY));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while scanning the class path", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
   private static synchronized List<ClassPathEntry> getAllClassPathEntries(TreeLogger logger,
       ResourceLoader resources) {
     List<ClassPathEntry> classPath = classPathCache.get(resources);
@@ -17,17 +17,16 @@ package com.google.gwt.dev.resource.impl;
 
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.dev.util.collect.IdentityHashMap;
-import com.google.gwt.dev.util.collect.IdentityHashSet;
 import com.google.gwt.dev.util.collect.IdentityMaps;
-import com.google.gwt.dev.util.collect.Sets;
 import com.google.gwt.dev.util.msg.Message1String;
+import com.google.gwt.thirdparty.guava.common.collect.ArrayListMultimap;
+import com.google.gwt.thirdparty.guava.common.collect.ListMultimap;
 import com.google.gwt.thirdparty.guava.common.collect.MapMaker;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.Map;
-import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -92,7 +91,12 @@ public class ZipFileClassPathEntry extends ClassPathEntry {
     return entry;
   }
 
-  private Set<ZipFileResource> allZipFileResources;
+  /**
+   * Every resource in the zip file, by the abstract path of its directory
+   * ("" for the top level), so that a {@link PathPrefixSet} only has to look
+   * at the directories it may include.
+   */
+  private ListMultimap<String, ZipFileResource> zipFileResourcesByDirectory;
 
   /**
    * The lifetime of the {@link PathPrefixSet} pins the life time of the associated
@@ -144,15 +148,15 @@ public class ZipFileClassPathEntry extends ClassPathEntry {
 
   synchronized void index(TreeLogger logger) {
     // Never re-index.
-    if (allZipFileResources == null) {
-      allZipFileResources = buildIndex(logger);
+    if (zipFileResourcesByDirectory == null) {
+      zipFileResourcesByDirectory = buildIndex(logger);
     }
   }
 
-  private Set<ZipFileResource> buildIndex(TreeLogger logger) {
+  private ListMultimap<String, ZipFileResource> buildIndex(TreeLogger logger) {
     logger = Messages.BUILDING_INDEX.branch(logger, zipFile.getName(), null);
 
-    Set<ZipFileResource> results = new IdentityHashSet<ZipFileResource>();
+    ListMultimap<String, ZipFileResource> results = ArrayListMultimap.create();
     Enumeration<? extends ZipEntry> e = zipFile.entries();
     while (e.hasMoreElements()) {
       ZipEntry zipEntry = e.nextElement();
@@ -164,11 +168,12 @@ public class ZipFileClassPathEntry extends ClassPathEntry {
         // Skip META-INF since classloaders normally make this invisible.
         continue;
       }
-      ZipFileResource zipResource = new ZipFileResource(this, zipEntry.getName());
-      results.add(zipResource);
-      Messages.READ_ZIP_ENTRY.log(logger, zipEntry.getName(), null);
+      String name = zipEntry.getName();
+      ZipFileResource zipResource = new ZipFileResource(this, name);
+      results.put(name.substring(0, name.lastIndexOf('/') + 1), zipResource);
+      Messages.READ_ZIP_ENTRY.log(logger, name, null);
     }
-    return Sets.normalize(results);
+    return results;
   }
 
   private Map<AbstractResource, ResourceResolution> computeApplicableResources(
@@ -178,16 +183,21 @@ public class ZipFileClassPathEntry extends ClassPathEntry {
 
     Map<AbstractResource, ResourceResolution> results =
         new IdentityHashMap<AbstractResource, ResourceResolution>();
-    for (ZipFileResource r : allZipFileResources) {
-      String path = r.getPath();
-      String[] pathParts = r.getPathParts();
-      ResourceResolution resourceResolution = null;
-      if ((resourceResolution = pathPrefixSet.includesResource(path, pathParts))
-          != null) {
-        Messages.INCLUDING_RESOURCE.log(logger, path, null);
-        results.put(r, resourceResolution);
-      } else {
-        Messages.EXCLUDING_RESOURCE.log(logger, path, null);
+    for (String directory : zipFileResourcesByDirectory.keySet()) {
+      if (!directory.isEmpty() && !pathPrefixSet.includesDirectory(directory)) {
+        continue;
+      }
+      for (ZipFileResource r : zipFileResourcesByDirectory.get(directory)) {
+        String path = r.getPath();
+        String[] pathParts = r.getPathParts();
+        ResourceResolution resourceResolution = null;
+        if ((resourceResolution = pathPrefixSet.includesResource(path, pathParts))
+            != null) {
+          Messages.INCLUDING_RESOURCE.log(logger, path, null);
+          results.put(r, resourceResolution);
+        } else {
+          Messages.EXCLUDING_RESOURCE.log(logger, path, null);
+        }
       }
     }
     return IdentityMaps.normalize(results);
@@ -27,6 +27,7 @@ import com.google.gwt.dev.RebindCache;
 import com.google.gwt.dev.cfg.Rule;
 import com.google.gwt.dev.cfg.Rules;
 import com.google.gwt.dev.javac.CachedGeneratorResultImpl;
+import com.google.gwt.dev.javac.GeneratedUnit;
 import com.google.gwt.dev.javac.StandardGeneratorContext;
 import com.google.gwt.dev.jdt.RebindOracle;
 import com.google.gwt.dev.util.log.speedtracer.DevModeEventType;
@@ -34,8 +35,10 @@ import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger;
 import com.google.gwt.dev.util.log.speedtracer.SpeedTracerLogger.Event;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Implements rebind logic in terms of a variety of other well-known oracles.
@@ -75,12 +78,23 @@ public class StandardRebindOracle implements RebindOracle {
           genCtx.setCachedGeneratorResult(cachedResult);
         }
 
+        /*
+         * Without an artifact acceptor, units and artifacts from earlier rebinds
+         * stay in the context; remember them so they aren't cached with ours.
+         */
+        Set<String> earlierUnits = new HashSet<String>();
+        ArtifactSet earlierArtifacts = new ArtifactSet();
+        if (genCtx.isGeneratorResultCachingEnabled()) {
+          earlierUnits.addAll(genCtx.getGeneratedUnitMap().keySet());
+          earlierArtifacts = genCtx.getArtifacts();
+        }
+
         // realize the rule (call a generator, or do type replacement, etc.)
         RebindResult result = rule.realize(logger, genCtx, typeName);
 
         // handle rebind result caching (if enabled)
-        String resultTypeName =
-            processCacheableResult(logger, rule, typeName, cachedResult, result);
+        String resultTypeName = processCacheableResult(logger, rule, typeName, cachedResult,
+            result, earlierUnits, earlierArtifacts);
 
         /*
          * Finalize new artifacts from the generator context
@@ -165,7 +179,8 @@ public class StandardRebindOracle implements RebindOracle {
      * to cache the new result for the future.
      */
     private String processCacheableResult(TreeLogger logger, Rule rule, String typeName,
-        CachedGeneratorResult cachedResult, RebindResult newResult) {
+        CachedGeneratorResult cachedResult, RebindResult newResult, Set<String> earlierUnits,
+        ArtifactSet earlierArtifacts) {
 
       String resultTypeName = newResult.getResultTypeName();
 
@@ -190,10 +205,7 @@ public class StandardRebindOracle implements RebindOracle {
 
         case USE_ALL_NEW:
           // use all new results, add a new cache entry
-          cachedResult =
-              new CachedGeneratorResultImpl(newResult.getResultTypeName(), genCtx.getArtifacts(),
-                  genCtx.getGeneratedUnitMap(), System.currentTimeMillis(), newResult
-                      .getClientDataMap());
+          cachedResult = createCachedResult(newResult, earlierUnits, earlierArtifacts);
           rebindCachePut(rule, typeName, cachedResult);
           break;
 
@@ -220,10 +232,7 @@ public class StandardRebindOracle implements RebindOracle {
            * Create a new cache entry using the composite set of new and reused
            * cached results currently in genCtx.
            */
-          cachedResult =
-              new CachedGeneratorResultImpl(newResult.getResultTypeName(), genCtx.getArtifacts(),
-                  genCtx.getGeneratedUnitMap(), System.currentTimeMillis(), newResult
-                      .getClientDataMap());
+          cachedResult = createCachedResult(newResult, earlierUnits, earlierArtifacts);
           rebindCachePut(rule, typeName, cachedResult);
           break;
       }
@@ -233,6 +242,17 @@ public class StandardRebindOracle implements RebindOracle {
 
       return resultTypeName;
     }
+
+    private CachedGeneratorResult createCachedResult(RebindResult newResult,
+        Set<String> earlierUnits, ArtifactSet earlierArtifacts) {
+      ArtifactSet artifacts = genCtx.getArtifacts();
+      artifacts.removeAll(earlierArtifacts);
+      Map<String, GeneratedUnit> generatedUnits =
+          new HashMap<String, GeneratedUnit>(genCtx.getGeneratedUnitMap());
+      generatedUnits.keySet().removeAll(earlierUnits);
+      return new CachedGeneratorResultImpl(newResult.getResultTypeName(), artifacts,
+          generatedUnits, System.currentTimeMillis(), newResult.getClientDataMap());
+    }
   }
 
   private final Map<String, String> typeNameBindingMap = new HashMap<String, String>();
@@ -17,19 +17,31 @@ package com.google.gwt.dev.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A nifty class that lets you squirrel away data on the file system. Write
- * once, read many times. Instance of this are thread-safe by way of internal
- * synchronization.
+ * once, read many times. Instance of this are thread-safe.
+ *
+ * Reads and writes use positional I/O on a shared channel, so any number of
+ * threads can read concurrently, and writes only synchronize long enough to
+ * reserve space at the end of the file. Data that is streamed in is first
+ * spilled to a temporary file if it is larger than a buffer, since the length
+ * must be known before space can be reserved.
  *
  * Note that in the current implementation, the backing temp file will get
  * arbitrarily large as you continue adding things to it. There is no internal
@@ -42,10 +54,111 @@ public class DiskCache {
    *
    * I considered using memory mapping, but I didn't see any obvious way to make
    * the map larger after the fact, which kind of defeats the infinite-append
-   * design. At any rate, I measured the current performance of this design to
-   * be so fast relative to what I'm using it for, I didn't pursue this further.
+   * design. Positional reads on a FileChannel give the same concurrency
+   * without having to map the file.
    */
 
+  /**
+   * A stream whose contents are stored in the disk cache by {@link #finish()},
+   * so that data can be written straight to the cache instead of being
+   * collected in a byte array first. Up to a buffer's worth of data is kept in
+   * memory; anything larger is spilled to a temporary file and copied into the
+   * cache when the stream is finished, so it is written to disk twice.
+   * <p>
+   * It can't be written to the cache as it comes in: each entry is stored
+   * whole, after its length, so its space can only be reserved once the length
+   * is known. Holding the end of the file until the stream is finished would
+   * instead stall every other writer for as long as the stream's producer
+   * runs. Keeping the data in memory until then is what this class is there to
+   * avoid.
+   */
+  public final class CacheOutputStream extends OutputStream {
+    private byte[] buf = Util.takeThreadLocalBuf();
+    private int count;
+    private File spill;
+    private OutputStream spillOut;
+    private long totalLength;
+
+    private CacheOutputStream() {
+    }
+
+    /**
+     * Discards the contents unless {@link #finish()} was called.
+     */
+    @Override
+    public void close() throws IOException {
+      if (buf == null) {
+        return;
+      }
+      Util.releaseThreadLocalBuf(buf);
+      buf = null;
+      if (spill != null) {
+        spillOut.close();
+        spill.delete();
+      }
+    }
+
+    /**
+     * Stores everything written so far in the cache and closes the stream.
+     *
+     * @return a token to retrieve the data later
+     */
+    public long finish() throws IOException {
+      ensureOpen();
+      try {
+        if (spill == null) {
+          long position = reserve(count);
+          writeLength(position, count);
+          writeFully(ByteBuffer.wrap(buf, 0, count), position + LENGTH_SIZE);
+          bytesWritten.addAndGet(count);
+          return position;
+        }
+        spillOut.close();
+        return transferSpillFile(spill, totalLength, buf);
+      } finally {
+        close();
+      }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      ensureOpen();
+      if (spill == null && count < buf.length) {
+        buf[count++] = (byte) b;
+      } else {
+        spillIfNeeded().write(b);
+      }
+      totalLength++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      ensureOpen();
+      if (spill == null && len <= buf.length - count) {
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+      } else {
+        spillIfNeeded().write(b, off, len);
+      }
+      totalLength += len;
+    }
+
+    private void ensureOpen() throws IOException {
+      if (buf == null) {
+        throw new IOException("Stream closed");
+      }
+    }
+
+    private OutputStream spillIfNeeded() throws IOException {
+      if (spill == null) {
+        spill = File.createTempFile("gwt", "byte-cache-spill");
+        spillOut = new FileOutputStream(spill);
+        spillOut.write(buf, 0, count);
+      }
+      return spillOut;
+    }
+  }
+
   private static class Shutdown implements Runnable {
     @Override
     public void run() {
@@ -66,40 +179,91 @@ public class DiskCache {
    */
   public static DiskCache INSTANCE = new DiskCache();
 
+  private static final int LENGTH_SIZE = 4;
+
+  /**
+   * The most bytes passed to the channel at once. The JDK copies a heap
+   * buffer through a temporary direct buffer of the same size, and keeps that
+   * buffer around for the thread, so whole payloads must not go through in
+   * one call.
+   */
+  private static final int MAX_TRANSFER_SIZE = 64 * 1024;
+
   private static List<WeakReference<DiskCache>> shutdownList;
 
-  private boolean atEnd = true;
-  private RandomAccessFile file;
+  /**
+   * Guards {@link #end} and serializes streamed appends.
+   */
+  private final Object appendLock = new Object();
+
+  private final AtomicLong bytesRead = new AtomicLong();
+
+  private final AtomicLong bytesWritten = new AtomicLong();
+
+  private volatile FileChannel channel;
+
+  private long end = 0;
+
+  private final File temp;
 
   DiskCache() {
     try {
-      File temp = File.createTempFile("gwt", "byte-cache");
+      temp = File.createTempFile("gwt", "byte-cache");
       temp.deleteOnExit();
-      file = new RandomAccessFile(temp, "rw");
-      file.setLength(0);
-      if (shutdownList == null) {
-        shutdownList = new ArrayList<WeakReference<DiskCache>>();
-        Runtime.getRuntime().addShutdownHook(new Thread(new Shutdown()));
+      channel = openChannel(temp);
+      channel.truncate(0);
+      synchronized (DiskCache.class) {
+        if (shutdownList == null) {
+          shutdownList = new ArrayList<WeakReference<DiskCache>>();
+          Runtime.getRuntime().addShutdownHook(new Thread(new Shutdown()));
+        }
+        shutdownList.add(new WeakReference<DiskCache>(this));
       }
-      shutdownList.add(new WeakReference<DiskCache>(this));
     } catch (IOException e) {
       throw new RuntimeException("Unable to initialize byte cache", e);
     }
   }
 
+  /**
+   * Returns the number of bytes stored under the given token.
+   *
+   * @param token a previously returned token
+   */
+  public int getByteArrayLength(long token) {
+    try {
+      return readLength(token);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to read from byte cache", e);
+    }
+  }
+
+  /**
+   * Returns the total number of bytes read back from the cache so far.
+   */
+  public long getBytesRead() {
+    return bytesRead.get();
+  }
+
+  /**
+   * Returns the total number of bytes written to the cache so far, which is
+   * also the amount of data held on disk rather than in memory.
+   */
+  public long getBytesWritten() {
+    return bytesWritten.get();
+  }
+
   /**
    * Retrieve the underlying bytes.
    *
    * @param token a previously returned token
    * @return the bytes that were written
    */
-  public synchronized byte[] readByteArray(long token) {
+  public byte[] readByteArray(long token) {
     try {
-      atEnd = false;
-      file.seek(token);
-      int length = file.readInt();
+      int length = readLength(token);
       byte[] result = new byte[length];
-      file.readFully(result);
+      readFully(ByteBuffer.wrap(result), token + LENGTH_SIZE);
+      bytesRead.addAndGet(length);
       return result;
     } catch (IOException e) {
       throw new RuntimeException("Unable to read from byte cache", e);
@@ -136,6 +300,15 @@ public class DiskCache {
     return Util.toString(readByteArray(token));
   }
 
+  /**
+   * Returns a stream that stores what is written to it in the cache when
+   * {@link CacheOutputStream#finish()} is called. The caller must close the
+   * stream if it doesn't finish it.
+   */
+  public CacheOutputStream openOutputStream() {
+    return new CacheOutputStream();
+  }
+
   /**
    * Write the rest of the data in an input stream to disk. Note: this method
    * does not close the InputStream.
@@ -144,29 +317,20 @@ public class DiskCache {
    *
    * @return a token to retrieve the data later
    */
-  public synchronized long transferFromStream(InputStream in) throws IOException {
+  public long transferFromStream(InputStream in) throws IOException {
     assert in != null;
     byte[] buf = Util.takeThreadLocalBuf();
     try {
-      long position = moveToEndPosition();
-
-      // Placeholder, we don't know the length yet.
-      file.writeInt(-1);
-
-      // Transfer all the bytes.
-      int length = 0;
-      int bytesRead;
-      while ((bytesRead = in.read(buf)) != -1) {
-        file.write(buf, 0, bytesRead);
-        length += bytesRead;
+      int length = readAtMost(in, buf);
+      if (length < buf.length) {
+        // All of it fit.
+        long position = reserve(length);
+        writeLength(position, length);
+        writeFully(ByteBuffer.wrap(buf, 0, length), position + LENGTH_SIZE);
+        bytesWritten.addAndGet(length);
+        return position;
       }
-
-      // Now go back and fill in the length.
-      file.seek(position);
-      file.writeInt(length);
-      // Don't eagerly seek the end, the next operation might be a read.
-      atEnd = false;
-      return position;
+      return transferFromStreamBySpilling(in, buf, length);
     } finally {
       Util.releaseThreadLocalBuf(buf);
     }
@@ -178,23 +342,20 @@ public class DiskCache {
    * @param token a previously returned token
    * @param out the stream to write into
    */
-  public synchronized void transferToStream(long token, OutputStream out) throws IOException {
+  public void transferToStream(long token, OutputStream out) throws IOException {
     byte[] buf = Util.takeThreadLocalBuf();
     try {
-      atEnd = false;
-      file.seek(token);
-      int length = file.readInt();
-      int bufLen = buf.length;
-      while (length > bufLen) {
-        int read = file.read(buf, 0, bufLen);
-        length -= read;
-        out.write(buf, 0, read);
-      }
-      while (length > 0) {
-        int read = file.read(buf, 0, length);
-        length -= read;
-        out.write(buf, 0, read);
+      int length = readLength(token);
+      long position = token + LENGTH_SIZE;
+      int remaining = length;
+      while (remaining > 0) {
+        int chunk = Math.min(remaining, buf.length);
+        readFully(ByteBuffer.wrap(buf, 0, chunk), position);
+        out.write(buf, 0, chunk);
+        position += chunk;
+        remaining -= chunk;
       }
+      bytesRead.addAndGet(length);
     } finally {
       Util.releaseThreadLocalBuf(buf);
     }
@@ -205,11 +366,12 @@ public class DiskCache {
    *
    * @return a token to retrieve the data later
    */
-  public synchronized long writeByteArray(byte[] bytes) {
+  public long writeByteArray(byte[] bytes) {
     try {
-      long position = moveToEndPosition();
-      file.writeInt(bytes.length);
-      file.write(bytes);
+      long position = reserve(bytes.length);
+      writeLength(position, bytes.length);
+      writeFully(ByteBuffer.wrap(bytes), position + LENGTH_SIZE);
+      bytesWritten.addAndGet(bytes.length);
       return position;
     } catch (IOException e) {
       throw new RuntimeException("Unable to write to byte cache", e);
@@ -241,34 +403,197 @@ public class DiskCache {
   }
 
   @Override
-  protected synchronized void finalize() throws Throwable {
+  protected void finalize() throws Throwable {
     close();
   }
 
-  private void close() throws Throwable {
-    if (file != null) {
-      file.setLength(0);
-      file.close();
-      file = null;
+  /**
+   * Deletes the data and releases the file. Reads and writes that come later,
+   * such as from threads still running at shutdown, fail with an IOException.
+   */
+  synchronized void close() throws IOException {
+    if (channel != null) {
+      channel.truncate(0);
+      channel.close();
+      channel = null;
     }
   }
 
   /**
-   * Moves to the end of the file if necessary and returns the offset position.
-   * Caller must synchronize.
-   *
-   * @return the offset position of the end of the file
-   * @throws IOException
+   * Returns the channel to read and write through, unless the cache was closed.
+   */
+  private FileChannel getChannel() throws IOException {
+    FileChannel current = channel;
+    if (current == null) {
+      throw new IOException("Byte cache is closed");
+    }
+    return current;
+  }
+
+  private FileChannel openChannel(File file) throws IOException {
+    return new RandomAccessFile(file, "rw").getChannel();
+  }
+
+  /**
+   * Reads from the stream until the buffer is full or the stream ends, and
+   * returns the number of bytes read.
    */
-  private long moveToEndPosition() throws IOException {
-    // Get an end pointer.
-    if (atEnd) {
-      return file.getFilePointer();
-    } else {
-      long position = file.length();
-      file.seek(position);
-      atEnd = true;
+  private static int readAtMost(InputStream in, byte[] buf) throws IOException {
+    int length = 0;
+    while (length < buf.length) {
+      int bytesRead = in.read(buf, length, buf.length - length);
+      if (bytesRead == -1) {
+        break;
+      }
+      length += bytesRead;
+    }
+    return length;
+  }
+
+  private int readLength(long token) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE);
+    readFully(buffer, token);
+    buffer.flip();
+    return buffer.getInt();
+  }
+
+  /**
+   * Fills the buffer with the bytes stored at the given position.
+   */
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    boolean interrupted = false;
+    int limit = buffer.limit();
+    try {
+      int start = buffer.position();
+      while (buffer.hasRemaining()) {
+        FileChannel current = getChannel();
+        buffer.limit(Math.min(limit, buffer.position() + MAX_TRANSFER_SIZE));
+        try {
+          int read = current.read(buffer, position + buffer.position() - start);
+          if (read < 0) {
+            throw new EOFException("Read past the end of the byte cache");
+          }
+        } catch (ClosedChannelException e) {
+          interrupted |= Thread.interrupted();
+          reopenChannel(current);
+        } finally {
+          buffer.limit(limit);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Reserves room at the end of the file for a length and the given number
+   * of bytes, and returns where it starts.
+   */
+  private long reserve(int length) {
+    synchronized (appendLock) {
+      long position = end;
+      end += LENGTH_SIZE + length;
       return position;
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * An interrupt during channel I/O closes the channel for every thread, so
+   * open it again unless another thread already did.
+   */
+  private synchronized void reopenChannel(FileChannel closed) throws IOException {
+    if (channel == null) {
+      throw new IOException("Byte cache is closed");
+    }
+    if (channel == closed) {
+      channel = openChannel(temp);
+    }
+  }
+
+  /**
+   * Copies a stream that does not fit in the buffer to a temporary file, so
+   * that its length is known before space is reserved for it, and then from
+   * there into the cache. The first {@code length} bytes are already in the
+   * buffer.
+   */
+  private long transferFromStreamBySpilling(InputStream in, byte[] buf, int length)
+      throws IOException {
+    File spill = File.createTempFile("gwt", "byte-cache-spill");
+    try {
+      long totalLength = length;
+      FileOutputStream out = new FileOutputStream(spill);
+      try {
+        out.write(buf, 0, length);
+        int bytesRead;
+        while ((bytesRead = in.read(buf)) != -1) {
+          out.write(buf, 0, bytesRead);
+          totalLength += bytesRead;
+        }
+      } finally {
+        out.close();
+      }
+      return transferSpillFile(spill, totalLength, buf);
+    } finally {
+      spill.delete();
+    }
+  }
+
+  /**
+   * Copies a temporary file of the given length into the cache, using the
+   * buffer to read it.
+   */
+  private long transferSpillFile(File spill, long totalLength, byte[] buf) throws IOException {
+    if (totalLength > Integer.MAX_VALUE) {
+      throw new IOException("Too much data for the byte cache: " + totalLength + " bytes");
+    }
+
+    long position = reserve((int) totalLength);
+    writeLength(position, (int) totalLength);
+    FileInputStream spilled = new FileInputStream(spill);
+    try {
+      long offset = position + LENGTH_SIZE;
+      int bytesRead;
+      while ((bytesRead = spilled.read(buf)) != -1) {
+        writeFully(ByteBuffer.wrap(buf, 0, bytesRead), offset);
+        offset += bytesRead;
+      }
+    } finally {
+      spilled.close();
+    }
+    bytesWritten.addAndGet(totalLength);
+    return position;
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    boolean interrupted = false;
+    int limit = buffer.limit();
+    try {
+      int start = buffer.position();
+      while (buffer.hasRemaining()) {
+        FileChannel current = getChannel();
+        buffer.limit(Math.min(limit, buffer.position() + MAX_TRANSFER_SIZE));
+        try {
+          current.write(buffer, position + buffer.position() - start);
+        } catch (ClosedChannelException e) {
+          interrupted |= Thread.interrupted();
+          reopenChannel(current);
+        } finally {
+          buffer.limit(limit);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void writeLength(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE);
+    buffer.putInt(length);
+    buffer.flip();
+    writeFully(buffer, position);
+  }
+}
@@ -38,7 +38,9 @@ public abstract class OutputFileSet {
   }
 
   public boolean alreadyContains(String path) {
-    return pathsSeen.contains(path);
+    synchronized (pathsSeen) {
+      return pathsSeen.contains(path);
+    }
   }
 
   /**
@@ -78,10 +80,20 @@ public abstract class OutputFileSet {
    */
   public OutputStream openForWrite(String path, long timeStampMillis)
       throws IOException {
-    pathsSeen.add(path);
+    synchronized (pathsSeen) {
+      pathsSeen.add(path);
+    }
     return createNewOutputStream(path, timeStampMillis);
   }
 
+  /**
+   * Returns whether several files can be opened and written at the same time,
+   * from different threads.
+   */
+  public boolean supportsConcurrentWrites() {
+    return false;
+  }
+
   protected abstract OutputStream createNewOutputStream(String path,
       long lastModifiedTime) throws IOException;
 }
@@ -42,6 +42,11 @@ public class OutputFileSetOnDirectory extends OutputFileSet {
   public void close() {
   }
 
+  @Override
+  public boolean supportsConcurrentWrites() {
+    return true;
+  }
+
   @Override
   protected OutputStream createNewOutputStream(String path,
       final long timeStampMillis) throws IOException {
@@ -67,7 +72,7 @@ public class OutputFileSetOnDirectory extends OutputFileSet {
    * A faster bulk version of {@link File#mkdirs()} that avoids recreating the
    * same directory multiple times.
    */
-  private void mkdirs(File dir) throws IOException {
+  private synchronized void mkdirs(File dir) throws IOException {
     if (dir == null) {
       return;
     }
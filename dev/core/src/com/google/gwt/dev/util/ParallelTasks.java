@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent tasks on several threads and returns their results in task order, so that the
+ * output doesn't depend on how the threads were scheduled.
+ * <p>
+ * Tasks fail the same way whether they run on the calling thread or not: a RuntimeException or an
+ * Error is rethrown as is, and a checked exception is wrapped in an {@link ExecutionException}.
+ * When several tasks fail, the exception of the first one in task order is thrown.
+ */
+public class ParallelTasks {
+
+  /**
+   * Returns the number of threads set by a Java system property, which defaults to one.
+   */
+  public static int getThreadCount(String property) {
+    return Math.max(1, Integer.getInteger(property, 1));
+  }
+
+  /**
+   * Runs the tasks on up to <code>threadCount</code> threads and returns their results in order.
+   * With a single thread, or a single task, they run on the calling thread.
+   */
+  public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int threadCount)
+      throws ExecutionException, InterruptedException {
+    threadCount = Math.min(tasks.size(), threadCount);
+    if (threadCount <= 1) {
+      return invokeAll(null, tasks);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      return invokeAll(executor, tasks);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs the tasks on an executor that the caller manages, or on the calling thread if
+   * <code>executor</code> is null, and returns their results in order.
+   */
+  public static <T> List<T> invokeAll(ExecutorService executor,
+      List<? extends Callable<T>> tasks) throws ExecutionException, InterruptedException {
+    List<T> results = new ArrayList<T>(tasks.size());
+    if (executor == null) {
+      for (Callable<T> task : tasks) {
+        try {
+          results.add(task.call());
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new ExecutionException(e);
+        }
+      }
+      return results;
+    }
+
+    List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+    try {
+      for (Callable<T> task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      for (Future<T> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw e;
+        }
+      }
+      return results;
+    } finally {
+      // Stops the remaining tasks of a run that failed; does nothing otherwise.
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private ParallelTasks() {
+  }
+}
@@ -32,6 +32,8 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
@@ -662,9 +664,10 @@ public final class Util {
 
   public static <T extends Serializable> T readFileAsObject(File file,
       Class<T> type) throws ClassNotFoundException, IOException {
-    FileInputStream fileInputStream = null;
+    InputStream fileInputStream = null;
     try {
-      fileInputStream = new FileInputStream(file);
+      // ObjectInputStream issues many tiny reads, so buffer them.
+      fileInputStream = new BufferedInputStream(new FileInputStream(file));
       return readStreamAsObject(fileInputStream, type);
     } finally {
       Utility.close(fileInputStream);
@@ -1188,11 +1191,11 @@ public final class Util {
   public static void writeObjectAsFile(TreeLogger logger, File file,
       Object... objects) throws UnableToCompleteException {
     Event writeObjectAsFileEvent = SpeedTracerLogger.start(CompilerEventType.WRITE_OBJECT_AS_FILE);
-    FileOutputStream stream = null;
+    OutputStream stream = null;
     try {
       // No need to check mkdirs result because an IOException will occur anyway
       file.getParentFile().mkdirs();
-      stream = new FileOutputStream(file);
+      stream = new BufferedOutputStream(new FileOutputStream(file));
       writeObjectToStream(stream, objects);
     } catch (IOException e) {
       logger.log(TreeLogger.ERROR, "Unable to write file: "
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util.xml;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The elements, attributes and text of an XML document as reported by a SAX
+ * parser, with their line numbers. Lets {@link ReflectiveParser} run a schema
+ * over a document again without parsing it; see
+ * {@link ReflectiveParser#read(com.google.gwt.core.ext.TreeLogger, java.io.Reader)}.
+ */
+public final class ParsedXml implements Serializable {
+
+  /**
+   * One SAX callback.
+   */
+  private static final class Event implements Serializable {
+    /**
+     * Attribute names and values, alternating.
+     */
+    private final String[] attributes;
+    private final byte kind;
+    private final int lineNumber;
+    /**
+     * The element name or the text.
+     */
+    private final String value;
+
+    private Event(byte kind, int lineNumber, String value, String[] attributes) {
+      this.kind = kind;
+      this.lineNumber = lineNumber;
+      this.value = value;
+      this.attributes = attributes;
+    }
+  }
+
+  /**
+   * Records the callbacks of a SAX parse.
+   */
+  static final class Recorder extends DefaultHandler {
+    private final List<Event> events = new ArrayList<Event>();
+    private Locator locator;
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      events.add(new Event(TEXT, locator.getLineNumber(), String.valueOf(ch, start, length),
+          null));
+    }
+
+    @Override
+    public void endElement(String namespaceURI, String localName, String elem) {
+      events.add(new Event(END_ELEMENT, locator.getLineNumber(), elem, null));
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+      this.locator = locator;
+    }
+
+    @Override
+    public void startElement(String namespaceURI, String localName, String elemName,
+        Attributes atts) {
+      String[] attributes = new String[atts.getLength() * 2];
+      for (int i = 0, n = atts.getLength(); i < n; ++i) {
+        attributes[2 * i] = atts.getQName(i);
+        attributes[2 * i + 1] = atts.getValue(i);
+      }
+      events.add(new Event(START_ELEMENT, locator.getLineNumber(), elemName, attributes));
+    }
+
+    ParsedXml getParsedXml() {
+      return new ParsedXml(events);
+    }
+  }
+
+  private static final byte START_ELEMENT = 0;
+  private static final byte END_ELEMENT = 1;
+  private static final byte TEXT = 2;
+
+  private final Event[] events;
+
+  private ParsedXml(List<Event> events) {
+    this.events = events.toArray(new Event[events.size()]);
+  }
+
+  /**
+   * Makes the same callbacks on the handler as the parser that read the
+   * document, with the same line numbers.
+   */
+  void replay(ContentHandler handler) throws SAXException {
+    LocatorImpl locator = new LocatorImpl();
+    handler.setDocumentLocator(locator);
+    for (Event event : events) {
+      locator.setLineNumber(event.lineNumber);
+      switch (event.kind) {
+        case START_ELEMENT:
+          AttributesImpl atts = new AttributesImpl();
+          for (int i = 0; i < event.attributes.length; i += 2) {
+            atts.addAttribute("", "", event.attributes[i], "CDATA", event.attributes[i + 1]);
+          }
+          handler.startElement("", "", event.value, atts);
+          break;
+        case END_ELEMENT:
+          handler.endElement("", "", event.value);
+          break;
+        case TEXT:
+          char[] chars = event.value.toCharArray();
+          handler.characters(chars, 0, chars.length);
+          break;
+        default:
+          throw new IllegalStateException("Unknown event kind " + event.kind);
+      }
+    }
+  }
+}
@@ -318,7 +318,7 @@ public final class ReflectiveParser {
       return schemaLevels.peek();
     }
 
-    private void parse(TreeLogger logger, Schema topSchema, Reader reader)
+    private void parse(TreeLogger logger, Schema topSchema, Reader reader, ParsedXml xml)
         throws UnableToCompleteException {
       // Set up the parentmost schema which is used to find default converters
       // and handlers (but isn't actually on the schema stack.)
@@ -341,25 +341,14 @@ public final class ReflectiveParser {
 
       Throwable caught = null;
       try {
-        this.reader = reader;
-        SAXParser parser = createNewSaxParser();
-        InputSource inputSource = new InputSource(this.reader);
-        XMLReader xmlReader = parser.getXMLReader();
-        xmlReader.setContentHandler(this);
-        xmlReader.parse(inputSource);
-      } catch (SAXException e) {
-        // If it's an exception wrapped in a SAXException, rip off the outer SAX
-        // exception.
-        //
-        caught = e;
-
-        Exception inner = e.getException();
-        if (inner instanceof RuntimeException) {
-          throw (RuntimeException) inner;
-        } else if (inner != null) {
-          caught = inner;
+        if (xml != null) {
+          xml.replay(this);
+        } else {
+          this.reader = reader;
+          parseSax(reader, this);
         }
-
+      } catch (SAXException e) {
+        caught = unwrap(e);
       } catch (ParserConfigurationException e) {
         caught = e;
       } catch (IOException e) {
@@ -367,22 +356,7 @@ public final class ReflectiveParser {
       } finally {
         Utility.close(reader);
       }
-
-      if (caught instanceof UnableToCompleteException) {
-        // Error has already been logged.
-        throw (UnableToCompleteException) caught;
-      } else if (caught instanceof SAXParseException) {
-        SAXParseException parseException = ((SAXParseException) caught);
-        logger.log(Type.ERROR, "Line " + parseException.getLineNumber() + ", column " +
-            parseException.getColumnNumber() + " : " + parseException.getMessage());
-      } else if (caught != null) {
-        // Generic error message.
-        Messages.XML_PARSE_FAILED.log(logger, caught);
-      }
-
-      if (caught != null) {
-        throw new UnableToCompleteException();
-      }
+      reportFailure(logger, caught);
     }
 
     private Schema popLevel() {
@@ -428,7 +402,84 @@ public final class ReflectiveParser {
     // Do the parse.
     //
     Impl impl = new Impl();
-    impl.parse(logger, schema, reader);
+    impl.parse(logger, schema, reader, null);
+  }
+
+  /**
+   * Runs a schema over a document read earlier by
+   * {@link #read(TreeLogger, Reader)}, without parsing it again.
+   */
+  public static void parse(TreeLogger logger, Schema schema, ParsedXml xml)
+      throws UnableToCompleteException {
+    registerSchemaLevel(schema.getClass());
+    Impl impl = new Impl();
+    impl.parse(logger, schema, null, xml);
+  }
+
+  /**
+   * Parses a document without running a schema over it, so that schemas can be
+   * run over it later by {@link #parse(TreeLogger, Schema, ParsedXml)}.
+   */
+  public static ParsedXml read(TreeLogger logger, Reader reader)
+      throws UnableToCompleteException {
+    ParsedXml.Recorder recorder = new ParsedXml.Recorder();
+    Throwable caught = null;
+    try {
+      parseSax(reader, recorder);
+    } catch (SAXException e) {
+      caught = unwrap(e);
+    } catch (ParserConfigurationException e) {
+      caught = e;
+    } catch (IOException e) {
+      caught = e;
+    } finally {
+      Utility.close(reader);
+    }
+    reportFailure(logger, caught);
+    return recorder.getParsedXml();
+  }
+
+  private static void parseSax(Reader reader, DefaultHandler handler)
+      throws ParserConfigurationException, SAXException, IOException {
+    SAXParser parser = createNewSaxParser();
+    InputSource inputSource = new InputSource(reader);
+    XMLReader xmlReader = parser.getXMLReader();
+    xmlReader.setContentHandler(handler);
+    xmlReader.parse(inputSource);
+  }
+
+  /**
+   * Logs a failed parse, if <code>caught</code> is not null.
+   */
+  private static void reportFailure(TreeLogger logger, Throwable caught)
+      throws UnableToCompleteException {
+    if (caught instanceof UnableToCompleteException) {
+      // Error has already been logged.
+      throw (UnableToCompleteException) caught;
+    } else if (caught instanceof SAXParseException) {
+      SAXParseException parseException = ((SAXParseException) caught);
+      logger.log(Type.ERROR, "Line " + parseException.getLineNumber() + ", column " +
+          parseException.getColumnNumber() + " : " + parseException.getMessage());
+    } else if (caught != null) {
+      // Generic error message.
+      Messages.XML_PARSE_FAILED.log(logger, caught);
+    }
+
+    if (caught != null) {
+      throw new UnableToCompleteException();
+    }
+  }
+
+  /**
+   * If it's an exception wrapped in a SAXException, rips off the outer SAX
+   * exception.
+   */
+  private static Throwable unwrap(SAXException e) {
+    Exception inner = e.getException();
+    if (inner instanceof RuntimeException) {
+      throw (RuntimeException) inner;
+    }
+    return inner != null ? inner : e;
   }
 
   /**
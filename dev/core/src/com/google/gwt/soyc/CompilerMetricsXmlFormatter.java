@@ -48,7 +48,7 @@ import java.util.Set;
  *   &lt;/module>
  *
  *   &lt;precompilations>
- *     &lt;precompilation base="0" ids="0,1,2" elapsed="1">
+ *     &lt;precompilation base="0" ids="0,1,2" elapsed="1" merged="1">
  *       &lt;types count="1" kind="generated">
  *         &lt;type name="com.google.foo.Bar" />
  *       &lt;/types>
@@ -193,6 +193,7 @@ public class CompilerMetricsXmlFormatter {
         pw.append("ids=\"" + idList + "\" ");
       }
       pw.append("elapsed=\"" + metrics.getElapsedMilliseconds() + "\" ");
+      pw.append("merged=\"" + metrics.getMergedPermutationCount() + "\" ");
 
       // TODO(zundel): Print out captured GC and heap memory analysis if it is
       // available.
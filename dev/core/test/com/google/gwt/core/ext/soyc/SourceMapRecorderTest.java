@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.core.ext.soyc;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.linker.SyntheticArtifact;
+import com.google.gwt.dev.jjs.JsSourceMap;
+import com.google.gwt.dev.jjs.SourceInfo;
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.debugging.sourcemap.SourceMapGeneratorV3;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the {@link SourceMapRecorder} class.
+ */
+public class SourceMapRecorderTest extends TestCase {
+  private static final String SOURCE_ROOT = "http://example.com/src/";
+
+  public void testSmallMapMatchesInMemoryMap() throws Exception {
+    checkStreamedMap(10);
+  }
+
+  public void testSpilledMapMatchesInMemoryMap() throws Exception {
+    // Bigger than the 16 KB buffer, so the disk cache spills it to a temporary file.
+    byte[] expected = checkStreamedMap(5000);
+    assertTrue(expected.length > 16 * 1024);
+  }
+
+  /**
+   * Checks that the map streamed into the disk cache is byte for byte the one
+   * written to a byte array, the way it was written before it was streamed,
+   * and returns it.
+   */
+  private byte[] checkStreamedMap(int mappings) throws Exception {
+    JsSourceMap sourceMap = createSourceMap(mappings);
+    byte[] expected = writeInMemory(3, 1, sourceMap);
+
+    SyntheticArtifact artifact = SourceMapRecorder.exec(3, 1, sourceMap, SOURCE_ROOT);
+    byte[] actual = Util.readStreamAsBytes(artifact.getContents(TreeLogger.NULL));
+    assertTrue(Arrays.equals(expected, actual));
+    return expected;
+  }
+
+  /**
+   * Maps each line of JavaScript to a line of one of several Java files.
+   */
+  private static JsSourceMap createSourceMap(int mappings) {
+    Map<Range, SourceInfo> map = new HashMap<Range, SourceInfo>();
+    for (int i = 1; i <= mappings; i++) {
+      map.put(new Range(i * 20, i * 20 + 15, i, 0, i, 15),
+          SourceOrigin.create(i * 7, "com/example/File" + (i % 50) + ".java"));
+    }
+    return new JsSourceMap(map);
+  }
+
+  /**
+   * Writes a map the way {@link SourceMapRecorder} did before it streamed
+   * maps into the disk cache.
+   */
+  private static byte[] writeInMemory(int permutationId, int fragment, JsSourceMap sourceMap)
+      throws Exception {
+    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+    generator.setSourceRoot(SOURCE_ROOT);
+    generator.addExtension("x_gwt_permutation", permutationId);
+    generator.addExtension("x_gwt_fragment", fragment);
+
+    Range[] ranges = sourceMap.keySet().toArray(new Range[sourceMap.size()]);
+    Arrays.sort(ranges, Range.DEPENDENCY_ORDER_COMPARATOR);
+    SourceMappingWriter writer = new SourceMappingWriter(generator);
+    for (Range range : ranges) {
+      writer.addMapping(range, sourceMap.get(range), null);
+    }
+    writer.flush();
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    OutputStreamWriter out = new OutputStreamWriter(baos);
+    generator.appendTo(out, "sourceMap" + fragment);
+    out.flush();
+    return baos.toByteArray();
+  }
+}
@@ -17,6 +17,7 @@ package com.google.gwt.dev;
 
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.jjs.JavaToJavaScriptCompiler;
 import com.google.gwt.dev.jjs.JsOutputOption;
 import com.google.gwt.dev.util.Util;
 import com.google.gwt.dev.util.arg.SourceLevel;
@@ -26,7 +27,9 @@ import com.google.gwt.util.tools.Utility;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Test for {@link Compiler}.
@@ -145,6 +148,93 @@ public class CompilerTest extends ArgProcessorTestBase {
     assertDeterministicBuild(options);
   }
 
+  public void testCodeGenThreadsDoNotChangeOutput()
+      throws UnableToCompleteException, IOException {
+    // The detailed compile report records the size breakdown and source info of each fragment.
+    CompilerOptionsImpl options = new CompilerOptionsImpl();
+    options.setSoycEnabled(true);
+    options.setSoycExtra(true);
+    options.setSoycHtmlDisabled(true);
+    assertCodeGenThreadsDoNotChangeOutput("com.google.gwt.dev.testdata.runasync.RunAsync",
+        options);
+  }
+
+  public void testCodeGenThreadsDoNotChangeSourceMaps()
+      throws UnableToCompleteException, IOException {
+    assertCodeGenThreadsDoNotChangeOutput(
+        "com.google.gwt.dev.testdata.runasync.RunAsyncSourceMaps", new CompilerOptionsImpl());
+  }
+
+  /**
+   * Compiles the module with one code generation thread and with several, and checks that every
+   * output file is the same.
+   */
+  private void assertCodeGenThreadsDoNotChangeOutput(String moduleName,
+      CompilerOptionsImpl options) throws UnableToCompleteException, IOException {
+    File serialWorkDir = Utility.makeTemporaryDirectory(null, "runasyncwork");
+    File concurrentWorkDir = Utility.makeTemporaryDirectory(null, "runasyncwork");
+    String oldPersistentUnitCacheValue = System.setProperty(GWT_PERSISTENTUNITCACHE, "false");
+    String oldCodeGenThreadsValue =
+        System.getProperty(JavaToJavaScriptCompiler.CODE_GEN_THREADS_PROPERTY);
+    try {
+      options.addModuleName(moduleName);
+      PrintWriterTreeLogger logger = new PrintWriterTreeLogger();
+      logger.setMaxDetail(TreeLogger.ERROR);
+
+      System.setProperty(JavaToJavaScriptCompiler.CODE_GEN_THREADS_PROPERTY, "1");
+      options.setWarDir(new File(serialWorkDir, "war"));
+      options.setExtraDir(new File(serialWorkDir, "extra"));
+      assertTrue(new Compiler(options).run(logger));
+      Map<String, String> serialOutput = getOutputHashes(serialWorkDir);
+
+      System.setProperty(JavaToJavaScriptCompiler.CODE_GEN_THREADS_PROPERTY, "4");
+      options.setWarDir(new File(concurrentWorkDir, "war"));
+      options.setExtraDir(new File(concurrentWorkDir, "extra"));
+      assertTrue(new Compiler(options).run(logger));
+      Map<String, String> concurrentOutput = getOutputHashes(concurrentWorkDir);
+
+      boolean hasDeferredFragments = false;
+      for (String path : serialOutput.keySet()) {
+        hasDeferredFragments |= path.contains("/deferredjs/");
+      }
+      assertTrue("Expected the module to be split into fragments", hasDeferredFragments);
+      assertEquals(serialOutput, concurrentOutput);
+    } finally {
+      restoreProperty(GWT_PERSISTENTUNITCACHE, oldPersistentUnitCacheValue);
+      restoreProperty(JavaToJavaScriptCompiler.CODE_GEN_THREADS_PROPERTY, oldCodeGenThreadsValue);
+      Util.recursiveDelete(serialWorkDir, false);
+      Util.recursiveDelete(concurrentWorkDir, false);
+    }
+  }
+
+  /**
+   * Returns the strong name of each file below the directory, keyed by its relative path.
+   */
+  private static Map<String, String> getOutputHashes(File dir) {
+    Map<String, String> hashes = new TreeMap<String, String>();
+    addOutputHashes(hashes, dir, "");
+    return hashes;
+  }
+
+  private static void addOutputHashes(Map<String, String> hashes, File dir, String prefix) {
+    for (File file : dir.listFiles()) {
+      String path = prefix + "/" + file.getName();
+      if (file.isDirectory()) {
+        addOutputHashes(hashes, file, path);
+      } else {
+        hashes.put(path, Util.computeStrongName(Util.readFileAsBytes(file)));
+      }
+    }
+  }
+
+  private static void restoreProperty(String name, String value) {
+    if (value == null) {
+      System.clearProperty(name);
+    } else {
+      System.setProperty(name, value);
+    }
+  }
+
   public void assertDeterministicBuild(CompilerOptions options)
       throws UnableToCompleteException, IOException {
     File firstCompileWorkDir = Utility.makeTemporaryDirectory(null, "hellowork");
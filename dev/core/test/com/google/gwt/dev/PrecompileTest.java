@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.dev.cfg.BindingProperty;
+import com.google.gwt.dev.cfg.BindingProps;
+import com.google.gwt.dev.cfg.ConfigProps;
+import com.google.gwt.thirdparty.guava.common.collect.ImmutableSortedSet;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests {@link Precompile}.
+ */
+public class PrecompileTest extends TestCase {
+
+  private final BindingProperty userAgent = new BindingProperty("user.agent");
+
+  @Override
+  protected void setUp() {
+    for (String value : new String[] {"a", "b", "c", "d", "e"}) {
+      userAgent.addDefinedValue(userAgent.getRootCondition(), value);
+    }
+  }
+
+  public void testMergePermutations() {
+    userAgent.addCollapsedValues("d", "e");
+    List<Permutation> permutations = Lists.newArrayList(
+        createPermutation(0, "a", "FooA"),
+        createPermutation(1, "b", "FooA"),
+        createPermutation(2, "c", "FooC"),
+        createPermutation(3, "d", "FooD"),
+        createPermutation(4, "e", "FooE"));
+
+    // d and e are collapsed, and a and b give the same answer to the only live request.
+    assertEquals(2, Precompile.mergePermutations(permutations, ImmutableSortedSet.of("Foo")));
+    assertEquals(3, permutations.size());
+  }
+
+  public void testMergePermutationsWithDistinctAnswers() {
+    List<Permutation> permutations = Lists.newArrayList(
+        createPermutation(0, "a", "FooA"),
+        createPermutation(1, "b", "FooB"));
+
+    assertEquals(0, Precompile.mergePermutations(permutations, ImmutableSortedSet.of("Foo")));
+    assertEquals(2, permutations.size());
+  }
+
+  private Permutation createPermutation(int id, String userAgentValue, String fooAnswer) {
+    Permutation permutation = new Permutation(id, new BindingProps(
+        new BindingProperty[] {userAgent}, new String[] {userAgentValue}, ConfigProps.EMPTY));
+    permutation.putRebindAnswer("Foo", fooAnswer);
+    // Differs in every permutation, but is no longer live.
+    permutation.putRebindAnswer("Bar", "Bar" + id);
+    return permutation;
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.CachedGeneratorResult;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.dev.cfg.Rule;
+import com.google.gwt.dev.cfg.RuleFail;
+import com.google.gwt.dev.javac.CachedGeneratorResultImpl;
+import com.google.gwt.dev.javac.GeneratedUnit;
+import com.google.gwt.dev.javac.StandardGeneratorContext.GeneratedUnitImpl;
+import com.google.gwt.dev.util.Util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests for {@link RebindCache}.
+ */
+public class RebindCacheTest extends TestCase {
+
+  private File cacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    cacheDir = File.createTempFile("rebindCacheTest", "");
+    assertTrue(cacheDir.delete());
+    assertTrue(cacheDir.mkdir());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Util.recursiveDelete(cacheDir, false);
+    super.tearDown();
+  }
+
+  public void testLoadMissingOrCorruptFile() throws IOException {
+    File file = new File(cacheDir, "Module.ser");
+    Rule rule = new RuleFail();
+    assertNull(RebindCache.load(TreeLogger.NULL, file).get(rule, "com.example.Foo"));
+
+    Util.writeStringAsFile(file, "not a cache");
+    assertNull(RebindCache.load(TreeLogger.NULL, file).get(rule, "com.example.Foo"));
+  }
+
+  public void testSaveAndLoad() {
+    File file = new File(cacheDir, "Module.ser");
+    Rule rule = new RuleFail();
+
+    RebindCache cache = new RebindCache();
+    cache.getScopedCache("user.agent=safari").put(rule, "com.example.Foo",
+        createResult("com.example.FooImpl", "class FooImpl {}"));
+    cache.getScopedCache("user.agent=gecko1_8").put(rule, "com.example.Foo",
+        createResult("com.example.FooImpl", "class FooImpl { int x; }"));
+    cache.save(TreeLogger.NULL, file);
+
+    RebindCache loaded = RebindCache.load(TreeLogger.NULL, file);
+    CachedGeneratorResultImpl result = (CachedGeneratorResultImpl)
+        loaded.getScopedCache("user.agent=safari").get(rule, "com.example.Foo");
+    assertEquals("com.example.FooImpl", result.getResultTypeName());
+    assertEquals("class FooImpl {}",
+        result.getGeneratedUnit("com.example.FooImpl").getSource());
+    assertEquals("value", result.getClientData("key"));
+
+    // Only the results used since loading are saved again.
+    loaded.save(TreeLogger.NULL, file);
+    loaded = RebindCache.load(TreeLogger.NULL, file);
+    assertNotNull(loaded.getScopedCache("user.agent=safari").get(rule, "com.example.Foo"));
+    assertNull(loaded.getScopedCache("user.agent=gecko1_8").get(rule, "com.example.Foo"));
+  }
+
+  private static CachedGeneratorResult createResult(String typeName, String source) {
+    StringWriter sw = new StringWriter();
+    GeneratedUnitImpl unit = new GeneratedUnitImpl(sw, typeName);
+    sw.write(source);
+    unit.commit(TreeLogger.NULL);
+
+    Map<String, GeneratedUnit> units = new HashMap<String, GeneratedUnit>();
+    units.put(typeName, unit);
+    Map<String, Serializable> clientData = new HashMap<String, Serializable>();
+    clientData.put("key", "value");
+    return new CachedGeneratorResultImpl(typeName, new ArtifactSet(), units,
+        System.currentTimeMillis(), clientData);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.jjs.JJSOptionsImpl;
+import com.google.gwt.dev.jjs.UnifiedAst;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.js.ast.JsProgram;
+import com.google.gwt.dev.util.UnitTestTreeLogger;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for {@link ThreadedPermutationWorkerFactory}.
+ */
+public class ThreadedPermutationWorkerFactoryTest extends TestCase {
+
+  /**
+   * A UnifiedAst that claims a serialized AST too large for more than one worker to fit in any
+   * heap.
+   */
+  private static class HugeUnifiedAst extends UnifiedAst {
+    public HugeUnifiedAst() {
+      super(new JJSOptionsImpl(), new UnifiedAst.AST(new JProgram(), new JsProgram()), false,
+          Collections.<String>emptySet());
+    }
+
+    @Override
+    public long getSerializedAstSize() {
+      return Long.MAX_VALUE / (2 * ThreadedPermutationWorkerFactory.AST_HEAP_EXPANSION_FACTOR);
+    }
+  }
+
+  private static final long MB = 1024 * 1024;
+
+  private String oldMaxThreads;
+  private String oldLimitThreadsToHeap;
+
+  public void testAffordableWorkers() {
+    int factor = ThreadedPermutationWorkerFactory.AST_HEAP_EXPANSION_FACTOR;
+    assertEquals(4,
+        ThreadedPermutationWorkerFactory.getAffordableWorkers(10 * MB, 40 * factor * MB));
+    assertEquals(4,
+        ThreadedPermutationWorkerFactory.getAffordableWorkers(10 * MB, 45 * factor * MB));
+    assertEquals(1, ThreadedPermutationWorkerFactory.getAffordableWorkers(10 * MB, factor * MB));
+    assertEquals(1, ThreadedPermutationWorkerFactory.getAffordableWorkers(10 * MB, 0));
+  }
+
+  public void testAffordableWorkersWithoutSerializedAst() {
+    assertEquals(Integer.MAX_VALUE, ThreadedPermutationWorkerFactory.getAffordableWorkers(-1, 0));
+    assertEquals(Integer.MAX_VALUE, ThreadedPermutationWorkerFactory.getAffordableWorkers(0, MB));
+  }
+
+  public void testAffordableWorkersDoesNotOverflow() {
+    assertEquals(Integer.MAX_VALUE,
+        ThreadedPermutationWorkerFactory.getAffordableWorkers(1, Long.MAX_VALUE));
+  }
+
+  public void testWorkersLimitedToHeap() throws Exception {
+    System.setProperty(ThreadedPermutationWorkerFactory.MAX_THREADS_PROPERTY, "4");
+    System.clearProperty(ThreadedPermutationWorkerFactory.LIMIT_THREADS_TO_HEAP_PROPERTY);
+
+    UnitTestTreeLogger.Builder builder = new UnitTestTreeLogger.Builder();
+    builder.setLowestLogLevel(TreeLogger.WARN);
+    builder.expect(TreeLogger.WARN, Pattern.compile("Using 1 of 4 requested in-process threads.*"),
+        null);
+    UnitTestTreeLogger logger = builder.createLogger();
+
+    assertEquals(1,
+        new ThreadedPermutationWorkerFactory().getWorkers(logger, new HugeUnifiedAst(), 8).size());
+    logger.assertCorrectLogEntries();
+  }
+
+  public void testHeapLimitCanBeTurnedOff() throws Exception {
+    System.setProperty(ThreadedPermutationWorkerFactory.MAX_THREADS_PROPERTY, "4");
+    System.setProperty(ThreadedPermutationWorkerFactory.LIMIT_THREADS_TO_HEAP_PROPERTY, "false");
+
+    UnitTestTreeLogger.Builder builder = new UnitTestTreeLogger.Builder();
+    builder.setLowestLogLevel(TreeLogger.WARN);
+    UnitTestTreeLogger logger = builder.createLogger();
+
+    assertEquals(4,
+        new ThreadedPermutationWorkerFactory().getWorkers(logger, new HugeUnifiedAst(), 8).size());
+    logger.assertCorrectLogEntries();
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    oldMaxThreads = System.getProperty(ThreadedPermutationWorkerFactory.MAX_THREADS_PROPERTY);
+    oldLimitThreadsToHeap =
+        System.getProperty(ThreadedPermutationWorkerFactory.LIMIT_THREADS_TO_HEAP_PROPERTY);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    restoreProperty(ThreadedPermutationWorkerFactory.MAX_THREADS_PROPERTY, oldMaxThreads);
+    restoreProperty(ThreadedPermutationWorkerFactory.LIMIT_THREADS_TO_HEAP_PROPERTY,
+        oldLimitThreadsToHeap);
+    super.tearDown();
+  }
+
+  private static void restoreProperty(String name, String value) {
+    if (value == null) {
+      System.clearProperty(name);
+    } else {
+      System.setProperty(name, value);
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.cfg;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.About;
+import com.google.gwt.dev.CompilerContext;
+import com.google.gwt.dev.util.UnitTestTreeLogger;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.dev.util.xml.ParsedXml;
+import com.google.gwt.dev.util.xml.ReflectiveParser;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.util.tools.Utility;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests {@link ModuleXmlCache}.
+ */
+public class ModuleXmlCacheTest extends TestCase {
+
+  private static final String MODULE = "<module rename-to='renamed'>\n"
+      + "  <define-property name='p' values='a,b,c'/>\n"
+      + "  <set-property name='p' value='a,b'/>\n"
+      + "  <extend-property name='p' values='d'/>\n"
+      + "  <define-configuration-property name='c' is-multi-valued='true'/>\n"
+      + "  <extend-configuration-property name='c' value='one'/>\n"
+      + "  <extend-configuration-property name='c' value='two'/>\n"
+      + "  <entry-point class='com.example.client.First'/>\n"
+      + "  <entry-point class='com.example.client.Second'/>\n"
+      + "  <script src='first.js'/>\n"
+      + "  <script src='second.js'><![CDATA[ ignored(); ]]></script>\n"
+      + "  <stylesheet src='style.css'/>\n"
+      + "  <servlet path='/rpc' class='com.example.server.Service'/>\n"
+      + "</module>\n";
+
+  private static final String BAD_MODULE = "<module>\n"
+      + "  <define-property name='X' values='a,b'/>\n"
+      + "\n"
+      + "  <set-property name='X' value='z'/>\n"
+      + "</module>\n";
+
+  private File tempDir;
+
+  public void testReplayMatchesParse() throws Exception {
+    URL url = writeFile("Module.gwt.xml", MODULE);
+
+    ModuleDef parsed = new ModuleDef("com.example.Module");
+    ReflectiveParser.parse(TreeLogger.NULL, newSchema(url, parsed),
+        new InputStreamReader(url.openStream()));
+
+    ModuleDef replayed = new ModuleDef("com.example.Module");
+    ParsedXml xml = new ModuleXmlCache(null).get(TreeLogger.NULL, url);
+    ReflectiveParser.parse(TreeLogger.NULL, newSchema(url, replayed), xml);
+
+    List<String> description = describe(parsed);
+    assertTrue(description.contains("binding p [a, b, d]"));
+    assertTrue(description.contains("configuration c [one, two]"));
+    assertTrue(description.contains("script second.js"));
+    assertEquals(description, describe(replayed));
+  }
+
+  public void testReplayReportsSameLineNumbers() throws Exception {
+    URL url = writeFile("Bad.gwt.xml", BAD_MODULE);
+    String expectedError = "Line 4: Value 'z' in not a valid value for property 'X'";
+
+    UnitTestTreeLogger logger = newErrorLogger(expectedError);
+    try {
+      ReflectiveParser.parse(logger, newSchema(url, new ModuleDef("com.example.Bad")),
+          new InputStreamReader(url.openStream()));
+      fail("Expected UnableToCompleteException");
+    } catch (UnableToCompleteException expected) {
+    }
+    logger.assertCorrectLogEntries();
+
+    ParsedXml xml = new ModuleXmlCache(null).get(TreeLogger.NULL, url);
+    logger = newErrorLogger(expectedError);
+    try {
+      ReflectiveParser.parse(logger, newSchema(url, new ModuleDef("com.example.Bad")), xml);
+      fail("Expected UnableToCompleteException");
+    } catch (UnableToCompleteException expected) {
+    }
+    logger.assertCorrectLogEntries();
+  }
+
+  public void testSaveDropsFilesNotUsedByTheLastLoad() throws Exception {
+    URL first = writeFile("First.gwt.xml", "<module/>\n");
+    URL second = writeFile("Second.gwt.xml", "<module rename-to='second'/>\n");
+    File cacheDir = new File(tempDir, "cache");
+    ModuleXmlCache cache = new ModuleXmlCache(cacheDir);
+
+    cache.startLoad();
+    ParsedXml firstXml = cache.get(TreeLogger.NULL, first);
+    ParsedXml secondXml = cache.get(TreeLogger.NULL, second);
+    assertSame(firstXml, cache.get(TreeLogger.NULL, first));
+    cache.save(TreeLogger.NULL);
+    assertEquals(2, readSavedCache(cacheDir).size());
+
+    cache.startLoad();
+    assertSame(firstXml, cache.get(TreeLogger.NULL, first));
+    cache.save(TreeLogger.NULL);
+    assertEquals(1, readSavedCache(cacheDir).size());
+
+    // The second file was dropped from memory too, so it is parsed again.
+    cache.startLoad();
+    assertSame(firstXml, cache.get(TreeLogger.NULL, first));
+    assertNotSame(secondXml, cache.get(TreeLogger.NULL, second));
+  }
+
+  public void testSaveLeavesOtherTempFilesAlone() throws Exception {
+    URL first = writeFile("First.gwt.xml", "<module/>\n");
+    File cacheDir = new File(tempDir, "cache");
+    ModuleXmlCache cache = new ModuleXmlCache(cacheDir);
+
+    // A temp file that another process is still writing.
+    File otherTempFile =
+        new File(cacheDir, "gwt-moduleXmlCache-" + About.getGwtVersionNum() + ".ser.tmp");
+    Util.writeStringAsFile(otherTempFile, "other");
+
+    cache.startLoad();
+    cache.get(TreeLogger.NULL, first);
+    cache.save(TreeLogger.NULL);
+
+    assertEquals("other", Util.readFileAsString(otherTempFile));
+    assertTrue(otherTempFile.delete());
+    assertEquals(1, readSavedCache(cacheDir).size());
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    tempDir = Utility.makeTemporaryDirectory(null, "moduleXmlCache");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Util.recursiveDelete(tempDir, false);
+  }
+
+  private static List<String> describe(ModuleDef module) {
+    List<String> description = Lists.newArrayList();
+    description.add("name " + module.getName());
+    description.add("entry points " + Arrays.asList(module.getEntryPointTypeNames()));
+    for (BindingProperty property : module.getProperties().getBindingProperties()) {
+      description.add("binding " + property.getName() + " "
+          + Arrays.asList(property.getAllowedValues(property.getRootCondition())));
+    }
+    for (ConfigurationProperty property : module.getProperties().getConfigurationProperties()) {
+      description.add("configuration " + property.getName() + " " + property.getValues());
+    }
+    for (Script script : module.getScripts()) {
+      description.add("script " + script.getSrc());
+    }
+    for (String style : module.getStyles()) {
+      description.add("stylesheet " + style);
+    }
+    for (String path : module.getServletPaths()) {
+      description.add("servlet " + path + " " + module.findServletForPath(path));
+    }
+    return description;
+  }
+
+  private static UnitTestTreeLogger newErrorLogger(String expectedError) {
+    UnitTestTreeLogger.Builder builder = new UnitTestTreeLogger.Builder();
+    builder.setLowestLogLevel(TreeLogger.WARN);
+    builder.expectError(expectedError, null);
+    return builder.createLogger();
+  }
+
+  private static ModuleDefSchema newSchema(URL url, ModuleDef module) {
+    ModuleDefLoader loader = new ModuleDefLoader(new CompilerContext.Builder().build(),
+        ResourceLoaders.forClassLoader(Thread.currentThread()));
+    return new ModuleDefSchema(TreeLogger.NULL, loader, module.getName(), url, "com/example/",
+        module);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static HashMap<String, ParsedXml> readSavedCache(File cacheDir) throws Exception {
+    File[] files = cacheDir.listFiles();
+    assertEquals(1, files.length);
+    return Util.readFileAsObject(files[0], HashMap.class);
+  }
+
+  private URL writeFile(String name, String contents) throws IOException {
+    File file = new File(tempDir, name);
+    Util.writeStringAsFile(file, contents);
+    return file.toURI().toURL();
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.google.gwt.dev.javac;
 
+import com.google.gwt.dev.CompilerContext;
 import com.google.gwt.dev.javac.Dependencies.Ref;
 import com.google.gwt.dev.javac.testing.impl.JavaResourceBase;
 import com.google.gwt.dev.javac.testing.impl.MockJavaResource;
@@ -34,7 +35,9 @@ import com.google.gwt.dev.util.collect.Lists;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -186,6 +189,19 @@ public class CompilationStateTest extends CompilationStateTestBase {
     assertUnitsChecked(state.getCompilationUnits());
   }
 
+  public void testInitializationWithConcurrentBuilders() throws Exception {
+    List<String> serialCacheOrder = new ArrayList<String>();
+    CompilationState serialState = buildWithBuilderThreads("1", serialCacheOrder);
+    List<String> concurrentCacheOrder = new ArrayList<String>();
+    CompilationState concurrentState = buildWithBuilderThreads("4", concurrentCacheOrder);
+
+    assertUnitsChecked(concurrentState.getCompilationUnits());
+    assertEquals(getTypeNames(serialState.getCompilationUnits()),
+        getTypeNames(concurrentState.getCompilationUnits()));
+    assertFalse(serialCacheOrder.isEmpty());
+    assertEquals(serialCacheOrder, concurrentCacheOrder);
+  }
+
   public void testInvalidation() {
     testCachingOverMultipleRefreshes(
         new MockJavaResource[]{JavaResourceBase.FOO},
@@ -399,6 +415,41 @@ public class CompilationStateTest extends CompilationStateTestBase {
     validateCompilationState();
   }
 
+  /**
+   * Builds the compilation state from scratch with the given number of unit builder threads,
+   * recording the order in which units are added to the unit cache.
+   */
+  private CompilationState buildWithBuilderThreads(String threads, final List<String> cacheOrder)
+      throws Exception {
+    UnitCache unitCache = new MemoryUnitCache() {
+      @Override
+      public void add(CompilationUnit newUnit) {
+        cacheOrder.add(newUnit.getResourcePath());
+        super.add(newUnit);
+      }
+    };
+    String oldValue = System.getProperty(CompilationStateBuilder.BUILDER_THREADS_PROPERTY);
+    System.setProperty(CompilationStateBuilder.BUILDER_THREADS_PROPERTY, threads);
+    try {
+      return new CompilationStateBuilder().doBuildFrom(createTreeLogger(),
+          new CompilerContext.Builder().unitCache(unitCache).build(), oracle.getResources());
+    } finally {
+      if (oldValue == null) {
+        System.clearProperty(CompilationStateBuilder.BUILDER_THREADS_PROPERTY);
+      } else {
+        System.setProperty(CompilationStateBuilder.BUILDER_THREADS_PROPERTY, oldValue);
+      }
+    }
+  }
+
+  private static List<String> getTypeNames(Collection<CompilationUnit> units) {
+    List<String> typeNames = new ArrayList<String>();
+    for (CompilationUnit unit : units) {
+      typeNames.add(unit.getTypeName());
+    }
+    return typeNames;
+  }
+
   private void testCaching(MockJavaResource... resources) {
     Set<String> reusedTypes = new HashSet<String>();
     for (MockJavaResource resource : resources) {
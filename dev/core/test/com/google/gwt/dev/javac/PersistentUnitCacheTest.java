@@ -59,6 +59,47 @@ public class PersistentUnitCacheTest extends TestCase {
     lastCacheDir = null;
   }
 
+  /**
+   * A cache layered over a base cache finds the units in both, but only
+   * writes to its own directory.
+   */
+  public void testBaseCache() throws IOException, InterruptedException,
+      UnableToCompleteException, ExecutionException {
+    TreeLogger logger = TreeLogger.NULL;
+
+    File baseDir = lastCacheDir = File.createTempFile("persistentCacheTest", "");
+    File baseUnitCacheDir = mkCacheDir(baseDir);
+    PersistentUnitCache cache = new PersistentUnitCache(logger, baseDir);
+    MockCompilationUnit bar = new MockCompilationUnit("com.example.Bar", "Bar: source1");
+    cache.add(bar);
+    cache.cleanup(logger);
+    cache.shutdown();
+    assertNumCacheFiles(baseUnitCacheDir, 1);
+
+    File cacheDir = new File(baseDir, "overlay");
+    cache = new PersistentUnitCache(logger, cacheDir, baseDir);
+    CompilationUnit result = cache.find("com/example/Bar.java");
+    assertNotNull(result);
+    assertEquals(bar.getContentId(), result.getContentId());
+    MockCompilationUnit foo = new MockCompilationUnit("com.example.Foo", "Foo: source1");
+    cache.add(foo);
+    cache.cleanup(logger);
+    cache.shutdown();
+
+    // The base cache is left alone.
+    assertNumCacheFiles(baseUnitCacheDir, 1);
+    cache = new PersistentUnitCache(logger, baseDir);
+    assertNull(cache.find("com/example/Foo.java"));
+    cache.shutdown();
+
+    cache = new PersistentUnitCache(logger, cacheDir);
+    assertNull(cache.find("com/example/Bar.java"));
+    result = cache.find(foo.getContentId());
+    assertNotNull(result);
+    assertEquals("com.example.Foo", result.getTypeName());
+    cache.shutdown();
+  }
+
   /**
    * When a cache file encounters a serialization error, the logic should assume
    * the cache log is stale and remove it.
@@ -234,6 +275,59 @@ public class PersistentUnitCacheTest extends TestCase {
     assertNumCacheFiles(unitCacheDir, 1);
   }
 
+  /**
+   * Units not used since the cache files were last consolidated are dropped
+   * when they are consolidated again.
+   */
+  public void testUnusedUnitsAreDropped() throws IOException, InterruptedException,
+      UnableToCompleteException, ExecutionException {
+    TreeLogger logger = TreeLogger.NULL;
+
+    File cacheDir = lastCacheDir = File.createTempFile("persistentCacheTest", "");
+    File unitCacheDir = mkCacheDir(cacheDir);
+
+    PersistentUnitCache cache = new PersistentUnitCache(logger, cacheDir);
+    MockCompilationUnit bar = new MockCompilationUnit("com.example.Bar", "Bar: source1");
+    cache.add(bar);
+    MockCompilationUnit baz = new MockCompilationUnit("com.example.Baz", "Baz: source1");
+    cache.add(baz);
+    cache.cleanup(logger);
+    cache.shutdown();
+
+    // Consolidates the files once, keeping every unit.
+    addUnitsUntilConsolidated(logger, cacheDir, unitCacheDir, null);
+
+    // Consolidates them again, only using Baz.
+    addUnitsUntilConsolidated(logger, cacheDir, unitCacheDir, "com/example/Baz.java");
+    cache = new PersistentUnitCache(logger, cacheDir);
+    assertNull(cache.find(bar.getContentId()));
+    assertNull(cache.find("com/example/Bar.java"));
+    CompilationUnit result = cache.find("com/example/Baz.java");
+    assertNotNull(result);
+    assertEquals(baz.getContentId(), result.getContentId());
+    cache.shutdown();
+  }
+
+  /**
+   * Runs sessions that each add a unit until the cache files are consolidated
+   * into one. The first session also looks up <code>usedPath</code>, if not
+   * null.
+   */
+  private void addUnitsUntilConsolidated(TreeLogger logger, File cacheDir, File unitCacheDir,
+      String usedPath) throws UnableToCompleteException, InterruptedException,
+      ExecutionException {
+    for (int i = 2; i <= PersistentUnitCache.CACHE_FILE_THRESHOLD; i++) {
+      PersistentUnitCache cache = new PersistentUnitCache(logger, cacheDir);
+      if (usedPath != null && i == 2) {
+        assertNotNull(cache.find(usedPath));
+      }
+      cache.add(new MockCompilationUnit("com.example.Foo", "Foo Source" + i));
+      cache.cleanup(logger);
+      cache.shutdown();
+    }
+    assertNumCacheFiles(unitCacheDir, 1);
+  }
+
   private void assertNumCacheFiles(File unitCacheDir, int expected) {
     assertEquals(expected, unitCacheDir.list().length);
   }
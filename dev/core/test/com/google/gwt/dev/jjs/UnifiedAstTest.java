@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs;
+
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.js.ast.JsProgram;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests {@link UnifiedAst}.
+ */
+public class UnifiedAstTest extends TestCase {
+
+  public void testConcurrentGetFreshAst() throws Exception {
+    UnifiedAst.AST initialAst = new UnifiedAst.AST(new JProgram(), new JsProgram());
+    final UnifiedAst unifiedAst = new UnifiedAst(new JJSOptionsImpl(), initialAst, false,
+        Collections.<String>emptySet());
+
+    int threadCount = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<UnifiedAst.AST>> futures = new ArrayList<Future<UnifiedAst.AST>>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(executor.submit(new Callable<UnifiedAst.AST>() {
+          @Override
+          public UnifiedAst.AST call() throws InterruptedException {
+            start.await();
+            return unifiedAst.getFreshAst();
+          }
+        }));
+      }
+      start.countDown();
+
+      // Exactly one caller gets the initial AST; every other one gets its own copy.
+      Map<Object, Boolean> seen = new IdentityHashMap<Object, Boolean>();
+      int initialCount = 0;
+      for (Future<UnifiedAst.AST> future : futures) {
+        UnifiedAst.AST ast = future.get();
+        assertNotNull(ast.getJProgram());
+        assertNotNull(ast.getJsProgram());
+        assertNull(seen.put(ast, true));
+        assertNull(seen.put(ast.getJProgram(), true));
+        assertNull(seen.put(ast.getJsProgram(), true));
+        if (ast == initialAst) {
+          initialCount++;
+        }
+      }
+      assertEquals(1, initialCount);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testSinglePermutationAstIsHandedOutOnce() {
+    UnifiedAst.AST initialAst = new UnifiedAst.AST(new JProgram(), new JsProgram());
+    UnifiedAst unifiedAst = new UnifiedAst(new JJSOptionsImpl(), initialAst, true,
+        Collections.<String>emptySet());
+    assertSame(initialAst, unifiedAst.getFreshAst());
+    try {
+      unifiedAst.getFreshAst();
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+  }
+}
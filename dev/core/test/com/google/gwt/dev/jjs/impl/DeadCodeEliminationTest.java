@@ -15,9 +15,12 @@
  */
 package com.google.gwt.dev.jjs.impl;
 
+import com.google.gwt.dev.jjs.ast.JDeclaredType;
 import com.google.gwt.dev.jjs.ast.JMethod;
 import com.google.gwt.dev.jjs.ast.JProgram;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * Tests {@link DeadCodeElimination}.
  */
@@ -290,6 +293,67 @@ public class DeadCodeEliminationTest extends OptimizerTestBase {
         + "EntryPoint$B.m2();");
   }
 
+  public void testConcurrentExecution() throws Exception {
+    int methodCount = 200;
+    for (int i = 0; i < methodCount; i++) {
+      addSnippetClassDecl("static int m" + i + "() { if (true) { return " + i + "; } return -1; }");
+    }
+    JProgram serialProgram = compileSnippet("void", "");
+    DeadCodeElimination.exec(serialProgram);
+
+    JProgram parallelProgram = compileSnippet("void", "");
+    assertTrue(execInParallel(parallelProgram).didChange());
+
+    for (int i = 0; i < methodCount; i++) {
+      String source = findMethod(parallelProgram, "m" + i).getBody().toSource();
+      assertFalse(source.contains("if"));
+      assertEquals(findMethod(serialProgram, "m" + i).getBody().toSource(), source);
+    }
+  }
+
+  public void testConcurrentExecutionSkipsReferenceOnlyTypes() throws Exception {
+    int methodCount = 200;
+    StringBuilder referenceOnlyClass = new StringBuilder("static class ReferenceOnly {");
+    for (int i = 0; i < methodCount; i++) {
+      String body = "() { if (true) { return " + i + "; } return -1; }";
+      addSnippetClassDecl("static int m" + i + body);
+      referenceOnlyClass.append(" static int r" + i + body);
+    }
+    addSnippetClassDecl(referenceOnlyClass.append(" }").toString());
+
+    JProgram serialProgram = compileSnippet("void", "");
+    JDeclaredType serialType = findDeclaredType(serialProgram, "test.EntryPoint$ReferenceOnly");
+    serialProgram.addReferenceOnlyType(serialType);
+    DeadCodeElimination.exec(serialProgram);
+
+    JProgram parallelProgram = compileSnippet("void", "");
+    JDeclaredType parallelType =
+        findDeclaredType(parallelProgram, "test.EntryPoint$ReferenceOnly");
+    parallelProgram.addReferenceOnlyType(parallelType);
+    execInParallel(parallelProgram);
+
+    for (int i = 0; i < methodCount; i++) {
+      String source = findMethod(parallelProgram, "m" + i).getBody().toSource();
+      assertFalse(source.contains("if"));
+      assertEquals(findMethod(serialProgram, "m" + i).getBody().toSource(), source);
+
+      source = findMethod(parallelType, "r" + i).getBody().toSource();
+      assertTrue(source.contains("if"));
+      assertEquals(findMethod(serialType, "r" + i).getBody().toSource(), source);
+    }
+  }
+
+  private static OptimizerStats execInParallel(JProgram program) {
+    System.setProperty(ParallelMethodVisitor.THREADS_PROPERTY, "4");
+    ExecutorService executor = ParallelMethodVisitor.newExecutor();
+    try {
+      return DeadCodeElimination.exec(program, executor);
+    } finally {
+      executor.shutdownNow();
+      System.clearProperty(ParallelMethodVisitor.THREADS_PROPERTY);
+    }
+  }
+
   private boolean runMethodInliner;
 
   @Override
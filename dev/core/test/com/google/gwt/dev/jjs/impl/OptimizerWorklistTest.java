@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.ast.Context;
+import com.google.gwt.dev.jjs.ast.JDeclaredType;
+import com.google.gwt.dev.jjs.ast.JIntLiteral;
+import com.google.gwt.dev.jjs.ast.JMethod;
+import com.google.gwt.dev.jjs.ast.JMethodCall;
+import com.google.gwt.dev.jjs.ast.JModVisitor;
+import com.google.gwt.dev.jjs.ast.JProgram;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Tests {@link OptimizerWorklist}.
+ */
+public class OptimizerWorklistTest extends JJSTestBase {
+
+  public void testRevisitsModifiedMethodsAndCallers() throws Exception {
+    addSnippetClassDecl("static int callee() { return 1; }");
+    addSnippetClassDecl("static int caller() { return callee(); }");
+    addSnippetClassDecl("static int unrelated() { return 2; }");
+    JProgram program = compileSnippet("void", "caller(); unrelated();");
+    JMethod callee = findMethod(program, "callee");
+    JMethod caller = findMethod(program, "caller");
+
+    OptimizerWorklist worklist = new OptimizerWorklist(program);
+    assertNull(worklist.startRun("first"));
+    assertTrue(worklist.startRun("first").isEmpty());
+
+    incrementLiterals(program, callee);
+
+    Set<JMethod> methods = worklist.startRun("first");
+    assertEquals(2, methods.size());
+    assertTrue(methods.contains(callee));
+    assertTrue(methods.contains(caller));
+    assertTrue(worklist.startRun("first").isEmpty());
+
+    // Each optimization has its own history.
+    assertNull(worklist.startRun("second"));
+
+    assertEquals(Collections.singleton(caller),
+        worklist.getCallers(Collections.singleton(callee)));
+  }
+
+  public void testSkipsReferenceOnlyTypes() throws Exception {
+    addSnippetClassDecl("static int callee() { return 1; }");
+    addSnippetClassDecl("static int caller() { return callee(); }");
+    addSnippetClassDecl("static class Other { static int caller() { return callee(); } }");
+    JProgram program = compileSnippet("void", "caller(); Other.caller();");
+    JMethod callee = findMethod(program, "callee");
+    JMethod caller = findMethod(program, "caller");
+    JDeclaredType other = findDeclaredType(program, "test.EntryPoint$Other");
+    program.addReferenceOnlyType(other);
+
+    OptimizerWorklist worklist = new OptimizerWorklist(program);
+    assertNull(worklist.startRun("first"));
+
+    incrementLiterals(program, callee);
+
+    Set<JMethod> methods = worklist.startRun("first");
+    assertEquals(2, methods.size());
+    assertTrue(methods.contains(callee));
+    assertTrue(methods.contains(caller));
+    assertEquals(Collections.singleton(caller),
+        worklist.getCallers(Collections.singleton(callee)));
+  }
+
+  public void testFindsCallersOfModifiedMethods() throws Exception {
+    addSnippetClassDecl("static int callee() { return 1; }");
+    addSnippetClassDecl("static int caller() { return 2; }");
+    addSnippetClassDecl("static int otherCaller() { return callee(); }");
+    final JProgram program = compileSnippet("void", "caller(); otherCaller();");
+    final JMethod callee = findMethod(program, "callee");
+    JMethod caller = findMethod(program, "caller");
+    JMethod otherCaller = findMethod(program, "otherCaller");
+
+    OptimizerWorklist worklist = new OptimizerWorklist(program);
+    assertNull(worklist.startRun("first"));
+    assertEquals(Collections.singleton(otherCaller),
+        worklist.getCallers(Collections.singleton(callee)));
+
+    // Make caller() call callee(); the callers index must pick up the new reference.
+    new JModVisitor() {
+      @Override
+      public void endVisit(JIntLiteral x, Context ctx) {
+        ctx.replaceMe(new JMethodCall(x.getSourceInfo(), null, callee));
+      }
+    }.accept(caller);
+    assertEquals(Arrays.asList(caller, otherCaller), Arrays.asList(
+        worklist.getCallers(Arrays.asList(caller, callee)).toArray()));
+
+    // And drop the reference again.
+    new JModVisitor() {
+      @Override
+      public void endVisit(JMethodCall x, Context ctx) {
+        ctx.replaceMe(program.getLiteralInt(2));
+      }
+    }.accept(caller);
+    assertEquals(Collections.singleton(otherCaller),
+        worklist.getCallers(Arrays.asList(caller, callee)));
+  }
+
+  private static void incrementLiterals(final JProgram program, JMethod method) {
+    new JModVisitor() {
+      @Override
+      public void endVisit(JIntLiteral x, Context ctx) {
+        ctx.replaceMe(program.getLiteralInt(x.getValue() + 1));
+      }
+    }.accept(method);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl;
+
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.jjs.impl.PassProfiler.PassRecord;
+import com.google.gwt.dev.js.JsParser;
+import com.google.gwt.dev.js.ast.JsProgram;
+import com.google.gwt.dev.js.ast.JsStatement;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Tests the {@link PassProfiler} class.
+ */
+public class PassProfilerTest extends TestCase {
+
+  public void testDisabled() {
+    PassProfiler profiler = new PassProfiler();
+    assertFalse(profiler.isEnabled());
+    profiler.startJs("Pass 1", new JsProgram());
+    OptimizerStats stats = new OptimizerStats("foo");
+    assertSame(stats, profiler.lap(stats));
+    profiler.lap("bar");
+    assertTrue(profiler.getRecords().isEmpty());
+  }
+
+  public void testRecordsPasses() throws Exception {
+    PassProfiler profiler;
+    System.setProperty(PassProfiler.PROPERTY, "true");
+    try {
+      profiler = new PassProfiler();
+    } finally {
+      System.clearProperty(PassProfiler.PROPERTY);
+    }
+    assertTrue(profiler.isEnabled());
+
+    JsProgram program = new JsProgram();
+    List<JsStatement> statements = JsParser.parse(SourceOrigin.UNKNOWN, program.getScope(),
+        new StringReader("var a = 1; var b = a + 2;"));
+    program.getGlobalBlock().getStatements().addAll(statements);
+
+    profiler.startJs("Pass 1", program);
+    program.getGlobalBlock().getStatements().remove(1);
+    profiler.lap(new OptimizerStats("Remove").recordModified(1));
+    profiler.lap("Nothing");
+
+    List<PassRecord> records = profiler.getRecords();
+    assertEquals(2, records.size());
+    PassRecord remove = records.get(0);
+    assertEquals("js", remove.getAst());
+    assertEquals("Pass 1", remove.getGroup());
+    assertEquals("Remove", remove.getPass());
+    assertEquals(1, remove.getMods());
+    assertTrue(remove.getNodesAfter() < remove.getNodesBefore());
+    assertTrue(remove.getWallNanos() >= 0);
+
+    PassRecord nothing = records.get(1);
+    assertEquals("Nothing", nothing.getPass());
+    assertEquals(-1, nothing.getMods());
+    assertEquals(remove.getNodesAfter(), nothing.getNodesBefore());
+    assertEquals(nothing.getNodesBefore(), nothing.getNodesAfter());
+
+    String[] csv = profiler.toCsv().split("\n");
+    assertEquals(3, csv.length);
+    assertEquals("ast,group,pass,wallNanos,callingThreadCpuNanos,callingThreadAllocatedBytes,"
+        + "nodesBefore,nodesAfter,mods", csv[0]);
+    assertTrue(csv[1].startsWith("js,Pass 1,Remove,"));
+
+    String json = profiler.toJson();
+    assertTrue(json.startsWith("[\n{\"ast\":\"js\",\"group\":\"Pass 1\",\"pass\":\"Remove\","));
+    assertTrue(json.contains("\"pass\":\"Nothing\""));
+    assertTrue(json.contains(",\"callingThreadCpuNanos\":"));
+    assertTrue(json.contains(",\"callingThreadAllocatedBytes\":"));
+    assertTrue(json.contains(",\"mods\":1}"));
+    assertTrue(json.endsWith("\n]\n"));
+  }
+}
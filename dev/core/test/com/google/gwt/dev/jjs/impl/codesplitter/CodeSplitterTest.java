@@ -85,13 +85,16 @@ public class CodeSplitterTest extends FullCompileTestBase {
   private ConfigurationProperty initialSequenceProp =
       new ConfigurationProperty(CodeSplitters.PROP_INITIAL_SEQUENCE, true);
 
+  private ConfigurationProperty profileProp =
+      new ConfigurationProperty(RunAsyncProfile.PROP_PROFILE);
+
   @Override
   public void setUp() throws Exception {
     // Compilation Configuration Properties.
     BindingProperty stackMode = new BindingProperty("compiler.stackMode");
     stackMode.addDefinedValue(new ConditionNone(), "STRIP");
     setProperties(new BindingProperty[]{stackMode}, new String[]{"STRIP"},
-        new ConfigurationProperty[]{initialSequenceProp});
+        new ConfigurationProperty[]{initialSequenceProp, profileProp});
     super.setUp();
     jsProgram = new JsProgram();
   }
@@ -263,6 +266,57 @@ public class CodeSplitterTest extends FullCompileTestBase {
     assertInFragment("initialB", 2);
   }
 
+  public void testInitialSequenceFromProfile() throws UnableToCompleteException {
+    // The profile says every session reaches the two initial callbacks first.
+    profileProp.setValue("com/google/gwt/dev/jjs/impl/codesplitter/CodeSplitterTest.profile");
+
+    StringBuffer code = new StringBuffer();
+    code.append("package test;\n");
+    code.append("import com.google.gwt.core.client.GWT;\n");
+    code.append("import com.google.gwt.core.client.RunAsyncCallback;\n");
+    code.append("public class EntryPoint {\n");
+    code.append(functionA);
+    code.append(functionB);
+    code.append(functionC);
+    code.append(initialA);
+    code.append(initialB);
+    code.append(createNamedRunAsyncCallback("InitialRunAsyncCallBack1", "initialA();"));
+    code.append(createNamedRunAsyncCallback("InitialRunAsyncCallBack2", "initialB();"));
+
+    code.append("  public static void onModuleLoad() {\n");
+    code.append("functionC();");
+    // Fragment #3
+    code.append(createRunAsync("functionA();"));
+    // Fragment #3 (merged)
+    code.append(createRunAsync("functionA(); functionB();"));
+    // Fragment #4
+    code.append(createRunAsync("functionC();"));
+    // initial fragments #1, #2, picked from the profile
+    code.append("createInitialCallBack1();");
+    code.append("createInitialCallBack2();");
+    code.append("  }\n");
+    code.append("  private static void createInitialCallBack1() {\n");
+    code.append("    GWT.runAsync( new InitialRunAsyncCallBack1() );");
+    code.append("  }\n");
+    code.append("  private static void createInitialCallBack2() {\n");
+    code.append("    GWT.runAsync( new InitialRunAsyncCallBack2() );");
+    code.append("  }\n");
+    code.append("}\n");
+
+    expectedFragmentCount = 6;
+    compileSnippet(code.toString());
+
+    assertEquals(2, jProgram.getInitialAsyncSequence().size());
+
+    // 3 initial + 2 fragments + leftover, as if the initial sequence had been configured.
+    assertFragmentCount(6);
+    assertInFragment("functionA", 3);
+    assertInFragment("functionB", 3);
+    assertInFragment("functionC", 0);
+    assertInFragment("initialA", 1);
+    assertInFragment("initialB", 2);
+  }
+
   public void testOnSuccessCallCast() throws UnableToCompleteException {
     StringBuffer code = new StringBuffer();
     code.append("package test;\n");
@@ -0,0 +1,3 @@
+# A runAsync profile for CodeSplitterTest.testInitialSequenceFromProfile.
+# sessions  split points
+100  @test.EntryPoint::createInitialCallBack1()  @test.EntryPoint::createInitialCallBack2()
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.codesplitter;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.dev.cfg.ConfigProps;
+import com.google.gwt.dev.cfg.ResourceLoader;
+import com.google.gwt.dev.cfg.ResourceLoaders;
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.jjs.ast.JNullLiteral;
+import com.google.gwt.dev.jjs.ast.JRunAsync;
+import com.google.gwt.dev.util.UnitTestTreeLogger;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.guava.common.collect.Lists;
+import com.google.gwt.thirdparty.guava.common.collect.Maps;
+import com.google.gwt.util.tools.Utility;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link RunAsyncProfile}.
+ */
+public class RunAsyncProfileTest extends TestCase {
+
+  private final JRunAsync inbox = createRunAsync(1, "app.Inbox");
+  private final JRunAsync compose = createRunAsync(2, "app.Compose");
+  private final JRunAsync settings = createRunAsync(3, "@app.Settings::show()");
+  private final JRunAsync help = createRunAsync(4, "app.Help");
+  private final List<JRunAsync> runAsyncs = Lists.newArrayList(inbox, compose, settings, help);
+
+  public void testBadSessionCount() throws IOException {
+    try {
+      read("# comment\n\n12 app.Inbox\nlots app.Compose\n");
+      fail("Expected UnableToCompleteException");
+    } catch (UnableToCompleteException expected) {
+    }
+  }
+
+  public void testInitialSequence() throws Exception {
+    RunAsyncProfile profile = read(
+        "# sessions  split points\n"
+        + "80 app.Inbox app.Compose app.Help\n"
+        + "15 app.Inbox app.Compose\n"
+        + "5  app.Inbox app.Help\n"
+        + "50\n");
+    // Everyone reaches Inbox first and nearly everyone Compose next, but fewer reach Help. The
+    // sessions that reach no split point don't count.
+    assertEquals(Lists.newArrayList(inbox, compose),
+        Lists.newArrayList(profile.pickInitialSequence(runAsyncs)));
+  }
+
+  public void testInitialSequenceBelowThreshold() throws Exception {
+    RunAsyncProfile profile = read(
+        "80 app.Inbox\n"
+        + "20 app.Help app.Inbox\n");
+    assertTrue(profile.pickInitialSequence(runAsyncs).isEmpty());
+  }
+
+  public void testInitialSequenceIgnoresUnknownSplitPoints() throws Exception {
+    RunAsyncProfile profile = read(
+        "10 app.Removed app.Inbox\n"
+        + "10 app.Inbox app.Removed\n");
+    assertEquals(Lists.newArrayList(inbox),
+        Lists.newArrayList(profile.pickInitialSequence(runAsyncs)));
+  }
+
+  public void testInitialSequenceStopsAtAmbiguousSplitPoint() throws Exception {
+    List<JRunAsync> withDuplicate = Lists.newArrayList(runAsyncs);
+    withDuplicate.add(createRunAsync(5, "app.Compose"));
+    RunAsyncProfile profile = read("10 app.Inbox app.Compose app.Help\n");
+    assertEquals(Lists.newArrayList(inbox),
+        Lists.newArrayList(profile.pickInitialSequence(withDuplicate)));
+  }
+
+  public void testLoadFromModuleClassPath() throws Exception {
+    File dir = Utility.makeTemporaryDirectory(null, "runAsyncProfile");
+    try {
+      Util.writeStringAsFile(new File(dir, "app/profile.txt"), "10 app.Inbox\n");
+      RunAsyncProfile profile = RunAsyncProfile.load(TreeLogger.NULL,
+          createConfig("app/profile.txt", null), createResourceLoader(dir));
+      assertEquals(Lists.newArrayList(inbox),
+          Lists.newArrayList(profile.pickInitialSequence(runAsyncs)));
+    } finally {
+      Util.recursiveDelete(dir, false);
+    }
+  }
+
+  public void testLoadMissingProfile() throws Exception {
+    File dir = Utility.makeTemporaryDirectory(null, "runAsyncProfile");
+    try {
+      UnitTestTreeLogger logger = createErrorLogger(
+          "Unable to find the runAsync profile app/profile.txt on the module's class path");
+      try {
+        RunAsyncProfile.load(logger, createConfig("app/profile.txt", null),
+            createResourceLoader(dir));
+        fail("Expected UnableToCompleteException");
+      } catch (UnableToCompleteException expected) {
+      }
+      logger.assertCorrectLogEntries();
+    } finally {
+      Util.recursiveDelete(dir, false);
+    }
+  }
+
+  public void testLoadWithoutProfile() throws Exception {
+    assertNull(RunAsyncProfile.load(TreeLogger.NULL, createConfig(null, "50"),
+        createResourceLoader(new File("."))));
+  }
+
+  public void testThresholdOutOfRange() throws Exception {
+    File dir = Utility.makeTemporaryDirectory(null, "runAsyncProfile");
+    try {
+      Util.writeStringAsFile(new File(dir, "app/profile.txt"), "10 app.Inbox\n");
+      for (String threshold : new String[] {"0", "101", "-5", "most"}) {
+        UnitTestTreeLogger logger = createErrorLogger("The " + RunAsyncProfile.PROP_THRESHOLD
+            + " configuration property must be a percentage from 1 to 100, but is '" + threshold
+            + "'");
+        try {
+          RunAsyncProfile.load(logger, createConfig("app/profile.txt", threshold),
+              createResourceLoader(dir));
+          fail("Expected UnableToCompleteException for " + threshold);
+        } catch (UnableToCompleteException expected) {
+        }
+        logger.assertCorrectLogEntries();
+      }
+      for (String threshold : new String[] {"1", "100"}) {
+        assertNotNull(RunAsyncProfile.load(TreeLogger.NULL,
+            createConfig("app/profile.txt", threshold), createResourceLoader(dir)));
+      }
+    } finally {
+      Util.recursiveDelete(dir, false);
+    }
+  }
+
+  public void testMergeLoadedTogether() throws Exception {
+    RunAsyncProfile profile = read(
+        "60 app.Inbox @app.Settings::show()\n"
+        + "35 @app.Settings::show() app.Inbox app.Help\n"
+        + "5  app.Compose\n"
+        + "3  app.Help app.Compose\n");
+    Collection<Collection<JRunAsync>> groups =
+        profile.mergeLoadedTogether(TreeLogger.NULL, groupsOf(inbox, compose, settings, help));
+    // Inbox and Settings always go together; Help and Compose rarely.
+    assertEquals(3, groups.size());
+    assertTrue(groups.contains(Lists.newArrayList(inbox, settings)));
+    assertTrue(groups.contains(Lists.newArrayList(compose)));
+    assertTrue(groups.contains(Lists.newArrayList(help)));
+  }
+
+  public void testMergeLeavesUnrecordedGroupsAlone() throws Exception {
+    RunAsyncProfile profile = read("10 app.Inbox\n");
+    Collection<Collection<JRunAsync>> groups =
+        profile.mergeLoadedTogether(TreeLogger.NULL, groupsOf(inbox, compose, help));
+    assertEquals(3, groups.size());
+  }
+
+  private static ConfigProps createConfig(String profile, String threshold) {
+    Map<String, List<String>> properties = Maps.newHashMap();
+    if (profile != null) {
+      properties.put(RunAsyncProfile.PROP_PROFILE, Lists.newArrayList(profile));
+    }
+    if (threshold != null) {
+      properties.put(RunAsyncProfile.PROP_THRESHOLD, Lists.newArrayList(threshold));
+    }
+    return new ConfigProps(properties);
+  }
+
+  private static UnitTestTreeLogger createErrorLogger(String expectedError) {
+    UnitTestTreeLogger.Builder builder = new UnitTestTreeLogger.Builder();
+    builder.setLowestLogLevel(TreeLogger.ERROR);
+    builder.expectError(expectedError, null);
+    return builder.createLogger();
+  }
+
+  /**
+   * Returns a module class path with only the given directory on it.
+   */
+  private static ResourceLoader createResourceLoader(File dir) {
+    return ResourceLoaders.forPathAndFallback(Lists.newArrayList(dir),
+        ResourceLoaders.wrap(new URLClassLoader(new URL[0], null)));
+  }
+
+  private static JRunAsync createRunAsync(int id, String name) {
+    return new JRunAsync(SourceOrigin.UNKNOWN, id, name, false, JNullLiteral.INSTANCE,
+        JNullLiteral.INSTANCE);
+  }
+
+  private static Collection<Collection<JRunAsync>> groupsOf(JRunAsync... runAsyncs) {
+    Collection<Collection<JRunAsync>> groups = Lists.newArrayList();
+    for (JRunAsync runAsync : runAsyncs) {
+      groups.add(Lists.newArrayList(runAsync));
+    }
+    return groups;
+  }
+
+  private static RunAsyncProfile read(String profile)
+      throws IOException, UnableToCompleteException {
+    return RunAsyncProfile.read(TreeLogger.NULL, "test", new StringReader(profile), 90);
+  }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow;
+
+import com.google.gwt.dev.jjs.impl.gflow.AnalysisSolver.StepLimitExceededException;
+import com.google.gwt.dev.jjs.impl.gflow.TransformationFunction.Transformation;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Tests {@link AnalysisSolver} on small hand-made graphs, with an analysis
+ * that collects the names of the nodes that can reach each edge.
+ */
+public class AnalysisSolverTest extends TestCase {
+
+  /**
+   * The names of the nodes that can reach an edge.
+   */
+  private static class Reached implements Assumption<Reached> {
+    private final TreeSet<String> names = new TreeSet<String>();
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Reached && names.equals(((Reached) obj).names);
+    }
+
+    @Override
+    public int hashCode() {
+      return names.hashCode();
+    }
+
+    @Override
+    public Reached join(Reached other) {
+      if (other == null) {
+        return this;
+      }
+      Reached result = new Reached();
+      result.names.addAll(names);
+      result.names.addAll(other.names);
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return names.toString();
+    }
+  }
+
+  private static class Node {
+    private final String name;
+
+    private Node(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static class Edge {
+    private Object data;
+    private final Node end;
+    private final Node start;
+
+    private Edge(Node start, Node end) {
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * A graph whose transformers are descriptions of the change, which are only
+   * recorded.
+   */
+  private static class TestGraph implements Graph<Node, Edge, String> {
+    private final ArrayList<Edge> graphInEdges = new ArrayList<Edge>();
+    private final ArrayList<Edge> graphOutEdges = new ArrayList<Edge>();
+    private final Map<Node, List<Edge>> inEdges = new HashMap<Node, List<Edge>>();
+    private final ArrayList<Node> nodes = new ArrayList<Node>();
+    private final Map<Node, List<Edge>> outEdges = new HashMap<Node, List<Edge>>();
+    private final List<String> transformations = new ArrayList<String>();
+
+    /**
+     * Adds an edge. A null start or end makes it an edge into or out of the
+     * graph.
+     */
+    Edge addEdge(Node start, Node end) {
+      Edge edge = new Edge(start, end);
+      if (start == null) {
+        graphInEdges.add(edge);
+      } else {
+        outEdges.get(start).add(edge);
+      }
+      if (end == null) {
+        graphOutEdges.add(edge);
+      } else {
+        inEdges.get(end).add(edge);
+      }
+      return edge;
+    }
+
+    Node addNode(String name) {
+      Node node = new Node(name);
+      nodes.add(node);
+      inEdges.put(node, new ArrayList<Edge>());
+      outEdges.put(node, new ArrayList<Edge>());
+      return node;
+    }
+
+    /**
+     * Adds nodes and the edges between them in a chain, from an edge into the
+     * graph to an edge out of it, in the order given by <code>nodeOrder</code>.
+     */
+    static TestGraph chain(int length, List<Integer> nodeOrder) {
+      TestGraph graph = new TestGraph();
+      Node[] chain = new Node[length];
+      for (int index : nodeOrder) {
+        chain[index] = graph.addNode("n" + index);
+      }
+      graph.addEdge(null, chain[0]);
+      for (int i = 1; i < length; i++) {
+        graph.addEdge(chain[i - 1], chain[i]);
+      }
+      graph.addEdge(chain[length - 1], null);
+      return graph;
+    }
+
+    @Override
+    public Object getEdgeData(Edge edge) {
+      return edge.data;
+    }
+
+    @Override
+    public Node getEnd(Edge edge) {
+      return edge.end;
+    }
+
+    @Override
+    public ArrayList<Edge> getGraphInEdges() {
+      return graphInEdges;
+    }
+
+    @Override
+    public ArrayList<Edge> getGraphOutEdges() {
+      return graphOutEdges;
+    }
+
+    @Override
+    public List<Edge> getInEdges(Node n) {
+      return inEdges.get(n);
+    }
+
+    @Override
+    public ArrayList<Node> getNodes() {
+      return nodes;
+    }
+
+    @Override
+    public List<Edge> getOutEdges(Node node) {
+      return outEdges.get(node);
+    }
+
+    @Override
+    public Node getStart(Edge edge) {
+      return edge.start;
+    }
+
+    @Override
+    public String print() {
+      return nodes.toString();
+    }
+
+    @Override
+    public <A extends Assumption<A>> String printWithAssumptions(Map<Edge, A> assumptions) {
+      return nodes.toString();
+    }
+
+    @Override
+    public void setEdgeData(Edge edge, Object data) {
+      edge.data = data;
+    }
+
+    @Override
+    public boolean transform(Node node, String transformer) {
+      transformations.add(transformer);
+      return true;
+    }
+  }
+
+  /**
+   * Passes on what reaches a node, plus the node itself, and records the order
+   * in which nodes are interpreted. Nodes whose name starts with
+   * "replace" are replaced with a single node when the graph is transformed.
+   */
+  private static class ReachedFlowFunction
+      implements IntegratedFlowFunction<Node, Edge, String, TestGraph, Reached> {
+    private final boolean forward;
+    private final List<String> interpreted = new ArrayList<String>();
+
+    private ReachedFlowFunction(boolean forward) {
+      this.forward = forward;
+    }
+
+    @Override
+    public Transformation<String, TestGraph> interpretOrReplace(final Node node,
+        TestGraph graph, AssumptionMap<Edge, Reached> assumptionMap) {
+      if (node.name.startsWith("replace")) {
+        return new Transformation<String, TestGraph>() {
+          @Override
+          public String getGraphTransformer() {
+            return "replaced " + node;
+          }
+
+          @Override
+          public TestGraph getNewSubgraph() {
+            TestGraph subgraph = new TestGraph();
+            Node replacement = subgraph.addNode("new " + node);
+            subgraph.addEdge(null, replacement);
+            subgraph.addEdge(replacement, null);
+            return subgraph;
+          }
+        };
+      }
+
+      interpreted.add(node.name);
+      List<Edge> in = forward ? graph.getInEdges(node) : graph.getOutEdges(node);
+      List<Edge> out = forward ? graph.getOutEdges(node) : graph.getInEdges(node);
+      Reached reached = new Reached().join(AssumptionUtil.join(in, assumptionMap));
+      reached.names.add(node.name);
+      AssumptionUtil.setAssumptions(out, reached, assumptionMap);
+      return null;
+    }
+  }
+
+  private static class ReachedAnalysis
+      implements IntegratedAnalysis<Node, Edge, String, TestGraph, Reached>,
+      Analysis<Node, Edge, TestGraph, Reached> {
+    private final ReachedFlowFunction flowFunction;
+
+    private ReachedAnalysis(boolean forward) {
+      flowFunction = new ReachedFlowFunction(forward);
+    }
+
+    @Override
+    public FlowFunction<Node, Edge, TestGraph, Reached> getFlowFunction() {
+      return new FlowFunction<Node, Edge, TestGraph, Reached>() {
+        @Override
+        public void interpret(Node node, TestGraph graph,
+            AssumptionMap<Edge, Reached> assumptionMap) {
+          flowFunction.interpretOrReplace(node, graph, assumptionMap);
+        }
+      };
+    }
+
+    @Override
+    public IntegratedFlowFunction<Node, Edge, String, TestGraph, Reached>
+    getIntegratedFlowFunction() {
+      return flowFunction;
+    }
+
+    @Override
+    public void setInitialGraphAssumptions(TestGraph graph,
+        AssumptionMap<Edge, Reached> assumptionMap) {
+    }
+  }
+
+  public void testForwardChainInterpretsEachNodeOnce() {
+    // The nodes are listed last to first, so insertion order would be the worst order.
+    TestGraph graph = TestGraph.chain(6, Arrays.asList(5, 4, 3, 2, 1, 0));
+    ReachedAnalysis analysis = new ReachedAnalysis(true);
+
+    Map<Edge, Reached> result = AnalysisSolver.solve(graph, analysis, true);
+
+    assertEquals(Arrays.asList("n0", "n1", "n2", "n3", "n4", "n5"),
+        analysis.flowFunction.interpreted);
+    assertEquals("[n0, n1, n2, n3, n4, n5]",
+        result.get(graph.getGraphOutEdges().get(0)).toString());
+  }
+
+  public void testBackwardChainInterpretsEachNodeOnce() {
+    TestGraph graph = TestGraph.chain(6, Arrays.asList(0, 1, 2, 3, 4, 5));
+    ReachedAnalysis analysis = new ReachedAnalysis(false);
+
+    Map<Edge, Reached> result = AnalysisSolver.solve(graph, analysis, false);
+
+    assertEquals(Arrays.asList("n5", "n4", "n3", "n2", "n1", "n0"),
+        analysis.flowFunction.interpreted);
+    assertEquals("[n0, n1, n2, n3, n4, n5]",
+        result.get(graph.getGraphInEdges().get(0)).toString());
+  }
+
+  public void testLoopReachesFixedPoint() {
+    // entry -> a -> b -> c -> exit, with c -> a looping back.
+    TestGraph graph = new TestGraph();
+    Node c = graph.addNode("c");
+    Node b = graph.addNode("b");
+    Node a = graph.addNode("a");
+    graph.addEdge(null, a);
+    Edge ab = graph.addEdge(a, b);
+    graph.addEdge(b, c);
+    graph.addEdge(c, a);
+    Edge exit = graph.addEdge(c, null);
+    ReachedAnalysis analysis = new ReachedAnalysis(true);
+
+    Map<Edge, Reached> result = AnalysisSolver.solve(graph, analysis, true);
+
+    assertEquals("[a, b, c]", result.get(ab).toString());
+    assertEquals("[a, b, c]", result.get(exit).toString());
+    // One pass in order, then a second one to carry c back around the loop.
+    assertEquals(Arrays.asList("a", "b", "c", "a", "b", "c"), analysis.flowFunction.interpreted);
+  }
+
+  public void testUnreachableNodesAreInterpreted() {
+    TestGraph graph = TestGraph.chain(2, Arrays.asList(0, 1));
+    Node island = graph.addNode("island");
+    Edge fromIsland = graph.addEdge(island, graph.getNodes().get(1));
+    ReachedAnalysis analysis = new ReachedAnalysis(true);
+
+    Map<Edge, Reached> result = AnalysisSolver.solve(graph, analysis, true);
+
+    assertEquals("[island]", result.get(fromIsland).toString());
+    assertEquals("[island, n0, n1]", result.get(graph.getGraphOutEdges().get(0)).toString());
+  }
+
+  public void testSolveIntegratedAppliesTransformations() {
+    TestGraph graph = newReplacingChain();
+
+    assertTrue(AnalysisSolver.solveIntegrated(graph, new ReachedAnalysis(true), true));
+    assertEquals(Collections.singletonList("replaced replace1"), graph.transformations);
+    // The replacement was analyzed instead of the node.
+    assertEquals("[n0, n2, new replace1]",
+        graph.getEdgeData(graph.getGraphOutEdges().get(0)).toString());
+  }
+
+  public void testStepLimitAppliesNoTransformation() {
+    TestGraph graph = newReplacingChain();
+
+    // Three nodes, plus one for the replacement subgraph.
+    assertTrue(AnalysisSolver.solveIntegrated(graph, new ReachedAnalysis(true), true, 4));
+    assertEquals(Collections.singletonList("replaced replace1"), graph.transformations);
+
+    graph = newReplacingChain();
+    try {
+      AnalysisSolver.solveIntegrated(graph, new ReachedAnalysis(true), true, 3);
+      fail("Expected StepLimitExceededException");
+    } catch (StepLimitExceededException expected) {
+    }
+    assertEquals(Collections.emptyList(), graph.transformations);
+  }
+
+  /**
+   * Returns a chain of three nodes whose middle node is replaced when the
+   * graph is transformed.
+   */
+  private static TestGraph newReplacingChain() {
+    TestGraph graph = new TestGraph();
+    Node n0 = graph.addNode("n0");
+    Node replace = graph.addNode("replace1");
+    Node n2 = graph.addNode("n2");
+    graph.addEdge(null, n0);
+    graph.addEdge(n0, replace);
+    graph.addEdge(replace, n2);
+    graph.addEdge(n2, null);
+    return graph;
+  }
+}
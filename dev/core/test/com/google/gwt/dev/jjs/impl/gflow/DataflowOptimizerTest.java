@@ -182,6 +182,27 @@ public class DataflowOptimizerTest extends OptimizerTestBase {
         "} catch (RuntimeException e) { }").noChange();
   }
 
+  public void testMethodOverNodeLimitIsNotOptimized() throws Exception {
+    System.setProperty(DataflowOptimizer.MAX_NODES_PROPERTY, "1");
+    try {
+      optimize("int", "int i = 1; int j = i; return i;").noChange();
+    } finally {
+      System.clearProperty(DataflowOptimizer.MAX_NODES_PROPERTY);
+    }
+  }
+
+  public void testMethodOverStepLimitIsNotOptimized() throws Exception {
+    // The loop needs a second pass over its header, which one step per node does not allow.
+    System.setProperty(DataflowOptimizer.MAX_STEPS_PER_NODE_PROPERTY, "1");
+    try {
+      optimize("int", "int i = 1; while (bar()) { foo(i); } return i;").noChange();
+    } finally {
+      System.clearProperty(DataflowOptimizer.MAX_STEPS_PER_NODE_PROPERTY);
+    }
+    optimize("int", "int i = 1; while (bar()) { foo(i); } return i;").into(
+        "int i; while (bar()) { foo(1); } return 1;");
+  }
+
   public void testAssignToField() throws Exception {
     optimize("void",
         "Foo foo = createFoo();",
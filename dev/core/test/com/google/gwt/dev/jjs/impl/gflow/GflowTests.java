@@ -24,6 +24,7 @@ import com.google.gwt.dev.jjs.impl.gflow.constants.ExpressionEvaluatorTest;
 import com.google.gwt.dev.jjs.impl.gflow.copy.CopyAnalysisTest;
 import com.google.gwt.dev.jjs.impl.gflow.copy.CopyAnalysisTransformationTest;
 import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAnalysisTest;
+import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessAssumptionTest;
 import com.google.gwt.dev.jjs.impl.gflow.liveness.LivenessTransformationTest;
 
 import junit.framework.Test;
@@ -36,12 +37,14 @@ import junit.framework.TestSuite;
 public class GflowTests {
   public static Test suite() {
     TestSuite suite = new TestSuite();
+    suite.addTestSuite(AnalysisSolverTest.class);
     suite.addTestSuite(CfgBuilderTest.class);
     suite.addTestSuite(ConstantsAssumptionTest.class);
     suite.addTestSuite(AssumptionsDeducerTest.class);
     suite.addTestSuite(ExpressionEvaluatorTest.class);
     suite.addTestSuite(ConstantsAnalysisTest.class);
     suite.addTestSuite(ConstantsAnalysisTransformationTest.class);
+    suite.addTestSuite(LivenessAssumptionTest.class);
     suite.addTestSuite(LivenessAnalysisTest.class);
     suite.addTestSuite(LivenessTransformationTest.class);
     suite.addTestSuite(CopyAnalysisTest.class);
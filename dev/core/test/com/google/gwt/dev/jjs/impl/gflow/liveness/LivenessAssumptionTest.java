@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.jjs.impl.gflow.liveness;
+
+import com.google.gwt.dev.jjs.SourceOrigin;
+import com.google.gwt.dev.jjs.ast.JLocal;
+import com.google.gwt.dev.jjs.ast.JMethodBody;
+import com.google.gwt.dev.jjs.ast.JPrimitiveType;
+import com.google.gwt.dev.jjs.ast.JProgram;
+import com.google.gwt.dev.jjs.impl.gflow.VariableNumbering;
+
+import junit.framework.TestCase;
+
+/**
+ * Test for LivenessAssumption.
+ *
+ * We use toString comparison in this test to make it simpler.
+ */
+public class LivenessAssumptionTest extends TestCase {
+  private final JLocal i = newLocal("i");
+  private final JLocal j = newLocal("j");
+  private final JLocal k = newLocal("k");
+  private final VariableNumbering numbering = new VariableNumbering();
+
+  public void testUseAndKill() {
+    LivenessAssumption.Updater updater = new LivenessAssumption.Updater(null, numbering);
+    updater.use(k);
+    updater.use(i);
+    updater.use(j);
+    LivenessAssumption ijk = updater.unwrap();
+    assertEquals("{i, j, k}", ijk.toString());
+
+    updater = new LivenessAssumption.Updater(ijk, numbering);
+    updater.kill(j);
+    LivenessAssumption ik = updater.unwrap();
+    assertEquals("{i, k}", ik.toString());
+    assertFalse(ik.isLive(j));
+    // The original is copied on write.
+    assertEquals("{i, j, k}", ijk.toString());
+
+    updater = new LivenessAssumption.Updater(ik, numbering);
+    updater.kill(i);
+    updater.kill(k);
+    assertNull(updater.unwrap());
+  }
+
+  public void testUnchangedAssumptionIsNotCopied() {
+    LivenessAssumption.Updater updater = new LivenessAssumption.Updater(null, numbering);
+    updater.use(i);
+    LivenessAssumption live = updater.unwrap();
+
+    updater = new LivenessAssumption.Updater(live, numbering);
+    updater.use(i);
+    updater.kill(j);
+    assertSame(live, updater.unwrap());
+  }
+
+  public void testKillUnnumberedVariable() {
+    LivenessAssumption.Updater updater = new LivenessAssumption.Updater(null, numbering);
+    updater.use(i);
+    updater.kill(j);
+    assertEquals("{i}", updater.unwrap().toString());
+    assertEquals(-1, numbering.findIndex(j));
+    assertFalse(updater.unwrap().isLive(j));
+  }
+
+  public void testJoin() {
+    LivenessAssumption ij = live(i, j);
+    LivenessAssumption jk = live(j, k);
+
+    assertEquals("{i, j, k}", ij.join(jk).toString());
+    assertEquals("{i, j, k}", jk.join(ij).toString());
+    assertEquals("{i, j}", ij.toString());
+    assertEquals("{j, k}", jk.toString());
+
+    assertSame(ij, ij.join(null));
+    assertSame(ij, ij.join(new LivenessAssumption(numbering)));
+    assertSame(ij, new LivenessAssumption(numbering).join(ij));
+  }
+
+  public void testEqualsIgnoresOrderOfUse() {
+    LivenessAssumption ijk = live(i, j, k);
+    LivenessAssumption kji = live(k, j, i);
+
+    assertEquals(ijk, kji);
+    assertEquals(ijk.hashCode(), kji.hashCode());
+    assertFalse(ijk.equals(live(i, j)));
+  }
+
+  public void testManyVariables() {
+    // More variables than fit in one word of the bit set.
+    JLocal[] even = new JLocal[100];
+    JLocal[] odd = new JLocal[100];
+    for (int n = 0; n < 100; n++) {
+      even[n] = newLocal("e" + n);
+      odd[n] = newLocal("o" + n);
+    }
+    LivenessAssumption joined = live(even).join(live(odd));
+    for (int n = 0; n < 100; n++) {
+      assertTrue(joined.isLive(even[n]));
+      assertTrue(joined.isLive(odd[n]));
+    }
+    assertEquals(200, numbering.size());
+
+    LivenessAssumption.Updater updater = new LivenessAssumption.Updater(joined, numbering);
+    for (JLocal local : odd) {
+      updater.kill(local);
+    }
+    assertEquals(live(even), updater.unwrap());
+  }
+
+  private LivenessAssumption live(JLocal... locals) {
+    LivenessAssumption.Updater updater = new LivenessAssumption.Updater(null, numbering);
+    for (JLocal local : locals) {
+      updater.use(local);
+    }
+    return updater.unwrap();
+  }
+
+  private static JLocal newLocal(String name) {
+    return JProgram.createLocal(SourceOrigin.UNKNOWN, name, JPrimitiveType.INT, false,
+        new JMethodBody(SourceOrigin.UNKNOWN));
+  }
+}
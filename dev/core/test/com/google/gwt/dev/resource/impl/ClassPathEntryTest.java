@@ -16,9 +16,13 @@
 package com.google.gwt.dev.resource.impl;
 
 import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.dev.util.Util;
+import com.google.gwt.thirdparty.guava.common.io.Files;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -26,6 +30,32 @@ import java.util.Set;
  */
 public class ClassPathEntryTest extends AbstractResourceOrientedTestBase {
 
+  /**
+   * Reports the changes that the test made, instead of waiting for the file
+   * system to notice them.
+   */
+  private static class FakeDirectoryWatcher extends DirectoryWatcher {
+    private Set<File> changedPaths = new HashSet<File>();
+    private final Set<File> watched = new HashSet<File>();
+
+    private FakeDirectoryWatcher() {
+      super(null);
+    }
+
+    @Override
+    public Set<File> pollChangedPaths() {
+      Set<File> result = changedPaths;
+      changedPaths = new HashSet<File>();
+      return result;
+    }
+
+    @Override
+    public boolean watch(File directory) {
+      watched.add(directory);
+      return true;
+    }
+  }
+
   public void testAllCpe1FilesFound() throws URISyntaxException, IOException {
     testAllCpe1FilesFound(getClassPathEntry1AsJar());
     testAllCpe1FilesFound(getClassPathEntry1AsDirectory());
@@ -132,6 +162,59 @@ public class ClassPathEntryTest extends AbstractResourceOrientedTestBase {
     }
   }
 
+  public void testWatchedDirectoryChanges() throws IOException {
+    File dir = Files.createTempDir();
+    try {
+      File packageDir = new File(dir, "com/google/gwt/user/client");
+      assertTrue(packageDir.mkdirs());
+      Util.writeStringAsFile(new File(packageDir, "Command.java"), "class Command {}");
+
+      FakeDirectoryWatcher watcher = new FakeDirectoryWatcher();
+      ClassPathEntry cpe = new DirectoryClassPathEntry(dir, watcher);
+      PathPrefixSet pps = new PathPrefixSet();
+      pps.add(new PathPrefix("com/google/gwt/user/", null));
+      Set<AbstractResource> resources = findResources(cpe, pps, 1);
+      assertPathIncluded(resources, "com/google/gwt/user/client/Command.java");
+      assertTrue(watcher.watched.contains(packageDir));
+
+      // A directory isn't listed again until the watcher reports a change in it.
+      File timer = new File(packageDir, "Timer.java");
+      Util.writeStringAsFile(timer, "class Timer {}");
+      findResources(cpe, pps, 1);
+      watcher.changedPaths.add(timer);
+      resources = findResources(cpe, pps, 2);
+      assertPathIncluded(resources, "com/google/gwt/user/client/Timer.java");
+
+      // The files of an added directory are found.
+      File uiDir = new File(packageDir, "ui");
+      assertTrue(uiDir.mkdir());
+      Util.writeStringAsFile(new File(uiDir, "Widget.java"), "class Widget {}");
+      watcher.changedPaths.add(uiDir);
+      resources = findResources(cpe, pps, 3);
+      assertPathIncluded(resources, "com/google/gwt/user/client/ui/Widget.java");
+
+      // When events are lost, every directory is listed again.
+      assertTrue(new File(uiDir, "Widget.java").delete());
+      watcher.changedPaths = null;
+      findResources(cpe, pps, 2);
+
+      // The files of a removed directory are gone, including those in its subdirectories.
+      Util.recursiveDelete(packageDir, false);
+      watcher.changedPaths.add(packageDir);
+      findResources(cpe, pps, 0);
+    } finally {
+      Util.recursiveDelete(dir, false);
+    }
+  }
+
+  private Set<AbstractResource> findResources(ClassPathEntry cpe, PathPrefixSet pps,
+      int expected) {
+    Set<AbstractResource> resources =
+        cpe.findApplicableResources(createTestTreeLogger(), pps).keySet();
+    assertEquals(expected, resources.size());
+    return resources;
+  }
+
   // NOTE: if this test fails, ensure that the source root containing this very
   // source file is *FIRST* on the classpath
   private void testAllCpe1FilesFound(ClassPathEntry cpe1) {
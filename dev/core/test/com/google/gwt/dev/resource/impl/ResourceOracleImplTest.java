@@ -33,6 +33,7 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -314,6 +315,33 @@ public class ResourceOracleImplTest extends AbstractResourceOrientedTestBase {
         makeRerootBarPrefix());
   }
 
+  /**
+   * Tests that scanning the class path entries on several threads finds the same resources, from
+   * the same entries, as scanning them one after the other.
+   */
+  public void testParallelScanMatchesSerialScan() throws IOException, URISyntaxException {
+    TreeLogger logger = createTestTreeLogger();
+    ClassPathEntry[][] classPaths = new ClassPathEntry[][] {
+        {getClassPathEntry1AsJar(), getClassPathEntry2AsDirectory(), getClassPathEntry1AsZip()},
+        {getClassPathEntry2AsZip(), getClassPathEntry1AsDirectory(), getClassPathEntry2AsJar()}};
+    for (ClassPathEntry[] classPath : classPaths) {
+      ResourceOracleImpl serialOracle = createResourceOracle(classPath);
+      serialOracle.scanResources(logger);
+
+      ResourceOracleImpl parallelOracle = createResourceOracle(classPath);
+      System.setProperty(ResourceOracleImpl.SCAN_THREADS_PROPERTY, "4");
+      try {
+        parallelOracle.scanResources(logger);
+      } finally {
+        System.clearProperty(ResourceOracleImpl.SCAN_THREADS_PROPERTY);
+      }
+
+      Map<String, String> serialLocations = getLocationsByPath(serialOracle);
+      assertFalse(serialLocations.isEmpty());
+      assertEquals(serialLocations, getLocationsByPath(parallelOracle));
+    }
+  }
+
   /**
    * Tests the actual reading of resources.
    *
@@ -577,6 +605,14 @@ public class ResourceOracleImplTest extends AbstractResourceOrientedTestBase {
     return oracle;
   }
 
+  private static Map<String, String> getLocationsByPath(ResourceOracleImpl oracle) {
+    Map<String, String> locationsByPath = new HashMap<String, String>();
+    for (Map.Entry<String, Resource> entry : oracle.getResourceMap().entrySet()) {
+      locationsByPath.put(entry.getKey(), entry.getValue().getLocation());
+    }
+    return locationsByPath;
+  }
+
   private ResourceOracleSnapshot refreshAndSnapshot(TreeLogger logger,
       ResourceOracleImpl oracle) {
     oracle.scanResources(logger);
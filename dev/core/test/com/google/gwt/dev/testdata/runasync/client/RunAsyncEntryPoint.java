@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.testdata.runasync.client;
+
+import com.google.gwt.core.client.EntryPoint;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.RunAsyncCallback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An entry point with two split points, whose code ends up in separate fragments.
+ */
+public class RunAsyncEntryPoint implements EntryPoint {
+
+  private abstract static class Callback implements RunAsyncCallback {
+    @Override
+    public void onFailure(Throwable caught) {
+      log("Failed: " + caught);
+    }
+  }
+
+  private static native void log(String message) /*-{
+    $wnd.console && $wnd.console.log(message);
+  }-*/;
+
+  @Override
+  public void onModuleLoad() {
+    log("Loaded");
+    GWT.runAsync(new Callback() {
+      @Override
+      public void onSuccess() {
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+          words.add("word" + i);
+        }
+        log("First fragment: " + words);
+      }
+    });
+    GWT.runAsync(new Callback() {
+      @Override
+      public void onSuccess() {
+        Map<String, Integer> lengths = new HashMap<String, Integer>();
+        for (String word : new String[] {"second", "fragment"}) {
+          lengths.put(word, word.length());
+        }
+        log("Second fragment: " + lengths);
+      }
+    });
+  }
+}
@@ -17,7 +17,14 @@ package com.google.gwt.dev.util;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests {@link DiskCache}.
@@ -76,4 +83,172 @@ public class DiskCacheTest extends TestCase {
           expected, actual);
     }
   }
+
+  public void testLargeData() throws IOException {
+    // Larger than a buffer, so streams are spilled and channel I/O is split up.
+    byte[] expected = new byte[300 * 1024 + 7];
+    new Random(42).nextBytes(expected);
+
+    long arrayToken = diskCache.writeByteArray(expected);
+    long streamToken = diskCache.transferFromStream(new ByteArrayInputStream(expected));
+    assertEquals(expected.length, diskCache.getByteArrayLength(streamToken));
+    assertTrue(Arrays.equals(expected, diskCache.readByteArray(arrayToken)));
+    assertTrue(Arrays.equals(expected, diskCache.readByteArray(streamToken)));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    diskCache.transferToStream(streamToken, out);
+    assertTrue(Arrays.equals(expected, out.toByteArray()));
+  }
+
+  public void testOutputStream() throws IOException {
+    byte[] small = new byte[100];
+    byte[] large = new byte[300 * 1024 + 7];
+    Random random = new Random(42);
+    random.nextBytes(small);
+    random.nextBytes(large);
+
+    for (byte[] expected : new byte[][] {small, large}) {
+      DiskCache.CacheOutputStream out = diskCache.openOutputStream();
+      // Mix single bytes and chunks of different sizes.
+      out.write(expected[0]);
+      int offset = 1;
+      for (int chunk = 1; offset < expected.length; chunk *= 3) {
+        int length = Math.min(chunk, expected.length - offset);
+        out.write(expected, offset, length);
+        offset += length;
+      }
+      long token = out.finish();
+      assertTrue(Arrays.equals(expected, diskCache.readByteArray(token)));
+      try {
+        out.write(0);
+        fail("Expected IOException");
+      } catch (IOException e) {
+        // A finished stream is closed.
+      }
+    }
+
+    // Writing before and after an abandoned stream doesn't mix up the data.
+    long before = diskCache.writeString("before");
+    DiskCache.CacheOutputStream abandoned = diskCache.openOutputStream();
+    abandoned.write(large);
+    abandoned.close();
+    abandoned.close();
+    long after = diskCache.writeString("after");
+    assertEquals("before", diskCache.readString(before));
+    assertEquals("after", diskCache.readString(after));
+  }
+
+  public void testClosed() throws IOException {
+    DiskCache closed = new DiskCache();
+    long token = closed.writeString("data");
+    closed.close();
+    closed.close();
+
+    try {
+      closed.readString(token);
+      fail("Expected RuntimeException");
+    } catch (RuntimeException e) {
+      assertEquals("Byte cache is closed", e.getCause().getMessage());
+    }
+    try {
+      closed.writeString("more");
+      fail("Expected RuntimeException");
+    } catch (RuntimeException e) {
+      assertEquals("Byte cache is closed", e.getCause().getMessage());
+    }
+    try {
+      closed.transferToStream(token, new ByteArrayOutputStream());
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("Byte cache is closed", e.getMessage());
+    }
+  }
+
+  public void testSlowStreamDoesNotBlockWriters() throws Exception {
+    final CountDownLatch streamStarted = new CountDownLatch(1);
+    final CountDownLatch writeDone = new CountDownLatch(1);
+    final boolean[] timedOut = new boolean[1];
+    final byte[] data = new byte[100 * 1024];
+    new Random(7).nextBytes(data);
+    // Stalls halfway through until the other write is done.
+    final InputStream slowStream = new InputStream() {
+      private int next = 0;
+
+      @Override
+      public int read() throws IOException {
+        if (next == data.length / 2) {
+          streamStarted.countDown();
+          try {
+            timedOut[0] = !writeDone.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+        }
+        return next < data.length ? data[next++] & 0xff : -1;
+      }
+    };
+    final long[] streamToken = new long[1];
+    Thread streamer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          streamToken[0] = diskCache.transferFromStream(slowStream);
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    streamer.start();
+
+    streamStarted.await();
+    long token = diskCache.writeByteArray(new byte[] {1, 2, 3});
+    writeDone.countDown();
+    streamer.join();
+
+    assertFalse("The write waited for the stream", timedOut[0]);
+    assertTrue(Arrays.equals(new byte[] {1, 2, 3}, diskCache.readByteArray(token)));
+    assertTrue(Arrays.equals(data, diskCache.readByteArray(streamToken[0])));
+  }
+
+  public void testConcurrentWritesAndReads() throws Exception {
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; ++t) {
+      final int seed = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            Random random = new Random(seed);
+            for (int i = 0; i < 100; ++i) {
+              byte[] expected = new byte[random.nextInt(5000)];
+              random.nextBytes(expected);
+              long token = (i % 2 == 0) ? diskCache.writeByteArray(expected)
+                  : diskCache.transferFromStream(new ByteArrayInputStream(expected));
+              if (i % 10 == 0) {
+                // Interrupts close the underlying channel; the cache must survive them.
+                Thread.currentThread().interrupt();
+              }
+              assertTrue(Arrays.equals(expected, diskCache.readByteArray(token)));
+              Thread.interrupted();
+            }
+          } catch (Throwable e) {
+            synchronized (failure) {
+              failure[0] = e;
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    synchronized (failure) {
+      if (failure[0] != null) {
+        throw new AssertionError(failure[0]);
+      }
+    }
+    assertTrue(diskCache.getBytesWritten() > 0);
+    assertTrue(diskCache.getBytesRead() > 0);
+  }
 }
@@ -19,6 +19,12 @@ import junit.framework.TestCase;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Tests for {@link OutputFileSetOnDirectory}
@@ -46,4 +52,36 @@ public class OutputFileSetOnDirectoryTest extends TestCase {
     }
   }
 
+  public void testConcurrentWrites() throws Exception {
+    File work = Utility.makeTemporaryDirectory(null, "outputfileset");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final OutputFileSetOnDirectory output = new OutputFileSetOnDirectory(work, "test/");
+      assertTrue(output.supportsConcurrentWrites());
+
+      List<Callable<Void>> writes = new ArrayList<Callable<Void>>();
+      for (int i = 0; i < 40; i++) {
+        final String path = "dir" + (i % 4) + "/sub/file" + i;
+        writes.add(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            output.openForWrite(path).close();
+            return null;
+          }
+        });
+      }
+      for (Future<Void> future : executor.invokeAll(writes)) {
+        future.get();
+      }
+
+      for (int i = 0; i < 40; i++) {
+        String path = "dir" + (i % 4) + "/sub/file" + i;
+        assertTrue(output.alreadyContains(path));
+        assertTrue(new File(work, "test/" + path).exists());
+      }
+    } finally {
+      executor.shutdownNow();
+      Util.recursiveDelete(work, false);
+    }
+  }
 }
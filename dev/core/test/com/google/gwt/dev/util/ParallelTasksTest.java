@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.dev.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests {@link ParallelTasks}.
+ */
+public class ParallelTasksTest extends TestCase {
+
+  private static final String PROPERTY = "gwt.test.parallelTasksThreads";
+
+  public void testGetThreadCount() {
+    assertEquals(1, ParallelTasks.getThreadCount(PROPERTY));
+    System.setProperty(PROPERTY, "0");
+    try {
+      assertEquals(1, ParallelTasks.getThreadCount(PROPERTY));
+      System.setProperty(PROPERTY, "3");
+      assertEquals(3, ParallelTasks.getThreadCount(PROPERTY));
+    } finally {
+      System.clearProperty(PROPERTY);
+    }
+  }
+
+  public void testResultsInTaskOrder() throws Exception {
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < 20; i++) {
+      final int value = i;
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws InterruptedException {
+          // Later tasks finish first.
+          Thread.sleep(20 - value);
+          return value;
+        }
+      });
+    }
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 20; i++) {
+      expected.add(i);
+    }
+    assertEquals(expected, ParallelTasks.invokeAll(tasks, 1));
+    assertEquals(expected, ParallelTasks.invokeAll(tasks, 4));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertEquals(expected, ParallelTasks.invokeAll(executor, tasks));
+      // The executor can be reused.
+      assertEquals(expected, ParallelTasks.invokeAll(executor, tasks));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testSerialRunUsesCallingThread() throws Exception {
+    Callable<Thread> task = new Callable<Thread>() {
+      @Override
+      public Thread call() {
+        return Thread.currentThread();
+      }
+    };
+    List<Callable<Thread>> tasks = Arrays.asList(task, task);
+    assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()),
+        ParallelTasks.invokeAll(tasks, 1));
+    assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()),
+        ParallelTasks.invokeAll(null, tasks));
+  }
+
+  public void testUncheckedExceptionsAreRethrown() throws Exception {
+    List<Callable<Void>> tasks = Arrays.asList(returningNull(),
+        throwing(new IllegalStateException("first")), throwing(new IllegalStateException()));
+    for (int threadCount : new int[] {1, 3}) {
+      try {
+        ParallelTasks.invokeAll(tasks, threadCount);
+        fail("Expected IllegalStateException");
+      } catch (IllegalStateException e) {
+        assertEquals("first", e.getMessage());
+      }
+    }
+  }
+
+  public void testCheckedExceptionsAreWrapped() throws Exception {
+    IOException failure = new IOException();
+    List<Callable<Void>> tasks = Arrays.asList(returningNull(), throwing(failure));
+    for (int threadCount : new int[] {1, 2}) {
+      try {
+        ParallelTasks.invokeAll(tasks, threadCount);
+        fail("Expected ExecutionException");
+      } catch (ExecutionException e) {
+        assertSame(failure, e.getCause());
+      }
+    }
+  }
+
+  private static Callable<Void> returningNull() {
+    return new Callable<Void>() {
+      @Override
+      public Void call() {
+        return null;
+      }
+    };
+  }
+
+  private static Callable<Void> throwing(final Exception e) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        throw e;
+      }
+    };
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.soyc;
+
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.ModuleMetricsArtifact;
+import com.google.gwt.core.ext.linker.PrecompilationMetricsArtifact;
+import com.google.gwt.dev.util.Util;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link CompilerMetricsXmlFormatter}.
+ */
+public class CompilerMetricsXmlFormatterTest extends TestCase {
+
+  public void testPrecompilationMetrics() {
+    ArtifactSet artifacts = new ArtifactSet();
+    artifacts.add(new PrecompilationMetricsArtifact(0).setPermutationIds(new int[] {0, 1, 2})
+        .setElapsedMilliseconds(12).setMergedPermutationCount(2));
+
+    String xml = Util.toString(
+        CompilerMetricsXmlFormatter.writeMetricsAsXml(artifacts, new ModuleMetricsArtifact()));
+    assertTrue(xml, xml.contains(
+        "<precompilation base=\"0\" ids=\"0,1,2\" elapsed=\"12\" merged=\"2\" >"));
+  }
+}
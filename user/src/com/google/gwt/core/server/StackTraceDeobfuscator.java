@@ -26,12 +26,18 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -90,56 +96,69 @@ public abstract class StackTraceDeobfuscator {
   }
 
   /**
-   * A cache that maps obfuscated symbols to arbitrary non-null string values. The cache can assume
-   * each (strongName, symbol) pair always maps to the same value (never goes invalid), but must
-   * treat data as an opaque string.
+   * The symbols and source maps loaded for one permutation. Symbol data is treated as an opaque
+   * string, and each symbol always maps to the same data (it never goes invalid).
    */
-  private static class SymbolCache {
-    // TODO(srogoff): This SymbolCache implementation never drops old entries. If clients ever need
-    // to cap memory usage even with lazy loading, consider making SymbolCache an interface.
-    // This could allow clients to pass their own implementation to the StackTraceDeobfuscator
-    // constructor, backed by a Guava Cache or other entry-evicting mapping.
+  private static class PermutationData {
+    /**
+     * The data of the symbols looked up so far, when the symbol map is loaded lazily. Symbols
+     * that are not in the symbol map are kept with empty data, so that the file isn't read again
+     * for them.
+     */
+    private final Map<String, String> loadedSymbols = new HashMap<String, String>();
 
-    private final ConcurrentHashMap<String, HashMap<String, String>> symbolMaps;
-
-    SymbolCache() {
-      symbolMaps = new ConcurrentHashMap<String, HashMap<String, String>>();
-    }
+    private final Map<Integer, SourceMapping> sourceMaps = new HashMap<Integer, SourceMapping>();
 
     /**
-     * Adds some symbol data to the cache for the given strong name.
+     * Every symbol in the symbol map, sorted, and their data, once the whole map is loaded.
+     * Arrays take much less memory than a map with an entry object per symbol.
      */
-    void putAll(String strongName, Map<String, String> symbolMap) {
-      if (strongName == null || symbolMap.size() == 0) {
-        return;
-      }
-      symbolMaps.putIfAbsent(strongName, new HashMap<String, String>());
-      HashMap<String, String> existingMap = symbolMaps.get(strongName);
-      synchronized (existingMap) {
-        existingMap.putAll(symbolMap);
-      }
-    }
+    private String[] sortedSymbols;
+    private String[] sortedSymbolData;
 
     /**
-     * Returns the data for each of the specified symbols that's currently cached for the given
-     * strong name. There will be no entry for symbols that are not in the cache. If none of the
-     * symbols are cached, an empty Map is returned.
+     * Returns the data for each of the given symbols that is known. If the whole symbol map is
+     * loaded, symbols that are not in it are mapped to empty string.
      */
-    Map<String, String> getAll(String strongName, Set<String> symbols) {
+    synchronized Map<String, String> getSymbols(Set<String> symbols) {
       Map<String, String> toReturn = new HashMap<String, String>();
-      if (strongName == null || !symbolMaps.containsKey(strongName) || symbols.isEmpty()) {
-        return toReturn;
-      }
-      HashMap<String, String> existingMap = symbolMaps.get(strongName);
-      synchronized (existingMap) {
-        for (String symbol : symbols) {
-          if (existingMap.containsKey(symbol)) {
-            toReturn.put(symbol, existingMap.get(symbol));
-          }
+      for (String symbol : symbols) {
+        if (sortedSymbols != null) {
+          int index = Arrays.binarySearch(sortedSymbols, symbol);
+          toReturn.put(symbol, index >= 0 ? sortedSymbolData[index] : SYMBOL_DATA_UNKNOWN);
+        } else if (loadedSymbols.containsKey(symbol)) {
+          toReturn.put(symbol, loadedSymbols.get(symbol));
         }
       }
       return toReturn;
     }
+
+    synchronized SourceMapping getSourceMap(int fragmentId) {
+      return sourceMaps.get(fragmentId);
+    }
+
+    synchronized void putSourceMap(int fragmentId, SourceMapping sourceMap) {
+      sourceMaps.put(fragmentId, sourceMap);
+    }
+
+    synchronized void putSymbols(Map<String, String> symbols) {
+      loadedSymbols.putAll(symbols);
+    }
+
+    /**
+     * Replaces the loaded symbols with the whole symbol map.
+     */
+    synchronized void setAllSymbols(Map<String, String> symbols) {
+      String[] newSymbols = symbols.keySet().toArray(new String[symbols.size()]);
+      Arrays.sort(newSymbols);
+      String[] newData = new String[newSymbols.length];
+      for (int i = 0; i < newSymbols.length; i++) {
+        newData[i] = symbols.get(newSymbols[i]);
+      }
+      sortedSymbols = newSymbols;
+      sortedSymbolData = newData;
+      loadedSymbols.clear();
+    }
   }
 
   private static final Pattern JsniRefPattern = Pattern.compile("@?([^:]+)::([^(]+)(\\((.*)\\))?");
@@ -147,9 +166,55 @@ public abstract class StackTraceDeobfuscator {
   private static final int LINE_NUMBER_UNKNOWN = -1;
   private static final String SYMBOL_DATA_UNKNOWN = "";
 
-  private final Map<String, SourceMapping> sourceMaps = new HashMap<String, SourceMapping>();
-  private final SymbolCache symbolCache = new SymbolCache();
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong cacheMisses = new AtomicLong();
   private boolean lazyLoad = false;
+  private int maxCachedPermutations = Integer.MAX_VALUE;
+
+  /**
+   * The data loaded for each permutation by strong name, least recently used first.
+   */
+  private final LinkedHashMap<String, PermutationData> permutations =
+      new LinkedHashMap<String, PermutationData>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PermutationData> eldest) {
+          return size() > maxCachedPermutations;
+        }
+      };
+
+  /**
+   * Returns the number of symbol and source map lookups that were answered from memory.
+   */
+  public long getCacheHitCount() {
+    return cacheHits.get();
+  }
+
+  /**
+   * Returns the number of symbol and source map lookups that had to read a file.
+   */
+  public long getCacheMissCount() {
+    return cacheMisses.get();
+  }
+
+  /**
+   * Limits the number of permutations whose symbols and source maps are kept in memory. When
+   * more are used, the least recently used permutation is dropped, and read again if it is needed
+   * later. Useful on servers that deobfuscate stack traces of many permutations, or of several
+   * deployed versions. Defaults to no limit.
+   */
+  public void setMaxCachedPermutations(int maxCachedPermutations) {
+    if (maxCachedPermutations < 1) {
+      throw new IllegalArgumentException("maxCachedPermutations must be positive");
+    }
+    synchronized (permutations) {
+      this.maxCachedPermutations = maxCachedPermutations;
+      while (permutations.size() > maxCachedPermutations) {
+        Iterator<String> it = permutations.keySet().iterator();
+        it.next();
+        it.remove();
+      }
+    }
+  }
 
   /**
    * If set to {@code true}, only symbols requested to be deobfuscated are cached and the rest is
@@ -174,6 +239,47 @@ public abstract class StackTraceDeobfuscator {
     }
   }
 
+  /**
+   * Replaces the stack traces in the given Throwables and their causes with deobfuscated stack
+   * traces wherever possible. The Throwables must all come from the same permutation. The symbols
+   * of all the stack traces are loaded at once, and a frame that occurs in several stack traces is
+   * only resymbolized once, so this is much cheaper than deobfuscating each Throwable on its own
+   * when many of them are reported at the same time.
+   *
+   * @param throwables the Throwables that need their stack traces to be deobfuscated
+   * @param strongName the GWT permutation strong name
+   */
+  public final void deobfuscateStackTraces(Collection<? extends Throwable> throwables,
+      String strongName) {
+    // Each Throwable must be deobfuscated once, even if it's listed twice or is also a cause.
+    Set<Throwable> allThrowables =
+        Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+    Set<String> requiredSymbols = new HashSet<String>();
+    for (Throwable throwable : throwables) {
+      for (Throwable t = throwable; t != null && allThrowables.add(t); t = t.getCause()) {
+        for (StackTraceElement ste : t.getStackTrace()) {
+          requiredSymbols.add(ste.getMethodName());
+        }
+      }
+    }
+    loadSymbolMap(strongName, requiredSymbols);
+
+    Map<StackTraceElement, StackTraceElement> resymbolized =
+        new HashMap<StackTraceElement, StackTraceElement>();
+    for (Throwable t : allThrowables) {
+      StackTraceElement[] st = t.getStackTrace();
+      for (int i = 0; i < st.length; i++) {
+        StackTraceElement ste = resymbolized.get(st[i]);
+        if (ste == null) {
+          ste = resymbolize(st[i], strongName);
+          resymbolized.put(st[i], ste);
+        }
+        st[i] = ste;
+      }
+      t.setStackTrace(st);
+    }
+  }
+
   /**
    * Convenience method which resymbolizes an entire stack trace to extent possible.
    *
@@ -339,16 +445,38 @@ public abstract class StackTraceDeobfuscator {
    */
   protected abstract InputStream openInputStream(String fileName) throws IOException;
 
-  private SourceMapping loadSourceMap(String permutationStrongName, int fragmentId) {
-    SourceMapping toReturn = sourceMaps.get(permutationStrongName + fragmentId);
-    if (toReturn == null) {
-      try {
-        String sourceMapString = loadStreamAsString(
-            getSourceMapInputStream(permutationStrongName, fragmentId));
-        toReturn = SourceMapConsumerFactory.parse(sourceMapString);
-        sourceMaps.put(permutationStrongName + fragmentId, toReturn);
-      } catch (Exception e) {
+  /**
+   * Returns the data loaded for a permutation, marking it as the most recently used.
+   */
+  private PermutationData getPermutationData(String strongName) {
+    if (strongName == null) {
+      // Nothing can be loaded for it, so there's nothing to keep.
+      return new PermutationData();
+    }
+    synchronized (permutations) {
+      PermutationData data = permutations.get(strongName);
+      if (data == null) {
+        data = new PermutationData();
+        permutations.put(strongName, data);
       }
+      return data;
+    }
+  }
+
+  private SourceMapping loadSourceMap(String permutationStrongName, int fragmentId) {
+    PermutationData data = getPermutationData(permutationStrongName);
+    SourceMapping toReturn = data.getSourceMap(fragmentId);
+    if (toReturn != null) {
+      cacheHits.incrementAndGet();
+      return toReturn;
+    }
+    cacheMisses.incrementAndGet();
+    try {
+      String sourceMapString = loadStreamAsString(
+          getSourceMapInputStream(permutationStrongName, fragmentId));
+      toReturn = SourceMapConsumerFactory.parse(sourceMapString);
+      data.putSourceMap(fragmentId, toReturn);
+    } catch (Exception e) {
     }
     return toReturn;
   }
@@ -372,14 +500,18 @@ public abstract class StackTraceDeobfuscator {
    */
   private Map<String, String> loadSymbolMap(
       String strongName, Set<String> requiredSymbols) {
-    Map<String, String> toReturn = symbolCache.getAll(strongName, requiredSymbols);
+    PermutationData data = getPermutationData(strongName);
+    Map<String, String> toReturn = data.getSymbols(requiredSymbols);
     if (toReturn.size() == requiredSymbols.size()) {
+      cacheHits.incrementAndGet();
       return toReturn;
     }
+    cacheMisses.incrementAndGet();
 
     Set<String> symbolsLeftToFind = new HashSet<String>(requiredSymbols);
     toReturn = new HashMap<String, String>();
     String line;
+    boolean loadedAll = false;
 
     try {
       BufferedReader bin = new BufferedReader(
@@ -397,6 +529,7 @@ public abstract class StackTraceDeobfuscator {
             toReturn.put(symbol, symbolData);
           }
         }
+        loadedAll = !lazyLoad;
       } finally {
         bin.close();
       }
@@ -404,13 +537,17 @@ public abstract class StackTraceDeobfuscator {
       // If the symbol map isn't found or there's an I/O error reading the file, the returned
       // mapping may contain some or all empty data (see below).
     }
+    if (loadedAll) {
+      data.setAllSymbols(toReturn);
+      return data.getSymbols(requiredSymbols);
+    }
     for (String symbol : symbolsLeftToFind) {
       // Store the empty string in the symbolCache to show we actually looked on disk and couldn't
       // find the symbols. This avoids reading disk repeatedly for symbols that can't be translated.
       toReturn.put(symbol, SYMBOL_DATA_UNKNOWN);
     }
 
-    symbolCache.putAll(strongName, toReturn);
+    data.putSymbols(toReturn);
     return toReturn;
   }
 
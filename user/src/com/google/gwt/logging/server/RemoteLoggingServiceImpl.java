@@ -21,6 +21,8 @@ import com.google.gwt.logging.server.RemoteLoggingServiceUtil.RemoteLoggingExcep
 import com.google.gwt.logging.shared.RemoteLoggingService;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -52,6 +54,18 @@ public class RemoteLoggingServiceImpl extends RemoteServiceServlet implements Re
     return null;
   }
   
+  /**
+   * Logs many Log Records at once, such as those collected from several
+   * clients, by the strong name of the permutation that sent them. The stack
+   * traces sent by each permutation are deobfuscated together, which keeps
+   * the cost of a burst of errors from growing with the number of records.
+   */
+  public final void logOnServer(
+      Map<String, ? extends Collection<LogRecord>> recordsByStrongName) {
+    RemoteLoggingServiceUtil.logOnServer(
+        recordsByStrongName, deobfuscator, loggerNameOverride);
+  }
+
   /**
    * By default, messages are logged to a logger that has the same name as
    * the logger that created them on the client. If you want to log all messages
@@ -18,6 +18,10 @@ package com.google.gwt.logging.server;
 
 import com.google.gwt.core.server.StackTraceDeobfuscator;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
@@ -71,6 +75,55 @@ public class RemoteLoggingServiceUtil {
     return lr;
   }
 
+  /**
+   * Logs many messages on the server, such as those received from several
+   * clients at once. The stack traces of the messages sent by each permutation
+   * are deobfuscated together; see
+   * {@link StackTraceDeobfuscator#deobfuscateStackTraces}.
+   *
+   * @param recordsByStrongName LogRecords to be logged, by the name of the
+   *        permutation that sent them. Records under a null name are logged
+   *        without deobfuscation.
+   * @param deobfuscator used for deobfuscation. May be null, which will only
+   *        cause deobfuscation to fail.
+   * @param loggerNameOverride logger name for messages logged on server. May be
+   *        null, in which case, messages will be logged to a logger
+   *        corresponding to the client-side logger which triggered them.
+   */
+  public static void logOnServer(
+      Map<String, ? extends Collection<LogRecord>> recordsByStrongName,
+      StackTraceDeobfuscator deobfuscator, String loggerNameOverride) {
+    for (Map.Entry<String, ? extends Collection<LogRecord>> entry :
+        recordsByStrongName.entrySet()) {
+      if (deobfuscator != null) {
+        deobfuscateLogRecords(deobfuscator, entry.getValue(), entry.getKey());
+      }
+      for (LogRecord lr : entry.getValue()) {
+        String loggerName = loggerNameOverride == null ? lr.getLoggerName() :
+          loggerNameOverride;
+        Logger.getLogger(loggerName).log(lr);
+      }
+    }
+  }
+
+  /**
+   * Deobfuscates the stack traces of LogRecords sent by the same permutation,
+   * all at once.
+   */
+  public static void deobfuscateLogRecords(StackTraceDeobfuscator deobfuscator,
+      Collection<LogRecord> records, String strongName) {
+    if (strongName == null) {
+      return;
+    }
+    List<Throwable> thrown = new ArrayList<Throwable>();
+    for (LogRecord lr : records) {
+      if (lr.getThrown() != null) {
+        thrown.add(lr.getThrown());
+      }
+    }
+    deobfuscator.deobfuscateStackTraces(thrown, strongName);
+  }
+
   public static void logOnServer(String serializedLogRecordJson,
       String strongName, StackTraceDeobfuscator deobfuscator,
       String loggerNameOverride) throws RemoteLoggingException {
@@ -26,14 +26,30 @@ import com.google.gwt.core.ext.linker.EmittedArtifact.Visibility;
 import com.google.gwt.core.ext.linker.LinkerOrder;
 import com.google.gwt.core.ext.linker.LinkerOrder.Order;
 import com.google.gwt.core.ext.linker.Shardable;
+import com.google.gwt.core.ext.linker.SyntheticArtifact;
+import com.google.gwt.dev.util.DiskCache;
 import com.google.gwt.dev.util.collect.HashSet;
+import com.google.gwt.thirdparty.guava.common.io.CountingOutputStream;
 import com.google.gwt.util.regexfilter.RegexFilter;
+import com.google.gwt.util.tools.Utility;
+import com.google.gwt.util.tools.shared.StringUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
@@ -56,6 +72,12 @@ import java.util.zip.GZIPOutputStream;
  * are left in the artifact set. If the configuration property
  * <code>precompress.leave.originals</code> is set to <code>false</code>,
  * however, then the uncompressed version is removed.
+ *
+ * <p>
+ * The gzip compression level, from 1 to 9, is set by the configuration
+ * property <code>precompress.compression.level</code>, and defaults to 9.
+ * Setting <code>precompress.threads</code> to more than 1 compresses that many
+ * artifacts at once.
  */
 @Shardable
 @LinkerOrder(Order.POST)
@@ -78,15 +100,83 @@ public class PrecompressLinker extends AbstractLinker {
   }
 
   /**
-   * Buffer size to use when streaming data from artifacts and through
-   * {@link GZIPOutputStream}.
+   * A gzip stream with a given compression level, which can be finished
+   * without closing the stream it writes to.
+   */
+  private static class LevelGzipOutputStream extends GZIPOutputStream {
+    public LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+      super(out, BUF_SIZE);
+      def.setLevel(level);
+    }
+
+    /**
+     * Writes the rest of the compressed data and releases the compressor.
+     */
+    public void finishAndEnd() throws IOException {
+      finish();
+      def.end();
+    }
+  }
+
+  /**
+   * Buffer size to use when streaming data through {@link GZIPOutputStream}.
    */
   private static final int BUF_SIZE = 10000;
 
+  /**
+   * The most compressed contents to remember between links.
+   */
+  private static final int MAX_REMEMBERED_CONTENTS = 10000;
+
+  private static final String PROP_COMPRESSION_LEVEL = "precompress.compression.level";
+
   private static final String PROP_LEAVE_ORIGINALS = "precompress.leave.originals";
 
   private static final String PROP_PATH_REGEXES = "precompress.path.regexes";
 
+  private static final String PROP_THREADS = "precompress.threads";
+
+  /**
+   * Compressed contents seen by earlier links in this process, such as public
+   * resources that every permutation emits, so that they aren't compressed
+   * again. Keyed by compression level and the strong name of the original
+   * contents; the values are the compressed artifacts, or null for contents
+   * that compressing didn't make smaller. Guarded by itself.
+   */
+  private static final Map<String, SyntheticArtifact> compressedContents =
+      new LinkedHashMap<String, SyntheticArtifact>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SyntheticArtifact> eldest) {
+          return size() > MAX_REMEMBERED_CONTENTS;
+        }
+      };
+
+  private static final DiskCache diskCache = DiskCache.INSTANCE;
+
+  /**
+   * Returns the key of an artifact's contents in {@link #compressedContents}.
+   */
+  private static String computeKey(TreeLogger logger, EmittedArtifact art, int level)
+      throws IOException, UnableToCompleteException {
+    MessageDigest md5;
+    try {
+      md5 = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("Error initializing MD5", e);
+    }
+    InputStream in = art.getContents(logger);
+    try {
+      byte[] buf = new byte[BUF_SIZE];
+      int n;
+      while ((n = in.read(buf)) >= 0) {
+        md5.update(buf, 0, n);
+      }
+    } finally {
+      Utility.close(in);
+    }
+    return level + ":" + StringUtils.toHexString(md5.digest());
+  }
+
   private static ConfigurationProperty findProperty(
       TreeLogger logger,
       Iterable<com.google.gwt.core.ext.linker.ConfigurationProperty> properties,
@@ -102,6 +192,97 @@ public class PrecompressLinker extends AbstractLinker {
     throw new UnableToCompleteException();
   }
 
+  /**
+   * Returns the value of an optional integer property, or the default if it
+   * isn't defined.
+   */
+  private static int findIntProperty(TreeLogger logger,
+      Iterable<ConfigurationProperty> properties, String propName, int defaultValue,
+      int minValue, int maxValue) throws UnableToCompleteException {
+    for (ConfigurationProperty prop : properties) {
+      if (prop.getName().equals(propName)) {
+        String value = prop.getValues().get(0);
+        try {
+          int intValue = Integer.parseInt(value);
+          if (intValue >= minValue && intValue <= maxValue) {
+            return intValue;
+          }
+        } catch (NumberFormatException e) {
+          // Logged below
+        }
+        logger.log(TreeLogger.ERROR, "Configuration property " + propName
+            + " must be a number from " + minValue + " to " + maxValue
+            + ", but was: " + value);
+        throw new UnableToCompleteException();
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Returns the gzipped contents of an artifact, or null if gzipping doesn't
+   * make them smaller. The contents are streamed through the compressor into
+   * the disk cache, so neither they nor the result are held in memory.
+   */
+  private SyntheticArtifact compress(TreeLogger logger, EmittedArtifact art, int level)
+      throws IOException, UnableToCompleteException {
+    // Hashing takes a read of its own, which costs much less than compressing.
+    String key = computeKey(logger, art, level);
+    String path = art.getPartialPath() + ".gz";
+    boolean seen;
+    SyntheticArtifact compressed;
+    synchronized (compressedContents) {
+      seen = compressedContents.containsKey(key);
+      compressed = compressedContents.get(key);
+    }
+    if (seen) {
+      return compressed == null ? null : copy(logger, compressed, path);
+    }
+
+    DiskCache.CacheOutputStream cacheOut = diskCache.openOutputStream();
+    try {
+      CountingOutputStream compressedBytes = new CountingOutputStream(cacheOut);
+      LevelGzipOutputStream gzip = new LevelGzipOutputStream(compressedBytes, level);
+      long length = 0;
+      InputStream in = art.getContents(logger);
+      try {
+        byte[] buf = new byte[BUF_SIZE];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+          gzip.write(buf, 0, n);
+          length += n;
+        }
+      } finally {
+        Utility.close(in);
+      }
+      gzip.finishAndEnd();
+
+      if (compressedBytes.getCount() < length) {
+        compressed = new SyntheticArtifact(getClass(), path, cacheOut);
+      }
+    } finally {
+      cacheOut.close();
+    }
+    synchronized (compressedContents) {
+      compressedContents.put(key, compressed);
+    }
+    return compressed;
+  }
+
+  /**
+   * Copies an earlier result to a new artifact, so that no two links share one.
+   */
+  private SyntheticArtifact copy(TreeLogger logger, SyntheticArtifact compressed, String path)
+      throws IOException, UnableToCompleteException {
+    DiskCache.CacheOutputStream out = diskCache.openOutputStream();
+    try {
+      compressed.writeTo(logger, out);
+      return new SyntheticArtifact(getClass(), path, out);
+    } finally {
+      out.close();
+    }
+  }
+
   @Override
   public String getDescription() {
     return "PrecompressLinker";
@@ -120,67 +301,92 @@ public class PrecompressLinker extends AbstractLinker {
         TreeLogger.TRACE, "Analyzing the path patterns"), findProperty(logger,
         context.getConfigurationProperties(), PROP_PATH_REGEXES).getValues());
 
+    final int level = findIntProperty(logger, context.getConfigurationProperties(),
+        PROP_COMPRESSION_LEVEL, Deflater.BEST_COMPRESSION, Deflater.BEST_SPEED,
+        Deflater.BEST_COMPRESSION);
+    int threads = findIntProperty(logger, context.getConfigurationProperties(),
+        PROP_THREADS, 1, 1, Integer.MAX_VALUE);
+
     // Record the list of all paths for later lookup
     Set<String> allPaths = new HashSet<String>();
     for (EmittedArtifact art : artifacts.find(EmittedArtifact.class)) {
       allPaths.add(art.getPartialPath());
     }
 
-    try {
-      // Buffer for streaming data to be compressed
-      byte[] buf = new byte[BUF_SIZE];
-
-      ArtifactSet updated = new ArtifactSet(artifacts);
-      for (EmittedArtifact art : artifacts.find(EmittedArtifact.class)) {
-        if (art.getVisibility() != Visibility.Public) {
-          // only compress things that will be served to the client
-          continue;
-        }
-        if (art.getPartialPath().endsWith(".gz")) {
-          // Already a compressed artifact
-          continue;
-        }
-        if (allPaths.contains(art.getPartialPath() + ".gz")) {
-          // It's already been compressed
-          continue;
-        }
-        if (!filter.isIncluded(logger.branch(TreeLogger.TRACE,
-            "Checking the path patterns"), art.getPartialPath())) {
-          continue;
-        }
+    List<EmittedArtifact> toCompress = new ArrayList<EmittedArtifact>();
+    for (EmittedArtifact art : artifacts.find(EmittedArtifact.class)) {
+      if (art.getVisibility() != Visibility.Public) {
+        // only compress things that will be served to the client
+        continue;
+      }
+      if (art.getPartialPath().endsWith(".gz")) {
+        // Already a compressed artifact
+        continue;
+      }
+      if (allPaths.contains(art.getPartialPath() + ".gz")) {
+        // It's already been compressed
+        continue;
+      }
+      if (!filter.isIncluded(logger.branch(TreeLogger.TRACE,
+          "Checking the path patterns"), art.getPartialPath())) {
+        continue;
+      }
+      toCompress.add(art);
+    }
 
-        TreeLogger compressBranch = logger.branch(TreeLogger.TRACE,
+    // Artifacts are compressed independently, so several can be compressed
+    // at once. They are added in order, so the result doesn't depend on the
+    // number of threads. Each result is kept in the disk cache, so waiting
+    // results take little memory.
+    List<Future<SyntheticArtifact>> compressed = new ArrayList<Future<SyntheticArtifact>>();
+    ExecutorService executor = threads > 1 && toCompress.size() > 1
+        ? Executors.newFixedThreadPool(Math.min(threads, toCompress.size())) : null;
+    try {
+      for (final EmittedArtifact art : toCompress) {
+        final TreeLogger compressBranch = logger.branch(TreeLogger.TRACE,
             "Compressing " + art.getPartialPath());
-
-        InputStream originalBytes = art.getContents(compressBranch);
-        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
-        GZIPOutputStream gzip = new GZIPOutputStream(compressedBytes) {
-            {
-              def.setLevel(Deflater.BEST_COMPRESSION);
-            }
+        Callable<SyntheticArtifact> task = new Callable<SyntheticArtifact>() {
+          @Override
+          public SyntheticArtifact call() throws IOException, UnableToCompleteException {
+            return compress(compressBranch, art, level);
+          }
         };
-
-        int originalLength = 0;
-        int n;
-        while ((n = originalBytes.read(buf)) > 0) {
-          originalLength += n;
-          gzip.write(buf, 0, n);
+        if (executor != null) {
+          compressed.add(executor.submit(task));
+        } else {
+          FutureTask<SyntheticArtifact> future = new FutureTask<SyntheticArtifact>(task);
+          future.run();
+          compressed.add(future);
         }
-        gzip.close();
+      }
 
-        byte[] compressed = compressedBytes.toByteArray();
-        if (compressed.length < originalLength) {
-          updated.add(emitBytes(compressBranch, compressed,
-              art.getPartialPath() + ".gz"));
+      ArtifactSet updated = new ArtifactSet(artifacts);
+      for (int i = 0; i < toCompress.size(); i++) {
+        EmittedArtifact art = toCompress.get(i);
+        SyntheticArtifact compressedArt = compressed.get(i).get();
+        if (compressedArt != null) {
+          updated.add(compressedArt);
           if (!leaveOriginals) {
             updated.remove(art);
           }
         }
       }
       return updated;
-    } catch (IOException e) {
-      logger.log(TreeLogger.ERROR, "Unexpected exception", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UnableToCompleteException) {
+        // Error has already been logged.
+        throw (UnableToCompleteException) e.getCause();
+      }
+      logger.log(TreeLogger.ERROR, "Unexpected exception", e.getCause());
       throw new UnableToCompleteException();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.log(TreeLogger.ERROR, "Interrupted while compressing", e);
+      throw new UnableToCompleteException();
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
     }
   }
 }
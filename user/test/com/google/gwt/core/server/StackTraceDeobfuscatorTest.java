@@ -0,0 +1,245 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.core.server;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests {@link StackTraceDeobfuscator}.
+ */
+public class StackTraceDeobfuscatorTest extends TestCase {
+
+  /**
+   * Serves symbol maps from memory and counts how often each one is opened.
+   */
+  private static class InMemoryDeobfuscator extends StackTraceDeobfuscator {
+    private final Map<String, String> files = new HashMap<String, String>();
+    private final Map<String, Integer> openCounts = new HashMap<String, Integer>();
+
+    void addSymbolMap(String strongName, String... lines) {
+      StringBuilder contents = new StringBuilder("# symbol map of " + strongName + "\n");
+      for (String line : lines) {
+        contents.append(line).append('\n');
+      }
+      files.put(strongName + ".symbolMap", contents.toString());
+    }
+
+    int getOpenCount(String strongName) {
+      Integer count = openCounts.get(strongName + ".symbolMap");
+      return count == null ? 0 : count;
+    }
+
+    @Override
+    protected InputStream openInputStream(String fileName) throws IOException {
+      String contents = files.get(fileName);
+      if (contents == null) {
+        throw new IOException("Missing file: " + fileName);
+      }
+      Integer count = openCounts.get(fileName);
+      openCounts.put(fileName, count == null ? 1 : count + 1);
+      return new ByteArrayInputStream(contents.getBytes("UTF-8"));
+    }
+  }
+
+  private InMemoryDeobfuscator deobfuscator;
+
+  public void testEvictsLeastRecentlyUsedPermutation() {
+    deobfuscator.setMaxCachedPermutations(2);
+
+    assertResymbolized("A", "a", "com.example.Foo", "foo", 10);
+    assertResymbolized("B", "a", "com.example.Foo", "foo", 20);
+    // A is now the most recently used, so loading C drops B.
+    assertResymbolized("A", "a", "com.example.Foo", "foo", 10);
+    assertResymbolized("C", "a", "com.example.Foo", "foo", 30);
+    assertOpenCounts(1, 1, 1);
+
+    assertResymbolized("A", "a", "com.example.Foo", "foo", 10);
+    assertOpenCounts(1, 1, 1);
+    assertResymbolized("B", "a", "com.example.Foo", "foo", 20);
+    assertOpenCounts(1, 2, 1);
+
+    // Lowering the limit drops the least recently used permutations right away.
+    deobfuscator.setMaxCachedPermutations(1);
+    assertResymbolized("B", "a", "com.example.Foo", "foo", 20);
+    assertResymbolized("C", "a", "com.example.Foo", "foo", 30);
+    assertOpenCounts(1, 2, 2);
+
+    try {
+      deobfuscator.setMaxCachedPermutations(0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testFullyLoadedSymbolMap() {
+    assertResymbolized("A", "b", "com.example.Foo", "bar", 11);
+    assertResymbolized("A", "a", "com.example.Foo", "foo", 10);
+    assertResymbolized("A", "c", "com.example.Baz", "baz", 12);
+    assertResymbolized("A", "b", "com.example.Foo", "bar", 11);
+    assertNotResymbolized("A", "missing");
+    assertNotResymbolized("A", "zzz");
+    // Every symbol, including the missing ones, is answered from the first read.
+    assertEquals(1, deobfuscator.getOpenCount("A"));
+  }
+
+  public void testLazilyLoadedSymbolMap() {
+    deobfuscator.setLazyLoad(true);
+
+    assertResymbolized("A", "b", "com.example.Foo", "bar", 11);
+    assertEquals(1, deobfuscator.getOpenCount("A"));
+    assertResymbolized("A", "b", "com.example.Foo", "bar", 11);
+    assertEquals(1, deobfuscator.getOpenCount("A"));
+    assertResymbolized("A", "c", "com.example.Baz", "baz", 12);
+    assertEquals(2, deobfuscator.getOpenCount("A"));
+
+    // A missing symbol is read once and then remembered as missing.
+    assertNotResymbolized("A", "missing");
+    assertNotResymbolized("A", "missing");
+    assertEquals(3, deobfuscator.getOpenCount("A"));
+  }
+
+  public void testCacheCounters() {
+    assertEquals(0, deobfuscator.getCacheHitCount());
+    assertEquals(0, deobfuscator.getCacheMissCount());
+
+    assertResymbolized("A", "a", "com.example.Foo", "foo", 10);
+    assertEquals(0, deobfuscator.getCacheHitCount());
+    assertEquals(1, deobfuscator.getCacheMissCount());
+
+    assertResymbolized("A", "b", "com.example.Foo", "bar", 11);
+    assertNotResymbolized("A", "missing");
+    assertEquals(2, deobfuscator.getCacheHitCount());
+    assertEquals(1, deobfuscator.getCacheMissCount());
+
+    // A whole stack trace looks up all of its symbols at once, then each frame on its own.
+    deobfuscator.resymbolize(new StackTraceElement[] {
+        frame("A", "a"), frame("A", "c"), frame("B", "a")}, "B");
+    assertEquals(5, deobfuscator.getCacheHitCount());
+    assertEquals(2, deobfuscator.getCacheMissCount());
+
+    // An unreadable symbol map is a miss, and its symbols are then remembered as missing.
+    assertNotResymbolized("unknown", "a");
+    assertNotResymbolized("unknown", "a");
+    assertEquals(6, deobfuscator.getCacheHitCount());
+    assertEquals(3, deobfuscator.getCacheMissCount());
+  }
+
+  public void testDeobfuscateStackTracesOncePerThrowable() {
+    Throwable sharedCause = throwable(null, "x", "a");
+    Throwable first = throwable(sharedCause, "x");
+    Throwable second = throwable(sharedCause, "b");
+
+    // The first Throwable is listed twice, and the shared cause is listed and a cause of both.
+    deobfuscator.deobfuscateStackTraces(Arrays.asList(first, second, first, sharedCause), "A");
+
+    assertEquals(Arrays.asList("y"), getMethodNames(first));
+    assertEquals(Arrays.asList("bar"), getMethodNames(second));
+    assertEquals(Arrays.asList("y", "foo"), getMethodNames(sharedCause));
+    assertEquals(1, deobfuscator.getOpenCount("A"));
+  }
+
+  public void testDeobfuscateStackTracesMatchesOneByOne() {
+    String[][] traces = {{"a", "b"}, {"c", "missing", "a"}, {"x"}, {}};
+    List<Throwable> batch = new ArrayList<Throwable>();
+    List<Throwable> oneByOne = new ArrayList<Throwable>();
+    for (String[] trace : traces) {
+      batch.add(throwable(throwable(null, "b", "c"), trace));
+      oneByOne.add(throwable(throwable(null, "b", "c"), trace));
+    }
+
+    deobfuscator.deobfuscateStackTraces(batch, "A");
+    for (Throwable t : oneByOne) {
+      deobfuscator.deobfuscateStackTrace(t, "A");
+    }
+
+    for (int i = 0; i < traces.length; i++) {
+      assertEquals(Arrays.asList(oneByOne.get(i).getStackTrace()),
+          Arrays.asList(batch.get(i).getStackTrace()));
+      assertEquals(Arrays.asList(oneByOne.get(i).getCause().getStackTrace()),
+          Arrays.asList(batch.get(i).getCause().getStackTrace()));
+    }
+    assertEquals(Arrays.asList("bar", "baz"), getMethodNames(batch.get(0).getCause()));
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    deobfuscator = new InMemoryDeobfuscator();
+    // The symbols are not sorted in the file.
+    deobfuscator.addSymbolMap("A",
+        "b,com.example.Foo::bar()V,com.example.Foo,bar,jar:file:/a/com/example/Foo.java,11,0",
+        "a,com.example.Foo::foo()V,com.example.Foo,foo,jar:file:/a/com/example/Foo.java,10,0",
+        "c,com.example.Baz::baz(I)V,com.example.Baz,baz,jar:file:/a/com/example/Baz.java,12,1",
+        // Deobfuscating "x" gives "y", which would give "z" if it were deobfuscated again.
+        "x,com.example.Foo::y()V,com.example.Foo,y,jar:file:/a/com/example/Foo.java,13,0",
+        "y,com.example.Foo::z()V,com.example.Foo,z,jar:file:/a/com/example/Foo.java,14,0");
+    deobfuscator.addSymbolMap("B",
+        "a,com.example.Foo::foo()V,com.example.Foo,foo,jar:file:/b/com/example/Foo.java,20,0");
+    deobfuscator.addSymbolMap("C",
+        "a,com.example.Foo::foo()V,com.example.Foo,foo,jar:file:/c/com/example/Foo.java,30,0");
+  }
+
+  private void assertNotResymbolized(String strongName, String symbol) {
+    StackTraceElement obfuscated = frame(strongName, symbol);
+    assertSame(obfuscated, deobfuscator.resymbolize(obfuscated, strongName));
+  }
+
+  private void assertOpenCounts(int a, int b, int c) {
+    assertEquals(a, deobfuscator.getOpenCount("A"));
+    assertEquals(b, deobfuscator.getOpenCount("B"));
+    assertEquals(c, deobfuscator.getOpenCount("C"));
+  }
+
+  private void assertResymbolized(String strongName, String symbol, String className,
+      String methodName, int lineNumber) {
+    StackTraceElement ste = deobfuscator.resymbolize(frame(strongName, symbol), strongName);
+    assertEquals(className, ste.getClassName());
+    assertEquals(methodName, ste.getMethodName());
+    assertEquals(className.substring(className.lastIndexOf('.') + 1) + ".java",
+        ste.getFileName());
+    assertEquals(lineNumber, ste.getLineNumber());
+  }
+
+  private static List<String> getMethodNames(Throwable t) {
+    List<String> methodNames = new ArrayList<String>();
+    for (StackTraceElement ste : t.getStackTrace()) {
+      methodNames.add(ste.getMethodName());
+    }
+    return methodNames;
+  }
+
+  private static Throwable throwable(Throwable cause, String... symbols) {
+    Throwable t = new Throwable(cause);
+    StackTraceElement[] st = new StackTraceElement[symbols.length];
+    for (int i = 0; i < symbols.length; i++) {
+      st[i] = frame("A", symbols[i]);
+    }
+    t.setStackTrace(st);
+    return t;
+  }
+
+  private static StackTraceElement frame(String strongName, String symbol) {
+    return new StackTraceElement("Unknown", symbol, strongName + ".cache.js", -1);
+  }
+}
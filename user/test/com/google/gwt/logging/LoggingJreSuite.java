@@ -15,6 +15,8 @@
  */
 package com.google.gwt.logging;
 
+import com.google.gwt.logging.server.RemoteLoggingServiceUtilTest;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -26,6 +28,7 @@ public class LoggingJreSuite {
   public static Test suite() {
     TestSuite suite = new TestSuite("Non-browser tests for com.google.gwt.logging");
     suite.addTestSuite(LogConfigurationJreTest.class);
+    suite.addTestSuite(RemoteLoggingServiceUtilTest.class);
     return suite;
   }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.gwt.logging.server;
+
+import com.google.gwt.core.server.StackTraceDeobfuscator;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Tests {@link RemoteLoggingServiceUtil}.
+ */
+public class RemoteLoggingServiceUtilTest extends TestCase {
+
+  private static final String LOGGER_NAME = "com.google.gwt.logging.server.test";
+
+  /**
+   * Serves one symbol map, in which "x" is "y" and "y" is "z", so that a stack trace that is
+   * deobfuscated twice is told apart from one deobfuscated once.
+   */
+  private static final StackTraceDeobfuscator DEOBFUSCATOR = new StackTraceDeobfuscator() {
+    @Override
+    protected InputStream openInputStream(String fileName) throws IOException {
+      if (!fileName.equals("A.symbolMap")) {
+        throw new IOException("Missing file: " + fileName);
+      }
+      String contents =
+          "x,com.example.Foo::y()V,com.example.Foo,y,jar:file:/a/com/example/Foo.java,13,0\n"
+          + "y,com.example.Foo::z()V,com.example.Foo,z,jar:file:/a/com/example/Foo.java,14,0\n";
+      return new ByteArrayInputStream(contents.getBytes("UTF-8"));
+    }
+  };
+
+  private final List<LogRecord> logged = new ArrayList<LogRecord>();
+  private final Handler handler = new Handler() {
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+      logged.add(record);
+    }
+  };
+
+  public void testLogOnServerByStrongName() {
+    Throwable sharedCause = throwable(null, "x");
+    LogRecord first = record("first", throwable(sharedCause, "x"));
+    LogRecord second = record("second", throwable(sharedCause, "y"));
+    LogRecord withoutThrown = record("withoutThrown", null);
+    LogRecord withoutStrongName = record("withoutStrongName", throwable(null, "x"));
+
+    Map<String, List<LogRecord>> recordsByStrongName = new HashMap<String, List<LogRecord>>();
+    recordsByStrongName.put("A", Arrays.asList(first, second, withoutThrown));
+    recordsByStrongName.put(null, Arrays.asList(withoutStrongName));
+    RemoteLoggingServiceUtil.logOnServer(recordsByStrongName, DEOBFUSCATOR, LOGGER_NAME);
+
+    assertEquals(4, logged.size());
+    assertTrue(logged.containsAll(Arrays.asList(first, second, withoutThrown,
+        withoutStrongName)));
+    assertEquals("y", getMethodName(first.getThrown()));
+    assertEquals("z", getMethodName(second.getThrown()));
+    // The shared cause is deobfuscated once.
+    assertEquals("y", getMethodName(sharedCause));
+    // Records under a null strong name are logged as they are.
+    assertEquals("x", getMethodName(withoutStrongName.getThrown()));
+  }
+
+  public void testLogOnServerWithoutDeobfuscator() {
+    LogRecord record = record("record", throwable(null, "x"));
+
+    Map<String, List<LogRecord>> recordsByStrongName = new HashMap<String, List<LogRecord>>();
+    recordsByStrongName.put("A", Arrays.asList(record));
+    RemoteLoggingServiceUtil.logOnServer(recordsByStrongName, null, LOGGER_NAME);
+
+    assertEquals(Arrays.asList(record), logged);
+    assertEquals("x", getMethodName(record.getThrown()));
+  }
+
+  public void testLogOnServerMatchesOneByOne() throws Exception {
+    LogRecord batched = record("batched", throwable(throwable(null, "y"), "x"));
+    LogRecord single = record("single", throwable(throwable(null, "y"), "x"));
+
+    Map<String, List<LogRecord>> recordsByStrongName = new HashMap<String, List<LogRecord>>();
+    recordsByStrongName.put("A", Arrays.asList(batched));
+    RemoteLoggingServiceUtil.logOnServer(recordsByStrongName, DEOBFUSCATOR, LOGGER_NAME);
+    RemoteLoggingServiceUtil.logOnServer(single, "A", DEOBFUSCATOR, LOGGER_NAME);
+
+    assertEquals(Arrays.asList(batched, single), logged);
+    assertEquals(Arrays.asList(single.getThrown().getStackTrace()),
+        Arrays.asList(batched.getThrown().getStackTrace()));
+    assertEquals(Arrays.asList(single.getThrown().getCause().getStackTrace()),
+        Arrays.asList(batched.getThrown().getCause().getStackTrace()));
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    Logger logger = Logger.getLogger(LOGGER_NAME);
+    logger.setUseParentHandlers(false);
+    logger.addHandler(handler);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    Logger logger = Logger.getLogger(LOGGER_NAME);
+    logger.removeHandler(handler);
+    logger.setUseParentHandlers(true);
+  }
+
+  private static String getMethodName(Throwable t) {
+    return t.getStackTrace()[0].getMethodName();
+  }
+
+  private static LogRecord record(String message, Throwable thrown) {
+    LogRecord record = new LogRecord(Level.SEVERE, message);
+    record.setThrown(thrown);
+    return record;
+  }
+
+  private static Throwable throwable(Throwable cause, String symbol) {
+    Throwable t = new Throwable(cause);
+    t.setStackTrace(new StackTraceElement[] {
+        new StackTraceElement("Unknown", symbol, "A.cache.js", -1)});
+    return t;
+  }
+}
@@ -44,6 +44,23 @@ import java.util.zip.GZIPOutputStream;
  * Tests {@link PrecompressLinker}.
  */
 public class PrecompressLinkerTest extends TestCase {
+  /**
+   * An artifact that counts how often its contents are read.
+   */
+  private static class CountingArtifact extends SyntheticArtifact {
+    private int reads;
+
+    public CountingArtifact(String path, byte[] content) {
+      super(PrecompressLinker.class, path, content);
+    }
+
+    @Override
+    public InputStream getContents(TreeLogger logger) throws UnableToCompleteException {
+      reads++;
+      return super.getContents(logger);
+    }
+  }
+
   private static class MockConfigurationProperty implements
       ConfigurationProperty, Comparable<MockConfigurationProperty> {
     private boolean hasMultipleValues;
@@ -90,8 +107,10 @@ public class PrecompressLinkerTest extends TestCase {
   private class MockLinkerContext implements LinkerContext {
     @Override
     public SortedSet<ConfigurationProperty> getConfigurationProperties() {
-      return new TreeSet<ConfigurationProperty>(Arrays.asList(
-          propLeaveOriginals, propPathRegexes));
+      TreeSet<ConfigurationProperty> props = new TreeSet<ConfigurationProperty>(
+          Arrays.asList(propLeaveOriginals, propPathRegexes));
+      props.addAll(optionalProps);
+      return props;
     }
 
     @Override
@@ -211,7 +230,11 @@ public class PrecompressLinkerTest extends TestCase {
    * Return a highly compressible string.
    */
   private static String fooFileContents() {
-    StringBuffer buf = new StringBuffer();
+    return fooFileContents("");
+  }
+
+  private static String fooFileContents(String firstLine) {
+    StringBuffer buf = new StringBuffer(firstLine);
     for (int i = 0; i < 1000; i++) {
       buf.append("another identical line\n");
     }
@@ -219,8 +242,12 @@ public class PrecompressLinkerTest extends TestCase {
   }
 
   private static byte[] uncompressibleContent() {
+    return uncompressibleContent("");
+  }
+
+  private static byte[] uncompressibleContent(String firstLine) {
     try {
-      byte[] content = fooFileContents().getBytes("UTF-8");
+      byte[] content = fooFileContents(firstLine).getBytes("UTF-8");
       while (true) {
         byte[] updated = compress(content);
         if (updated.length >= content.length) {
@@ -240,6 +267,9 @@ public class PrecompressLinkerTest extends TestCase {
 
   private MockConfigurationProperty propPathRegexes;
 
+  private List<MockConfigurationProperty> optionalProps =
+      new ArrayList<MockConfigurationProperty>();
+
   /**
    * Test that foo.js gets compressed to foo.js.gz, and bar.js is left alone.
    */
@@ -263,6 +293,80 @@ public class PrecompressLinkerTest extends TestCase {
         uncompressibleGz);
   }
 
+  /**
+   * Test that compressing with several threads and another level gives the
+   * same artifacts.
+   */
+  public void testLevelAndThreads() throws UnableToCompleteException, IOException {
+    MockConfigurationProperty propLevel = new MockConfigurationProperty(
+        "precompress.compression.level", false);
+    propLevel.setValue("1");
+    MockConfigurationProperty propThreads = new MockConfigurationProperty(
+        "precompress.threads", false);
+    propThreads.setValue("4");
+    optionalProps.add(propLevel);
+    optionalProps.add(propThreads);
+    ArtifactSet updated = linkArtifacts();
+
+    EmittedArtifact foo = findArtifact(updated, "foo.js");
+    EmittedArtifact fooGz = findArtifact(updated, "foo.js.gz");
+    assertNotNull(fooGz);
+    assertEqualBytes(contents(foo), decompress(contents(fooGz)));
+    assertNull(findArtifact(updated, "bar.js.gz"));
+    assertNull(findArtifact(updated, "uncompressible.js.gz"));
+
+    propThreads.setValue("0");
+    try {
+      linkArtifacts();
+      fail("Expected UnableToCompleteException");
+    } catch (UnableToCompleteException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Test that linking the same contents again reuses the earlier result,
+   * whether or not compressing made the contents smaller.
+   */
+  public void testReusesEarlierLinks() throws UnableToCompleteException, IOException {
+    // Results are remembered across links, so use contents no other test links.
+    String firstLine = "linked at " + System.nanoTime() + "\n";
+    byte[] fooContents = fooFileContents(firstLine).getBytes("UTF-8");
+    CountingArtifact foo = new CountingArtifact("foo.js", fooContents);
+    CountingArtifact uncompressible = new CountingArtifact("uncompressible.js",
+        uncompressibleContent(firstLine));
+    artifacts = new ArtifactSet();
+    artifacts.add(foo);
+    artifacts.add(uncompressible);
+    artifacts.freeze();
+
+    // Read once to look up the contents and once to compress them.
+    ArtifactSet first = linkArtifacts();
+    assertEquals(2, foo.reads);
+    assertEquals(2, uncompressible.reads);
+
+    // Only looked up.
+    ArtifactSet second = linkArtifacts();
+    assertEquals(3, foo.reads);
+    assertEquals(3, uncompressible.reads);
+    EmittedArtifact firstGz = findArtifact(first, "foo.js.gz");
+    EmittedArtifact secondGz = findArtifact(second, "foo.js.gz");
+    assertNotSame(firstGz, secondGz);
+    assertEqualBytes(contents(firstGz), contents(secondGz));
+    assertEqualBytes(fooContents, decompress(contents(secondGz)));
+    assertNull(findArtifact(second, "uncompressible.js.gz"));
+
+    // Results are kept per compression level.
+    MockConfigurationProperty propLevel = new MockConfigurationProperty(
+        "precompress.compression.level", false);
+    propLevel.setValue("1");
+    optionalProps.add(propLevel);
+    ArtifactSet third = linkArtifacts();
+    assertEquals(5, foo.reads);
+    assertEquals(5, uncompressible.reads);
+    assertEqualBytes(fooContents, decompress(contents(findArtifact(third, "foo.js.gz"))));
+  }
+
   /**
    * Test that the blacklist takes effect.
    */